@@ -0,0 +1,142 @@
+/*
+ * Copyright 2023 OPS4J.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.web.service;
+
+import java.util.Dictionary;
+import java.util.EventListener;
+import javax.servlet.Filter;
+import javax.servlet.Servlet;
+import javax.servlet.ServletException;
+
+import org.osgi.service.http.NamespaceException;
+
+/**
+ * <p>Builder obtained from {@link WebContainer#bulkRegistration(org.osgi.service.http.HttpContext)} used to
+ * collect web elements which are then registered together with single {@link #commit()}.</p>
+ *
+ * <p>Each {@code register*()} method of {@link WebContainer} is a separate configuration task and may (re)start
+ * the target context. Elements collected in this builder are registered in single configuration task and the
+ * context is (re)started at most once. If registration of any element fails, the elements registered so far
+ * are unregistered (rolled back). The registration is not isolated though - in a context which is already
+ * running, the elements registered before the failure may serve requests until they're unregistered.</p>
+ *
+ * <p>The builder is not thread safe and can be committed only once.</p>
+ */
+public interface BulkRegistration {
+
+	/**
+	 * Adds a servlet instance - see
+	 * {@link WebContainer#registerServlet(Servlet, String, String[], Dictionary, org.osgi.service.http.HttpContext)}
+	 *
+	 * @param servlet
+	 * @param servletName
+	 * @param urlPatterns
+	 * @param initParams
+	 * @return this builder
+	 */
+	BulkRegistration servlet(Servlet servlet, String servletName, String[] urlPatterns,
+			Dictionary<String, String> initParams);
+
+	/**
+	 * Adds a servlet class - see
+	 * {@link WebContainer#registerServlet(Class, String[], Dictionary, org.osgi.service.http.HttpContext)}
+	 *
+	 * @param servletClass
+	 * @param urlPatterns
+	 * @param initParams
+	 * @return this builder
+	 */
+	BulkRegistration servlet(Class<? extends Servlet> servletClass, String[] urlPatterns,
+			Dictionary<String, String> initParams);
+
+	/**
+	 * Adds a servlet registered under an alias - see
+	 * {@link org.osgi.service.http.HttpService#registerServlet(String, Servlet, Dictionary, org.osgi.service.http.HttpContext)}
+	 *
+	 * @param alias
+	 * @param servlet
+	 * @param initParams
+	 * @return this builder
+	 */
+	BulkRegistration servlet(String alias, Servlet servlet, Dictionary<?, ?> initParams);
+
+	/**
+	 * Adds a filter instance - see
+	 * {@link WebContainer#registerFilter(Filter, String, String[], String[], Dictionary, Boolean, org.osgi.service.http.HttpContext)}
+	 *
+	 * @param filter
+	 * @param filterName
+	 * @param urlPatterns
+	 * @param servletNames
+	 * @param initParams
+	 * @return this builder
+	 */
+	BulkRegistration filter(Filter filter, String filterName, String[] urlPatterns, String[] servletNames,
+			Dictionary<String, String> initParams);
+
+	/**
+	 * Adds a filter class - see
+	 * {@link WebContainer#registerFilter(Class, String, String[], String[], Dictionary, Boolean, org.osgi.service.http.HttpContext)}
+	 *
+	 * @param filterClass
+	 * @param filterName
+	 * @param urlPatterns
+	 * @param servletNames
+	 * @param initParams
+	 * @return this builder
+	 */
+	BulkRegistration filter(Class<? extends Filter> filterClass, String filterName, String[] urlPatterns,
+			String[] servletNames, Dictionary<String, String> initParams);
+
+	/**
+	 * Adds an event listener - see
+	 * {@link WebContainer#registerEventListener(EventListener, org.osgi.service.http.HttpContext)}
+	 *
+	 * @param listener
+	 * @return this builder
+	 */
+	BulkRegistration eventListener(EventListener listener);
+
+	/**
+	 * Adds welcome files - see
+	 * {@link WebContainer#registerWelcomeFiles(String[], boolean, org.osgi.service.http.HttpContext)}
+	 *
+	 * @param welcomeFiles
+	 * @param redirect
+	 * @return this builder
+	 */
+	BulkRegistration welcomeFiles(String[] welcomeFiles, boolean redirect);
+
+	/**
+	 * Adds error pages - see
+	 * {@link WebContainer#registerErrorPages(String[], String, org.osgi.service.http.HttpContext)}
+	 *
+	 * @param errors
+	 * @param location
+	 * @return this builder
+	 */
+	BulkRegistration errorPages(String[] errors, String location);
+
+	/**
+	 * Registers all the collected elements in single configuration task.
+	 *
+	 * @throws ServletException if registration of any element fails (none of the elements is then registered)
+	 * @throws NamespaceException if a servlet alias is already in use (none of the elements is then registered)
+	 * @throws IllegalStateException if the builder was already committed
+	 */
+	void commit() throws ServletException, NamespaceException;
+
+}
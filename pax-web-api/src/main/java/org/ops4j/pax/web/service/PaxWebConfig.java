@@ -138,12 +138,71 @@ public interface PaxWebConfig {
 	 */
 	String PID_CFG_EVENT_DISPATCHER_THREAD_COUNT = "org.ops4j.pax.web.server.eventDispatcherThreadCount";
 
+	/**
+	 * Maximum number of request paths for which Undertow caches the matched context path. Defaults to {@code 0},
+	 * which means that Undertow's own {@code io.undertow.server.handlers.PathHandler} is used. Only relevant
+	 * for Undertow.
+	 */
+	String PID_CFG_SERVER_PATH_MATCH_CACHE_SIZE = "org.ops4j.pax.web.server.pathMatchCacheSize";
+
+	/**
+	 * Maximum delay (in milliseconds) of registration tasks (servlets, filters, whiteboard services, WABs, ...)
+	 * which are committed together as a group in configuration thread, so each affected context is (re)started
+	 * only once per group. Defaults to {@code 0}, which means that each registration is processed separately.
+	 */
+	String PID_CFG_SERVER_REGISTRATION_GROUP_COMMIT_DELAY = "org.ops4j.pax.web.server.registrationGroupCommitDelay";
+
+	/**
+	 * Maximum time (in milliseconds) to wait for in-flight requests of a context before it's stopped in order to
+	 * be restarted (e.g., after changing its filters or listeners). New requests arriving during the restart are
+	 * held (for the same time) and processed by the restarted context instead of failing with {@code 404}.
+	 * Defaults to {@code 0}, which means that contexts are restarted immediately.
+	 */
+	String PID_CFG_SERVER_REDEPLOY_DRAIN_TIMEOUT = "org.ops4j.pax.web.server.redeployDrainTimeout";
+
+	/**
+	 * Whether the contexts should be started lazily - when they receive the first request instead of when the
+	 * first servlet (or other active web element) is registered. Concurrent requests arriving while the context
+	 * is being started wait for the start to finish. Can be overridden for single context using
+	 * {@link PaxWebConstants#CONTEXT_PARAM_LAZY_CONTEXT_START} context parameter. Defaults to {@code false}.
+	 */
+	String PID_CFG_SERVER_LAZY_CONTEXT_START = "org.ops4j.pax.web.server.lazyContextStart";
+
+	/**
+	 * Time (in milliseconds) after which lazily started context, which didn't receive any request, is stopped
+	 * again (and started with next request). Defaults to {@code 0}, which means that lazily started contexts are
+	 * never stopped because of inactivity.
+	 */
+	String PID_CFG_SERVER_LAZY_CONTEXT_IDLE_TIMEOUT = "org.ops4j.pax.web.server.lazyContextIdleTimeout";
+
+	/**
+	 * Maximum time (in milliseconds) a request waits for lazily started context to be started. The start is
+	 * performed in configuration thread, so it may have to wait for other registrations (e.g., WAB deployments).
+	 * Requests which can't wait longer get {@code 503} response. Defaults to {@code 10000}.
+	 */
+	String PID_CFG_SERVER_LAZY_CONTEXT_START_TIMEOUT = "org.ops4j.pax.web.server.lazyContextStartTimeout";
+
 	/**
 	 * {@link org.osgi.framework.BundleContext} property to configure thread count for WAR
 	 * extender. Before Pax Web 8 it was hardcoded to 3 (which is still the default value).
 	 */
 	String BUNDLE_CONTEXT_PROPERTY_WAR_EXTENDER_THREADS = "org.ops4j.pax.web.extender.war.threads";
 
+	/**
+	 * {@link org.osgi.framework.BundleContext} property to configure the number of threads used to parse
+	 * {@code *.class} files when scanning WABs for annotated classes and types from
+	 * {@link javax.servlet.annotation.HandlesTypes}. Defaults to {@code 1}, which means that the classes are
+	 * parsed serially in the thread deploying the WAB. Higher values enable parallel parsing.
+	 */
+	String BUNDLE_CONTEXT_PROPERTY_WAR_EXTENDER_SCAN_PARALLELISM = "org.ops4j.pax.web.extender.war.scan.parallelism";
+
+	/**
+	 * {@link org.osgi.framework.BundleContext} property to enable (default) or disable persistent index of classes
+	 * relevant for annotation scanning of WABs. The index is kept in the data area of pax-web-extender-war bundle
+	 * and is used only if the WAB, its fragments and wired bundles didn't change since previous scan.
+	 */
+	String BUNDLE_CONTEXT_PROPERTY_WAR_EXTENDER_SCAN_INDEX = "org.ops4j.pax.web.extender.war.scan.index";
+
 	/**
 	 * Context property listing symbolic names of the bundles or jar names (in {@code /WEB-INF/lib}) patterns to skip
 	 * when searching for TLDs, web fragments and annotated classes. This property can have special value of
@@ -295,6 +354,14 @@ public interface PaxWebConfig {
 	String PID_CFG_DIGESTAUTH_MAX_NONCE_COUNT = "org.ops4j.pax.web.digestAuth.maxNonceCount";
 	/** Returns whether to forward (false, default) to form-login error page or use redirect (true) */
 	String PID_CFG_FORMAUTH_REDIRECT = "org.ops4j.pax.web.formAuth.errorRedirect";
+	/**
+	 * Maximum number of successful credential verifications (e.g., JAAS logins for BASIC authentication) remembered
+	 * by the identity managers configured by Pax Web. Defaults to {@code 0}, which disables the cache.
+	 * Currently used by Undertow.
+	 */
+	String PID_CFG_AUTH_CACHE_SIZE = "org.ops4j.pax.web.authCache.size";
+	/** Time (in ms) after which cached credential verification expires. Defaults to 60s (60000ms) */
+	String PID_CFG_AUTH_CACHE_TTL = "org.ops4j.pax.web.authCache.ttl";
 
 	// --- logging configuration properties
 
@@ -414,6 +481,37 @@ public interface PaxWebConfig {
 	 */
 	String PID_CFG_DEFAULT_SERVLET_CACHE_TTL = "org.ops4j.pax.web.resource.cache.ttl";
 
+	/**
+	 * <p>Integer property to specify maximum total size (kB) of the content cache shared by all the resource
+	 * servlets of all the contexts. The content of bundle resources is stored off-heap once, even if it's served
+	 * by many contexts. When set, this cache is used instead of the caches of the resource servlets described above
+	 * (with {@link #PID_CFG_DEFAULT_SERVLET_CACHE_MAX_ENTRY_SIZE} still used as the limit for single resource).
+	 * Defaults to {@code 0}, which disables the shared cache.</p>
+	 */
+	String PID_CFG_DEFAULT_SERVLET_SHARED_CACHE_SIZE = "org.ops4j.pax.web.resource.cache.sharedSize";
+
+	/**
+	 * <p>Property to specify whether precompressed siblings of bundle resources (like {@code app.js.br} or
+	 * {@code app.js.gz}) should be served to clients accepting given encoding. The value is either {@code true}
+	 * (meaning {@code br=.br,gzip=.gz}) or comma-separated list of encodings with optional file extensions in
+	 * order of preference (like Jetty's {@code precompressed} init parameter).
+	 * Can be overridden with context init parameter of the same name.</p>
+	 */
+	String PID_CFG_DEFAULT_SERVLET_PRECOMPRESSED = "org.ops4j.pax.web.resource.precompressed";
+
+	/**
+	 * <p>Boolean property to specify whether compressible bundle resources (text, scripts, JSON, XML, SVG) should
+	 * be compressed with {@code gzip} once and served from the resource cache to clients accepting this encoding.
+	 * Can be overridden with context init parameter of the same name.</p>
+	 */
+	String PID_CFG_DEFAULT_SERVLET_COMPRESS = "org.ops4j.pax.web.resource.compress";
+
+	/**
+	 * <p>Integer property to specify minimal size (in bytes) of the resource to be compressed. Defaults to
+	 * {@code 1024}. Can be overridden with context init parameter of the same name.</p>
+	 */
+	String PID_CFG_DEFAULT_SERVLET_COMPRESS_MIN_SIZE = "org.ops4j.pax.web.resource.compress.minSize";
+
 	/** Boolean property to configure the container to show or hide stack traces in <em>error handler</em>. */
 	String PID_CFG_SHOW_STACKS = "org.ops4j.pax.web.server.showStacks";
 
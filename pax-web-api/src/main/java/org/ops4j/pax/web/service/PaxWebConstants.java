@@ -282,6 +282,12 @@ public interface PaxWebConstants {
 	 */
 	String CONTEXT_PARAM_PAX_WEB_FACELETS_LIBRARIES = "org.ops4j.pax.web.javax.faces.FACELETS_LIBRARIES";
 
+	/**
+	 * Context parameter ({@code true} or {@code false}) that overrides global
+	 * {@link PaxWebConfig#PID_CFG_SERVER_LAZY_CONTEXT_START} setting for single context.
+	 */
+	String CONTEXT_PARAM_LAZY_CONTEXT_START = "org.ops4j.pax.web.lazyContextStart";
+
 	// --- 3 properties defined in 128.3.4 "Publishing the Servlet Context" (and one Pax Web specific)
 
 	/** Symbolic name of the WAB bundle or bundle registering OSGi servlet context */
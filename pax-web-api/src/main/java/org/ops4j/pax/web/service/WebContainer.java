@@ -944,4 +944,17 @@ public interface WebContainer extends HttpService {
 	 */
 	void unregisterConstraintMapping(HttpContext httpContext);
 
+	// --- methods used to register many web elements at once
+
+	/**
+	 * <p>Creates a builder to collect servlets, filters, listeners, welcome files and error pages, which are then
+	 * registered together into single {@link HttpContext}. The target context is (re)started at most once for
+	 * all the collected elements and the elements registered so far are rolled back (unregistered) on failure.</p>
+	 *
+	 * @param httpContext the http context to register the elements into. If null, a default http context will be
+	 *        created
+	 * @return new {@link BulkRegistration}
+	 */
+	BulkRegistration bulkRegistration(HttpContext httpContext);
+
 }
@@ -579,7 +579,7 @@ public class ClassPathUtil {
 		}
 
 		List<URL> resources = new LinkedList<>();
-		scanRoots(null, roots, pattern, recurse, resources);
+		scanRoots(null, roots, pattern, recurse, resources, null);
 
 		return resources;
 	}
@@ -627,6 +627,24 @@ public class ClassPathUtil {
 	 */
 	public static List<URL> findEntries(Bundle bundle, URL[] roots, String path, String pattern, boolean recurse)
 			throws IOException {
+		return findEntries(bundle, roots, path, pattern, recurse, null);
+	}
+
+	/**
+	 * Same as {@link #findEntries(Bundle, URL[], String, String, boolean)}, but JAR roots are scanned using
+	 * {@link JarIndex indexes} from passed {@link JarIndexCache}, so many queries for the same JAR read its
+	 * central directory only once.
+	 * @param bundle
+	 * @param roots
+	 * @param path
+	 * @param pattern
+	 * @param recurse
+	 * @param cache may be {@code null}
+	 * @return
+	 * @throws IOException
+	 */
+	public static List<URL> findEntries(Bundle bundle, URL[] roots, String path, String pattern, boolean recurse,
+			JarIndexCache cache) throws IOException {
 		List<URL> resources = new LinkedList<>();
 
 		while (pattern.startsWith("/")) {
@@ -640,15 +658,20 @@ public class ClassPathUtil {
 			newRoots.add(new URL(root, base));
 		}
 
-		scanRoots(bundle, newRoots, pattern, recurse, resources);
+		scanRoots(bundle, newRoots, pattern, recurse, resources, cache);
 		return resources;
 	}
 
-	private static void scanRoots(Bundle bundle, List<URL> roots, String pattern, boolean recurse, List<URL> resources) {
-		Pattern p = Pattern.compile(pattern.replaceAll("\\?", ".").replaceAll("\\*", ".*"));
+	private static void scanRoots(Bundle bundle, List<URL> roots, String pattern, boolean recurse, List<URL> resources,
+			JarIndexCache cache) {
+		Pattern p = cache == null ? globToPattern(pattern) : cache.getPattern(pattern);
 
 		for (URL root : roots) {
 			String protocol = root.getProtocol();
+			if ("jar".equals(protocol) && cache != null) {
+				scanJarIndex(root, cache, p, recurse, resources);
+				continue;
+			}
 			if ("jar".equals(protocol) && !jarClassPathEntryExists(root)) {
 				continue;
 			}
@@ -734,6 +757,54 @@ public class ClassPathUtil {
 		}
 	}
 
+	/**
+	 * Same as {@link #scanJar(URL, Pattern, boolean, Collection)}, but using cached list of JAR's entries.
+	 * @param root
+	 * @param cache
+	 * @param pattern
+	 * @param recurse
+	 * @param result
+	 */
+	private static void scanJarIndex(URL root, JarIndexCache cache, Pattern pattern, boolean recurse, Collection<URL> result) {
+		// root can be "jar:<location>!/" or "jar:<location>!/some/base"
+		String location = root.getFile();
+		int separator = location.indexOf("!/");
+		String rootEntryPath = separator == -1 ? "" : location.substring(separator + 2);
+		JarIndex index;
+		try {
+			index = cache.getIndex(root);
+		} catch (IOException e) {
+			// not an existing classpath entry
+			return;
+		}
+		if (!"".equals(rootEntryPath)) {
+			// jarClassPathEntryExists() would fail for non-existing base entry
+			if (!index.contains(rootEntryPath)) {
+				return;
+			}
+			if (!rootEntryPath.endsWith("/")) {
+				rootEntryPath += "/";
+			}
+		}
+
+		try {
+			for (String entryPath : index.getNames()) {
+				if (entryPath.startsWith(rootEntryPath)) {
+					String relativePath = entryPath.substring(rootEntryPath.length());
+					if (relativePath.startsWith("/")) {
+						relativePath = relativePath.substring(1);
+					}
+					if (matches(relativePath, pattern, recurse)) {
+						relativePath = relativePath.replaceAll("#", "%23");
+						result.add(new URL(root, relativePath));
+					}
+				}
+			}
+		} catch (IOException e) {
+			LOG.warn(e.getMessage(), e);
+		}
+	}
+
 	/**
 	 * Scan a bundle (using OSGi-runtime-specific protocol handler)
 	 * @param bundle
@@ -780,6 +851,15 @@ public class ClassPathUtil {
 		}
 	}
 
+	/**
+	 * Turns a glob pattern (as used by {@link Bundle#findEntries(String, String, boolean)}) into regular expression
+	 * @param pattern
+	 * @return
+	 */
+	static Pattern globToPattern(String pattern) {
+		return Pattern.compile(pattern.replaceAll("\\?", ".").replaceAll("\\*", ".*"));
+	}
+
 	/**
 	 * Returns {@code true} if passed path matches the pattern
 	 * @param path
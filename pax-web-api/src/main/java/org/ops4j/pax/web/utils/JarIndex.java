@@ -0,0 +1,159 @@
+/*
+ * Copyright 2023 OPS4J.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.web.utils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.JarURLConnection;
+import java.net.URL;
+import java.net.URLConnection;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+/**
+ * <p>Names of all the entries of single JAR (e.g., {@code bundle://40.0:0/WEB-INF/lib/x.jar} embedded in a WAB),
+ * read once from JAR's central directory, so the JAR doesn't have to be opened and enumerated again for every
+ * {@code *.class}, {@code META-INF/web-fragment.xml} or {@code META-INF/*.taglib.xml} query.</p>
+ *
+ * <p>The content of selected entries can be read in single sequential pass over the JAR, instead of opening
+ * {@code jar:} URL connection for every entry.</p>
+ */
+public final class JarIndex {
+
+	private final String location;
+
+	/** Entry names in the order of the central directory */
+	private final List<String> names;
+	private final Set<String> nameSet;
+
+	private JarIndex(String location, List<String> names) {
+		this.location = location;
+		this.names = Collections.unmodifiableList(names);
+		this.nameSet = new HashSet<>(names);
+	}
+
+	/**
+	 * Reads the names of all the entries of a JAR.
+	 * @param location URL of the JAR itself (without {@code jar:} prefix and {@code !/} suffix)
+	 * @return
+	 * @throws IOException
+	 */
+	public static JarIndex read(String location) throws IOException {
+		URLConnection con = new URL("jar:" + location + "!/").openConnection();
+		List<String> names = new ArrayList<>();
+		JarFile jar = null;
+		boolean closeJar = true;
+		try {
+			if (con instanceof JarURLConnection) {
+				JarURLConnection jarCon = (JarURLConnection) con;
+				jar = jarCon.getJarFile();
+				closeJar = !jarCon.getUseCaches();
+			} else {
+				jar = new JarFile(location);
+			}
+			for (Enumeration<JarEntry> entries = jar.entries(); entries.hasMoreElements(); ) {
+				names.add(entries.nextElement().getName());
+			}
+		} finally {
+			if (closeJar && jar != null) {
+				try {
+					jar.close();
+				} catch (IOException ignored) {
+				}
+			}
+		}
+		return new JarIndex(location, names);
+	}
+
+	public String getLocation() {
+		return location;
+	}
+
+	/**
+	 * Names of all the entries in the order of JAR's central directory
+	 * @return
+	 */
+	public List<String> getNames() {
+		return names;
+	}
+
+	/**
+	 * Checks whether the JAR contains given entry - just as {@link JarFile#getEntry(String)}, for name without
+	 * trailing slash, a directory entry is checked too.
+	 * @param name
+	 * @return
+	 */
+	public boolean contains(String name) {
+		return nameSet.contains(name) || (!name.endsWith("/") && nameSet.contains(name + "/"));
+	}
+
+	/**
+	 * Reads the content of selected entries in single sequential pass over the JAR. The entries are passed to
+	 * the handler in the order in which they're stored in the JAR.
+	 * <p>Entries which are not found by sequential read (e.g., with names that differ from the names in central
+	 * directory) are not passed to the handler at all and the read may fail with
+	 * {@link java.util.zip.ZipException} for JARs which can be read only using central directory - callers should
+	 * read such entries separately.</p>
+	 * @param entries
+	 * @param handler
+	 * @throws IOException
+	 */
+	public void readEntries(Collection<String> entries, EntryHandler handler) throws IOException {
+		Set<String> remaining = new HashSet<>(entries);
+		if (remaining.isEmpty()) {
+			return;
+		}
+		byte[] buffer = new byte[8192];
+		try (InputStream is = new URL(location).openStream(); ZipInputStream zis = new ZipInputStream(is)) {
+			ZipEntry entry;
+			while (!remaining.isEmpty() && (entry = zis.getNextEntry()) != null) {
+				if (!remaining.remove(entry.getName())) {
+					continue;
+				}
+				ByteArrayOutputStream baos = new ByteArrayOutputStream(entry.getSize() > 0 ? (int) entry.getSize() : 4096);
+				int read;
+				while ((read = zis.read(buffer)) > 0) {
+					baos.write(buffer, 0, read);
+				}
+				handler.handle(entry.getName(), baos.toByteArray());
+			}
+		}
+	}
+
+	@Override
+	public String toString() {
+		return "JarIndex{" + location + ", entries: " + names.size() + "}";
+	}
+
+	/**
+	 * Callback for {@link #readEntries(Collection, EntryHandler)}
+	 */
+	@FunctionalInterface
+	public interface EntryHandler {
+		void handle(String name, byte[] content) throws IOException;
+	}
+
+}
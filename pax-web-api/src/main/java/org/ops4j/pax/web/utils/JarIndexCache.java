@@ -0,0 +1,93 @@
+/*
+ * Copyright 2023 OPS4J.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.web.utils;
+
+import java.io.IOException;
+import java.net.URL;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+
+/**
+ * <p>Cache of {@link JarIndex JAR indexes} (and compiled glob patterns) that should be used for all the scans
+ * related to single deployment (like WAB's web fragments, SCI services, annotated classes and facelet tag
+ * libraries), so each JAR's central directory is read once.</p>
+ *
+ * <p>There's no invalidation - the cache should be {@link #clear() cleared} (or simply dropped) when the
+ * deployment is processed.</p>
+ */
+public class JarIndexCache {
+
+	private final Map<String, JarIndex> indexes = new ConcurrentHashMap<>();
+	private final Map<String, Pattern> patterns = new ConcurrentHashMap<>();
+
+	/**
+	 * Returns an index of a JAR for a {@code jar:} URL (either JAR's root or any entry)
+	 * @param url
+	 * @return
+	 * @throws IOException
+	 */
+	public JarIndex getIndex(URL url) throws IOException {
+		if (!"jar".equals(url.getProtocol())) {
+			throw new IllegalArgumentException(url + " url not supported");
+		}
+		String location = url.getFile();
+		int separator = location.indexOf("!/");
+		if (separator != -1) {
+			location = location.substring(0, separator);
+		}
+		return getIndex(location);
+	}
+
+	/**
+	 * Returns an index of a JAR for its location (URL without {@code jar:} prefix and {@code !/} suffix)
+	 * @param location
+	 * @return
+	 * @throws IOException
+	 */
+	public JarIndex getIndex(String location) throws IOException {
+		JarIndex index = indexes.get(location);
+		if (index == null) {
+			// no computeIfAbsent() - we don't want to read the JAR while holding a lock of the map
+			index = JarIndex.read(location);
+			JarIndex existing = indexes.putIfAbsent(location, index);
+			if (existing != null) {
+				index = existing;
+			}
+		}
+		return index;
+	}
+
+	/**
+	 * Returns a {@link Pattern} for a glob pattern (with {@code *} and {@code ?}) as used by
+	 * {@link org.osgi.framework.Bundle#findEntries(String, String, boolean)}.
+	 * @param glob
+	 * @return
+	 */
+	public Pattern getPattern(String glob) {
+		return patterns.computeIfAbsent(glob, ClassPathUtil::globToPattern);
+	}
+
+	public int size() {
+		return indexes.size();
+	}
+
+	public void clear() {
+		indexes.clear();
+		patterns.clear();
+	}
+
+}
@@ -18,6 +18,8 @@ package org.ops4j.pax.web.utils;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 import org.apache.commons.io.IOUtils;
@@ -73,22 +75,7 @@ public class ClassPathUtilTest {
 
 	@Test
 	public void findResourcesInJARs() throws IOException {
-		URL[] roots = new URL[] { null };
-
-		URL[] urls = ClassPathUtil.getURLs(cl);
-		if (urls.length == 1) {
-			urls = ClassPathUtil.jarToItsClassPath(urls[0]);
-		}
-		for (URL url : urls) {
-			if (url.toExternalForm().contains("junit/junit")) {
-				if ("jar".equals(url.getProtocol())) {
-					roots[0] = url;
-				} else {
-					roots[0] = new URL("jar:" + url.toExternalForm() + "!/");
-				}
-				break;
-			}
-		}
+		URL[] roots = junitRoots();
 
 		assertThat(ClassPathUtil.findEntries(null, roots, "org", "RunWith.class", false).size(), equalTo(0));
 		assertThat(ClassPathUtil.findEntries(null, roots, "org/junit/runner", "runner/RunWith.class", false).size(), equalTo(0));
@@ -111,6 +98,55 @@ public class ClassPathUtilTest {
 		assertCorrectClass(ClassPathUtil.findEntries(null, roots, null, "RunWith.class", true));
 	}
 
+	@Test
+	public void findResourcesInIndexedJARs() throws IOException {
+		URL[] roots = junitRoots();
+		JarIndexCache cache = new JarIndexCache();
+
+		String[][] queries = new String[][] {
+				{ "org", "RunWith.class" }, { "org/junit/runner", "runner/RunWith.class" },
+				{ "org", "*/RunWith.class" }, { "/org/junit/", "/runner/RunWith.class" },
+				{ "/", "RunWith.class" }, { "META-INF", "MANIFEST.MF" }, { "not/there", "*.class" }
+		};
+		for (String[] q : queries) {
+			for (boolean recurse : new boolean[] { false, true }) {
+				assertThat(ClassPathUtil.findEntries(null, roots, q[0], q[1], recurse, cache),
+						equalTo(ClassPathUtil.findEntries(null, roots, q[0], q[1], recurse)));
+			}
+		}
+		assertCorrectClass(ClassPathUtil.findEntries(null, roots, "org", "RunWith.class", true, cache));
+		assertThat(cache.size(), equalTo(1));
+
+		JarIndex index = cache.getIndex(roots[0]);
+		List<String> read = new ArrayList<>();
+		index.readEntries(Arrays.asList("org/junit/runner/RunWith.class", "org/junit/Test.class"), (name, content) -> {
+			read.add(name);
+			assertThat(content[0], equalTo((byte) 0xCA));
+		});
+		assertThat(read.size(), equalTo(2));
+	}
+
+	private URL[] junitRoots() throws IOException {
+		URL[] roots = new URL[] { null };
+
+		URL[] urls = ClassPathUtil.getURLs(cl);
+		if (urls.length == 1) {
+			urls = ClassPathUtil.jarToItsClassPath(urls[0]);
+		}
+		for (URL url : urls) {
+			if (url.toExternalForm().contains("junit/junit")) {
+				if ("jar".equals(url.getProtocol())) {
+					roots[0] = url;
+				} else {
+					roots[0] = new URL("jar:" + url.toExternalForm() + "!/");
+				}
+				break;
+			}
+		}
+
+		return roots;
+	}
+
 	private void assertCorrectClass(List<URL> urls) {
 		assertThat(urls.size(), equalTo(1));
 		try (InputStream is = urls.get(0).openConnection().getInputStream()) {
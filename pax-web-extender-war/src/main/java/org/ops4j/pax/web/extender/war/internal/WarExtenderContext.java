@@ -15,6 +15,7 @@
  */
 package org.ops4j.pax.web.extender.war.internal;
 
+import java.io.File;
 import java.io.IOException;
 import java.net.URL;
 import java.util.ArrayList;
@@ -31,6 +32,8 @@ import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
@@ -124,6 +127,15 @@ public class WarExtenderContext implements WebContainerListener, ReportViewPlugi
 	private final List<String> jarsToSkip = new CopyOnWriteArrayList<>();
 	private final List<String> jarsToScan = new CopyOnWriteArrayList<>();
 
+	/**
+	 * Pool used to parse {@code *.class} files of the WABs in parallel. {@code null} if the classes should be
+	 * parsed serially.
+	 */
+	private final ForkJoinPool scanPool;
+
+	/** Whether persistent {@link org.ops4j.pax.web.extender.war.internal.model.ClassScanIndex} should be used */
+	private final boolean scanIndexEnabled;
+
 	static {
 		// this list is used by default or if "org.ops4j.pax.web.extender.war.jarsToSkip" PID property
 		// is equal to "default" (no quotes). "default" can be used in custom configuration as well
@@ -252,6 +264,32 @@ public class WarExtenderContext implements WebContainerListener, ReportViewPlugi
 			scannedJarsList = Collections.emptyList();
 		}
 
+		// parallel parsing is opt-in
+		int scanParallelism = 1;
+		String scanParallelismValue = bundleContext.getProperty(PaxWebConfig.BUNDLE_CONTEXT_PROPERTY_WAR_EXTENDER_SCAN_PARALLELISM);
+		if (scanParallelismValue != null && !"".equals(scanParallelismValue.trim())) {
+			try {
+				scanParallelism = Integer.parseInt(scanParallelismValue.trim());
+			} catch (NumberFormatException e) {
+				LOG.warn("Can't parse {} property: {}", PaxWebConfig.BUNDLE_CONTEXT_PROPERTY_WAR_EXTENDER_SCAN_PARALLELISM,
+						e.getMessage());
+			}
+		}
+		if (scanParallelism > 1) {
+			LOG.info("Configuring WAR extender class scanning pool. Parallelism = {}", scanParallelism);
+			scanPool = new ForkJoinPool(scanParallelism, fjp -> {
+				ForkJoinWorkerThread t = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(fjp);
+				t.setName("wab-scanner-" + t.getPoolIndex());
+				return t;
+			}, null, false);
+		} else {
+			scanPool = null;
+		}
+
+		String scanIndexValue = bundleContext.getProperty(PaxWebConfig.BUNDLE_CONTEXT_PROPERTY_WAR_EXTENDER_SCAN_INDEX);
+		scanIndexEnabled = scanIndexValue == null || "".equals(scanIndexValue.trim())
+				|| Boolean.parseBoolean(scanIndexValue.trim());
+
 		// dispatcher of events related to WAB lifecycle (128.5 Events)
 		webApplicationEventDispatcher = new WebApplicationEventDispatcher(bundleContext);
 
@@ -291,6 +329,10 @@ public class WarExtenderContext implements WebContainerListener, ReportViewPlugi
 		}
 
 		webContainerManager.shutdown();
+
+		if (scanPool != null) {
+			scanPool.shutdownNow();
+		}
 	}
 
 	public ExecutorService getPool() {
@@ -301,6 +343,33 @@ public class WarExtenderContext implements WebContainerListener, ReportViewPlugi
 		this.pool.set(pool);
 	}
 
+	/**
+	 * Returns a pool to be used for parallel parsing of WAB classes or {@code null} if the classes should be
+	 * parsed serially.
+	 * @return
+	 */
+	public ForkJoinPool getScanPool() {
+		return scanPool;
+	}
+
+	/**
+	 * Returns a file in the data area of pax-web-extender-war bundle, where the index of classes relevant for
+	 * annotation scanning of given WAB is stored. Returns {@code null} if there's no such index.
+	 * @param wab
+	 * @return
+	 */
+	public File getScanIndexFile(Bundle wab) {
+		if (!scanIndexEnabled) {
+			return null;
+		}
+		try {
+			return bundleContext.getDataFile("scan-index/" + wab.getBundleId() + ".idx");
+		} catch (IllegalStateException e) {
+			// bundle context is no longer valid
+			return null;
+		}
+	}
+
 	public List<String> getJarsToSkip() {
 		return jarsToSkip;
 	}
@@ -1211,7 +1211,7 @@ public class BundleWebApplication {
 						}
 						// e.g., jar:bundle://46.0:0/WEB-INF/lib/primefaces-10.0.0.jar!/META-INF/primefaces-p.taglib.xml
 						faceletTagLibDescriptors.addAll(ClassPathUtil.findEntries(bundle, new URL[] { url },
-								"META-INF", "*.taglib.xml", true));
+								"META-INF", "*.taglib.xml", true, classSpace.getJarIndexCache()));
 					}
 					for (Map.Entry<Bundle, URL> e : classSpace.getApplicationFragmentBundles().entrySet()) {
 						URL metainfResource = new URL(e.getValue(), "META-INF/resources/");
@@ -1219,7 +1219,7 @@ public class BundleWebApplication {
 							metainfResourceRoots.put(e.getKey(), metainfResource);
 						}
 						faceletTagLibDescriptors.addAll(ClassPathUtil.findEntries(e.getKey(), new URL[] { e.getValue() },
-								"META-INF", "*.taglib.xml", true));
+								"META-INF", "*.taglib.xml", true, classSpace.getJarIndexCache()));
 					}
 				} catch (MalformedURLException ignored) {
 				}
@@ -1271,6 +1271,9 @@ public class BundleWebApplication {
 				LOG.debug("Finished metadata and fragment processing for {} in {}ms", bundle, System.currentTimeMillis() - start);
 			} catch (IOException e) {
 				throw new RuntimeException(e.getMessage(), e);
+			} finally {
+				// JARs won't be scanned again (at least until redeployment)
+				classSpace.releaseJarIndexes();
 			}
 		} finally {
 			Thread.currentThread().setContextClassLoader(tccl);
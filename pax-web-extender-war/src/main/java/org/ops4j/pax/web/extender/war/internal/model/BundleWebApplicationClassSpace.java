@@ -16,12 +16,19 @@
 package org.ops4j.pax.web.extender.war.internal.model;
 
 import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.io.UnsupportedEncodingException;
 import java.lang.reflect.InvocationTargetException;
 import java.net.URL;
+import java.net.URLDecoder;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
@@ -34,6 +41,11 @@ import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.Supplier;
 import javax.servlet.ServletContainerInitializer;
 import javax.servlet.ServletContext;
 import javax.servlet.annotation.MultipartConfig;
@@ -56,6 +68,8 @@ import org.ops4j.pax.web.extender.war.internal.WarExtenderContext;
 import org.ops4j.pax.web.service.spi.servlet.OsgiServletContextClassLoader;
 import org.ops4j.pax.web.service.spi.util.Utils;
 import org.ops4j.pax.web.utils.ClassPathUtil;
+import org.ops4j.pax.web.utils.JarIndex;
+import org.ops4j.pax.web.utils.JarIndexCache;
 import org.osgi.framework.Bundle;
 import org.osgi.framework.Constants;
 import org.osgi.framework.namespace.HostNamespace;
@@ -159,6 +173,19 @@ public class BundleWebApplicationClassSpace {
 
 	private WebXml mainWebXml;
 
+	/** Index of relevant classes from previous scan - used only during {@link #scanClasses} */
+	private ClassScanIndex scanIndex;
+	/** Index of relevant classes being built during full {@link #scanClasses scan} */
+	private ClassScanIndex newScanIndex;
+	/** Names of types from {@link javax.servlet.annotation.HandlesTypes} - used only during {@link #scanClasses} */
+	private Set<String> htTypeNames = Collections.emptySet();
+
+	/**
+	 * Indexes of JARs from WAB's {@code Bundle-ClassPath}, so each JAR is read once for web fragments, SCIs,
+	 * annotated classes and other resources
+	 */
+	private final JarIndexCache jarIndexCache = new JarIndexCache();
+
 	/**
 	 * Creates a classpace for a {@link Bundle} with "main" web descriptor already parsed. In OSGi, there may be
 	 * more {@code web.xml} descriptors found, when WAB itself is a host for some OSGi bundle fragments.
@@ -227,6 +254,21 @@ public class BundleWebApplicationClassSpace {
 		return containerFragmentBundles.values();
 	}
 
+	/**
+	 * Returns the {@link JarIndexCache} which should be used for all the scanning of JARs related to this WAB.
+	 * @return
+	 */
+	public JarIndexCache getJarIndexCache() {
+		return jarIndexCache;
+	}
+
+	/**
+	 * Releases the indexes of scanned JARs - should be called after the WAB is processed.
+	 */
+	public void releaseJarIndexes() {
+		jarIndexCache.clear();
+	}
+
 	/**
 	 * This method is based on Tomcat's {@code org.apache.catalina.startup.ContextConfig#processJarsForWebFragments()}.
 	 * It scans the reachable JARs and bundles to find (and possibly parse) {@code web-fragment.xml} descriptors.
@@ -468,7 +510,8 @@ public class BundleWebApplicationClassSpace {
 
 		URL fragmentURL = null;
 		if (parseRequired) {
-			List<URL> urls = ClassPathUtil.findEntries(wabBundle, new URL[] { url }, "META-INF", "web-fragment.xml", false);
+			List<URL> urls = ClassPathUtil.findEntries(wabBundle, new URL[] { url }, "META-INF", "web-fragment.xml", false,
+					jarIndexCache);
 			// there should be at most one, because we pass one URL in the array
 			if (urls.size() > 0) {
 				fragmentURL = urls.get(0);
@@ -774,7 +817,7 @@ public class BundleWebApplicationClassSpace {
 			LOG.trace("Searching for ServletContainerInitializers in the WAB");
 			LOG.trace("  Scanning the WAB directory entries");
 			List<URL> wabURLs = ClassPathUtil.findEntries(wabBundle, ClassPathUtil.getClassPathNonJars(wabBundle),
-					"META-INF/services", ServletContainerInitializer.class.getName(), false);
+					"META-INF/services", ServletContainerInitializer.class.getName(), false, jarIndexCache);
 			wabSCIURLs.addAll(wabURLs);
 			if (LOG.isTraceEnabled()) {
 				for (URL url : wabURLs) {
@@ -797,7 +840,7 @@ public class BundleWebApplicationClassSpace {
 					}
 					LOG.trace("  Scanning embedded JAR {}", jarName);
 					List<URL> urls = ClassPathUtil.findEntries(wabBundle, new URL[] { orderedFragments.get(jarName).getURL() },
-							"META-INF/services", ServletContainerInitializer.class.getName(), false);
+							"META-INF/services", ServletContainerInitializer.class.getName(), false, jarIndexCache);
 					wabSCIURLs.addAll(urls);
 					if (LOG.isTraceEnabled()) {
 						for (URL url : urls) {
@@ -817,7 +860,7 @@ public class BundleWebApplicationClassSpace {
 					LOG.trace("  Scanning application fragment {}", jarName);
 					// take it from reachable bundles containing META-INF/web-fragment.xml
 					List<URL> urls = ClassPathUtil.findEntries(fragmentBundle, new URL[] { orderedFragments.get(jarName).getURL() },
-							"META-INF/services", ServletContainerInitializer.class.getName(), false);
+							"META-INF/services", ServletContainerInitializer.class.getName(), false, jarIndexCache);
 					applicationSCIURLs.put(fragmentBundle, urls);
 					if (LOG.isTraceEnabled()) {
 						for (URL url : urls) {
@@ -908,6 +951,26 @@ public class BundleWebApplicationClassSpace {
 			Map<ServletContainerInitializer, Set<Class<?>>> sciToHt,
 			boolean thereAreHTClasses, boolean thereAreHTAnnotations) throws IOException {
 
+		htTypeNames = new HashSet<>();
+		for (Class<?> c : htToSci.keySet()) {
+			htTypeNames.add(c.getName());
+		}
+
+		// persistent index of relevant classes - if it matches current state of the WAB, we can skip parsing
+		// of most of the classes
+		File indexFile = extenderContext == null ? null : extenderContext.getScanIndexFile(wabBundle);
+		scanIndex = null;
+		newScanIndex = null;
+		if (indexFile != null) {
+			String key = scanIndexKey(htToSci, thereAreHTClasses, thereAreHTAnnotations);
+			scanIndex = ClassScanIndex.load(indexFile, key);
+			if (scanIndex == null) {
+				newScanIndex = new ClassScanIndex(key);
+			} else {
+				LOG.debug("Using class scan index {} for {}", indexFile, wabBundle);
+			}
+		}
+
 		Map<String, ClassCacheEntry> javaClassCache = new HashMap<>();
 		ClassCacheEntry root = new ClassCacheEntry();
 		root.scis = NO_SCIS;
@@ -922,11 +985,13 @@ public class BundleWebApplicationClassSpace {
 
 		URL[] urls = ClassPathUtil.getClassPathNonJars(wabBundle);
 		boolean htOnly = mainWebXml.isMetadataComplete();
-		Set<String> processedRoots = new HashSet<>();
+		PrefixIndex processedRoots = new PrefixIndex();
 
 		for (URL url : urls) {
 			LOG.trace("  Scanning embedded directory: {}", url);
-			List<URL> classes = ClassPathUtil.findEntries(wabBundle, new URL[] { url }, "/", "*.class", true);
+			List<URL> classes = ClassPathUtil.findEntries(wabBundle, new URL[] { url }, "/", "*.class", true,
+					jarIndexCache);
+			List<URL> toScan = new ArrayList<>(classes.size());
 			for (URL u : classes) {
 				processedRoots.add(u.toExternalForm());
 				if (!u.getPath().endsWith(".class")) {
@@ -934,10 +999,10 @@ public class BundleWebApplicationClassSpace {
 					// "jar:bundle://40.0:0/WEB-INF/lib/spring-core-5.3.6.jar!/org/springframework/core/type/classreading/"
 					continue;
 				}
-				LOG.trace("    Scanning {}", u);
-				processClass(u, mainWebXml, wabBundle, htOnly, htToSci, sciToHt, javaClassCache,
-						thereAreHTClasses, thereAreHTAnnotations);
+				toScan.add(u);
 			}
+			processClasses("dir:" + url.getPath(), toScan, mainWebXml, wabBundle, htOnly, htToSci, sciToHt,
+					javaClassCache, thereAreHTClasses, thereAreHTAnnotations);
 		}
 
 		// 2. scan all ordered jars - not only those from javax.servlet.ServletContext.ORDERED_LIBS, but really
@@ -980,23 +1045,16 @@ public class BundleWebApplicationClassSpace {
 					fragment.getWebappJar() ? "WAB" : "container");
 
 			List<URL> classes = ClassPathUtil.findEntries(fragmentBundle,
-					new URL[] { fragment.getURL() }, "/", "*.class", true);
+					new URL[] { fragment.getURL() }, "/", "*.class", true, jarIndexCache);
 			boolean fragmentHtOnly = htOnly || fragment.isMetadataComplete() || !fragment.getWebappJar();
+			List<URL> toScan = new ArrayList<>(classes.size());
 			for (URL u : classes) {
 				if (fragmentBundle == wabBundle && bundleFragment) {
 					// when a bundle fragment is scanned through WABs bundle, *.class resources found using
 					// org.osgi.framework.Bundle.findEntries() will check both attached bundle fragments and
 					// normal directories within the WAB - we should skip these directories that were already
 					// scanned (among directory entries of Bundle-ClassPath)
-					String ef = u.toExternalForm();
-					boolean skip = false;
-					for (String pr : processedRoots) {
-						if (ef.startsWith(pr)) {
-							skip = true;
-							break;
-						}
-					}
-					if (skip) {
+					if (processedRoots.covers(u.toExternalForm())) {
 						LOG.trace("    Skipping {}", u);
 						continue;
 					}
@@ -1006,19 +1064,249 @@ public class BundleWebApplicationClassSpace {
 					// "jar:bundle://40.0:0/WEB-INF/lib/spring-core-5.3.6.jar!/org/springframework/core/type/classreading/"
 					continue;
 				}
-				LOG.trace("    Scanning {}", u);
-				processClass(u, fragment, fragmentBundle, fragmentHtOnly, htToSci, sciToHt, javaClassCache,
-						thereAreHTClasses, thereAreHTAnnotations);
+				toScan.add(u);
 			}
+			processClasses("fragment:" + jarName, toScan, fragment, fragmentBundle, fragmentHtOnly, htToSci, sciToHt,
+					javaClassCache, thereAreHTClasses, thereAreHTAnnotations);
 		}
 
 		javaClassCache.clear();
+
+		if (newScanIndex != null) {
+			// stored only after successful full scan
+			newScanIndex.store(indexFile);
+		}
+		scanIndex = null;
+		newScanIndex = null;
+		htTypeNames = Collections.emptySet();
+	}
+
+	/**
+	 * Calculates the key of {@link ClassScanIndex} from everything that may affect the result of the scanning: the WAB
+	 * and its fragments (with modification times), bundles wired to the WAB (where the superclasses and interfaces
+	 * may come from), SCIs with their {@link javax.servlet.annotation.HandlesTypes} and the list of scanned
+	 * units.
+	 *
+	 * @param htToSci
+	 * @param thereAreHTClasses
+	 * @param thereAreHTAnnotations
+	 * @return
+	 */
+	private String scanIndexKey(Map<Class<?>, Set<ServletContainerInitializer>> htToSci,
+			boolean thereAreHTClasses, boolean thereAreHTAnnotations) {
+		List<String> parts = new ArrayList<>();
+		parts.add(bundleKey(wabBundle));
+		parts.add("metadata-complete:" + mainWebXml.isMetadataComplete());
+		parts.add("ht:" + thereAreHTClasses + ":" + thereAreHTAnnotations);
+
+		Set<String> scis = new TreeSet<>();
+		for (Map.Entry<Class<?>, Set<ServletContainerInitializer>> e : htToSci.entrySet()) {
+			for (ServletContainerInitializer sci : e.getValue()) {
+				scis.add(e.getKey().getName() + "->" + sci.getClass().getName());
+			}
+		}
+		parts.addAll(scis);
+
+		for (URL url : ClassPathUtil.getClassPathNonJars(wabBundle)) {
+			parts.add("dir:" + url.toExternalForm());
+		}
+		for (Map.Entry<String, WebXml> e : orderedFragments.entrySet()) {
+			parts.add("fragment:" + e.getKey() + ":" + e.getValue().getWebappJar() + ":"
+					+ e.getValue().isMetadataComplete() + ":" + wabClassPathSkipped.get(e.getKey()));
+		}
+		for (Bundle b : containerFragmentBundles.values()) {
+			parts.add(bundleKey(b));
+		}
+		for (Bundle b : applicationFragmentBundles.values()) {
+			parts.add(bundleKey(b));
+		}
+
+		Set<String> wired = new TreeSet<>();
+		BundleWiring wiring = wabBundle.adapt(BundleWiring.class);
+		if (wiring != null) {
+			List<BundleWire> wires = wiring.getRequiredWires(null);
+			if (wires != null) {
+				for (BundleWire wire : wires) {
+					wired.add(bundleKey(wire.getProvider().getBundle()));
+				}
+			}
+		}
+		parts.addAll(wired);
+
+		return ClassScanIndex.fingerprint(parts);
+	}
+
+	private String bundleKey(Bundle bundle) {
+		return bundle.getBundleId() + ":" + bundle.getSymbolicName() + ":" + bundle.getVersion()
+				+ ":" + bundle.getLastModified();
+	}
+
+	/**
+	 * <p>Processes all the {@code *.class} entries of single directory or JAR (or bundle fragment). When
+	 * {@link WarExtenderContext#getScanPool()} is available, the classes are <em>parsed</em> in parallel, but
+	 * still <em>processed</em> (checked for {@link javax.servlet.annotation.HandlesTypes} and annotations)
+	 * sequentially, in original order, in calling thread. This makes the results (order of web elements
+	 * in {@link WebXml}, content of {@code sciToHt}) identical to serial scanning, while the most expensive part -
+	 * reading and parsing of the class files - is done concurrently.</p>
+	 *
+	 * <p>Only limited number of parsed, but not yet processed classes is kept in memory at a time.</p>
+	 *
+	 * @param urls
+	 * @param fragment
+	 * @param bundle
+	 * @param fragmentHtOnly
+	 * @param htToSci
+	 * @param sciToHt
+	 * @param javaClassCache
+	 * @param thereAreHTClasses
+	 * @param thereAreHTAnnotations
+	 * @throws IOException
+	 */
+	private void processClasses(String unit, List<URL> urls, WebXml fragment, Bundle bundle, boolean fragmentHtOnly,
+			Map<Class<?>, Set<ServletContainerInitializer>> htToSci,
+			Map<ServletContainerInitializer, Set<Class<?>>> sciToHt, Map<String, ClassCacheEntry> javaClassCache,
+			boolean thereAreHTClasses, boolean thereAreHTAnnotations) throws IOException {
+
+		if (scanIndex != null && scanIndex.hasUnit(unit)) {
+			// only the classes that were relevant during previous full scan
+			List<URL> relevant = new ArrayList<>();
+			for (URL u : urls) {
+				if (scanIndex.isRelevant(unit, u)) {
+					relevant.add(u);
+				}
+			}
+			LOG.trace("  Using class scan index: {} of {} classes to scan", relevant.size(), urls.size());
+			urls = relevant;
+		}
+		if (newScanIndex != null) {
+			newScanIndex.addUnit(unit);
+		}
+
+		ForkJoinPool pool = extenderContext == null ? null : extenderContext.getScanPool();
+		ClassScanWindow window = new ClassScanWindow(unit, urls.size() < 2 ? null : pool, fragment, bundle,
+				fragmentHtOnly, htToSci, sciToHt, javaClassCache, thereAreHTClasses, thereAreHTAnnotations);
+		try {
+			JarIndex jar = singleJar(urls);
+			if (jar != null) {
+				// single sequential pass over the JAR instead of opening jar: URL for each class
+				Map<String, URL> entries = new LinkedHashMap<>(urls.size());
+				for (URL u : urls) {
+					String path = u.getFile();
+					entries.put(entryName(path.substring(path.indexOf("!/") + 2)), u);
+				}
+				Set<String> received = new HashSet<>(entries.size());
+				try {
+					jar.readEntries(entries.keySet(), (name, content) -> {
+						received.add(name);
+						URL u = entries.get(name);
+						try {
+							window.add(u, () -> parseClass(u, content));
+						} catch (IOException e) {
+							// not a problem with reading the JAR
+							throw new UncheckedIOException(e);
+						}
+					});
+				} catch (UncheckedIOException e) {
+					throw e.getCause();
+				} catch (IOException e) {
+					// e.g., ZipException for STORED entries with data descriptor or for JARs with prepended
+					// data - these can still be read using central directory
+					LOG.debug("Can't read classes from {} sequentially: {}", jar.getLocation(), e.getMessage());
+				}
+				// classes not found in sequential pass are read as before, separately
+				for (Map.Entry<String, URL> e : entries.entrySet()) {
+					if (!received.contains(e.getKey())) {
+						URL u = e.getValue();
+						window.add(u, () -> parseClass(u));
+					}
+				}
+			} else {
+				for (URL u : urls) {
+					window.add(u, () -> parseClass(u));
+				}
+			}
+			window.finish();
+		} finally {
+			window.cancel();
+		}
+	}
+
+	/**
+	 * Decodes the entry part of {@code jar:} URL into the name of JAR entry
+	 * @param path
+	 * @return
+	 */
+	static String entryName(String path) {
+		try {
+			// '+' is not an encoded space in URL path
+			return URLDecoder.decode(path.replace("+", "%2B"), StandardCharsets.UTF_8.name());
+		} catch (UnsupportedEncodingException | IllegalArgumentException e) {
+			return path;
+		}
+	}
+
+	/**
+	 * Checks whether all the classes come from single (already indexed) JAR and whether it's worth reading them
+	 * sequentially - reading entire JAR to get few classes (e.g., when using {@link ClassScanIndex}) is not.
+	 * @param urls
+	 * @return
+	 */
+	private JarIndex singleJar(List<URL> urls) {
+		if (urls.size() < 2 || !"jar".equals(urls.get(0).getProtocol())) {
+			return null;
+		}
+		String first = urls.get(0).getFile();
+		int separator = first.indexOf("!/");
+		if (separator == -1) {
+			return null;
+		}
+		String prefix = first.substring(0, separator + 2);
+		for (URL u : urls) {
+			if (!"jar".equals(u.getProtocol()) || !u.getFile().startsWith(prefix)) {
+				return null;
+			}
+		}
+		try {
+			JarIndex index = jarIndexCache.getIndex(prefix.substring(0, separator));
+			return urls.size() * 4 >= index.getNames().size() ? index : null;
+		} catch (IOException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * Parses {@code *.class} resource using BCEL. May be called concurrently.
+	 * @param url
+	 * @return parsed class or {@code null} if the class can't be read
+	 */
+	private JavaClass parseClass(URL url) {
+		try (InputStream is = url.openStream()) {
+			return new ClassParser(is).parse();
+		} catch (IOException e) {
+			LOG.warn("Can't read {}: {}", url, e.getMessage(), e);
+			return null;
+		}
+	}
+
+	/**
+	 * Parses already read {@code *.class} resource using BCEL. May be called concurrently.
+	 * @param url
+	 * @param content
+	 * @return parsed class or {@code null} if the class can't be read
+	 */
+	private JavaClass parseClass(URL url, byte[] content) {
+		try {
+			return new ClassParser(new ByteArrayInputStream(content)).parse();
+		} catch (IOException e) {
+			LOG.warn("Can't read {}: {}", url, e.getMessage(), e);
+			return null;
+		}
 	}
 
 	/**
 	 * Check the class whether it's one of the types mentioned in {@link javax.servlet.annotation.HandlesTypes}
 	 * and also potentially check it for annotations like {@link javax.servlet.annotation.WebServlet}.
-	 * @param url an URI for {@code *.class} file
+	 * @param clazz already parsed {@code *.class} file
 	 * @param fragment a {@link WebXml} representing a "web fragment" - whether or not it is associated with
 	 *        {@code web-fragment.xml}
 	 * @param bundle {@link Bundle} used to load the classes from
@@ -1030,32 +1318,33 @@ public class BundleWebApplicationClassSpace {
 	 *        {@link javax.servlet.annotation.HandlesTypes}
 	 * @param thereAreHTAnnotations {@code true} if any of the SCIs has any annotation types among values of
 	 *        {@link javax.servlet.annotation.HandlesTypes}
+	 * @return {@code true} if the class is <em>relevant</em> - it affected the result of the scanning or may
+	 *         affect the result for other classes
 	 */
-	private void processClass(URL url, WebXml fragment, Bundle bundle, boolean fragmentHtOnly,
+	private boolean processClass(JavaClass clazz, WebXml fragment, Bundle bundle, boolean fragmentHtOnly,
 			Map<Class<?>, Set<ServletContainerInitializer>> htToSci,
 			Map<ServletContainerInitializer, Set<Class<?>>> sciToHt, Map<String, ClassCacheEntry> javaClassCache,
 			boolean thereAreHTClasses, boolean thereAreHTAnnotations) {
-		try (InputStream is = url.openStream()) {
-			ClassParser parser = new ClassParser(is);
-			JavaClass clazz = parser.parse();
-			if (thereAreHTClasses || thereAreHTAnnotations) {
-				if ((clazz.getAccessFlags() & org.apache.tomcat.util.bcel.Const.ACC_ANNOTATION) == 0) {
-					// check only a non-annotation *.class, whether it:
-					// - is annotated with any annotation from @HandlesTypes
-					// - implements an interface from @HandlesTypes
-					// - extends a class from from @HandlesTypes
-					checkHandlesTypes(clazz, bundle, htToSci, sciToHt, javaClassCache,
-							thereAreHTClasses, thereAreHTAnnotations);
-				}
+		// a type from @HandlesTypes has to be in javaClassCache for its subclasses
+		boolean relevant = htTypeNames.contains(clazz.getClassName());
+
+		if (thereAreHTClasses || thereAreHTAnnotations) {
+			if ((clazz.getAccessFlags() & org.apache.tomcat.util.bcel.Const.ACC_ANNOTATION) == 0) {
+				// check only a non-annotation *.class, whether it:
+				// - is annotated with any annotation from @HandlesTypes
+				// - implements an interface from @HandlesTypes
+				// - extends a class from from @HandlesTypes
+				relevant |= checkHandlesTypes(clazz, bundle, htToSci, sciToHt, javaClassCache,
+						thereAreHTClasses, thereAreHTAnnotations);
 			}
+		}
 
-			if (!fragmentHtOnly) {
-				// do not check if the class should be scanned for annotations like @WebServlet, @WebFilter, ...
-				checkClass(fragment, bundle, htToSci, clazz, javaClassCache);
-			}
-		} catch (IOException e) {
-			LOG.warn("Can't read {}: {}", url, e.getMessage(), e);
+		if (!fragmentHtOnly) {
+			// do not check if the class should be scanned for annotations like @WebServlet, @WebFilter, ...
+			relevant |= checkClass(fragment, bundle, htToSci, clazz, javaClassCache);
 		}
+
+		return relevant;
 	}
 
 	/**
@@ -1075,14 +1364,16 @@ public class BundleWebApplicationClassSpace {
 	 *        {@link javax.servlet.annotation.HandlesTypes}
 	 * @param thereAreHTAnnotations {@code true} if any of the SCIs has any annotation types among values of
 	 *        {@link javax.servlet.annotation.HandlesTypes}
+	 * @return {@code true} if the class is relevant for any SCI
 	 */
-	private void checkHandlesTypes(JavaClass clazz, Bundle bundle,
+	private boolean checkHandlesTypes(JavaClass clazz, Bundle bundle,
 			Map<Class<?>, Set<ServletContainerInitializer>> htToSci,
 			Map<ServletContainerInitializer, Set<Class<?>>> sciToHt,
 			Map<String, ClassCacheEntry> javaClassCache, boolean thereAreHTClasses, boolean thereAreHTAnnotations) {
 
 		String className = clazz.getClassName();
 		Class<?> loadedClass = null;
+		boolean relevant = false;
 
 		if (thereAreHTClasses) {
 			// check if this JavaClass:
@@ -1111,6 +1402,7 @@ public class BundleWebApplicationClassSpace {
 			addSuperClassesAndInterfacesToTheCache(clazz, className, bundle, htToSci, javaClassCache);
 			ClassCacheEntry cce = javaClassCache.get(className);
 			if (!cce.scis.isEmpty()) {
+				relevant = true;
 				// we have to load the class
 				try {
 					LOG.trace("      Loading {}, using {}", className, bundle);
@@ -1119,10 +1411,10 @@ public class BundleWebApplicationClassSpace {
 					if (LOG.isTraceEnabled()) {
 						LOG.trace("      Can't load {}, using {}: {}. Skipping.", className, bundle, t.getMessage());
 					}
-					return;
+					return relevant;
 				}
 				if (loadedClass == null) {
-					return;
+					return relevant;
 				}
 				// we already know which SCIs have @HT with this class' superclass or interfaces
 				for (ServletContainerInitializer sci : cce.scis) {
@@ -1135,7 +1427,7 @@ public class BundleWebApplicationClassSpace {
 			// check if this JavaClass:
 			//  - is annotated with a type mentioned in @HandlesTypes (see https://bz.apache.org/bugzilla/show_bug.cgi?id=65244)
 			if (clazz.getAnnotationEntries() == null) {
-				return;
+				return relevant;
 			}
 			for (AnnotationEntry ae : clazz.getAnnotationEntries()) {
 				// type is in "Ljavax/servlet/annotation/HandlesTypes;" form
@@ -1149,6 +1441,7 @@ public class BundleWebApplicationClassSpace {
 						}
 						Set<ServletContainerInitializer> scis = entry.getValue();
 						if (annotationClassName.equals(c.getName())) {
+							relevant = true;
 							if (loadedClass == null) {
 								// could've been loaded when checking for types
 								try {
@@ -1160,10 +1453,10 @@ public class BundleWebApplicationClassSpace {
 										LOG.trace("      Can't load {} annotated with {}, using {}: {}. Skipping.",
 												className, annotationClassName, bundle, t.getMessage());
 									}
-									return;
+									return relevant;
 								}
 								if (loadedClass == null) {
-									return;
+									return relevant;
 								}
 							}
 							// all SCIs interested in this type needs to get real related class
@@ -1175,6 +1468,8 @@ public class BundleWebApplicationClassSpace {
 				}
 			}
 		}
+
+		return relevant;
 	}
 
 	/**
@@ -1186,11 +1481,12 @@ public class BundleWebApplicationClassSpace {
 	 * @param htToSci
 	 * @param clazz
 	 * @param javaClassCache
+	 * @return {@code true} if the class is an annotated servlet, filter or listener
 	 */
-	private void checkClass(WebXml fragment, Bundle bundle, Map<Class<?>, Set<ServletContainerInitializer>> htToSci, JavaClass clazz, Map<String, ClassCacheEntry> javaClassCache) {
+	private boolean checkClass(WebXml fragment, Bundle bundle, Map<Class<?>, Set<ServletContainerInitializer>> htToSci, JavaClass clazz, Map<String, ClassCacheEntry> javaClassCache) {
 		AnnotationEntry[] ae = clazz.getAnnotationEntries();
 		if (ae == null) {
-			return;
+			return false;
 		}
 
 		String webElementClassName = clazz.getClassName();
@@ -1201,18 +1497,19 @@ public class BundleWebApplicationClassSpace {
 				case "javax.servlet.annotation.WebServlet":
 					LOG.trace("      Processing annotated servlet {}", webElementClassName);
 					processAnnotatedServletClass(webElementClassName, fragment, bundle, ann, clazz, javaClassCache);
-					return;
+					return true;
 				case "javax.servlet.annotation.WebFilter":
 					LOG.trace("      Processing annotated filter {}", webElementClassName);
 					processAnnotatedFilterClass(webElementClassName, fragment, bundle, ann, clazz);
-					return;
+					return true;
 				case "javax.servlet.annotation.WebListener":
 					LOG.trace("      Processing annotated listener {}", webElementClassName);
 					fragment.addListener(webElementClassName);
-					return;
+					return true;
 				default:
 			}
 		}
+		return false;
 	}
 
 	private void processAnnotatedServletClass(String className, WebXml fragment, Bundle bundle, AnnotationEntry ann, JavaClass clazz, Map<String, ClassCacheEntry> javaClassCache) {
@@ -1699,4 +1996,111 @@ public class BundleWebApplicationClassSpace {
 		Set<ServletContainerInitializer> scis;
 	}
 
+	/**
+	 * Sliding window of parse tasks - processing of the first class overlaps with parsing of next classes. Without
+	 * a pool, the classes are parsed and processed immediately.
+	 */
+	private final class ClassScanWindow {
+
+		private final String unit;
+		private final ForkJoinPool pool;
+		private final int windowSize;
+		private final Deque<ForkJoinTask<JavaClass>> window;
+		private final Deque<URL> windowUrls;
+
+		private final WebXml fragment;
+		private final Bundle bundle;
+		private final boolean fragmentHtOnly;
+		private final Map<Class<?>, Set<ServletContainerInitializer>> htToSci;
+		private final Map<ServletContainerInitializer, Set<Class<?>>> sciToHt;
+		private final Map<String, ClassCacheEntry> javaClassCache;
+		private final boolean thereAreHTClasses;
+		private final boolean thereAreHTAnnotations;
+
+		ClassScanWindow(String unit, ForkJoinPool pool, WebXml fragment, Bundle bundle, boolean fragmentHtOnly,
+				Map<Class<?>, Set<ServletContainerInitializer>> htToSci,
+				Map<ServletContainerInitializer, Set<Class<?>>> sciToHt, Map<String, ClassCacheEntry> javaClassCache,
+				boolean thereAreHTClasses, boolean thereAreHTAnnotations) {
+			this.unit = unit;
+			this.pool = pool;
+			this.windowSize = pool == null ? 0 : pool.getParallelism() * 16;
+			this.window = new ArrayDeque<>(Math.max(windowSize, 1));
+			this.windowUrls = new ArrayDeque<>(Math.max(windowSize, 1));
+			this.fragment = fragment;
+			this.bundle = bundle;
+			this.fragmentHtOnly = fragmentHtOnly;
+			this.htToSci = htToSci;
+			this.sciToHt = sciToHt;
+			this.javaClassCache = javaClassCache;
+			this.thereAreHTClasses = thereAreHTClasses;
+			this.thereAreHTAnnotations = thereAreHTAnnotations;
+		}
+
+		/**
+		 * Adds a class to parse and process. If the window is full, first (oldest) class is processed.
+		 * @param url
+		 * @param parser
+		 * @throws IOException
+		 */
+		public void add(URL url, Supplier<JavaClass> parser) throws IOException {
+			LOG.trace("    Scanning {}", url);
+			if (pool == null) {
+				process(url, parser.get());
+				return;
+			}
+			if (window.size() >= windowSize) {
+				processNext();
+			}
+			window.add(pool.submit(parser::get));
+			windowUrls.add(url);
+		}
+
+		/**
+		 * Processes all remaining classes
+		 * @throws IOException
+		 */
+		public void finish() throws IOException {
+			while (!window.isEmpty()) {
+				processNext();
+			}
+		}
+
+		public void cancel() {
+			for (ForkJoinTask<JavaClass> task : window) {
+				task.cancel(false);
+			}
+		}
+
+		private void processNext() throws IOException {
+			JavaClass clazz;
+			try {
+				clazz = window.peek().get();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new InterruptedIOException("Scanning of " + bundle + " was interrupted");
+			} catch (ExecutionException e) {
+				// parseClass() handles IOExceptions, so it's a runtime exception (like BCEL's ClassFormatException)
+				// which would be thrown during serial scanning as well
+				if (e.getCause() instanceof RuntimeException) {
+					throw (RuntimeException) e.getCause();
+				}
+				if (e.getCause() instanceof Error) {
+					throw (Error) e.getCause();
+				}
+				throw new IOException(e.getCause().getMessage(), e.getCause());
+			}
+			window.poll();
+			process(windowUrls.poll(), clazz);
+		}
+
+		private void process(URL url, JavaClass clazz) {
+			if (clazz != null) {
+				if (processClass(clazz, fragment, bundle, fragmentHtOnly, htToSci, sciToHt, javaClassCache,
+						thereAreHTClasses, thereAreHTAnnotations) && newScanIndex != null) {
+					newScanIndex.add(unit, url);
+				}
+			}
+		}
+	}
+
 }
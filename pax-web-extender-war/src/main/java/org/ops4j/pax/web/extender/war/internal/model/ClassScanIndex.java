@@ -0,0 +1,217 @@
+/*
+ * Copyright 2023 OPS4J.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.web.extender.war.internal.model;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * <p>Persistent result of scanning WAB classes for annotated web elements and types from
+ * {@link javax.servlet.annotation.HandlesTypes}.</p>
+ *
+ * <p>The index doesn't store the results themselves (these are {@link org.apache.tomcat.util.descriptor.web.WebXml}
+ * modifications and loaded classes passed to SCIs), but for each scanned <em>unit</em> (WAB directory or ordered
+ * fragment) it remembers the {@code *.class} entries that had any effect during full scan. When the
+ * {@link #getKey() key} (fingerprint of the WAB, its fragments, wired bundles and SCI configuration) is the same
+ * after restart, only these few entries are parsed and processed again - in the same order - and all
+ * other classes are not read at all.</p>
+ */
+public final class ClassScanIndex {
+
+	public static final Logger LOG = LoggerFactory.getLogger(ClassScanIndex.class);
+
+	private static final int VERSION = 1;
+
+	private final String key;
+
+	/** Unit name to set of relative names of relevant entries */
+	private final Map<String, Set<String>> units = new LinkedHashMap<>();
+
+	public ClassScanIndex(String key) {
+		this.key = key;
+	}
+
+	public String getKey() {
+		return key;
+	}
+
+	/**
+	 * Marks an entry of a unit as relevant (which means it has to be processed even if the index is used).
+	 * @param unit
+	 * @param entry
+	 */
+	public void add(String unit, URL entry) {
+		units.computeIfAbsent(unit, u -> new HashSet<>()).add(entryName(entry));
+	}
+
+	/**
+	 * Marks a unit as scanned, even if no entry was relevant.
+	 * @param unit
+	 */
+	public void addUnit(String unit) {
+		units.computeIfAbsent(unit, u -> new HashSet<>());
+	}
+
+	/**
+	 * Checks whether the entry of a unit was relevant during full scan
+	 * @param unit
+	 * @param entry
+	 * @return
+	 */
+	public boolean isRelevant(String unit, URL entry) {
+		Set<String> entries = units.get(unit);
+		return entries != null && entries.contains(entryName(entry));
+	}
+
+	/**
+	 * Checks whether the unit was scanned at all
+	 * @param unit
+	 * @return
+	 */
+	public boolean hasUnit(String unit) {
+		return units.containsKey(unit);
+	}
+
+	/**
+	 * Loads the index from a file, but only if stored key matches the passed one.
+	 * @param file
+	 * @param key
+	 * @return the index or {@code null} if there's no (valid) index for the key
+	 */
+	public static ClassScanIndex load(File file, String key) {
+		if (file == null || !file.isFile()) {
+			return null;
+		}
+		try (DataInputStream dis = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+			if (dis.readInt() != VERSION) {
+				return null;
+			}
+			if (!key.equals(dis.readUTF())) {
+				LOG.debug("Class scan index {} is outdated", file);
+				return null;
+			}
+			ClassScanIndex index = new ClassScanIndex(key);
+			int unitCount = dis.readInt();
+			for (int u = 0; u < unitCount; u++) {
+				String unit = dis.readUTF();
+				int entryCount = dis.readInt();
+				Set<String> entries = new HashSet<>(entryCount * 2);
+				for (int e = 0; e < entryCount; e++) {
+					entries.add(dis.readUTF());
+				}
+				index.units.put(unit, entries);
+			}
+			return index;
+		} catch (IOException e) {
+			LOG.warn("Can't read class scan index {}: {}", file, e.getMessage());
+			return null;
+		}
+	}
+
+	/**
+	 * Stores the index in a file, replacing it atomically (if possible).
+	 * @param file
+	 */
+	public void store(File file) {
+		if (file == null) {
+			return;
+		}
+		File dir = file.getParentFile();
+		if (dir != null && !dir.isDirectory() && !dir.mkdirs()) {
+			LOG.warn("Can't create directory for class scan index {}", file);
+			return;
+		}
+		File tmp = new File(file.getPath() + ".tmp");
+		try {
+			try (DataOutputStream dos = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)))) {
+				dos.writeInt(VERSION);
+				dos.writeUTF(key);
+				dos.writeInt(units.size());
+				for (Map.Entry<String, Set<String>> e : units.entrySet()) {
+					dos.writeUTF(e.getKey());
+					dos.writeInt(e.getValue().size());
+					for (String entry : e.getValue()) {
+						dos.writeUTF(entry);
+					}
+				}
+			}
+			try {
+				Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			} catch (IOException e) {
+				Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+			}
+		} catch (IOException e) {
+			LOG.warn("Can't store class scan index {}: {}", file, e.getMessage());
+			if (!tmp.delete()) {
+				tmp.deleteOnExit();
+			}
+		}
+	}
+
+	/**
+	 * Calculates a fingerprint (SHA-256) of all the parts that may affect the result of the scanning.
+	 * @param parts
+	 * @return
+	 */
+	public static String fingerprint(Collection<String> parts) {
+		try {
+			MessageDigest digest = MessageDigest.getInstance("SHA-256");
+			for (String part : parts) {
+				digest.update(part.getBytes(StandardCharsets.UTF_8));
+				digest.update((byte) 0);
+			}
+			StringBuilder sb = new StringBuilder();
+			for (byte b : digest.digest()) {
+				sb.append(String.format("%02x", b));
+			}
+			return sb.toString();
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e.getMessage(), e);
+		}
+	}
+
+	/**
+	 * Name of the entry which doesn't depend on bundle ID/revision encoded in the URL.
+	 * @param entry
+	 * @return
+	 */
+	private static String entryName(URL entry) {
+		String ef = entry.toExternalForm();
+		int idx = ef.lastIndexOf("!/");
+		return idx >= 0 ? ef.substring(idx + 2) : entry.getPath();
+	}
+
+}
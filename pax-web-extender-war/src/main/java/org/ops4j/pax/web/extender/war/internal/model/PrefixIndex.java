@@ -0,0 +1,72 @@
+/*
+ * Copyright 2023 OPS4J.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.web.extender.war.internal.model;
+
+import java.util.Iterator;
+import java.util.NavigableSet;
+import java.util.TreeSet;
+
+/**
+ * <p>Set of string prefixes (usually external forms of already scanned {@link java.net.URL URLs}) that allows
+ * checking whether any of the prefixes is a prefix of given string in {@code O(log n)} time.</p>
+ *
+ * <p>The prefixes are kept in a <em>prefix-free</em> {@link TreeSet} - a prefix that's already covered by shorter
+ * prefix is not stored at all and adding a shorter prefix removes all the longer ones it covers. With such set,
+ * if any stored prefix {@code p} is a prefix of {@code s}, then {@code p} is exactly the
+ * {@link TreeSet#floor(Object) floor} of {@code s}, because every string between {@code p} and {@code s} (in
+ * lexicographical order) has to start with {@code p} as well.</p>
+ */
+final class PrefixIndex {
+
+	private final NavigableSet<String> prefixes = new TreeSet<>();
+
+	/**
+	 * Adds new prefix to the index.
+	 * @param prefix
+	 */
+	public void add(String prefix) {
+		if (covers(prefix)) {
+			return;
+		}
+		// remove longer prefixes covered by the new one - they're directly after the new prefix
+		for (Iterator<String> it = prefixes.tailSet(prefix, false).iterator(); it.hasNext(); ) {
+			if (!it.next().startsWith(prefix)) {
+				break;
+			}
+			it.remove();
+		}
+		prefixes.add(prefix);
+	}
+
+	/**
+	 * Checks whether any of the stored prefixes is a prefix of passed value.
+	 * @param value
+	 * @return
+	 */
+	public boolean covers(String value) {
+		String floor = prefixes.floor(value);
+		return floor != null && value.startsWith(floor);
+	}
+
+	/**
+	 * Returns the number of stored (not covered by other) prefixes.
+	 * @return
+	 */
+	public int size() {
+		return prefixes.size();
+	}
+
+}
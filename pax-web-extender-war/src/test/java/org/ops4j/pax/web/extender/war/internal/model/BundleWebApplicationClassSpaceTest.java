@@ -0,0 +1,40 @@
+/*
+ * Copyright 2023 OPS4J.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.web.extender.war.internal.model;
+
+import org.junit.Test;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class BundleWebApplicationClassSpaceTest {
+
+	@Test
+	public void jarEntryNames() {
+		assertThat(BundleWebApplicationClassSpace.entryName("com/example/MyServlet.class"),
+				equalTo("com/example/MyServlet.class"));
+		assertThat(BundleWebApplicationClassSpace.entryName("com/example/My%23Servlet.class"),
+				equalTo("com/example/My#Servlet.class"));
+		assertThat(BundleWebApplicationClassSpace.entryName("com/example%20dir/MyServlet.class"),
+				equalTo("com/example dir/MyServlet.class"));
+		assertThat(BundleWebApplicationClassSpace.entryName("com/example/My+Servlet.class"),
+				equalTo("com/example/My+Servlet.class"));
+		// not really encoded
+		assertThat(BundleWebApplicationClassSpace.entryName("com/example/100%.class"),
+				equalTo("com/example/100%.class"));
+	}
+
+}
@@ -0,0 +1,64 @@
+/*
+ * Copyright 2023 OPS4J.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.web.extender.war.internal.model;
+
+import java.io.File;
+import java.net.URL;
+import java.util.Arrays;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class ClassScanIndexTest {
+
+	@Rule
+	public TemporaryFolder dir = new TemporaryFolder();
+
+	@Test
+	public void storeAndLoad() throws Exception {
+		String key = ClassScanIndex.fingerprint(Arrays.asList("42:wab:1.0.0:1234", "fragment:lib.jar:true"));
+		assertThat(key, not(equalTo(ClassScanIndex.fingerprint(Arrays.asList("42:wab:1.0.0:1235", "fragment:lib.jar:true")))));
+
+		ClassScanIndex index = new ClassScanIndex(key);
+		index.add("dir:/WEB-INF/classes/", new URL("file:/data/wab/WEB-INF/classes/com/example/MyServlet.class"));
+		index.add("fragment:lib.jar", new URL("jar:file:/data/wab/WEB-INF/lib/lib.jar!/com/example/lib/MyFilter.class"));
+		index.addUnit("fragment:empty.jar");
+
+		File file = new File(dir.getRoot(), "scan-index/42.idx");
+		index.store(file);
+
+		assertThat(ClassScanIndex.load(file, "other"), nullValue());
+		ClassScanIndex loaded = ClassScanIndex.load(file, key);
+		assertThat(loaded, notNullValue());
+		assertThat(loaded.hasUnit("fragment:empty.jar"), equalTo(true));
+		assertThat(loaded.hasUnit("fragment:other.jar"), equalTo(false));
+		assertThat(loaded.isRelevant("dir:/WEB-INF/classes/",
+				new URL("file:/data/wab/WEB-INF/classes/com/example/MyServlet.class")), equalTo(true));
+		assertThat(loaded.isRelevant("dir:/WEB-INF/classes/",
+				new URL("file:/data/wab/WEB-INF/classes/com/example/Other.class")), equalTo(false));
+		// bundle revision part of the URL doesn't matter
+		assertThat(loaded.isRelevant("fragment:lib.jar",
+				new URL("jar:file:/data/wab2/WEB-INF/lib/lib.jar!/com/example/lib/MyFilter.class")), equalTo(true));
+	}
+
+}
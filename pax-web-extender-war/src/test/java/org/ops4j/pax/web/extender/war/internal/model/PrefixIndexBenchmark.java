@@ -0,0 +1,123 @@
+/*
+ * Copyright 2023 OPS4J.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.web.extender.war.internal.model;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * <p>Compares {@link PrefixIndex} with previous linear {@code startsWith()} check of already scanned roots
+ * performed by {@link BundleWebApplicationClassSpace} for synthetic WAB with many classes in
+ * {@code WEB-INF/classes} and an attached bundle fragment. Both phases of the scanning are measured - collecting
+ * the roots from WAB directories and checking the entries found through the WAB for the fragment.</p>
+ *
+ * <p>This is not a test - run it with
+ * {@code mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=org.ops4j.pax.web.extender.war.internal.model.PrefixIndexBenchmark}
+ * or directly from the IDE.</p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 2)
+@Fork(1)
+public class PrefixIndexBenchmark {
+
+	@Param({ "1000", "5000", "20000" })
+	public int classes;
+
+	/** External forms of entries from WAB's {@code WEB-INF/classes} (directories and classes) */
+	private List<String> roots;
+
+	/** External forms of entries found through the WAB when scanning its bundle fragment */
+	private List<String> fragmentEntries;
+
+	@Setup
+	public void setup() {
+		Random random = new Random(42L);
+		roots = new ArrayList<>();
+		fragmentEntries = new ArrayList<>();
+		int packages = Math.max(1, classes / 50);
+		for (int p = 0; p < packages; p++) {
+			String pkg = "bundle://40.0:1/WEB-INF/classes/com/example/app/module" + (p % 20) + "/pkg" + p + "/";
+			roots.add(pkg);
+			for (int c = 0; c < classes / packages; c++) {
+				String cls = pkg + "Class" + c + (random.nextBoolean() ? "$Inner" : "") + ".class";
+				roots.add(cls);
+				// Bundle.findEntries() for the fragment returns WAB's own entries too
+				fragmentEntries.add(cls);
+			}
+		}
+		for (int c = 0; c < classes / 4; c++) {
+			fragmentEntries.add("bundle://40.0:1/org/example/fragment/pkg" + (c % 10) + "/FragmentClass" + c + ".class");
+		}
+	}
+
+	@Benchmark
+	public void prefixIndex(Blackhole bh) {
+		PrefixIndex index = new PrefixIndex();
+		for (String root : roots) {
+			index.add(root);
+		}
+		for (String entry : fragmentEntries) {
+			bh.consume(index.covers(entry));
+		}
+	}
+
+	@Benchmark
+	public void linearScan(Blackhole bh) {
+		Set<String> processedRoots = new HashSet<>();
+		processedRoots.addAll(roots);
+		for (String entry : fragmentEntries) {
+			boolean skip = false;
+			for (String pr : processedRoots) {
+				if (entry.startsWith(pr)) {
+					skip = true;
+					break;
+				}
+			}
+			bh.consume(skip);
+		}
+	}
+
+	public static void main(String[] args) throws Exception {
+		Options options = new OptionsBuilder()
+				.include(PrefixIndexBenchmark.class.getSimpleName())
+				.build();
+		new Runner(options).run();
+	}
+
+}
@@ -0,0 +1,51 @@
+/*
+ * Copyright 2023 OPS4J.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.web.extender.war.internal.model;
+
+import org.junit.Test;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class PrefixIndexTest {
+
+	@Test
+	public void prefixesAreFound() {
+		PrefixIndex index = new PrefixIndex();
+		index.add("bundle://40.0:1/WEB-INF/classes/a/b/C.class");
+		index.add("bundle://40.0:1/WEB-INF/classes/a/b0/");
+		index.add("bundle://40.0:1/WEB-INF/classes/x/");
+
+		assertThat(index.covers("bundle://40.0:1/WEB-INF/classes/a/b/C.class"), equalTo(true));
+		assertThat(index.covers("bundle://40.0:1/WEB-INF/classes/a/b/D.class"), equalTo(false));
+		assertThat(index.covers("bundle://40.0:1/WEB-INF/classes/a/b0/D.class"), equalTo(true));
+		assertThat(index.covers("bundle://40.0:1/WEB-INF/classes/a/c/D.class"), equalTo(false));
+		assertThat(index.covers("bundle://40.0:1/WEB-INF/classes/x/y/Z.class"), equalTo(true));
+		assertThat(index.covers("bundle://40.0:1/WEB-INF/classes/"), equalTo(false));
+
+		// shorter prefix replaces all the longer ones, but lookups are still correct
+		index.add("bundle://40.0:1/WEB-INF/classes/a/");
+		assertThat(index.size(), equalTo(2));
+		assertThat(index.covers("bundle://40.0:1/WEB-INF/classes/a/c/D.class"), equalTo(true));
+		assertThat(index.covers("bundle://40.0:1/WEB-INF/classes/b/D.class"), equalTo(false));
+		assertThat(index.covers("bundle://40.0:1/WEB-INF/classes/x/Z.class"), equalTo(true));
+
+		// covered prefix is not stored
+		index.add("bundle://40.0:1/WEB-INF/classes/x/y/");
+		assertThat(index.size(), equalTo(2));
+	}
+
+}
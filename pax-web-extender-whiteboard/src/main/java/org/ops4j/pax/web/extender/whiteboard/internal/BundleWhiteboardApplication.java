@@ -59,7 +59,9 @@ public class BundleWhiteboardApplication {
 
 	private final Bundle bundle;
 
-	// contexts and elements should be accessed using WhiteboardContext.lock
+	// contexts and elements are accessed in synchronized methods. WhiteboardExtenderContext calls these methods
+	// concurrently for different bundles, but there may be concurrent calls for single bundle too (e.g., when
+	// contexts are resolved for elements from other bundles)
 
 	/** List of <em>web elements</em> that are registered by given {@link Bundle}. */
 	private final Map<ElementModel<?, ?>, Boolean> webElements = new LinkedHashMap<>();
@@ -89,11 +91,11 @@ public class BundleWhiteboardApplication {
 	 * This method returns a snapshot of current {@link OsgiContextModel} contexts registered by given {@link Bundle}.
 	 * @return
 	 */
-	public List<OsgiContextModel> getWebContexts() {
+	public synchronized List<OsgiContextModel> getWebContexts() {
 		return Collections.unmodifiableList(new LinkedList<>(webContexts.keySet()));
 	}
 
-	public boolean isRegistered(OsgiContextModel contextModel) {
+	public synchronized boolean isRegistered(OsgiContextModel contextModel) {
 		return webContexts.containsKey(contextModel) && webContexts.get(contextModel);
 	}
 
@@ -110,7 +112,7 @@ public class BundleWhiteboardApplication {
 	 * This method returns a snapshot of current {@link ElementModel} elements registered by given {@link Bundle}.
 	 * @return
 	 */
-	public List<ElementModel<?, ?>> getWebElements() {
+	public synchronized List<ElementModel<?, ?>> getWebElements() {
 		return Collections.unmodifiableList(new LinkedList<>(webElements.keySet()));
 	}
 
@@ -121,7 +123,7 @@ public class BundleWhiteboardApplication {
 	 * elements and contexts
 	 * @param ref
 	 */
-	public void webContainerAdded(ServiceReference<WebContainer> ref) {
+	public synchronized void webContainerAdded(ServiceReference<WebContainer> ref) {
 		webContainerServiceRef = ref;
 
 		// install all current contexts and elements. Lifecycle is managed at WhiteboardExtenderContext level,
@@ -150,7 +152,7 @@ public class BundleWhiteboardApplication {
 	 * {@link WebContainer} reference was untracked at {@link WebContainerManager} level.
 	 * @param ref
 	 */
-	public void webContainerRemoved(ServiceReference<WebContainer> ref) {
+	public synchronized void webContainerRemoved(ServiceReference<WebContainer> ref) {
 		if (ref != webContainerServiceRef) {
 			throw new IllegalStateException("Removing unknown WebContainer reference " + ref + ", expecting " + webContainerServiceRef);
 		}
@@ -180,7 +182,7 @@ public class BundleWhiteboardApplication {
 	 * <em>bundle web application</em> and if the {@link WebContainer} is already available, register it there.
 	 * @param webContext
 	 */
-	public void addWebContext(final OsgiContextModel webContext) {
+	public synchronized void addWebContext(final OsgiContextModel webContext) {
 		webContexts.put(webContext, false);
 		WhiteboardWebContainerView view = webContainerManager.whiteboardView(bundle, webContainerServiceRef);
 		if (view != null) {
@@ -194,7 +196,7 @@ public class BundleWhiteboardApplication {
 	 * it from {@link WebContainer}.
 	 * @param webContext
 	 */
-	public void removeWebContext(final OsgiContextModel webContext) {
+	public synchronized void removeWebContext(final OsgiContextModel webContext) {
 		webContexts.remove(webContext);
 
 		WhiteboardWebContainerView view = webContainerManager.whiteboardView(bundle, webContainerServiceRef);
@@ -210,7 +212,7 @@ public class BundleWhiteboardApplication {
 	 * Adds an {@link ElementModel} as the one associated with given {@link Bundle}
 	 * @param webElement
 	 */
-	public void addWebElement(final ElementModel<?, ?> webElement) {
+	public synchronized void addWebElement(final ElementModel<?, ?> webElement) {
 		webElements.put(webElement, false);
 
 		if (webElement.getContextModels().size() == 0) {
@@ -242,7 +244,7 @@ public class BundleWhiteboardApplication {
 	 * Removes an {@link ElementModel} from the list of elements registered by given bundle.
 	 * @param webElement
 	 */
-	public void removeWebElement(final ElementModel<?, ?> webElement) {
+	public synchronized void removeWebElement(final ElementModel<?, ?> webElement) {
 		webElements.remove(webElement);
 
 		WhiteboardWebContainerView view = webContainerManager.whiteboardView(bundle, webContainerServiceRef);
@@ -257,6 +259,28 @@ public class BundleWhiteboardApplication {
 		}
 	}
 
+	/**
+	 * Changes service ranking of an {@link ElementModel} associated with given {@link Bundle} without
+	 * unregistering it.
+	 * @param webElement
+	 * @param rank
+	 * @return {@code false} if the element has to be removed and added again
+	 */
+	public synchronized boolean updateWebElementRank(final ElementModel<?, ?> webElement, int rank) {
+		Boolean registered = webElements.get(webElement);
+		if (registered == null) {
+			return false;
+		}
+		if (!registered) {
+			// not passed to WebContainer yet, so it's enough to remember new ranking
+			webElement.setServiceRank(rank);
+			return true;
+		}
+
+		WhiteboardWebContainerView view = webContainerManager.whiteboardView(bundle, webContainerServiceRef);
+		return view != null && view.updateServiceRank(webElement, rank);
+	}
+
 	/**
 	 * <p>Method called after bundle has stopped. The only task to do here is to unget {@link WebContainer}, which
 	 * (being a {@link org.osgi.framework.ServiceFactory}) should stop the underlying bundle-scoped service and
@@ -267,8 +291,12 @@ public class BundleWhiteboardApplication {
 	 * Whiteboard {@link ServiceReference references}.</p>
 	 */
 	public void cleanup() {
-		this.webContexts.clear();
-		this.webElements.clear();
+		synchronized (this) {
+			this.webContexts.clear();
+			this.webElements.clear();
+		}
+		// releasing the container may stop the bundle-scoped WebContainer, which involves Pax Web configuration
+		// thread, so let's not keep the monitor
 		webContainerManager.releaseContainer(bundle);
 	}
 
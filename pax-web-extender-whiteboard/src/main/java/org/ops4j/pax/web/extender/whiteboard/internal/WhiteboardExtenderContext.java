@@ -16,15 +16,18 @@
 package org.ops4j.pax.web.extender.whiteboard.internal;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.TreeSet;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.atomic.AtomicBoolean;
-import java.util.concurrent.locks.Lock;
-import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 import org.ops4j.pax.web.service.WebContainer;
 import org.ops4j.pax.web.service.spi.model.OsgiContextModel;
@@ -63,9 +66,12 @@ import org.slf4j.LoggerFactory;
  *
  * <p>Most of the methods are synchronized, because they're called from service tracking methods that register and
  * unregister Whiteboard elements and contexts and on the other hand - from service listener methods that may
- * register/unregister target {@link WebContainer}. Synchronization isn't a big problem, because it is assumed that
- * registration/unregistration happens rarely (opposite to actual HTTP request processing) and is expected to
- * take some time.</p>
+ * register/unregister target {@link WebContainer}. However, during startup many bundles may register their
+ * Whiteboard elements at the same time, so only the operations that may change the registration of existing
+ * elements (contexts and {@link WebContainer} changes) are exclusive. Web elements from different bundles
+ * are added/removed concurrently (each {@link BundleWhiteboardApplication} guards its own state) and the
+ * contexts are resolved without locking, using copy-on-write snapshots. The only serialized part is the final
+ * registration in Pax Web configuration thread.</p>
  *
  * @author Alin Dreghiciu
  * @author Grzegorz Grzybek (since Pax Web 8)
@@ -75,6 +81,8 @@ public class WhiteboardExtenderContext implements WebContainerListener, WebConte
 
 	private static final Logger LOG = LoggerFactory.getLogger(WhiteboardExtenderContext.class);
 
+	private static final String CONTEXT_NAME_SELECTOR_PREFIX = "(" + HttpWhiteboardConstants.HTTP_WHITEBOARD_CONTEXT_NAME + "=";
+
 	/**
 	 * Deadlock preventing flag. When {@link WebContainer} is unregistered we'll be getting information about
 	 * {@link OsgiContextModel} being removed, but there's no point altering the Whiteboard registrations, because
@@ -87,20 +95,24 @@ public class WhiteboardExtenderContext implements WebContainerListener, WebConte
 	/** This is were the lifecycle of {@link WebContainer} is managed. */
 	private final WebContainerManager webContainerManager;
 
-	private ServiceReference<WebContainer> currentWebContainerReference;
+	private volatile ServiceReference<WebContainer> currentWebContainerReference;
 
 	/**
 	 * Per-{@link Bundle} cache of lists of Whiteboard services - to clean them up when bundle is gone. This
-	 * map is not concurrent, because it's always accessed within a lock.
+	 * map is concurrent, because new applications are created without the {@link #lock exclusive lock}.
 	 */
-	private final Map<Bundle, BundleWhiteboardApplication> bundleApplications = new HashMap<>();
+	private final Map<Bundle, BundleWhiteboardApplication> bundleApplications = new ConcurrentHashMap<>();
 
 	/**
-	 * This lock prevents concurrent access to a list of {@link #bundleApplications}. We should never get this
-	 * lock <em>after</em> entering Pax Web configuration thread. After the lock was obtained, we can call into
-	 * this single configuration thread, but not in different order.
+	 * <p>This lock prevents concurrent changes of the contexts and {@link WebContainer} while the web elements are
+	 * registered. Adding/removing web elements requires only a <em>read</em> lock (elements from different bundles
+	 * don't affect each other here), while adding/removing contexts and {@link WebContainer} (which may lead to
+	 * re-registration of elements from all the bundles) requires <em>write</em> lock.</p>
+	 *
+	 * <p>We should never get this lock <em>after</em> entering Pax Web configuration thread. After the lock was
+	 * obtained, we can call into this single configuration thread, but not in different order.</p>
 	 */
-	private final Lock lock = new ReentrantLock();
+	private final ReadWriteLock lock = new ReentrantReadWriteLock();
 
 	//	private final ConcurrentHashMap<WebApplication, Integer> sharedWebApplicationCounter = new ConcurrentHashMap<>();
 
@@ -118,6 +130,9 @@ public class WhiteboardExtenderContext implements WebContainerListener, WebConte
 	 * registration property - {@link HttpWhiteboardConstants#HTTP_WHITEBOARD_CONTEXT_PATH} - regardless of the
 	 * type of the service registered by user (whether it was <em>official</em> {@link ServletContextHelper} or
 	 * "legacy" {@link org.ops4j.pax.web.service.whiteboard.HttpContextMapping}).</p>
+	 *
+	 * <p>The sets are never modified - new set is created on each change (under write {@link #lock}), so
+	 * {@link #resolveContexts(Bundle, Filter)} needs only a read lock.</p>
 	 */
 	private final Map<String, TreeSet<OsgiContextModel>> osgiContexts = new ConcurrentHashMap<>();
 
@@ -125,7 +140,23 @@ public class WhiteboardExtenderContext implements WebContainerListener, WebConte
 	 * We also have to store {@link OsgiContextModel} contexts in flat list to perform {@link Filter} based
 	 * lookup.
 	 */
-	private final List<OsgiContextModel> osgiContextsList = new ArrayList<>();
+	private final List<OsgiContextModel> osgiContextsList = new CopyOnWriteArrayList<>();
+
+	/**
+	 * <p>Selected context <em>name</em> to web elements (with the {@link Bundle} of their application) mapping.
+	 * Elements without a selector are kept under {@code default} name and elements which select the contexts
+	 * by name (see {@link #selectedContextName(Filter)}) are kept under selected name.</p>
+	 *
+	 * <p>This index is used by {@link #reRegisterWebElements(OsgiContextModel)}, so only the elements that may
+	 * be affected by a change of single {@link OsgiContextModel} are checked.</p>
+	 */
+	private final Map<String, Map<ElementModel<?, ?>, Bundle>> webElementsByContextName = new ConcurrentHashMap<>();
+
+	/**
+	 * Web elements with selectors that can't be indexed by context name - these have to be checked on each
+	 * change of any {@link OsgiContextModel}.
+	 */
+	private final Map<ElementModel<?, ?>, Bundle> webElementsWithFilters = new ConcurrentHashMap<>();
 
 	/** Flag marking actual registration of {@link OsgiContextModel#DEFAULT_CONTEXT_MODEL}. */
 	private AtomicBoolean defaultContextRegistered = new AtomicBoolean(false);
@@ -143,8 +174,7 @@ public class WhiteboardExtenderContext implements WebContainerListener, WebConte
 		if (owner != null) {
 			model.setOwnerBundle(FrameworkUtil.getBundle(this.getClass()));
 		}
-		osgiContexts.computeIfAbsent(model.getName(), n -> new TreeSet<>()).add(model);
-		osgiContextsList.add(model);
+		addOsgiContext(model);
 
 		webContainerManager = synchronous
 				? new WebContainerManager(bundleContext, this)
@@ -171,13 +201,9 @@ public class WhiteboardExtenderContext implements WebContainerListener, WebConte
 	 */
 	@Override
 	public void bundleStopped(Bundle bundle) {
-		BundleWhiteboardApplication application;
-		lock.lock();
-		try {
-			application = bundleApplications.remove(bundle);
-		} finally {
-			lock.unlock();
-		}
+		BundleWhiteboardApplication application = bundleApplications.remove(bundle);
+		webElementsByContextName.values().forEach(elements -> elements.values().removeIf(bundle::equals));
+		webElementsWithFilters.values().removeIf(bundle::equals);
 		if (application != null) {
 			LOG.debug("Clearing Whiteboard cache for {}", bundle);
 			application.cleanup();
@@ -189,11 +215,11 @@ public class WhiteboardExtenderContext implements WebContainerListener, WebConte
 		if (!acceptWabContexts.get()) {
 			return;
 		}
-		lock.lock();
+		lock.writeLock().lock();
 		try {
-			reRegisterWebElements();
+			reRegisterWebElements(null);
 		} finally {
-			lock.unlock();
+			lock.writeLock().unlock();
 		}
 	}
 
@@ -202,11 +228,11 @@ public class WhiteboardExtenderContext implements WebContainerListener, WebConte
 		if (!acceptWabContexts.get()) {
 			return;
 		}
-		lock.lock();
+		lock.writeLock().lock();
 		try {
-			reRegisterWebElements();
+			reRegisterWebElements(null);
 		} finally {
-			lock.unlock();
+			lock.writeLock().unlock();
 		}
 	}
 
@@ -243,91 +269,106 @@ public class WhiteboardExtenderContext implements WebContainerListener, WebConte
 		if (bundle == null) {
 			return Collections.emptyList();
 		}
-		lock.lock();
+		// contexts are kept in copy-on-write collections, but read lock is needed, because bundle applications
+		// may be created here and they must not miss concurrent installation/uninstallation of the WebContainer
+		lock.readLock().lock();
 		try {
-			if (selector == null) {
-				// easy - highest ranked "default" context model
-				OsgiContextModel defaultModel
-						= osgiContexts.get(HttpWhiteboardConstants.HTTP_WHITEBOARD_DEFAULT_CONTEXT_NAME).iterator().next();
-				return Collections.singletonList(defaultModel);
-			}
+			return doResolveContexts(bundle, selector);
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
 
-			// more difficult, as according to "140.3 Common Whiteboard Properties", "Table 140.3 Common properties":
-			//
-			//     osgi.http.whiteboard.context.select [...] An LDAP-style filter to select the associated
-			//     ServletContextHelper service to use. Any service property of the Servlet Context Helper can be filtered
-			//     on. If this property is missing the default Servlet Context Helper is used.
-			//
-			// so we can even target two different "default" ServletContextHelpers and actual physical ServletContextModel
-			// will be determined at registration time
-			List<OsgiContextModel> targetContexts = new ArrayList<>();
-
-			// check _contexts_ managed at pax-web-extender-whiteboard level
-			for (OsgiContextModel model : osgiContextsList) {
-				// one line "140.3 Common Whiteboard Properties" implementation of LDAP filter matching
-				BundleWhiteboardApplication app = getBundleApplication(model.getOwnerBundle());
-				if (OsgiContextModel.DEFAULT_CONTEXT_MODEL.equals(model) && !defaultContextRegistered.get()) {
-					// it may happen if the HttpService ref is handed to pax-web-extender-whiteboard later
-					continue;
-				}
-				if (!OsgiContextModel.DEFAULT_CONTEXT_MODEL.equals(model)
-						&& (app == null || !app.isRegistered(model))) {
-					// if the HttpService is added after pax-web-extender-whiteboard did the tracking, we may
-					// end with this situation:
-					//  - bundle A registers a "default" context (like OCM-2)
-					//  - bundle B registers a servlet targetting "default" context - it's already found in
-					//    this.osgiContextsList
-					//  - HttpService is registered
-					//  - pax-web-extender-whiteboard gets the service and passes it to each "whiteboard app"
-					//    from the hashmap
-					//  - "whiteboard app" for bundle B gets the reference and registers the servlet - but the runtime
-					//    (Jetty, Tomcat, Undertow) doesn't know anything about the context yet
-					//  - "whiteboard app" for bundle A gets the reference and only then registers its context
-					//
-					// that's why we have to skip the OsgiContextModels that are not really registered yet
-					continue;
-				}
-				if (selector.matchCase(model.getContextRegistrationProperties())) {
-					targetContexts.add(model);
-				}
+	private List<OsgiContextModel> doResolveContexts(Bundle bundle, Filter selector) {
+		if (selector == null) {
+			// easy - highest ranked "default" context model
+			OsgiContextModel defaultModel
+					= osgiContexts.get(HttpWhiteboardConstants.HTTP_WHITEBOARD_DEFAULT_CONTEXT_NAME).iterator().next();
+			return Collections.singletonList(defaultModel);
+		}
+
+		// more difficult, as according to "140.3 Common Whiteboard Properties", "Table 140.3 Common properties":
+		//
+		//     osgi.http.whiteboard.context.select [...] An LDAP-style filter to select the associated
+		//     ServletContextHelper service to use. Any service property of the Servlet Context Helper can be filtered
+		//     on. If this property is missing the default Servlet Context Helper is used.
+		//
+		// so we can even target two different "default" ServletContextHelpers and actual physical ServletContextModel
+		// will be determined at registration time
+		List<OsgiContextModel> targetContexts = new ArrayList<>();
+
+		// check _contexts_ managed at pax-web-extender-whiteboard level. For common selectors (by name), only
+		// the contexts with given name are checked
+		String name = selectedContextName(selector);
+		Collection<OsgiContextModel> candidates = osgiContextsList;
+		if (name != null) {
+			candidates = osgiContexts.get(name);
+			if (candidates == null) {
+				candidates = Collections.emptyList();
+			}
+		}
+		for (OsgiContextModel model : candidates) {
+			// one line "140.3 Common Whiteboard Properties" implementation of LDAP filter matching
+			BundleWhiteboardApplication app = getBundleApplication(model.getOwnerBundle());
+			if (OsgiContextModel.DEFAULT_CONTEXT_MODEL.equals(model) && !defaultContextRegistered.get()) {
+				// it may happen if the HttpService ref is handed to pax-web-extender-whiteboard later
+				continue;
 			}
+			if (!OsgiContextModel.DEFAULT_CONTEXT_MODEL.equals(model)
+					&& (app == null || !app.isRegistered(model))) {
+				// if the HttpService is added after pax-web-extender-whiteboard did the tracking, we may
+				// end with this situation:
+				//  - bundle A registers a "default" context (like OCM-2)
+				//  - bundle B registers a servlet targetting "default" context - it's already found in
+				//    this.osgiContextsList
+				//  - HttpService is registered
+				//  - pax-web-extender-whiteboard gets the service and passes it to each "whiteboard app"
+				//    from the hashmap
+				//  - "whiteboard app" for bundle B gets the reference and registers the servlet - but the runtime
+				//    (Jetty, Tomcat, Undertow) doesn't know anything about the context yet
+				//  - "whiteboard app" for bundle A gets the reference and only then registers its context
+				//
+				// that's why we have to skip the OsgiContextModels that are not really registered yet
+				continue;
+			}
+			if (selector.matchCase(model.getContextRegistrationProperties())) {
+				targetContexts.add(model);
+			}
+		}
 
-			// get all the bundle-scoped contexts from HttpService. These will never
-			// have "osgi.http.whiteboard.context.name" property specified, only
-			// "osgi.http.whiteboard.context.httpservice" property, so no special check should be performed - just
-			// matching the selector
-			// In order for "typical" selector for Whiteboard -> HttpService:
-			//     osgi.http.whiteboard.context.select = (osgi.http.whiteboard.context.httpservice=*)
-			// to work, we're explicitly skipping "shared" contexts - user will still be able to use such shared
-			// HttpService contexts (specific to Pax Web), but with more effort.
-			for (OsgiContextModel model : getBundleApplication(bundle).getWebContainerOsgiContextModels()) {
-				if ((!model.isShared() || model.isWab())
-						&& selector.matchCase(model.getContextRegistrationProperties())) {
-					targetContexts.add(model);
-				}
+		// get all the bundle-scoped contexts from HttpService. These will never
+		// have "osgi.http.whiteboard.context.name" property specified, only
+		// "osgi.http.whiteboard.context.httpservice" property, so no special check should be performed - just
+		// matching the selector
+		// In order for "typical" selector for Whiteboard -> HttpService:
+		//     osgi.http.whiteboard.context.select = (osgi.http.whiteboard.context.httpservice=*)
+		// to work, we're explicitly skipping "shared" contexts - user will still be able to use such shared
+		// HttpService contexts (specific to Pax Web), but with more effort.
+		for (OsgiContextModel model : getBundleApplication(bundle).getWebContainerOsgiContextModels()) {
+			if ((!model.isShared() || model.isWab())
+					&& selector.matchCase(model.getContextRegistrationProperties())) {
+				targetContexts.add(model);
 			}
+		}
 
-			// "140.2 The Servlet Context"
-			//
-			//     If multiple Servlet Context Helper services are registered with the same name, the one with the highest
-			//     Service Ranking is used
-			//
-			// so we can end with several OsgiContextModels with the same name - we need only one of each - with
-			// highest rank. Whiteboard and HttpService models are treated equally here.
-			Map<String, OsgiContextModel> uniqueContexts = new HashMap<>();
-			for (OsgiContextModel c : targetContexts) {
-				if (!uniqueContexts.containsKey(c.getName()) || uniqueContexts.get(c.getName()).compareTo(c) > 0) {
-					uniqueContexts.put(c.getName(), c);
-				}
+		// "140.2 The Servlet Context"
+		//
+		//     If multiple Servlet Context Helper services are registered with the same name, the one with the highest
+		//     Service Ranking is used
+		//
+		// so we can end with several OsgiContextModels with the same name - we need only one of each - with
+		// highest rank. Whiteboard and HttpService models are treated equally here.
+		Map<String, OsgiContextModel> uniqueContexts = new HashMap<>();
+		for (OsgiContextModel c : targetContexts) {
+			if (!uniqueContexts.containsKey(c.getName()) || uniqueContexts.get(c.getName()).compareTo(c) > 0) {
+				uniqueContexts.put(c.getName(), c);
 			}
+		}
 
-			targetContexts.clear();
-			targetContexts.addAll(uniqueContexts.values());
+		targetContexts.clear();
+		targetContexts.addAll(uniqueContexts.values());
 
-			return targetContexts;
-		} finally {
-			lock.unlock();
-		}
+		return targetContexts;
 	}
 
 	// --- Handling registration/unregistration of target WebContainer, where we want to register Whiteboard services
@@ -351,7 +392,7 @@ public class WhiteboardExtenderContext implements WebContainerListener, WebConte
 
 		// in case some servlets were registered above which should switch to contexts from other whiteboard
 		// applications registered later (https://github.com/ops4j/org.ops4j.pax.web/issues/1769)
-		reRegisterWebElements();
+		reRegisterWebElements(null);
 
 		acceptWabContexts.set(true);
 	}
@@ -380,7 +421,7 @@ public class WhiteboardExtenderContext implements WebContainerListener, WebConte
 	 * @param ref
 	 */
 	private void installWhiteboardApplications(ServiceReference<WebContainer> ref) {
-		lock.lock();
+		lock.writeLock().lock();
 		try {
 			// This is were current WebContainer service reference is passed to all known BundleWhiteboardApplications
 			// which may (or may not) have collected (tracked) already some web elements/contexts.
@@ -389,7 +430,7 @@ public class WhiteboardExtenderContext implements WebContainerListener, WebConte
 			// of pax-web-extender-war
 			bundleApplications.values().forEach(ba -> ba.webContainerAdded(ref));
 		} finally {
-			lock.unlock();
+			lock.writeLock().unlock();
 		}
 	}
 
@@ -399,11 +440,11 @@ public class WhiteboardExtenderContext implements WebContainerListener, WebConte
 	 * @param ref
 	 */
 	private void uninstallWhiteboardApplications(ServiceReference<WebContainer> ref) {
-		lock.lock();
+		lock.writeLock().lock();
 		try {
 			bundleApplications.values().forEach(ba -> ba.webContainerRemoved(ref));
 		} finally {
-			lock.unlock();
+			lock.writeLock().unlock();
 		}
 	}
 
@@ -414,26 +455,29 @@ public class WhiteboardExtenderContext implements WebContainerListener, WebConte
 	//     3) register given customized object in actual WebContainer from pax-web-runtime (if available)
 
 	public void addWebContext(Bundle bundle, OsgiContextModel model) {
-		lock.lock();
+		lock.writeLock().lock();
 		try {
-			osgiContexts.computeIfAbsent(model.getName(), cp -> new TreeSet<>()).add(model);
-			osgiContextsList.add(model);
+			addOsgiContext(model);
 
 			getBundleApplication(bundle).addWebContext(model);
 
-			reRegisterWebElements();
+			reRegisterWebElements(model);
 		} finally {
-			lock.unlock();
+			lock.writeLock().unlock();
 		}
 	}
 
 	public void removeWebContext(Bundle bundle, OsgiContextModel model) {
-		lock.lock();
+		lock.writeLock().lock();
 		try {
-			osgiContexts.get(model.getName()).remove(model);
+			osgiContexts.computeIfPresent(model.getName(), (name, models) -> {
+				TreeSet<OsgiContextModel> newModels = new TreeSet<>(models);
+				newModels.remove(model);
+				return newModels;
+			});
 			osgiContextsList.remove(model);
 
-			reRegisterWebElements();
+			reRegisterWebElements(model);
 
 			getBundleApplication(bundle).removeWebContext(model);
 
@@ -442,10 +486,24 @@ public class WhiteboardExtenderContext implements WebContainerListener, WebConte
 				view.clearFailedDTOInformation(model);
 			}
 		} finally {
-			lock.unlock();
+			lock.writeLock().unlock();
 		}
 	}
 
+	/**
+	 * Adds new {@link OsgiContextModel} to the collections used by {@link #resolveContexts(Bundle, Filter)} -
+	 * always replacing the set of contexts with given name instead of changing it.
+	 * @param model
+	 */
+	private void addOsgiContext(OsgiContextModel model) {
+		osgiContexts.compute(model.getName(), (name, models) -> {
+			TreeSet<OsgiContextModel> newModels = models == null ? new TreeSet<>() : new TreeSet<>(models);
+			newModels.add(model);
+			return newModels;
+		});
+		osgiContextsList.add(model);
+	}
+
 	/**
 	 * <p>This method is called every time a {@link OsgiContextModel} is added/changed/removed, because it may lead
 	 * to different conditions of registration for existing {@link ElementModel}s.</p>
@@ -458,112 +516,233 @@ public class WhiteboardExtenderContext implements WebContainerListener, WebConte
 	 *     <li>Existing {@link javax.servlet.Servlet} should be re-registered from "/" to "/x" path without bothering
 	 *         user who's registered the {@link javax.servlet.Servlet}.</li>
 	 * </ul></p>
+	 *
+	 * <p>When single {@link OsgiContextModel} was added/removed, only the elements which select it by name (taken
+	 * from {@link #webElementsByContextName}) or which have more complex selector are checked - other elements
+	 * can't be affected by such change.</p>
+	 *
+	 * @param changed added or removed {@link OsgiContextModel} or {@code null} if all the elements should be checked
 	 */
-	private void reRegisterWebElements() {
-		// remember - we're operating within ExtenderContext.lock
-
-		List<BundleWhiteboardApplication> apps = new ArrayList<>(bundleApplications.values());
-		for (BundleWhiteboardApplication app : apps) {
-			WhiteboardWebContainerView view = app.getWhiteboardContainer();
-			for (ElementModel<?, ?> webElement : app.getWebElements()) {
-				boolean isAsync = webElement.isAsynchronusRegistration();
-				try {
-					// re-registration has to be synchronous, because otherwise we'd change the osgi context models
-					// of the element when it's being unregistered for example
-					webElement.setAsynchronusRegistration(false);
-					Filter filter = webElement.getContextFilter();
-					List<OsgiContextModel> newMatching = resolveContexts(webElement.getRegisteringBundle(), filter);
-					List<OsgiContextModel> oldMatching = webElement.getContextModels();
-
-					// 0.
-					if (newMatching.size() == oldMatching.size() && newMatching.containsAll(oldMatching)) {
-						continue;
-					}
+	private void reRegisterWebElements(OsgiContextModel changed) {
+		// remember - we're operating within ExtenderContext.lock (write lock)
 
-					// 1. unregistration because of no matching contexts
-					if (newMatching.size() == 0) {
-						LOG.debug("Unregistering {} because its context selection filter doesn't match any context", webElement);
-						if (view != null) {
-							// first unregister
-							webElement.unregister(view);
-						}
-						// then change
-						webElement.changeContextModels(newMatching);
-						webElement.setDtoFailureCode(DTOConstants.FAILURE_REASON_NO_SERVLET_CONTEXT_MATCHING);
-						continue;
-					}
+		if (changed == null) {
+			List<BundleWhiteboardApplication> apps = new ArrayList<>(bundleApplications.values());
+			for (BundleWhiteboardApplication app : apps) {
+				reRegisterWebElements(app, app.getWebElements());
+			}
+			return;
+		}
 
-					// 2. easy registration after some models matched
-					if (oldMatching.size() == 0) {
-						// first change
-						webElement.changeContextModels(newMatching);
-						LOG.debug("Registering {} because its context selection filter started matching existing contexts", webElement);
-						if (view != null) {
-							// then register
-							webElement.setDtoFailureCode(-1);
-							webElement.register(view);
-						}
-						continue;
-					}
+		Map<Bundle, List<ElementModel<?, ?>>> candidates = new LinkedHashMap<>();
+		Map<ElementModel<?, ?>, Bundle> byName = webElementsByContextName.get(changed.getName());
+		if (byName != null) {
+			byName.forEach((element, bundle) -> candidates.computeIfAbsent(bundle, b -> new ArrayList<>()).add(element));
+		}
+		webElementsWithFilters.forEach((element, bundle) -> {
+			if (isAffectedBy(element, changed)) {
+				candidates.computeIfAbsent(bundle, b -> new ArrayList<>()).add(element);
+			}
+		});
+		candidates.forEach((bundle, elements) -> {
+			BundleWhiteboardApplication app = bundleApplications.get(bundle);
+			if (app != null) {
+				reRegisterWebElements(app, elements);
+			}
+		});
+	}
 
-					// 3. generic case - unregistration from removed models, registration to new models
-
-					// now the tricky part - initially I wanted to optimize - remove the model only from "removed"
-					// contexts and add it only to "added" ones. First difficulty (actually easy to workaround) occurred
-					// when I saw ServletModel disappearing from the ServerModel, but the more important problem which
-					// turned out to be solution was: when additional context is added that matches a selector of
-					// existing ServletModel, then in simple scenario indeed - existing servlet should be registered
-					// in new context. But if there's different ServletModel, with conflicting name or URL patterns
-					// which is now disabled/waiting because its selector only matches the new context, the first servlet
-					// should eventually be disabled in ALL contexts, because it'll be disabled in the new context!
-					//
-					// so it's really easier - FULLY unregister the element from all current contexts and then
-					// register to all the new contexts
+	private void reRegisterWebElements(BundleWhiteboardApplication app, List<ElementModel<?, ?>> webElements) {
+		WhiteboardWebContainerView view = app.getWhiteboardContainer();
+		for (ElementModel<?, ?> webElement : webElements) {
+			boolean isAsync = webElement.isAsynchronusRegistration();
+			try {
+				// re-registration has to be synchronous, because otherwise we'd change the osgi context models
+				// of the element when it's being unregistered for example
+				webElement.setAsynchronusRegistration(false);
+				Filter filter = webElement.getContextFilter();
+				List<OsgiContextModel> newMatching = resolveContexts(webElement.getRegisteringBundle(), filter);
+				List<OsgiContextModel> oldMatching = webElement.getContextModels();
+
+				// 0.
+				if (newMatching.size() == oldMatching.size() && newMatching.containsAll(oldMatching)) {
+					continue;
+				}
+
+				// 1. unregistration because of no matching contexts
+				if (newMatching.size() == 0) {
+					LOG.debug("Unregistering {} because its context selection filter doesn't match any context", webElement);
 					if (view != null) {
-						LOG.debug("Unregistering {} because its context selection filter matched new set of contexts", webElement);
+						// first unregister
 						webElement.unregister(view);
 					}
+					// then change
+					webElement.changeContextModels(newMatching);
+					webElement.setDtoFailureCode(DTOConstants.FAILURE_REASON_NO_SERVLET_CONTEXT_MATCHING);
+					continue;
+				}
+
+				// 2. easy registration after some models matched
+				if (oldMatching.size() == 0) {
+					// first change
 					webElement.changeContextModels(newMatching);
+					LOG.debug("Registering {} because its context selection filter started matching existing contexts", webElement);
 					if (view != null) {
-						LOG.debug("Registering {} again after its context selection filter matched new set of contexts", webElement);
+						// then register
+						webElement.setDtoFailureCode(-1);
 						webElement.register(view);
 					}
-				} finally {
-					webElement.setAsynchronusRegistration(isAsync);
+					continue;
+				}
+
+				// 3. generic case - unregistration from removed models, registration to new models
+
+				// now the tricky part - initially I wanted to optimize - remove the model only from "removed"
+				// contexts and add it only to "added" ones. First difficulty (actually easy to workaround) occurred
+				// when I saw ServletModel disappearing from the ServerModel, but the more important problem which
+				// turned out to be solution was: when additional context is added that matches a selector of
+				// existing ServletModel, then in simple scenario indeed - existing servlet should be registered
+				// in new context. But if there's different ServletModel, with conflicting name or URL patterns
+				// which is now disabled/waiting because its selector only matches the new context, the first servlet
+				// should eventually be disabled in ALL contexts, because it'll be disabled in the new context!
+				//
+				// so it's really easier - FULLY unregister the element from all current contexts and then
+				// register to all the new contexts
+				if (view != null) {
+					LOG.debug("Unregistering {} because its context selection filter matched new set of contexts", webElement);
+					webElement.unregister(view);
 				}
+				webElement.changeContextModels(newMatching);
+				if (view != null) {
+					LOG.debug("Registering {} again after its context selection filter matched new set of contexts", webElement);
+					webElement.register(view);
+				}
+			} finally {
+				webElement.setAsynchronusRegistration(isAsync);
 			}
 		}
 	}
 
+	/**
+	 * Checks whether the set of {@link OsgiContextModel contexts} resolved for given {@link ElementModel} (with
+	 * selector not indexed by context name) may change after adding/removing given {@link OsgiContextModel}.
+	 * @param webElement
+	 * @param changed
+	 * @return
+	 */
+	private boolean isAffectedBy(ElementModel<?, ?> webElement, OsgiContextModel changed) {
+		return webElement.getContextModels().contains(changed)
+				|| webElement.getContextFilter().matchCase(changed.getContextRegistrationProperties());
+	}
+
+	/**
+	 * Returns the context name under which given element is kept in {@link #webElementsByContextName} or
+	 * {@code null} if the element is kept in {@link #webElementsWithFilters}.
+	 * @param webElement
+	 * @return
+	 */
+	private static String indexedContextName(ElementModel<?, ?> webElement) {
+		Filter filter = webElement.getContextFilter();
+		if (filter == null) {
+			return HttpWhiteboardConstants.HTTP_WHITEBOARD_DEFAULT_CONTEXT_NAME;
+		}
+		return selectedContextName(filter);
+	}
+
+	/**
+	 * Most context selectors are simple equality filters for {@code osgi.http.whiteboard.context.name} property.
+	 * For such selectors, returns the name of selected context, so target contexts can be found by name instead
+	 * of evaluating the filter against all the contexts.
+	 * @param selector
+	 * @return the selected context name or {@code null} if the selector is more complex
+	 */
+	static String selectedContextName(Filter selector) {
+		if (selector == null) {
+			return null;
+		}
+		String filter = selector.toString();
+		int prefixLength = CONTEXT_NAME_SELECTOR_PREFIX.length();
+		if (filter.length() <= prefixLength + 1 || filter.charAt(filter.length() - 1) != ')'
+				|| !filter.regionMatches(true, 0, CONTEXT_NAME_SELECTOR_PREFIX, 0, prefixLength)) {
+			return null;
+		}
+		String name = filter.substring(prefixLength, filter.length() - 1);
+		for (int i = 0; i < name.length(); i++) {
+			char c = name.charAt(i);
+			if (c == '*' || c == '(' || c == ')' || c == '\\') {
+				// substring/presence filters or escaped values - full evaluation needed
+				return null;
+			}
+		}
+		return name.trim();
+	}
+
 	public <R, D extends WebElementEventData, T extends ElementModel<R, D>> void addWebElement(Bundle bundle, T webElement) {
-		lock.lock();
+		lock.readLock().lock();
 		try {
+			String name = indexedContextName(webElement);
+			if (name == null) {
+				webElementsWithFilters.put(webElement, bundle);
+			} else {
+				webElementsByContextName.compute(name, (n, elements) -> {
+					Map<ElementModel<?, ?>, Bundle> newElements = elements == null ? new ConcurrentHashMap<>() : elements;
+					newElements.put(webElement, bundle);
+					return newElements;
+				});
+			}
 			getBundleApplication(bundle).addWebElement(webElement);
 		} finally {
-			lock.unlock();
+			lock.readLock().unlock();
 		}
 	}
 
 	public <R, D extends WebElementEventData, T extends ElementModel<R, D>> void removeWebElement(Bundle bundle, T webElement) {
-		lock.lock();
+		lock.readLock().lock();
 		try {
 			if (!acceptWabContexts.get() || webElement.getRegisteringBundle().getState() < Bundle.ACTIVE) {
 				// whiteboard context is stopping, mass unregistration - we want it synchronized
 				webElement.setAsynchronusRegistration(false);
 			}
 			getBundleApplication(bundle).removeWebElement(webElement);
+			String name = indexedContextName(webElement);
+			if (name == null) {
+				webElementsWithFilters.remove(webElement);
+			} else {
+				webElementsByContextName.computeIfPresent(name, (n, elements) -> {
+					elements.remove(webElement);
+					return elements.isEmpty() ? null : elements;
+				});
+			}
 
 			WhiteboardWebContainerView view = webContainerManager.whiteboardView(bundle, currentWebContainerReference);
 			if (view != null) {
 				view.clearFailedDTOInformation(webElement);
 			}
 		} finally {
-			lock.unlock();
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Changes service ranking of already added {@link ElementModel} without removing it.
+	 * @param bundle
+	 * @param webElement
+	 * @param rank
+	 * @return {@code false} if the element has to be removed and added again
+	 */
+	public boolean updateWebElementRank(Bundle bundle, ElementModel<?, ?> webElement, int rank) {
+		lock.readLock().lock();
+		try {
+			BundleWhiteboardApplication bundleApplication = bundleApplications.get(bundle);
+			return bundleApplication != null && bundleApplication.updateWebElementRank(webElement, rank);
+		} finally {
+			lock.readLock().unlock();
 		}
 	}
 
 	/**
-	 * Return (create if needed) a new bundle-scoped {@link BundleWhiteboardApplication}.
+	 * Return (create if needed) a new bundle-scoped {@link BundleWhiteboardApplication}. Should be called with
+	 * (at least) read {@link #lock}.
 	 *
 	 * @param bundle
 	 * @return
@@ -574,23 +753,24 @@ public class WhiteboardExtenderContext implements WebContainerListener, WebConte
 			return null;
 		}
 
-		BundleWhiteboardApplication bundleApplication;
-		lock.lock();
-		try {
-			bundleApplication = bundleApplications.get(bundle);
-			if (bundleApplication == null) {
-				bundleApplication = new BundleWhiteboardApplication(bundle, webContainerManager);
-				ServiceReference<WebContainer> ref = webContainerManager.currentWebContainerReference();
-				if (ref != null) {
-					bundleApplication.webContainerAdded(ref);
-				}
-				bundleApplications.put(bundle, bundleApplication);
-			}
-		} finally {
-			lock.unlock();
+		BundleWhiteboardApplication bundleApplication = bundleApplications.get(bundle);
+		if (bundleApplication != null) {
+			return bundleApplication;
 		}
 
-		return bundleApplication;
+		// the application is not initialized inside the map's compute method - webContainerAdded() may
+		// register contexts and elements, which can't be done while holding the lock of the map.
+		// Callers hold (at least) read lock, so the WebContainer can't be added/removed concurrently
+		BundleWhiteboardApplication application = new BundleWhiteboardApplication(bundle, webContainerManager);
+		bundleApplication = bundleApplications.putIfAbsent(bundle, application);
+		if (bundleApplication != null) {
+			return bundleApplication;
+		}
+		ServiceReference<WebContainer> ref = webContainerManager.currentWebContainerReference();
+		if (ref != null) {
+			application.webContainerAdded(ref);
+		}
+		return application;
 	}
 
 	/**
@@ -15,7 +15,14 @@
  */
 package org.ops4j.pax.web.extender.whiteboard.internal.tracker;
 
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.ops4j.pax.web.extender.whiteboard.internal.WhiteboardExtenderContext;
 import org.ops4j.pax.web.service.PaxWebConstants;
@@ -64,11 +71,43 @@ public abstract class AbstractElementTracker<S, R, D extends WebElementEventData
 
 	private static final String LEGACY_MAPPING_PACKAGE = ContextRelated.class.getPackage().getName();
 
+	/**
+	 * Service registration properties (and prefixes of properties) that are used to create {@link ElementModel}
+	 * or to select its target contexts. Change of any other property doesn't affect registered element.
+	 */
+	@SuppressWarnings("deprecation")
+	private static final Set<String> MODEL_PROPERTIES = new HashSet<>(Arrays.asList(
+			Constants.OBJECTCLASS,
+			Constants.SERVICE_SCOPE,
+			PaxWebConstants.SERVICE_PROPERTY_WEBSOCKET_LEGACY,
+			PaxWebConstants.SERVICE_PROPERTY_SERVLET_ALIAS,
+			PaxWebConstants.SERVICE_PROPERTY_URL_PATTERNS,
+			PaxWebConstants.SERVICE_PROPERTY_SERVLET_NAMES,
+			PaxWebConstants.SERVICE_PROPERTY_ASYNC_SUPPORTED,
+			PaxWebConstants.SERVICE_PROPERTY_LOAD_ON_STARTUP,
+			PaxWebConstants.SERVICE_PROPERTY_INIT_PREFIX,
+			PaxWebConstants.INIT_PARAM_SERVLET_NAME,
+			PaxWebConstants.INIT_PARAM_FILTER_NAME
+	));
+	private static final String[] MODEL_PROPERTY_PREFIXES = new String[] {
+			"osgi.http.",
+			"osgi.web.",
+			"org.ops4j.pax.web.",
+			"httpContext.",
+			PaxWebConstants.DEFAULT_INIT_PREFIX_PROP
+	};
+
 	protected final Logger log = LoggerFactory.getLogger(getClass());
 
 	protected final BundleContext bundleContext;
 	private final WhiteboardExtenderContext whiteboardExtenderContext;
 
+	/**
+	 * Service registration properties of tracked references at the time when {@link ElementModel} was created,
+	 * so we can check which properties were actually changed in {@link #modifiedService}.
+	 */
+	private final Map<ServiceReference<S>, Map<String, Object>> trackedProperties = new ConcurrentHashMap<>();
+
 	protected AbstractElementTracker(WhiteboardExtenderContext whiteboardExtenderContext, BundleContext bundleContext) {
 		this.whiteboardExtenderContext = whiteboardExtenderContext;
 		this.bundleContext = bundleContext;
@@ -263,6 +302,7 @@ public abstract class AbstractElementTracker<S, R, D extends WebElementEventData
 			// the succesful DTO information will be propagated to HttpServiceRuntime (which is the ServerModel)
 			// during registration of the web element
 			whiteboardExtenderContext.addWebElement(serviceReference.getBundle(), webElement);
+			trackedProperties.put(serviceReference, properties(serviceReference));
 			return webElement;
 		} else {
 			// the failed DTO information have to be passed directly, because we're not registering the web element
@@ -287,6 +327,29 @@ public abstract class AbstractElementTracker<S, R, D extends WebElementEventData
 		// point to different ServletContextHelper with different "osgi.http.whiteboard.context.path" property - the
 		// servlet simply has to be unregistered from e.g.m /context1 context and registered into e.g., /context2
 
+		// but first check what has actually changed. Properties not used by the model (custom properties often
+		// changed by Configuration Admin) don't require any action and ranking change may be applied without
+		// unregistration if it doesn't affect conflict resolution
+		Map<String, Object> previous = trackedProperties.get(reference);
+		if (previous != null) {
+			Map<String, Object> current = properties(reference);
+			Set<String> changed = changedModelProperties(previous, current);
+			if (changed.isEmpty()) {
+				log.debug("No relevant properties changed for {}, element is not re-registered", reference);
+				trackedProperties.put(reference, current);
+				return;
+			}
+			if (changed.size() == 1 && changed.contains(Constants.SERVICE_RANKING)) {
+				Object rank = current.get(Constants.SERVICE_RANKING);
+				if (whiteboardExtenderContext.updateWebElementRank(reference.getBundle(), service,
+						rank instanceof Integer ? (Integer) rank : 0)) {
+					log.debug("Service ranking of {} changed without re-registration", reference);
+					trackedProperties.put(reference, current);
+					return;
+				}
+			}
+		}
+
 		removedService(reference, service);
 
 		// we have to be sure that we'll use the same instance!
@@ -308,9 +371,68 @@ public abstract class AbstractElementTracker<S, R, D extends WebElementEventData
 	public void removedService(final ServiceReference<S> serviceReference, final T webElement) {
 		log.debug("Whiteboard service removed: {}", serviceReference);
 
+		trackedProperties.remove(serviceReference);
 		whiteboardExtenderContext.removeWebElement(serviceReference.getBundle(), webElement);
 	}
 
+	/**
+	 * Returns the names of changed service registration properties that may affect the {@link ElementModel}
+	 * @param previous
+	 * @param current
+	 * @return
+	 */
+	static Set<String> changedModelProperties(Map<String, Object> previous, Map<String, Object> current) {
+		// custom init parameter prefix may be used both in previous and current properties
+		Set<String> initPrefixes = new HashSet<>();
+		for (Map<String, Object> properties : Arrays.asList(previous, current)) {
+			Object prefix = properties.get(PaxWebConstants.SERVICE_PROPERTY_INIT_PREFIX);
+			if (prefix instanceof String && !"".equals(((String) prefix).trim())) {
+				initPrefixes.add(((String) prefix).trim());
+			}
+		}
+
+		Set<String> keys = new HashSet<>(previous.keySet());
+		keys.addAll(current.keySet());
+		Set<String> changed = new HashSet<>();
+		for (String key : keys) {
+			if (Objects.deepEquals(previous.get(key), current.get(key))) {
+				continue;
+			}
+			if (Constants.SERVICE_RANKING.equals(key) || isModelProperty(key, initPrefixes)) {
+				changed.add(key);
+			}
+		}
+		return changed;
+	}
+
+	private static boolean isModelProperty(String key, Set<String> initPrefixes) {
+		if (MODEL_PROPERTIES.contains(key)) {
+			return true;
+		}
+		for (String prefix : MODEL_PROPERTY_PREFIXES) {
+			if (key.startsWith(prefix)) {
+				return true;
+			}
+		}
+		for (String prefix : initPrefixes) {
+			if (key.startsWith(prefix)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static Map<String, Object> properties(ServiceReference<?> reference) {
+		Map<String, Object> properties = new HashMap<>();
+		String[] keys = reference.getPropertyKeys();
+		if (keys != null) {
+			for (String key : keys) {
+				properties.put(key, reference.getProperty(key));
+			}
+		}
+		return properties;
+	}
+
 	/**
 	 * Get a selector for contexts in LDAP-filter syntax. Selector is determined using service-registration properties
 	 * and depends on whether the reference is canonical (CMPN Whiteboard) or <em>legacy</em> Pax Web <em>mapping</em>.
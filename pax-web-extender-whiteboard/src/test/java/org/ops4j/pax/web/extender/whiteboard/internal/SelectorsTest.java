@@ -21,7 +21,10 @@ import org.junit.Test;
 import org.osgi.framework.Filter;
 import org.osgi.framework.FrameworkUtil;
 
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.MatcherAssert.assertThat;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
 public class SelectorsTest {
@@ -44,4 +47,23 @@ public class SelectorsTest {
 		assertFalse(filter.matchCase(map));
 	}
 
+	@Test
+	public void contextNameSelectors() throws Exception {
+		assertThat(WhiteboardExtenderContext.selectedContextName(
+				FrameworkUtil.createFilter("(osgi.http.whiteboard.context.name=default)")), equalTo("default"));
+		assertThat(WhiteboardExtenderContext.selectedContextName(
+				FrameworkUtil.createFilter("(OSGi.http.whiteboard.context.name=c1)")), equalTo("c1"));
+		assertNull(WhiteboardExtenderContext.selectedContextName(
+				FrameworkUtil.createFilter("(osgi.http.whiteboard.context.name=*)")));
+		assertNull(WhiteboardExtenderContext.selectedContextName(
+				FrameworkUtil.createFilter("(osgi.http.whiteboard.context.name=c*)")));
+		assertNull(WhiteboardExtenderContext.selectedContextName(
+				FrameworkUtil.createFilter("(osgi.http.whiteboard.context.name>=c1)")));
+		assertNull(WhiteboardExtenderContext.selectedContextName(
+				FrameworkUtil.createFilter("(|(osgi.http.whiteboard.context.name=c1)(osgi.http.whiteboard.context.name=c2))")));
+		assertNull(WhiteboardExtenderContext.selectedContextName(
+				FrameworkUtil.createFilter("(osgi.http.whiteboard.context.httpservice=*)")));
+		assertNull(WhiteboardExtenderContext.selectedContextName(null));
+	}
+
 }
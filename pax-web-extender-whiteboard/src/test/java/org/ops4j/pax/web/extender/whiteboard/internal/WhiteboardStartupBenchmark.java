@@ -0,0 +1,276 @@
+/*
+ * Copyright 2023 OPS4J.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.web.extender.whiteboard.internal;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import javax.servlet.http.HttpServlet;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.ops4j.pax.web.service.WebContainer;
+import org.ops4j.pax.web.service.spi.model.OsgiContextModel;
+import org.ops4j.pax.web.service.spi.model.elements.ServletModel;
+import org.ops4j.pax.web.service.spi.whiteboard.WhiteboardWebContainerView;
+import org.osgi.framework.Bundle;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.Constants;
+import org.osgi.framework.Filter;
+import org.osgi.framework.FrameworkUtil;
+import org.osgi.framework.ServiceReference;
+import org.osgi.service.http.whiteboard.HttpWhiteboardConstants;
+
+/**
+ * <p>Measures the startup of Whiteboard applications - N servlets (each targeting one of many Whiteboard contexts)
+ * are registered concurrently from M bundles through {@link WhiteboardExtenderContext}, the same way the trackers
+ * do it: contexts are resolved for the element's selector and then the element is added to the bundle's
+ * {@link BundleWhiteboardApplication}.</p>
+ *
+ * <p>The {@link WebContainer} and its {@link WhiteboardWebContainerView} are no-op proxies, so only the costs of
+ * pax-web-extender-whiteboard itself (including contention between the bundles) are measured - the final
+ * registration in the Pax Web configuration thread is asynchronous anyway.</p>
+ *
+ * <p>This is not a test - run it with
+ * {@code mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=org.ops4j.pax.web.extender.whiteboard.internal.WhiteboardStartupBenchmark}
+ * or directly from the IDE.</p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 2)
+@Fork(1)
+public class WhiteboardStartupBenchmark {
+
+	// no-op OSGi environment. Mockito mocks are not used, because they synchronize on each invocation
+
+	private static final WhiteboardWebContainerView VIEW = proxy(WhiteboardWebContainerView.class, (p, m, a) -> {
+		if (m.getReturnType() == List.class) {
+			return Collections.emptyList();
+		}
+		return defaultValue(m.getReturnType());
+	});
+
+	private static final WebContainer CONTAINER = proxy(WebContainer.class, (p, m, a) -> {
+		if ("adapt".equals(m.getName())) {
+			return VIEW;
+		}
+		return defaultValue(m.getReturnType());
+	});
+
+	@SuppressWarnings("unchecked")
+	private static final ServiceReference<WebContainer> REFERENCE = proxy(ServiceReference.class, (p, m, a) -> {
+		switch (m.getName()) {
+			case "getProperty":
+				return Constants.SERVICE_ID.equals(a[0]) ? 1L : null;
+			case "compareTo":
+				return 0;
+			case "hashCode":
+				return System.identityHashCode(p);
+			case "equals":
+				return p == a[0];
+			default:
+				return defaultValue(m.getReturnType());
+		}
+	});
+
+	@Param({ "1", "8", "32" })
+	public int bundles;
+
+	@Param({ "2000" })
+	public int services;
+
+	@Param({ "50" })
+	public int contexts;
+
+	private ExecutorService executor;
+
+	private BundleContext whiteboardContext;
+
+	private final List<Bundle> bundleList = new ArrayList<>();
+
+	private Filter[] selectors;
+
+	private WhiteboardExtenderContext context;
+
+	@Setup(Level.Trial)
+	public void setup() throws Exception {
+		Bundle whiteboardBundle = bundle(0L);
+		whiteboardContext = whiteboardBundle.getBundleContext();
+		for (int b = 0; b < bundles; b++) {
+			bundleList.add(bundle(b + 1));
+		}
+		selectors = new Filter[contexts];
+		for (int c = 0; c < contexts; c++) {
+			selectors[c] = FrameworkUtil.createFilter(String.format("(%s=c%d)",
+					HttpWhiteboardConstants.HTTP_WHITEBOARD_CONTEXT_NAME, c));
+		}
+		executor = Executors.newFixedThreadPool(bundles);
+	}
+
+	@Setup(Level.Invocation)
+	public void createContext() {
+		context = new WhiteboardExtenderContext(whiteboardContext, true);
+		Bundle contextBundle = bundle(1000L);
+		for (int c = 0; c < contexts; c++) {
+			OsgiContextModel model = new OsgiContextModel(contextBundle, 0, 100L + c, true);
+			model.setName("c" + c);
+			model.setContextPath("/c" + c);
+			model.getContextRegistrationProperties().put(HttpWhiteboardConstants.HTTP_WHITEBOARD_CONTEXT_NAME, "c" + c);
+			model.getContextRegistrationProperties().put(HttpWhiteboardConstants.HTTP_WHITEBOARD_CONTEXT_PATH, "/c" + c);
+			context.addWebContext(contextBundle, model);
+		}
+	}
+
+	@TearDown(Level.Invocation)
+	public void shutdownContext() {
+		context.shutdown();
+	}
+
+	@TearDown(Level.Trial)
+	public void cleanup() {
+		executor.shutdownNow();
+	}
+
+	@Benchmark
+	public void registerServices() throws Exception {
+		CountDownLatch start = new CountDownLatch(1);
+		List<Future<?>> futures = new ArrayList<>(bundles);
+		for (int b = 0; b < bundles; b++) {
+			Bundle bundle = bundleList.get(b);
+			int from = b * services / bundles;
+			int to = (b + 1) * services / bundles;
+			futures.add(executor.submit(() -> {
+				start.await();
+				for (int s = from; s < to; s++) {
+					register(bundle, s);
+				}
+				return null;
+			}));
+		}
+		start.countDown();
+		for (Future<?> f : futures) {
+			f.get();
+		}
+	}
+
+	private void register(Bundle bundle, int s) {
+		Filter selector = selectors[s % contexts];
+		ServletModel model = new ServletModel.Builder()
+				.withServletName("s" + s)
+				.withUrlPatterns(new String[] { "/s" + s })
+				.withServletClass(HttpServlet.class)
+				.withRegisteringBundle(bundle)
+				.withServiceRankAndId(0, 10000L + s)
+				.build();
+		model.setContextSelectFilter(selector);
+		for (OsgiContextModel ocm : context.resolveContexts(bundle, selector)) {
+			model.addContextModel(ocm);
+		}
+		context.addWebElement(bundle, model);
+	}
+
+	private static Bundle bundle(long id) {
+		Bundle[] bundle = new Bundle[1];
+		BundleContext bundleContext = proxy(BundleContext.class, (p, m, a) -> {
+			switch (m.getName()) {
+				case "getBundle":
+					return bundle[0];
+				case "createFilter":
+					return FrameworkUtil.createFilter((String) a[0]);
+				case "getServiceReferences":
+					return WebContainer.class.getName().equals(a[0]) ? new ServiceReference<?>[] { REFERENCE } : null;
+				case "getService":
+					return CONTAINER;
+				case "hashCode":
+					return System.identityHashCode(p);
+				case "equals":
+					return p == a[0];
+				default:
+					return defaultValue(m.getReturnType());
+			}
+		});
+		bundle[0] = proxy(Bundle.class, (p, m, a) -> {
+			switch (m.getName()) {
+				case "getBundleId":
+					return id;
+				case "getState":
+					return Bundle.ACTIVE;
+				case "getSymbolicName":
+					return "b" + id;
+				case "getBundleContext":
+					return bundleContext;
+				case "hashCode":
+					return System.identityHashCode(p);
+				case "equals":
+					return p == a[0];
+				case "toString":
+					return "bundle-" + id;
+				default:
+					return defaultValue(m.getReturnType());
+			}
+		});
+		return bundle[0];
+	}
+
+	@SuppressWarnings("unchecked")
+	private static <T> T proxy(Class<T> type, InvocationHandler handler) {
+		return (T) Proxy.newProxyInstance(WhiteboardStartupBenchmark.class.getClassLoader(), new Class<?>[] { type }, handler);
+	}
+
+	private static Object defaultValue(Class<?> type) {
+		if (type == boolean.class) {
+			return false;
+		}
+		if (type == int.class) {
+			return 0;
+		}
+		if (type == long.class) {
+			return 0L;
+		}
+		return null;
+	}
+
+	public static void main(String[] args) throws Exception {
+		Options options = new OptionsBuilder()
+				.include(WhiteboardStartupBenchmark.class.getSimpleName())
+				.build();
+		new Runner(options).run();
+	}
+
+}
@@ -0,0 +1,63 @@
+/*
+ * Copyright 2023 OPS4J.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.web.extender.whiteboard.internal.tracker;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Test;
+import org.osgi.framework.Constants;
+import org.osgi.service.http.whiteboard.HttpWhiteboardConstants;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class ModifiedPropertiesTest {
+
+	@Test
+	public void onlyModelPropertiesAreReported() {
+		Map<String, Object> previous = new HashMap<>();
+		previous.put(Constants.SERVICE_ID, 42L);
+		previous.put(HttpWhiteboardConstants.HTTP_WHITEBOARD_SERVLET_PATTERN, new String[] { "/s" });
+		previous.put("component.name", "c1");
+		previous.put("my-prefix.p1", "v1");
+
+		Map<String, Object> current = new HashMap<>(previous);
+		current.put(HttpWhiteboardConstants.HTTP_WHITEBOARD_SERVLET_PATTERN, new String[] { "/s" });
+		current.put("component.name", "c2");
+		current.put("custom", "value");
+		assertThat(AbstractElementTracker.changedModelProperties(previous, current), equalTo(Collections.emptySet()));
+
+		current.put(Constants.SERVICE_RANKING, 10);
+		assertThat(AbstractElementTracker.changedModelProperties(previous, current),
+				equalTo(Collections.singleton(Constants.SERVICE_RANKING)));
+
+		current.remove(Constants.SERVICE_RANKING);
+		current.put("init.p1", "v1");
+		assertThat(AbstractElementTracker.changedModelProperties(previous, current),
+				equalTo(Collections.singleton("init.p1")));
+
+		// custom init-prefix
+		current.remove("init.p1");
+		previous.put("init-prefix", "my-prefix.");
+		current.put("init-prefix", "my-prefix.");
+		current.put("my-prefix.p1", "v2");
+		assertThat(AbstractElementTracker.changedModelProperties(previous, current),
+				equalTo(Collections.singleton("my-prefix.p1")));
+	}
+
+}
@@ -726,7 +726,7 @@ public class MultiContainerTestSupport {
 		when(ref.getProperties()).thenReturn(newProperties);
 	}
 
-	protected void mockProperty(ServiceReference<?> ref, String name, String value) {
+	protected void mockProperty(ServiceReference<?> ref, String name, Object value) {
 		Hashtable<String, Object> newProperties = new Hashtable<>();
 		Dictionary<String, Object> current = ref.getProperties();
 		if (current != null) {
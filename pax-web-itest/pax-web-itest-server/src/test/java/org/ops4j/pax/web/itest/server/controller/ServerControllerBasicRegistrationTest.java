@@ -31,11 +31,19 @@ import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.TreeMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import javax.servlet.Filter;
 import javax.servlet.FilterChain;
 import javax.servlet.Servlet;
 import javax.servlet.ServletConfig;
 import javax.servlet.ServletContext;
+import javax.servlet.ServletContextListener;
 import javax.servlet.ServletException;
 import javax.servlet.ServletRequestAttributeEvent;
 import javax.servlet.ServletRequestAttributeListener;
@@ -76,6 +84,7 @@ import static org.hamcrest.CoreMatchers.endsWith;
 import static org.hamcrest.CoreMatchers.equalTo;
 import static org.hamcrest.CoreMatchers.startsWith;
 import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
@@ -374,6 +383,168 @@ public class ServerControllerBasicRegistrationTest extends MultiContainerTestSup
 		controller.stop();
 	}
 
+	@Test
+	public void restartContextHoldingRequests() throws Exception {
+		ServerController controller = Utils.createServerController(properties -> {
+			properties.put(PaxWebConfig.PID_CFG_SERVER_REDEPLOY_DRAIN_TIMEOUT, "5000");
+		}, port, runtime, getClass().getClassLoader());
+		controller.configure();
+		controller.start();
+
+		Bundle bundle = mockBundle("b1", false);
+
+		final CountDownLatch slowRequest = new CountDownLatch(1);
+		final AtomicLong finished = new AtomicLong();
+		final AtomicLong destroyed = new AtomicLong();
+
+		Servlet servlet = new HttpServlet() {
+			@Override
+			protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+				if ("slow".equals(req.getQueryString())) {
+					slowRequest.countDown();
+					try {
+						Thread.sleep(500);
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+					}
+					finished.set(System.nanoTime());
+				}
+				resp.getWriter().print("OK");
+			}
+
+			@Override
+			public void destroy() {
+				destroyed.compareAndSet(0L, System.nanoTime());
+			}
+		};
+
+		Batch batch = new Batch("Register Servlet");
+
+		ServletContextModel scm = new ServletContextModel("/c");
+		batch.addServletContextModel(scm);
+
+		OsgiContextModel osgiContext = new OsgiContextModel(new DefaultHttpContext(bundle), bundle, "/c", false);
+		batch.addOsgiContextModel(osgiContext, scm);
+
+		batch.addServletModel(new ServletModel.Builder()
+				.withServletName("my-servlet")
+				.withUrlPatterns(new String[] { "/s/*" })
+				.withServlet(servlet)
+				.withOsgiContextModel(osgiContext)
+				.withRegisteringBundle(bundle)
+				.build());
+
+		controller.sendBatch(batch);
+
+		assertThat(httpGET(port, "/c/s/1"), endsWith("OK"));
+
+		ExecutorService pool = Executors.newFixedThreadPool(2);
+		try {
+			Future<String> slow = pool.submit(() -> httpGET(port, "/c/s/1?slow"));
+			assertTrue(slowRequest.await(5, TimeUnit.SECONDS));
+
+			// registration of ServletContextListener stops the context and its start is scheduled in next batch
+			Batch restart = new Batch("Register ServletContextListener");
+			EventListenerModel listenerModel = new EventListenerModel(new ServletContextListener() { });
+			listenerModel.addContextModel(osgiContext);
+			restart.addEventListenerModel(listenerModel);
+			controller.sendBatch(restart);
+
+			// the servlet was destroyed only after the in-flight request has finished
+			assertTrue(destroyed.get() != 0L && finished.get() != 0L && finished.get() - destroyed.get() <= 0L);
+
+			// request to stopped context is held until it's started again
+			Future<String> held = pool.submit(() -> httpGET(port, "/c/s/1"));
+			Thread.sleep(200);
+			assertFalse(held.isDone());
+
+			Batch start = new Batch("Start context");
+			restart.getOperations().forEach(c -> {
+				if (c.getBatchCompletedAction() != null) {
+					start.getOperations().add(c.getBatchCompletedAction());
+				}
+			});
+			controller.sendBatch(start);
+
+			assertThat(held.get(10, TimeUnit.SECONDS), endsWith("OK"));
+			assertThat(slow.get(10, TimeUnit.SECONDS), endsWith("OK"));
+		} finally {
+			pool.shutdownNow();
+		}
+
+		controller.stop();
+	}
+
+	@Test
+	public void lazyContextStart() throws Exception {
+		ServerController controller = Utils.createServerController(properties -> {
+			properties.put(PaxWebConfig.PID_CFG_SERVER_LAZY_CONTEXT_START, "true");
+			properties.put(PaxWebConfig.PID_CFG_SERVER_LAZY_CONTEXT_IDLE_TIMEOUT, "300");
+		}, port, runtime, getClass().getClassLoader());
+		controller.configure();
+		controller.start();
+
+		Bundle bundle = mockBundle("b1", false);
+
+		final AtomicInteger initialized = new AtomicInteger();
+		final AtomicInteger destroyed = new AtomicInteger();
+
+		Servlet servlet = new HttpServlet() {
+			@Override
+			public void init(ServletConfig config) throws ServletException {
+				super.init(config);
+				initialized.incrementAndGet();
+			}
+
+			@Override
+			protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+				resp.getWriter().print("OK");
+			}
+
+			@Override
+			public void destroy() {
+				destroyed.incrementAndGet();
+			}
+		};
+
+		Batch batch = new Batch("Register Servlet");
+
+		ServletContextModel scm = new ServletContextModel("/c");
+		batch.addServletContextModel(scm);
+
+		OsgiContextModel osgiContext = new OsgiContextModel(new DefaultHttpContext(bundle), bundle, "/c", false);
+		batch.addOsgiContextModel(osgiContext, scm);
+
+		batch.addServletModel(new ServletModel.Builder()
+				.withServletName("my-servlet")
+				.withUrlPatterns(new String[] { "/s/*" })
+				.withServlet(servlet)
+				.withLoadOnStartup(1)
+				.withOsgiContextModel(osgiContext)
+				.withRegisteringBundle(bundle)
+				.build());
+
+		controller.sendBatch(batch);
+
+		// the context is started only by first request
+		assertThat(initialized.get(), equalTo(0));
+		assertThat(httpGET(port, "/c/s/1"), endsWith("OK"));
+		assertThat(initialized.get(), equalTo(1));
+
+		// and stopped when it's idle
+		long deadline = System.currentTimeMillis() + 5000L;
+		while (destroyed.get() == 0 && System.currentTimeMillis() < deadline) {
+			Thread.sleep(50);
+		}
+		assertThat(destroyed.get(), equalTo(1));
+
+		// next request starts it again
+		assertThat(httpGET(port, "/c/s/1"), endsWith("OK"));
+		assertThat(initialized.get(), equalTo(2));
+
+		controller.stop();
+	}
+
 	@Test
 	public void registerSingleServletWithEventHandlerUsingWebContainer() throws Exception {
 		ServerController controller = Utils.createServerController(null, port, runtime, getClass().getClassLoader());
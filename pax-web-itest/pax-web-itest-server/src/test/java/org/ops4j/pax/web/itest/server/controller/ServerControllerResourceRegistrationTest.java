@@ -15,11 +15,17 @@
  */
 package org.ops4j.pax.web.itest.server.controller;
 
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.io.InputStream;
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.net.URLConnection;
+import java.net.URLStreamHandler;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
 import java.util.Map;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
@@ -31,14 +37,18 @@ import org.junit.runner.RunWith;
 import org.junit.runners.Parameterized;
 import org.ops4j.pax.web.itest.server.MultiContainerTestSupport;
 import org.ops4j.pax.web.itest.server.support.Utils;
+import org.ops4j.pax.web.service.PaxWebConfig;
 import org.ops4j.pax.web.service.WebContainer;
 import org.ops4j.pax.web.service.internal.HttpServiceEnabled;
 import org.ops4j.pax.web.service.internal.StoppableHttpService;
 import org.ops4j.pax.web.service.spi.ServerController;
 import org.ops4j.pax.web.service.spi.model.ServerModel;
+import org.ops4j.pax.web.service.spi.util.ContentCache;
 import org.osgi.framework.Bundle;
 import org.osgi.service.http.HttpContext;
 
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.MatcherAssert.assertThat;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.Mockito.when;
@@ -382,4 +392,201 @@ public class ServerControllerResourceRegistrationTest extends MultiContainerTest
 		assertTrue(serviceModelInternals.isEmpty());
 	}
 
+	@Test
+	public void registerResourcesWithSharedContentCache() throws Exception {
+		ServerController controller = Utils.createServerController(properties -> {
+			properties.put(PaxWebConfig.PID_CFG_DEFAULT_SERVLET_SHARED_CACHE_SIZE, "1024");
+		}, port, runtime, getClass().getClassLoader());
+		controller.configure();
+		controller.start();
+
+		Bundle bundle = mockBundle("App Bundle", false);
+
+		ServerModel server = new ServerModel(new Utils.SameThreadExecutor());
+
+		WebContainer wc = new HttpServiceEnabled(bundle, controller, server, null, controller.getConfiguration());
+
+		// bundle resource served by two resource servlets
+		byte[] content = "console.log('hello')".getBytes(StandardCharsets.UTF_8);
+		URL appJs = new URL(null, "bundle://42.0:1/www/app.js", new URLStreamHandler() {
+			@Override
+			protected URLConnection openConnection(URL u) {
+				return new URLConnection(u) {
+					@Override
+					public void connect() {
+					}
+
+					@Override
+					public long getContentLengthLong() {
+						return content.length;
+					}
+
+					@Override
+					public long getLastModified() {
+						return 1000000L;
+					}
+
+					@Override
+					public InputStream getInputStream() {
+						return new ByteArrayInputStream(content);
+					}
+				};
+			}
+		});
+
+		HttpContext context = new HttpContext() {
+			@Override
+			public URL getResource(String name) {
+				return name.endsWith("www/app.js") ? appJs : null;
+			}
+
+			@Override
+			public boolean handleSecurity(HttpServletRequest request, HttpServletResponse response) {
+				return true;
+			}
+
+			@Override
+			public String getMimeType(String name) {
+				return null;
+			}
+		};
+
+		wc.registerResources("/r1", "www", context);
+		wc.registerResources("/r2", "www", context);
+
+		ContentCache cache = ContentCache.getShared();
+		long hits = cache.getHits();
+
+		String response = httpGET(port, "/r1/app.js");
+		assertTrue(response.endsWith("console.log('hello')"));
+		Map<String, String> headers = extractHeaders(response);
+		assertTrue(response.contains("ETag: W/"));
+		response = httpGET(port, "/r2/app.js");
+		assertTrue(response.endsWith("console.log('hello')"));
+		response = httpGET(port, "/r1/app.js");
+		assertTrue(response.endsWith("console.log('hello')"));
+
+		response = httpGET(port, "/r2/app.js", "If-None-Match: " + headers.get("ETag"));
+		assertTrue(response.contains("HTTP/1.1 304"));
+
+		// single copy of the content
+		assertTrue(cache.contains(appJs));
+		assertThat(cache.size(), equalTo(1));
+		assertTrue(cache.getHits() - hits >= 2L);
+
+		((StoppableHttpService) wc).stop();
+		controller.stop();
+
+		ServerModelInternals serverModelInternals = serverModelInternals(server);
+		ServiceModelInternals serviceModelInternals = serviceModelInternals(wc);
+
+		assertTrue(serverModelInternals.isClean(bundle));
+		assertTrue(serviceModelInternals.isEmpty());
+	}
+
+	@Test
+	public void registerResourcesWithCompressedVariants() throws Exception {
+		ServerController controller = Utils.createServerController(properties -> {
+			properties.put(PaxWebConfig.PID_CFG_DEFAULT_SERVLET_PRECOMPRESSED, "true");
+			properties.put(PaxWebConfig.PID_CFG_DEFAULT_SERVLET_COMPRESS, "true");
+		}, port, runtime, getClass().getClassLoader());
+		controller.configure();
+		controller.start();
+
+		Bundle bundle = mockBundle("App Bundle", false);
+
+		ServerModel server = new ServerModel(new Utils.SameThreadExecutor());
+
+		WebContainer wc = new HttpServiceEnabled(bundle, controller, server, null, controller.getConfiguration());
+
+		StringBuilder js = new StringBuilder();
+		for (int i = 0; i < 200; i++) {
+			js.append("console.log('hello ").append(i % 10).append("');\n");
+		}
+		Map<String, URL> resources = new HashMap<>();
+		resources.put("www/app.js", bundleURL("/www/app.js", js.toString().getBytes(StandardCharsets.UTF_8)));
+		resources.put("www/app.css", bundleURL("/www/app.css", "body { color: red; }".getBytes(StandardCharsets.UTF_8)));
+		resources.put("www/app.css.br", bundleURL("/www/app.css.br", new byte[] { 0x0b, 0x09, (byte) 0x80 }));
+
+		HttpContext context = new HttpContext() {
+			@Override
+			public URL getResource(String name) {
+				return resources.get(name.startsWith("/") ? name.substring(1) : name);
+			}
+
+			@Override
+			public boolean handleSecurity(HttpServletRequest request, HttpServletResponse response) {
+				return true;
+			}
+
+			@Override
+			public String getMimeType(String name) {
+				return name.endsWith(".js") ? "application/javascript" : name.endsWith(".css") ? "text/css" : null;
+			}
+		};
+
+		wc.registerResources("/r", "www", context);
+
+		// compressed on the fly
+		String response = httpGET(port, "/r/app.js", "Accept-Encoding: br;q=0.8, gzip");
+		assertTrue(response.startsWith("HTTP/1.1 200"));
+		assertTrue(response.toLowerCase().contains("content-encoding: gzip"));
+		assertTrue(response.toLowerCase().contains("vary: accept-encoding"));
+		Map<String, String> headers = extractHeaders(response);
+		String eTag = headers.get("ETag");
+		assertTrue(eTag.endsWith("-gzip\""));
+		response = httpGET(port, "/r/app.js", "Accept-Encoding: gzip", "If-None-Match: " + eTag);
+		assertTrue(response.startsWith("HTTP/1.1 304"));
+
+		// identity
+		response = httpGET(port, "/r/app.js");
+		assertTrue(response.startsWith("HTTP/1.1 200"));
+		assertFalse(response.toLowerCase().contains("content-encoding"));
+		assertTrue(response.endsWith(js.toString()));
+
+		// precompressed sibling (the original is too small to be compressed)
+		response = httpGET(port, "/r/app.css", "Accept-Encoding: gzip, br");
+		assertTrue(response.toLowerCase().contains("content-encoding: br"));
+		response = httpGET(port, "/r/app.css", "Accept-Encoding: gzip");
+		assertFalse(response.toLowerCase().contains("content-encoding"));
+		assertTrue(response.endsWith("body { color: red; }"));
+
+		((StoppableHttpService) wc).stop();
+		controller.stop();
+
+		ServerModelInternals serverModelInternals = serverModelInternals(server);
+		ServiceModelInternals serviceModelInternals = serviceModelInternals(wc);
+
+		assertTrue(serverModelInternals.isClean(bundle));
+		assertTrue(serviceModelInternals.isEmpty());
+	}
+
+	private static URL bundleURL(String path, byte[] content) throws MalformedURLException {
+		return new URL(null, "bundle://42.0:1" + path, new URLStreamHandler() {
+			@Override
+			protected URLConnection openConnection(URL u) {
+				return new URLConnection(u) {
+					@Override
+					public void connect() {
+					}
+
+					@Override
+					public long getContentLengthLong() {
+						return content.length;
+					}
+
+					@Override
+					public long getLastModified() {
+						return 1000000L;
+					}
+
+					@Override
+					public InputStream getInputStream() {
+						return new ByteArrayInputStream(content);
+					}
+				};
+			}
+		});
+	}
+
 }
@@ -0,0 +1,138 @@
+/*
+ * Copyright 2023 OPS4J.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.web.itest.server.httpservice;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.servlet.Filter;
+import javax.servlet.FilterChain;
+import javax.servlet.ServletContextEvent;
+import javax.servlet.ServletContextListener;
+import javax.servlet.ServletException;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.ops4j.pax.web.itest.server.MultiContainerTestSupport;
+import org.ops4j.pax.web.service.WebContainer;
+import org.osgi.framework.Bundle;
+import org.osgi.service.http.NamespaceException;
+
+import static org.hamcrest.CoreMatchers.endsWith;
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.startsWith;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.ops4j.pax.web.itest.server.support.Utils.httpGET;
+
+@RunWith(Parameterized.class)
+public class WebContainerBulkRegistrationTest extends MultiContainerTestSupport {
+
+	@Test
+	public void elementsRegisteredWithSingleContextStart() throws Exception {
+		Bundle sample1 = mockBundle("sample1");
+		WebContainer wc = container(sample1);
+
+		final AtomicInteger initialized = new AtomicInteger();
+
+		wc.bulkRegistration(null)
+				.servlet(new TextServlet("S"), "s1", new String[] { "/s1" }, null)
+				.filter(new TextFilter("F:"), "f1", new String[] { "/*" }, null, null)
+				.eventListener(new ServletContextListener() {
+					@Override
+					public void contextInitialized(ServletContextEvent sce) {
+						initialized.incrementAndGet();
+					}
+				})
+				.welcomeFiles(new String[] { "s1" }, false)
+				.commit();
+
+		assertThat(httpGET(port, "/s1"), endsWith("F:S"));
+		// without bulk registration, the listener would restart the context started by the servlet
+		assertThat(initialized.get(), equalTo(1));
+
+		stopContainer(sample1);
+
+		ServerModelInternals serverModelInternals = serverModelInternals(serverModel);
+		ServiceModelInternals serviceModelInternals = serviceModelInternals(wc);
+
+		assertTrue(serverModelInternals.isClean(sample1));
+		assertTrue(serviceModelInternals.isEmpty());
+	}
+
+	@Test
+	public void failedBulkRegistrationRegistersNothing() throws Exception {
+		Bundle sample1 = mockBundle("sample1");
+		WebContainer wc = container(sample1);
+
+		try {
+			wc.bulkRegistration(null)
+					.servlet(new TextServlet("S"), "s1", new String[] { "/s1" }, null)
+					.filter(new TextFilter("F:"), "f1", new String[] { "/*" }, null, null)
+					.servlet("/a", new TextServlet("A1"), null)
+					.servlet("/a", new TextServlet("A2"), null)
+					.commit();
+			fail("Should have failed with NamespaceException");
+		} catch (NamespaceException expected) {
+		}
+
+		assertThat(httpGET(port, "/s1"), startsWith("HTTP/1.1 404"));
+		assertThat(httpGET(port, "/a"), startsWith("HTTP/1.1 404"));
+
+		ServiceModelInternals serviceModelInternals = serviceModelInternals(wc);
+		assertTrue(serviceModelInternals.isEmpty());
+
+		stopContainer(sample1);
+
+		ServerModelInternals serverModelInternals = serverModelInternals(serverModel);
+		assertTrue(serverModelInternals.isClean(sample1));
+	}
+
+	private static class TextServlet extends HttpServlet {
+		private final String text;
+
+		TextServlet(String text) {
+			this.text = text;
+		}
+
+		@Override
+		protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+			resp.getWriter().print(text);
+		}
+	}
+
+	private static class TextFilter implements Filter {
+		private final String text;
+
+		TextFilter(String text) {
+			this.text = text;
+		}
+
+		@Override
+		public void doFilter(ServletRequest request, ServletResponse response, FilterChain chain)
+				throws IOException, ServletException {
+			response.getWriter().print(text);
+			chain.doFilter(request, response);
+		}
+	}
+
+}
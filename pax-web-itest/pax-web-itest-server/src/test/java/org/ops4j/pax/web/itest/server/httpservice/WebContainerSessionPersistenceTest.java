@@ -16,11 +16,7 @@
 package org.ops4j.pax.web.itest.server.httpservice;
 
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
-import java.io.ObjectInputStream;
-import java.util.LinkedHashMap;
-import java.util.Map;
 import javax.servlet.ServletException;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
@@ -108,19 +104,16 @@ public class WebContainerSessionPersistenceTest extends MultiContainerTestSuppor
 		if (runtime == Runtime.UNDERTOW) {
 			controller.stop();
 			controller = null;
-			ObjectInputStream ois = new ObjectInputStream(new FileInputStream("target/sessions/ROOT"));
-			Object sessions = ois.readObject();
-			assertNotNull(sessions);
-			assertTrue(sessions instanceof LinkedHashMap);
-			assertThat(((Map<?, ?>) sessions).size(), equalTo(3));
-			ois.close();
+			// one file per session in a directory of the deployment
+			String[] names = new File("target/sessions/ROOT").list((dir, name) -> name.endsWith(".session"));
+			assertNotNull(names);
+			assertThat(names.length, equalTo(3));
 		} else if (runtime == Runtime.TOMCAT) {
 			controller.stop();
-			ObjectInputStream ois = new ObjectInputStream(new FileInputStream("target/sessions/SESSIONS.ser"));
-			Object count = ois.readObject();
-			assertNotNull(count);
-			assertThat((Integer) count, equalTo(3));
-			ois.close();
+			// one file per session in a directory of the context
+			String[] names = new File("target/sessions/ROOT").list((dir, name) -> name.endsWith(".session"));
+			assertNotNull(names);
+			assertThat(names.length, equalTo(3));
 		} else if (runtime == Runtime.JETTY) {
 			String[] names = new File("target/sessions").list();
 			assertNotNull(names);
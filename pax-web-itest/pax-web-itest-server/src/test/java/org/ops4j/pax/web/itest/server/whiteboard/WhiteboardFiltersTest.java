@@ -34,10 +34,12 @@ import org.junit.runners.Parameterized;
 import org.ops4j.pax.web.extender.whiteboard.runtime.DefaultFilterMapping;
 import org.ops4j.pax.web.itest.server.MultiContainerTestSupport;
 import org.ops4j.pax.web.itest.server.support.Utils;
+import org.ops4j.pax.web.service.spi.model.OsgiContextModel;
 import org.ops4j.pax.web.service.spi.model.elements.FilterModel;
 import org.ops4j.pax.web.service.spi.model.elements.ServletModel;
 import org.ops4j.pax.web.service.whiteboard.FilterMapping;
 import org.osgi.framework.Bundle;
+import org.osgi.framework.Constants;
 import org.osgi.framework.ServiceReference;
 import org.osgi.service.http.context.ServletContextHelper;
 import org.osgi.service.http.whiteboard.HttpWhiteboardConstants;
@@ -45,6 +47,7 @@ import org.osgi.service.http.whiteboard.Preprocessor;
 
 import static org.hamcrest.CoreMatchers.endsWith;
 import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.sameInstance;
 import static org.hamcrest.CoreMatchers.startsWith;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.junit.Assert.assertTrue;
@@ -90,6 +93,48 @@ public class WhiteboardFiltersTest extends MultiContainerTestSupport {
 		assertTrue(serviceModelInternals.isEmpty());
 	}
 
+	@Test
+	public void filterRankingChangedWithoutReRegistration() throws Exception {
+		Bundle sample1 = mockBundle("sample1");
+
+		ServiceReference<Filter> filter1Ref = mockFilterReference(sample1, "filter1",
+				() -> new Utils.MyIdFilter("1"), 1L, 0, "/s");
+		ServiceReference<Filter> filter2Ref = mockFilterReference(sample1, "filter2",
+				() -> new Utils.MyIdFilter("2"), 2L, 0, "/s");
+		FilterModel model1 = getFilterCustomizer().addingService(filter1Ref);
+		FilterModel model2 = getFilterCustomizer().addingService(filter2Ref);
+
+		// same ranking - lower service id first
+		assertThat(httpGET(port, "/s?terminate=2"), endsWith(">F(1)>F(2)<F(2)<F(1)"));
+
+		List<OsgiContextModel> contexts = model2.getContextModels();
+		mockProperty(filter2Ref, Constants.SERVICE_RANKING, 10);
+		getFilterCustomizer().modifiedService(filter2Ref, model2);
+
+		// the model wasn't unregistered (which resets its contexts), only its ranking has changed
+		assertThat(model2.getServiceRank(), equalTo(10));
+		assertThat(model2.getContextModels(), sameInstance(contexts));
+		assertThat(httpGET(port, "/s?terminate=1"), endsWith(">F(2)>F(1)<F(1)<F(2)"));
+
+		mockProperty(filter2Ref, Constants.SERVICE_RANKING, -10);
+		getFilterCustomizer().modifiedService(filter2Ref, model2);
+
+		assertThat(model2.getServiceRank(), equalTo(-10));
+		assertThat(model2.getContextModels(), sameInstance(contexts));
+		assertThat(httpGET(port, "/s?terminate=2"), endsWith(">F(1)>F(2)<F(2)<F(1)"));
+
+		getFilterCustomizer().removedService(filter1Ref, model1);
+		getFilterCustomizer().removedService(filter2Ref, model2);
+		assertThat(httpGET(port, "/s?terminate=1"), startsWith("HTTP/1.1 404"));
+
+		ServerModelInternals serverModelInternals = serverModelInternals(serverModel);
+		ServiceModelInternals serviceModelInternals = serviceModelInternals(sample1);
+
+		assertTrue(serverModelInternals.isClean(whiteboardBundle));
+		assertTrue(serverModelInternals.isClean(sample1));
+		assertTrue(serviceModelInternals.isEmpty());
+	}
+
 	@Test
 	@SuppressWarnings("unchecked")
 	public void oneServletWithTwoContextsAndAPreprocessor() throws Exception {
@@ -21,6 +21,7 @@ import java.net.URL;
 import java.util.Collections;
 import java.util.LinkedHashSet;
 import java.util.Set;
+import java.util.concurrent.Executor;
 import javax.servlet.Servlet;
 
 import org.eclipse.jetty.server.Handler;
@@ -30,9 +31,12 @@ import org.ops4j.pax.web.service.jetty.internal.web.JettyResourceServlet;
 import org.ops4j.pax.web.service.spi.ServerController;
 import org.ops4j.pax.web.service.spi.ServerState;
 import org.ops4j.pax.web.service.spi.config.Configuration;
+import org.ops4j.pax.web.service.spi.config.ReconfigurationScope;
 import org.ops4j.pax.web.service.spi.model.events.ServerEvent;
 import org.ops4j.pax.web.service.spi.model.events.ServerListener;
+import org.ops4j.pax.web.service.spi.servlet.LazyStartGates;
 import org.ops4j.pax.web.service.spi.task.Batch;
+import org.ops4j.pax.web.service.spi.util.ContentCache;
 import org.osgi.framework.Bundle;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -50,7 +54,7 @@ class JettyServerController implements ServerController {
 	private final Bundle paxWebJettyBundle;
 	private final ClassLoader classLoader;
 
-	private final Configuration configuration;
+	private Configuration configuration;
 	private ServerState state;
 
 	private final Set<ServerListener> listeners;
@@ -131,6 +135,32 @@ class JettyServerController implements ServerController {
 		return configuration;
 	}
 
+	@Override
+	public boolean reconfigure(Configuration configuration, Set<String> changedProperties) {
+		if (state != ServerState.STARTED) {
+			return false;
+		}
+		ReconfigurationScope scope = ReconfigurationScope.of(changedProperties);
+		LOG.info("Reconfiguring {} (scope: {}, changed properties: {})", this, scope, changedProperties);
+
+		try {
+			if (!jettyServerWrapper.reconfigure(configuration, scope, changedProperties)) {
+				return false;
+			}
+		} catch (Exception e) {
+			// the server may be in inconsistent state, so it's better to recreate it
+			LOG.warn("Problem reconfiguring {}: {}", this, e.getMessage(), e);
+			return false;
+		}
+		this.configuration = configuration;
+
+		if (scope == ReconfigurationScope.CONNECTORS) {
+			// listeners should know the new addresses
+			notifyListeners(new ServerEvent(ServerEvent.State.STARTED, jettyServerWrapper.getAddresses(true)));
+		}
+		return true;
+	}
+
 	// --- listener related methods
 
 	@Override
@@ -165,7 +195,20 @@ class JettyServerController implements ServerController {
 			throw new IllegalStateException("Can't process batch in Jetty server controller in state " + state);
 		}
 
-		batch.accept(jettyServerWrapper);
+		// lazily started contexts are not started or stopped while processing the batch
+		LazyStartGates lazyStartGates = jettyServerWrapper.getLazyStartGates();
+		lazyStartGates.lock();
+		try {
+			batch.accept(jettyServerWrapper);
+			jettyServerWrapper.releaseRedeployGates(batch);
+		} finally {
+			lazyStartGates.unlock();
+		}
+	}
+
+	@Override
+	public void setConfigurationExecutor(Executor executor) {
+		jettyServerWrapper.getLazyStartGates().setConfigurationExecutor(executor);
 	}
 
 	@Override
@@ -178,7 +221,11 @@ class JettyServerController implements ServerController {
 		}
 		String chroot = baseUrlResource == null ? base : null;
 
-		return new JettyResourceServlet(baseUrlResource, chroot);
+		JettyResourceServlet servlet = new JettyResourceServlet(baseUrlResource, chroot);
+		// null if not enabled
+		servlet.setContentCache(ContentCache.configureShared(configuration.resources()));
+		servlet.setResourceConfiguration(configuration.resources());
+		return servlet;
 	}
 
 	@Override
@@ -60,6 +60,7 @@ import org.eclipse.jetty.security.authentication.ClientCertAuthenticator;
 import org.eclipse.jetty.security.authentication.ConfigurableSpnegoAuthenticator;
 import org.eclipse.jetty.security.authentication.DigestAuthenticator;
 import org.eclipse.jetty.security.authentication.FormAuthenticator;
+import org.eclipse.jetty.server.AbstractConnector;
 import org.eclipse.jetty.server.ConnectionFactory;
 import org.eclipse.jetty.server.Connector;
 import org.eclipse.jetty.server.CustomRequestLog;
@@ -90,9 +91,12 @@ import org.eclipse.jetty.util.security.Constraint;
 import org.eclipse.jetty.util.thread.QueuedThreadPool;
 import org.eclipse.jetty.xml.XmlConfiguration;
 import org.ops4j.pax.web.service.AuthenticatorService;
+import org.ops4j.pax.web.service.PaxWebConfig;
 import org.ops4j.pax.web.service.jetty.internal.web.JettyResourceServlet;
 import org.ops4j.pax.web.service.spi.config.Configuration;
 import org.ops4j.pax.web.service.spi.config.LogConfiguration;
+import org.ops4j.pax.web.service.spi.config.ReconfigurationScope;
+import org.ops4j.pax.web.service.spi.config.ServerConfiguration;
 import org.ops4j.pax.web.service.spi.config.SessionConfiguration;
 import org.ops4j.pax.web.service.spi.model.ContextMetadataModel;
 import org.ops4j.pax.web.service.spi.model.OsgiContextModel;
@@ -112,15 +116,20 @@ import org.ops4j.pax.web.service.spi.model.elements.WelcomeFileModel;
 import org.ops4j.pax.web.service.spi.model.events.ServerEvent;
 import org.ops4j.pax.web.service.spi.servlet.Default404Servlet;
 import org.ops4j.pax.web.service.spi.servlet.DynamicRegistrations;
+import org.ops4j.pax.web.service.spi.servlet.LazyStartGates;
+import org.ops4j.pax.web.service.spi.servlet.OsgiDispatchPlan;
 import org.ops4j.pax.web.service.spi.servlet.OsgiDynamicServletContext;
 import org.ops4j.pax.web.service.spi.servlet.OsgiInitializedServlet;
 import org.ops4j.pax.web.service.spi.servlet.OsgiServletContext;
 import org.ops4j.pax.web.service.spi.servlet.OsgiServletContextClassLoader;
 import org.ops4j.pax.web.service.spi.servlet.OsgiSessionAttributeListener;
 import org.ops4j.pax.web.service.spi.servlet.PreprocessorFilterConfig;
+import org.ops4j.pax.web.service.spi.servlet.RedeployGate;
 import org.ops4j.pax.web.service.spi.servlet.RegisteringContainerInitializer;
 import org.ops4j.pax.web.service.spi.servlet.SCIWrapper;
+import org.ops4j.pax.web.service.spi.task.Batch;
 import org.ops4j.pax.web.service.spi.task.BatchVisitor;
+import org.ops4j.pax.web.service.spi.task.Change;
 import org.ops4j.pax.web.service.spi.task.ClearDynamicRegistrationsChange;
 import org.ops4j.pax.web.service.spi.task.ContainerInitializerModelChange;
 import org.ops4j.pax.web.service.spi.task.ContextMetadataModelChange;
@@ -141,6 +150,7 @@ import org.ops4j.pax.web.service.spi.task.ServletModelChange;
 import org.ops4j.pax.web.service.spi.task.TransactionStateChange;
 import org.ops4j.pax.web.service.spi.task.WebSocketModelChange;
 import org.ops4j.pax.web.service.spi.task.WelcomeFileModelChange;
+import org.ops4j.pax.web.service.spi.util.ResourceMetadataCache;
 import org.ops4j.pax.web.service.spi.util.Utils;
 import org.osgi.framework.Bundle;
 import org.osgi.framework.FrameworkUtil;
@@ -228,9 +238,9 @@ class JettyServerWrapper implements BatchVisitor {
 
 	/**
 	 * Global {@link Configuration} passed from pax-web-runtime through
-	 * {@link org.ops4j.pax.web.service.spi.ServerController}
+	 * {@link org.ops4j.pax.web.service.spi.ServerController}. It may be replaced by {@link #reconfigure}.
 	 */
-	private final Configuration configuration;
+	private Configuration configuration;
 
 	/** Servlet to use when no servlet is mapped - to ensure that preprocessors and filters are run correctly. */
 	private final Default404Servlet default404Servlet = new Default404Servlet();
@@ -247,6 +257,9 @@ class JettyServerWrapper implements BatchVisitor {
 
 	private final Map<String, TreeMap<OsgiContextModel, SecurityConfigurationModel>> contextSecurityConstraints = new HashMap<>();
 
+	/** Gates of the contexts started when they receive first request */
+	private final LazyStartGates lazyStartGates;
+
 	JettyServerWrapper(Configuration config, JettyFactory jettyFactory,
 			Bundle paxWebJettyBundle, ClassLoader classLoader) {
 		this.configuration = config;
@@ -255,6 +268,10 @@ class JettyServerWrapper implements BatchVisitor {
 		this.classLoader = classLoader;
 
 		this.mainHandler = new PrioritizedHandlerCollection();
+
+		this.lazyStartGates = new LazyStartGates(config.server().isLazyContextStart(),
+				config.server().getLazyContextIdleTimeout(), config.server().getLazyContextStartTimeout());
+		this.mainHandler.setLazyStartGates(lazyStartGates);
 	}
 
 	// --- lifecycle and configuration methods
@@ -616,6 +633,95 @@ class JettyServerWrapper implements BatchVisitor {
 		LOG.info("NCSARequestlogging is using directory {}", lc.getLogNCSADirectory());
 	}
 
+	/**
+	 * <p>Applies changed {@link Configuration} to running server. Thread pool, idle timeouts, request log and TTL
+	 * of resource metadata caches are changed in place. For {@link ReconfigurationScope#CONNECTORS} scope, the connectors are stopped and created
+	 * again, but only if they were created from PID configuration - connectors from external {@code jetty*.xml}
+	 * files can't be recreated here.</p>
+	 *
+	 * @param newConfiguration
+	 * @param scope
+	 * @param changedProperties
+	 * @return {@code false} if the change can't be applied to running server
+	 */
+	public boolean reconfigure(Configuration newConfiguration, ReconfigurationScope scope,
+			Set<String> changedProperties) throws Exception {
+		if (scope == ReconfigurationScope.FULL) {
+			return false;
+		}
+		boolean external = configuration.server().getConfigurationFiles().length > 0
+				|| getClass().getResource("/jetty.xml") != null;
+		if (scope == ReconfigurationScope.CONNECTORS && external) {
+			return false;
+		}
+
+		this.configuration = newConfiguration;
+		ServerConfiguration sc = newConfiguration.server();
+
+		// the same defaults as in JettyFactory.createThreadPool()
+		int maxThreads = sc.getServerMaxThreads() == null ? 200 : sc.getServerMaxThreads();
+		int minThreads = sc.getServerMinThreads() == null ? Math.min(8, maxThreads) : sc.getServerMinThreads();
+		int idleTimeout = sc.getServerIdleTimeout() == null ? 60000 : sc.getServerIdleTimeout();
+		if (qtp.getMaxThreads() != maxThreads || qtp.getMinThreads() != minThreads) {
+			LOG.info("Changing Jetty thread pool size to {}-{}", minThreads, maxThreads);
+			// QueuedThreadPool doesn't allow min > max even temporarily
+			if (minThreads > qtp.getMaxThreads()) {
+				qtp.setMaxThreads(maxThreads);
+				qtp.setMinThreads(minThreads);
+			} else {
+				qtp.setMinThreads(minThreads);
+				qtp.setMaxThreads(maxThreads);
+			}
+		}
+		qtp.setIdleTimeout(idleTimeout);
+
+		if (sc.getConnectorIdleTimeout() != null) {
+			for (Connector connector : server.getConnectors()) {
+				if (connector instanceof AbstractConnector) {
+					((AbstractConnector) connector).setIdleTimeout(sc.getConnectorIdleTimeout());
+				}
+			}
+		}
+
+		if (changedProperties.contains(PaxWebConfig.PID_CFG_DEFAULT_SERVLET_CACHE_TTL)) {
+			long ttl = ResourceMetadataCache.ttl(newConfiguration.resources());
+			LOG.info("Changing TTL of resource metadata caches to {}ms", ttl);
+			// for resource servlets initialized later
+			contextHandlers.values().forEach(sch ->
+					sch.setInitParameter(DefaultServlet.CONTEXT_INIT + "maxCacheTTL", Long.toString(ttl)));
+			ResourceMetadataCache.ttlChanged(ttl);
+		}
+
+		if (changedProperties.stream().anyMatch(p -> p.startsWith("org.ops4j.pax.web.log.ncsa."))) {
+			if (newConfiguration.logging().isLogNCSAFormatEnabled()) {
+				// replaces (and stops) previous request log
+				configureRequestLog();
+			} else if (server.getRequestLog() != null) {
+				LOG.info("Disabling NCSA request logging");
+				server.setRequestLog(null);
+			}
+		}
+
+		if (scope == ReconfigurationScope.CONNECTORS) {
+			for (Connector connector : server.getConnectors()) {
+				if (connector.getConnectionFactory(HttpConnectionFactory.class) != null) {
+					LOG.info("Stopping {}", connector);
+					connector.stop();
+					server.removeConnector(connector);
+				}
+			}
+			verifyConnectorConfiguration();
+			configureServerCustomizers();
+			for (Connector connector : server.getConnectors()) {
+				if (!connector.isStarted()) {
+					connector.start();
+				}
+			}
+		}
+
+		return true;
+	}
+
 	/**
 	 * Simply start Jetty server
 	 * @throws Exception
@@ -662,9 +768,14 @@ class JettyServerWrapper implements BatchVisitor {
 		osgiContextModels.clear();
 		contextHandlers.forEach((path, sch) -> {
 			mainHandler.removeHandler(sch);
+			mainHandler.setRedeployGate(path, null);
+			if (sch.getRedeployGate() != null) {
+				sch.getRedeployGate().open();
+			}
 		});
 		contextHandlers.clear();
 		mainHandler.mapContexts();
+		lazyStartGates.shutdown();
 
 		// I found this necessary, when pax-web-jetty is restarted/refreshed without affecting
 		// pax-web-extender-whiteboard
@@ -794,6 +905,18 @@ class JettyServerWrapper implements BatchVisitor {
 					maxEntrySize != null ? Integer.toString(maxEntrySize * 1024) : Integer.toString(128 * 1024 * 1024 / 64));
 			sch.setInitParameter(DefaultServlet.CONTEXT_INIT + "maxCachedFiles",
 					maxEntries != null ? Integer.toString(maxEntries) : "2048");
+			// Pax Web specific - TTL of resource metadata cache used by resource servlets
+			Integer ttl = configuration.resources().maxCacheTTL();
+			sch.setInitParameter(DefaultServlet.CONTEXT_INIT + "maxCacheTTL",
+					ttl != null ? Integer.toString(ttl) : "5000");
+
+			// optional gate to hold the requests when the context is restarted
+			int drainTimeout = configuration.server().getRedeployDrainTimeout();
+			if (drainTimeout > 0) {
+				RedeployGate gate = new RedeployGate(contextPath, drainTimeout);
+				sch.setRedeployGate(gate);
+				mainHandler.setRedeployGate(contextPath, gate);
+			}
 
 			mainHandler.addHandler(sch);
 			mainHandler.mapContexts();
@@ -858,6 +981,7 @@ class JettyServerWrapper implements BatchVisitor {
 			dynamicRegistrations.remove(contextPath);
 			initializers.remove(contextPath);
 			osgiContextModels.remove(contextPath);
+			lazyStartGates.remove(contextPath);
 			PaxWebServletContextHandler sch = contextHandlers.remove(contextPath);
 
 			// Note: for WAB deployments, this is the last operation of the undeployment batch and all web element
@@ -876,6 +1000,10 @@ class JettyServerWrapper implements BatchVisitor {
 				}
 				mainHandler.removeHandler(sch);
 				mainHandler.mapContexts();
+				mainHandler.setRedeployGate(contextPath, null);
+				if (sch.getRedeployGate() != null) {
+					sch.getRedeployGate().open();
+				}
 			}
 		}
 	}
@@ -1404,38 +1532,16 @@ class JettyServerWrapper implements BatchVisitor {
 
 			OsgiContextModel defaultHighestRankedModel = osgiContextModels.get(contextPath).iterator().next();
 
-			// potentially, all existing preprocessors will be removed
-			Set<PreprocessorFilterConfig> toDestroy = new HashSet<>(((PaxWebServletHandler) sch.getServletHandler()).getPreprocessors());
+			// compile new dispatch plan - preprocessors are removed from the set of filters and existing
+			// preprocessors are reused
+			PaxWebServletHandler servletHandler = (PaxWebServletHandler) sch.getServletHandler();
+			OsgiDispatchPlan plan = servletHandler.getDispatchPlan()
+					.compile(filters, osgiServletContexts.get(defaultHighestRankedModel));
 			// some new preprocessors may be added - we have to init() them ourselves, because they're not held
 			// in PaxWebFilterHolders
-			List<PreprocessorFilterConfig> toInit = new LinkedList<>();
-
-			// clear to keep the order of all available preprocessors
-			((PaxWebServletHandler) sch.getServletHandler()).getPreprocessors().clear();
-
-			for (Iterator<FilterModel> iterator = filters.iterator(); iterator.hasNext(); ) {
-				FilterModel model = iterator.next();
-				if (model.isPreprocessor()) {
-					PreprocessorFilterConfig filterConfig = new PreprocessorFilterConfig(model, osgiServletContexts.get(defaultHighestRankedModel));
-					if (toDestroy.stream().noneMatch(pfc -> pfc.getModel().equals(model))) {
-						// new preprocessor - we have to init() it
-						toInit.add(filterConfig);
-					} else {
-						// it was already there - we don't have to destroy() it
-						toDestroy.removeIf(pfc -> {
-							boolean match = pfc.getModel().equals(model);
-							if (match) {
-								// there's existing PreprocessorFilterConfig, so copy the instance and
-								// potentially the ServiceObjects
-								filterConfig.copyFrom(pfc);
-							}
-							return match;
-						});
-					}
-					((PaxWebServletHandler) sch.getServletHandler()).getPreprocessors().add(filterConfig);
-					iterator.remove();
-				}
-			}
+			List<PreprocessorFilterConfig> toInit = plan.getPreprocessorsToInit();
+			// some preprocessors may be removed
+			List<PreprocessorFilterConfig> toDestroy = plan.getPreprocessorsToDestroy();
 
 			if (sch.isStarted()) {
 				for (PreprocessorFilterConfig fc : toInit) {
@@ -1446,6 +1552,13 @@ class JettyServerWrapper implements BatchVisitor {
 						LOG.warn("Problem during preprocessor initialization: {}", ex.getMessage(), ex);
 					}
 				}
+			}
+
+			// single publication of new plan - after new preprocessors are initialized and before the old ones
+			// are destroyed
+			servletHandler.setDispatchPlan(plan);
+
+			if (sch.isStarted()) {
 				for (PreprocessorFilterConfig fc : toDestroy) {
 					fc.destroy();
 					fc.setInitCalled(false);
@@ -2181,6 +2294,11 @@ class JettyServerWrapper implements BatchVisitor {
 		if (sch.isStarted() || pendingTransaction(contextPath)) {
 			return;
 		}
+		if (lazyStartGates.defer(contextPath, lazyStartGates.isLazy(osgiContextModels.get(contextPath)),
+				() -> ensureServletContextStarted(sch), () -> stopIdleContext(sch))) {
+			LOG.info("Jetty context \"{}\" will be started when it receives first request", contextPath);
+			return;
+		}
 		try {
 			OsgiContextModel highestRanked = ((PaxWebServletHandler) sch.getServletHandler()).getDefaultOsgiContextModel();
 			OsgiServletContext highestRankedContext = ((PaxWebServletHandler) sch.getServletHandler()).getDefaultServletContext();
@@ -2439,7 +2557,15 @@ class JettyServerWrapper implements BatchVisitor {
 			} finally {
 				Thread.currentThread().setContextClassLoader(tccl);
 			}
-			sch.start();
+			try {
+				sch.start();
+			} finally {
+				// release the requests held during restart (or let them fail if the context can't be started).
+				// It can't be done in doStart(), because Jetty ignores requests to a context until it's STARTED
+				if (sch.getRedeployGate() != null) {
+					sch.getRedeployGate().open();
+				}
+			}
 
 			dynamicContext.rememberAttributesFromSCIs();
 
@@ -2451,6 +2577,24 @@ class JettyServerWrapper implements BatchVisitor {
 		}
 	}
 
+	/**
+	 * Stops lazily started context, which is started again with next request.
+	 * @param sch
+	 */
+	private void stopIdleContext(PaxWebServletContextHandler sch) {
+		if (sch.isStarted()) {
+			try {
+				sch.stop();
+			} catch (Exception e) {
+				LOG.warn("Error stopping Jetty context \"{}\": {}", sch.getContextPath(), e.getMessage(), e);
+			}
+			// the context is not restarted within a batch, so requests shouldn't be held
+			if (sch.getRedeployGate() != null) {
+				sch.getRedeployGate().open();
+			}
+		}
+	}
+
 	private Authenticator getAuthenticator(String authMethod) {
 		ServiceLoader<AuthenticatorService> sl = ServiceLoader.load(AuthenticatorService.class, getClass().getClassLoader());
 		for (AuthenticatorService svc : sl) {
@@ -2534,6 +2678,27 @@ class JettyServerWrapper implements BatchVisitor {
 		return transactions.contains(contextPath);
 	}
 
+	/**
+	 * Called after processing a {@link Batch} to open the gates of the contexts that were stopped, but not
+	 * started again, so held requests are processed as for any stopped context. Contexts to be started in next
+	 * batch or within pending transaction are not released.
+	 * @param batch
+	 */
+	public void releaseRedeployGates(Batch batch) {
+		Set<String> restarting = new HashSet<>(transactions);
+		for (Change change : batch.getOperations()) {
+			if (change.getBatchCompletedAction() instanceof ContextStartChange) {
+				restarting.add(((ContextStartChange) change.getBatchCompletedAction()).getContextPath());
+			}
+		}
+		contextHandlers.forEach((contextPath, sch) -> {
+			RedeployGate gate = sch.getRedeployGate();
+			if (gate != null && gate.isClosed() && !sch.isStarted() && !restarting.contains(contextPath)) {
+				gate.open();
+			}
+		});
+	}
+
 	private void configureErrorPages(String location, ErrorPageErrorHandler eph, ErrorPageModel epm) {
 		for (String ex : epm.getExceptionClassNames()) {
 			eph.addErrorPage(ex, location);
@@ -2677,6 +2842,10 @@ class JettyServerWrapper implements BatchVisitor {
 	// --- handler/connector/customizer configuration
 	//     only customizers are added/removed to/from "live" server
 
+	public LazyStartGates getLazyStartGates() {
+		return lazyStartGates;
+	}
+
 	public void setHandlers(Set<PriorityValue<Handler>> handlers) {
 		mainHandler.setPriorityHandlers(handlers);
 	}
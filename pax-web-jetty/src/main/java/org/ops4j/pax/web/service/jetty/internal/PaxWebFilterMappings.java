@@ -0,0 +1,140 @@
+/*
+ * Copyright 2023 OPS4J.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.web.service.jetty.internal;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import javax.servlet.DispatcherType;
+
+import org.eclipse.jetty.http.pathmap.ServletPathSpec;
+import org.eclipse.jetty.servlet.FilterHolder;
+import org.eclipse.jetty.servlet.FilterMapping;
+
+/**
+ * <p>Immutable snapshot of filter mappings of {@link PaxWebServletHandler}. Jetty's
+ * {@link org.eclipse.jetty.servlet.ServletHandler#updateMappings()} assigns new (empty) lists and fills them
+ * afterwards, so request threads calculating filter chains could see partial state or get
+ * {@link java.util.ConcurrentModificationException}. This snapshot is created on configuration thread and
+ * published with single volatile write.</p>
+ *
+ * <p>The mappings are kept in the same order as in {@link org.eclipse.jetty.servlet.ServletHandler}, so the chains
+ * are built exactly the same way.</p>
+ */
+final class PaxWebFilterMappings {
+
+	static final PaxWebFilterMappings EMPTY = new PaxWebFilterMappings(new FilterMapping[0], name -> null);
+
+	private static final Entry[] NO_ENTRIES = new Entry[0];
+
+	/** Mappings with servlet name {@code "*"}, in declaration order */
+	private final Entry[] wildNameMappings;
+
+	/** Mappings by servlet name, in reverse declaration order */
+	private final Map<String, Entry[]> nameMappings;
+
+	/** Mappings with path specs, in reverse declaration order */
+	private final Entry[] pathMappings;
+
+	PaxWebFilterMappings(FilterMapping[] mappings, Function<String, FilterHolder> holders) {
+		List<Entry> paths = new ArrayList<>();
+		Map<String, List<Entry>> names = new LinkedHashMap<>();
+		for (FilterMapping mapping : mappings) {
+			FilterHolder holder = holders.apply(mapping.getFilterName());
+			if (holder == null) {
+				continue;
+			}
+			Entry entry = new Entry(mapping, (PaxWebFilterHolder) holder);
+			if (mapping.getPathSpecs() != null) {
+				paths.add(entry);
+			}
+			if (mapping.getServletNames() != null) {
+				for (String name : mapping.getServletNames()) {
+					if (name != null) {
+						names.computeIfAbsent(name, n -> new ArrayList<>()).add(entry);
+					}
+				}
+			}
+		}
+
+		Collections.reverse(paths);
+		this.pathMappings = paths.toArray(new Entry[0]);
+
+		List<Entry> wild = names.remove("*");
+		this.wildNameMappings = wild == null ? new Entry[0] : wild.toArray(new Entry[0]);
+
+		Map<String, Entry[]> byName = new HashMap<>();
+		names.forEach((name, list) -> {
+			Collections.reverse(list);
+			byName.put(name, list.toArray(new Entry[0]));
+		});
+		this.nameMappings = byName;
+	}
+
+	Entry[] getWildNameMappings() {
+		return wildNameMappings;
+	}
+
+	Entry[] getNameMappings(String servletName) {
+		Entry[] entries = nameMappings.get(servletName);
+		return entries == null ? NO_ENTRIES : entries;
+	}
+
+	Entry[] getPathMappings() {
+		return pathMappings;
+	}
+
+	/**
+	 * Single {@link FilterMapping} with resolved {@link PaxWebFilterHolder}.
+	 */
+	static final class Entry {
+
+		private final FilterMapping mapping;
+		private final PaxWebFilterHolder holder;
+		private final String[] pathSpecs;
+
+		Entry(FilterMapping mapping, PaxWebFilterHolder holder) {
+			this.mapping = mapping;
+			this.holder = holder;
+			this.pathSpecs = mapping.getPathSpecs();
+		}
+
+		PaxWebFilterHolder getHolder() {
+			return holder;
+		}
+
+		boolean appliesTo(DispatcherType type) {
+			return mapping.appliesTo(type);
+		}
+
+		boolean appliesTo(String pathInContext, DispatcherType type) {
+			if (!mapping.appliesTo(type)) {
+				return false;
+			}
+			for (String spec : pathSpecs) {
+				if (spec != null && ServletPathSpec.match(spec, pathInContext, true)) {
+					return true;
+				}
+			}
+			return false;
+		}
+	}
+
+}
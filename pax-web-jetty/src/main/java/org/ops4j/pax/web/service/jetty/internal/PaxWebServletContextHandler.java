@@ -42,13 +42,16 @@ import org.eclipse.jetty.server.session.SessionHandler;
 import org.eclipse.jetty.servlet.ServletContextHandler;
 import org.eclipse.jetty.util.resource.Resource;
 import org.eclipse.jetty.util.thread.ScheduledExecutorScheduler;
+import org.ops4j.pax.web.service.jetty.internal.web.BundleURLResource;
 import org.ops4j.pax.web.service.jetty.internal.web.RootBundleURLResource;
 import org.ops4j.pax.web.service.spi.config.Configuration;
 import org.ops4j.pax.web.service.spi.model.ServletContextModel;
 import org.ops4j.pax.web.service.spi.model.elements.EventListenerKey;
 import org.ops4j.pax.web.service.spi.model.elements.EventListenerModel;
+import org.ops4j.pax.web.service.spi.servlet.RedeployGate;
 import org.ops4j.pax.web.service.spi.servlet.SCIWrapper;
 import org.ops4j.pax.web.service.spi.util.Path;
+import org.ops4j.pax.web.service.spi.util.ResourceMetadataCache.ResourceMetadata;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -92,6 +95,12 @@ public class PaxWebServletContextHandler extends ServletContextHandler {
 	 */
 	private final Set<String> attributesToClearBeforeRestart = new HashSet<>();
 
+	/**
+	 * Optional gate closed when this context is stopped and opened by {@link JettyServerWrapper} when it's
+	 * started again. Requests are held by {@link PrioritizedHandlerCollection} while the gate is closed.
+	 */
+	private RedeployGate redeployGate;
+
 	/**
 	 * Create a slightly extended version of Jetty's {@link ServletContextHandler}. It is still not as complex as
 	 * {@code org.eclipse.jetty.webapp.WebAppContext} which does all the sort of XML/annotation configuration, but
@@ -154,6 +163,24 @@ public class PaxWebServletContextHandler extends ServletContextHandler {
 		return Resource.newResource(url);
 	}
 
+	/**
+	 * Translates {@link ResourceMetadata} (possibly cached) into Jetty's {@link Resource}. The checks done in
+	 * {@link #toJettyResource(URL)} are already done when the metadata was determined.
+	 * @param metadata
+	 * @return
+	 */
+	public static Resource toJettyResource(ResourceMetadata metadata) {
+		if (metadata == null) {
+			return null;
+		}
+		if (metadata.isBundleRoot()) {
+			return new RootBundleURLResource(Resource.newResource(metadata.getUrl()));
+		}
+		if (metadata.isBundleResource() && !metadata.isDirectory()) {
+			return new BundleURLResource(metadata);
+		}
+		return Resource.newResource(metadata.getUrl());
+	}
 
 	public void setServletContainerInitializers(Collection<SCIWrapper> wrappers) {
 		this.servletContainerInitializers.clear();
@@ -169,6 +196,14 @@ public class PaxWebServletContextHandler extends ServletContextHandler {
 		this.osgiServletContext = osgiServletContext;
 	}
 
+	public RedeployGate getRedeployGate() {
+		return redeployGate;
+	}
+
+	public void setRedeployGate(RedeployGate redeployGate) {
+		this.redeployGate = redeployGate;
+	}
+
 	@Override
 	public void callContextInitialized(ServletContextListener l, ServletContextEvent e) {
 		super.callContextInitialized(l, new ServletContextEvent(osgiServletContext));
@@ -312,6 +347,11 @@ public class PaxWebServletContextHandler extends ServletContextHandler {
 
 	@Override
 	protected void doStop() throws Exception {
+		// hold new requests and wait for the in-flight ones
+		if (redeployGate != null) {
+			redeployGate.close();
+		}
+
 		// setEventListeners() method is called during doStop(), existing, durable listeners are added again, but
 		// then durable listeners are cleared, so the "preserved" listener will be lost next time
 		// TODO: file a Github issue for eclipse/jetty-project
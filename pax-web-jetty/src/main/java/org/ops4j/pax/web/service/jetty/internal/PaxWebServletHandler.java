@@ -21,10 +21,8 @@ import java.security.Principal;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.EnumSet;
-import java.util.LinkedList;
 import java.util.List;
-import java.util.function.Consumer;
-import java.util.stream.Collectors;
+import java.util.concurrent.ConcurrentMap;
 import javax.security.auth.Subject;
 import javax.servlet.DispatcherType;
 import javax.servlet.FilterChain;
@@ -54,7 +52,8 @@ import org.eclipse.jetty.util.MultiException;
 import org.ops4j.pax.web.service.WebContainerContext;
 import org.ops4j.pax.web.service.spi.model.OsgiContextModel;
 import org.ops4j.pax.web.service.spi.model.elements.ServletModel;
-import org.ops4j.pax.web.service.spi.servlet.OsgiFilterChain;
+import org.ops4j.pax.web.service.spi.servlet.OsgiDispatchPlan;
+import org.ops4j.pax.web.service.spi.servlet.OsgiFilterChainTemplate;
 import org.ops4j.pax.web.service.spi.servlet.OsgiServletContext;
 import org.ops4j.pax.web.service.spi.servlet.OsgiSessionAttributeListener;
 import org.ops4j.pax.web.service.spi.servlet.PreprocessorFilterConfig;
@@ -78,17 +77,24 @@ public class PaxWebServletHandler extends ServletHandler {
 
 	/**
 	 * {@link Preprocessor} instances are always registered to all contexts and are always mapped to all servlet
-	 * chains, so handling them is easy. We keep only the configs, because we have to manage the lifecycle
-	 * of OSGi services for {@link Preprocessor} instances.
+	 * chains, so handling them is easy. They're part of immutable {@link OsgiDispatchPlan}, which is compiled
+	 * when filter state changes. Also we have to manage the lifecycle of OSGi services for {@link Preprocessor}
+	 * instances.
 	 */
-	private final List<PreprocessorFilterConfig> preprocessors = new LinkedList<>();
+	private volatile OsgiDispatchPlan dispatchPlan;
+
+	/**
+	 * Immutable snapshot of filter mappings, published by {@link #updateMappings()}. Request threads never read
+	 * the lists that Jetty refills in place.
+	 */
+	private volatile PaxWebFilterMappings filterMappings = PaxWebFilterMappings.EMPTY;
 
 	/** Default {@link ServletContext} to use for chains without target servlet (e.g., filters only) */
-	private OsgiServletContext defaultServletContext;
+	private volatile OsgiServletContext defaultServletContext;
 	/** Default {@link OsgiContextModel} to use for chains without target servlet (e.g., filters only) */
-	private OsgiContextModel defaultOsgiContextModel;
+	private volatile OsgiContextModel defaultOsgiContextModel;
 	/** Default {@link WebContainerContext} for chains without target {@link Servlet} */
-	private WebContainerContext defaultWebContainerContext;
+	private volatile WebContainerContext defaultWebContainerContext;
 
 	private final OsgiSessionAttributeListener osgiSessionsBridge;
 
@@ -98,8 +104,6 @@ public class PaxWebServletHandler extends ServletHandler {
 	 */
 	private final Servlet default404Servlet;
 
-	private final ThreadLocal<PaxWebServletHolder> currentServletHolder = new ThreadLocal<>();
-
 	/**
 	 * Create new {@link ServletHandler} for given {@link org.eclipse.jetty.servlet.ServletContextHandler}
 	 * @param default404Servlet this servlet will be used when there's no mapped servlet
@@ -114,20 +118,23 @@ public class PaxWebServletHandler extends ServletHandler {
 		//    say anything about it)
 		setEnsureDefaultServlet(true);
 
-		// that's important, we will use the cache but on OSGi-specific terms (different key)
-		setFilterChainsCached(true);
-		// a bit more than default, because we're also caching by context-specific cache key
-		int cacheSize = getMaxFilterChainsCacheSize();
-		setMaxFilterChainsCacheSize(2 * cacheSize);
+		// that's important, we will use the cache but on OSGi-specific terms (per PaxWebServletHolder, which
+		// is associated with single OSGi context), so Jetty's own cache (keyed by path only) is disabled
+		setFilterChainsCached(false);
 
 		setFilters(new PaxWebFilterHolder[0]);
 
 		this.default404Servlet = default404Servlet;
 		this.osgiSessionsBridge = osgiSessionsBridge;
+
+		// listener called when org.osgi.service.http.HttpContext.handleSecurity() returns true. It doesn't
+		// capture any per-request state, so it can be shared by all the chains
+		this.dispatchPlan = OsgiDispatchPlan.empty(osgiSessionsBridge, PaxWebServletHandler::translateAuthentication);
 	}
 
 	public void setDefaultServletContext(OsgiServletContext defaultServletContext) {
 		this.defaultServletContext = defaultServletContext;
+		refreshDispatchPlan();
 	}
 
 	public OsgiServletContext getDefaultServletContext() {
@@ -137,6 +144,7 @@ public class PaxWebServletHandler extends ServletHandler {
 	public void setDefaultOsgiContextModel(OsgiContextModel defaultOsgiContextModel, WebContainerContext resolvedWebContainerContext) {
 		this.defaultOsgiContextModel = defaultOsgiContextModel;
 		this.defaultWebContainerContext = resolvedWebContainerContext;
+		refreshDispatchPlan();
 	}
 
 	public OsgiContextModel getDefaultOsgiContextModel() {
@@ -157,9 +165,10 @@ public class PaxWebServletHandler extends ServletHandler {
 	@Override
 	public void initialize() throws Exception {
 		// initialize preprocessors
-		for (PreprocessorFilterConfig fc : preprocessors) {
+		for (PreprocessorFilterConfig fc : dispatchPlan.getPreprocessors()) {
 			fc.getInstance().init(fc);
 		}
+		refreshDispatchPlan();
 
 		try {
 			super.initialize();
@@ -200,9 +209,10 @@ public class PaxWebServletHandler extends ServletHandler {
 		setFilterMappings(newFilterMappings.toArray(new PaxWebFilterMapping[0]));
 
 		// destroy the preprocessors
-		for (PreprocessorFilterConfig fc : preprocessors) {
+		for (PreprocessorFilterConfig fc : dispatchPlan.getPreprocessors()) {
 			fc.destroy();
 		}
+		refreshDispatchPlan();
 
 		// Jetty 10+ keeps only "durable" servlets/filters/listeners. We're handling it a bit differently,
 		// so we have to preservet them (because there's no reflection-free access to
@@ -388,6 +398,8 @@ public class PaxWebServletHandler extends ServletHandler {
 		// otherwise we'd have to construct the chain on every call.
 		// also, we have to handle case where filters are called in a chain that doesn't have a target servlet at all
 
+		// this chain is never null - if there are no filters, it's a chain that simply calls the holder
+		// (even if the holder is for known 404 servlet)
 		FilterChain chain = getFilterChain(baseRequest, pathInContext, servletHolder);
 
 		// 140.5.1 Servlet Pre-Processors
@@ -402,41 +414,28 @@ public class PaxWebServletHandler extends ServletHandler {
 		// 1. all org.osgi.service.http.whiteboard.Preprocessors
 		// 2. handleSecurity() (on HttpContext or ServletContextHelper)
 		// 3. original chain
-		if (chain == null) {
-			// 3a. even if there's only a ServletHolder there == null chain
-			// 3b. if the holder is for known 404 servlet, we still need a chain that calls 404 servlet
-			chain = (request, response) -> holder.handle(baseRequest, request, response);
-		}
-
-		// listener called when org.osgi.service.http.HttpContext.handleSecurity() returns true
-		Consumer<HttpServletRequest> authListener = (req) -> {
-			final Object user = req.getAttribute(ServletContextHelper.REMOTE_USER);
-			final Object authType = req.getAttribute(ServletContextHelper.AUTHENTICATION_TYPE);
-
-			if (user != null || authType != null) {
-				// translate it into Jetty specific authentication
-				if (baseRequest.getAuthentication() == null || baseRequest.getAuthentication() == Authentication.UNAUTHENTICATED) {
-					String userName = user != null ? user.toString() : null;
-					String authMethod = authType != null ? authType.toString() : null;
-					Principal p = new UserPrincipal(userName, null);
-					Subject s = new Subject(true, Collections.singleton(p), Collections.emptySet(), Collections.emptySet());
-					baseRequest.setAuthentication(new UserAuthentication(authMethod, new DefaultUserIdentity(s, p, new String[0])));
-				}
+		// everything except the chain itself is precompiled and only recreated when preprocessors, filters
+		// or servlets change
+
+		OsgiDispatchPlan plan = dispatchPlan;
+		OsgiFilterChainTemplate template = holder.getOsgiFilterChainTemplate();
+		if (template == null || template.getPlan() != plan) {
+			if (!holder.is404()) {
+				template = plan.newTemplate(holder.getOsgiServletContext(), holder.getWebContainerContext());
+			} else {
+				template = plan.newTemplate(defaultServletContext, defaultWebContainerContext);
 			}
-		};
-
-		List<Preprocessor> preprocessorInstances = preprocessors.stream().map(PreprocessorFilterConfig::getInstance).collect(Collectors.toList());
-		if (!holder.is404()) {
-			return new OsgiFilterChain(new ArrayList<>(preprocessorInstances), holder.getOsgiServletContext(),
-					holder.getWebContainerContext(), chain, osgiSessionsBridge, authListener);
-		} else {
-			return new OsgiFilterChain(new ArrayList<>(preprocessorInstances), defaultServletContext,
-					defaultWebContainerContext, chain, osgiSessionsBridge, authListener);
+			holder.setOsgiFilterChainTemplate(template);
 		}
+
+		return template.newChain(chain);
 	}
 
 	/**
-	 * Overriden, because we want our own cache management, where key includes proper OSGi context
+	 * Overriden, because we want our own cache management, where key includes proper OSGi context. Because
+	 * each {@link PaxWebServletHolder} is associated with single OSGi context, the cache is kept in the holder
+	 * itself. The chain is built from current {@link PaxWebFilterMappings} snapshot, never from the lists of
+	 * {@link ServletHandler} which may be modified concurrently.
 	 * @param baseRequest
 	 * @param pathInContext
 	 * @param servletHolder
@@ -445,63 +444,133 @@ public class PaxWebServletHandler extends ServletHandler {
 	@Override
 	protected FilterChain getFilterChain(Request baseRequest, String pathInContext, ServletHolder servletHolder) {
 		PaxWebServletHolder holder = (PaxWebServletHolder) servletHolder;
+		PaxWebFilterMappings mappings = filterMappings;
 
-		// calculate caching key for filter chain
-		WebContainerContext wcc = holder.getWebContainerContext();
-		String prefix = wcc == null ? "" : wcc.getContextId() + "|";
-		if (wcc != null && wcc.isShared()) {
-			prefix = "~|" + prefix;
-		}
-		String contextlessKey = pathInContext == null ? holder.getName() : pathInContext;
-		String key = prefix + contextlessKey;
-
-		int dispatch = FilterMapping.dispatch(baseRequest.getDispatcherType());
+		String key = pathInContext == null ? holder.getName() : pathInContext;
+		DispatcherType type = baseRequest.getDispatcherType();
 
-		FilterChain chain = _chainCache[dispatch].get(key);
+		// the cache is bound to the snapshot, so a chain built from previous mappings is never cached
+		ConcurrentMap<String, FilterChain> cache = holder.getFilterChains(mappings, FilterMapping.dispatch(type));
+		FilterChain chain = cache.get(key);
 		if (chain != null) {
 			return chain;
 		}
 
-		// always clear contextlessKey in parent cache, so super.getFilterChain will create new filter chain
-		_chainCache[dispatch].remove(contextlessKey);
-
-		// After an update to Jetty 9.4.34, we have to use different way of rejecting filters from the chain if
-		// they don't match OSGi context... See https://github.com/eclipse/jetty.project/pull/5271
-		currentServletHolder.set(holder);
-		try {
-			chain = super.getFilterChain(baseRequest, pathInContext, servletHolder);
-		} finally {
-			currentServletHolder.remove();
+		// the order is the same as in org.eclipse.jetty.servlet.ServletHandler.getFilterChain(), but we
+		// additionally reject filters that don't match OSGi context of the target servlet
+		OsgiContextModel targetContext = holder.getOsgiContextModel();
+		if (targetContext == null) {
+			targetContext = defaultOsgiContextModel;
+		}
+		chain = holder.getChainEnd();
+		for (PaxWebFilterMappings.Entry entry : mappings.getWildNameMappings()) {
+			chain = newFilterChain(entry.getHolder(), chain, targetContext);
+		}
+		for (PaxWebFilterMappings.Entry entry : mappings.getNameMappings(holder.getName())) {
+			if (entry.appliesTo(type)) {
+				chain = newFilterChain(entry.getHolder(), chain, targetContext);
+			}
+		}
+		if (pathInContext != null) {
+			for (PaxWebFilterMappings.Entry entry : mappings.getPathMappings()) {
+				if (entry.appliesTo(pathInContext, type)) {
+					chain = newFilterChain(entry.getHolder(), chain, targetContext);
+				}
+			}
 		}
 
-		// the above chain:
-		// 1) may be null if there are no filters at all
-		// 2) may be not null, but all the filters may have to be removed because they could not match target servlet
-		// 3) created new cache entry which we don't want directly, but it can be useful when accessing
-		//    a servlet through different OSGi context
-
-		if (chain != null) {
-			_chainCache[dispatch].put(key, chain);
+		int maxCacheSize = getMaxFilterChainsCacheSize();
+		if (maxCacheSize > 0 && cache.size() >= maxCacheSize) {
+			LOG.debug("{} flushed filter chain cache of {} for {}", this, holder, type);
+			cache.clear();
 		}
+		cache.put(key, chain);
 
 		return chain;
 	}
 
+	/**
+	 * Called by Jetty (with the lock held) whenever servlets, filters or their mappings change. After Jetty
+	 * recalculates its own mappings, we publish new immutable {@link PaxWebFilterMappings}.
+	 */
+	@Override
+	protected void updateMappings() {
+		super.updateMappings();
+		FilterMapping[] mappings = getFilterMappings();
+		filterMappings = new PaxWebFilterMappings(mappings == null ? new FilterMapping[0] : mappings, this::getFilter);
+	}
+
+	/**
+	 * Called by Jetty whenever servlets, filters or their mappings change. We clear the caches and precompiled
+	 * OSGi chains kept in {@link PaxWebServletHolder holders}.
+	 */
 	@Override
-	protected FilterChain newFilterChain(FilterHolder filterHolder, FilterChain chain) {
-		// This is where we can narrow the list of filters, which Jetty decided to map to given servlet
-		// we can additionally take OSGi context into account
-		PaxWebServletHolder holder = currentServletHolder.get();
+	protected void invalidateChainsCache() {
+		super.invalidateChainsCache();
+		ServletHolder[] holders = getServlets();
+		if (holders != null) {
+			for (ServletHolder holder : holders) {
+				if (holder instanceof PaxWebServletHolder) {
+					((PaxWebServletHolder) holder).invalidateFilterChains();
+				}
+			}
+		}
+	}
 
-		OsgiContextModel targetContext = holder.getOsgiContextModel();
-		if (targetContext == null) {
-			targetContext = defaultOsgiContextModel;
+	/**
+	 * Sets new {@link OsgiDispatchPlan} (compiled on configuration thread), so precompiled OSGi chains are
+	 * recreated.
+	 * @param dispatchPlan
+	 */
+	public void setDispatchPlan(OsgiDispatchPlan dispatchPlan) {
+		this.dispatchPlan = dispatchPlan;
+	}
+
+	public OsgiDispatchPlan getDispatchPlan() {
+		return dispatchPlan;
+	}
+
+	/**
+	 * When preprocessors are initialized/destroyed or default context changes, we have to recreate OSGi chains
+	 */
+	private void refreshDispatchPlan() {
+		dispatchPlan = dispatchPlan.refresh();
+	}
+
+	/**
+	 * Translates OSGi specific authentication information into Jetty specific {@link Authentication}
+	 * @param req
+	 */
+	private static void translateAuthentication(HttpServletRequest req) {
+		final Object user = req.getAttribute(ServletContextHelper.REMOTE_USER);
+		final Object authType = req.getAttribute(ServletContextHelper.AUTHENTICATION_TYPE);
+
+		if (user != null || authType != null) {
+			// translate it into Jetty specific authentication
+			Request baseRequest = Request.getBaseRequest(req);
+			if (baseRequest != null && (baseRequest.getAuthentication() == null
+					|| baseRequest.getAuthentication() == Authentication.UNAUTHENTICATED)) {
+				String userName = user != null ? user.toString() : null;
+				String authMethod = authType != null ? authType.toString() : null;
+				Principal p = new UserPrincipal(userName, null);
+				Subject s = new Subject(true, Collections.singleton(p), Collections.emptySet(), Collections.emptySet());
+				baseRequest.setAuthentication(new UserAuthentication(authMethod, new DefaultUserIdentity(s, p, new String[0])));
+			}
 		}
+	}
 
-		PaxWebFilterHolder fHolder = (PaxWebFilterHolder) filterHolder;
-		if (fHolder.matches(targetContext)) {
+	/**
+	 * This is where we can narrow the list of filters, which Jetty mappings assigned to given servlet - we
+	 * additionally take OSGi context into account.
+	 * @param filterHolder
+	 * @param chain
+	 * @param targetContext
+	 * @return
+	 */
+	private FilterChain newFilterChain(PaxWebFilterHolder filterHolder, FilterChain chain, OsgiContextModel targetContext) {
+		if (filterHolder.matches(targetContext)) {
 			// create new chain with filterHolder called first and existing chain called later
-			return super.newFilterChain(filterHolder, chain);
+			return newFilterChain(filterHolder, chain);
 		} else {
 			// just return existing chain without using this filterHolder
 			return chain;
@@ -509,7 +578,7 @@ public class PaxWebServletHandler extends ServletHandler {
 	}
 
 	public List<PreprocessorFilterConfig> getPreprocessors() {
-		return preprocessors;
+		return dispatchPlan.getPreprocessors();
 	}
 
 }
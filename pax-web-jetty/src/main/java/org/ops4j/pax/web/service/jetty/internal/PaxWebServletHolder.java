@@ -16,6 +16,9 @@
 package org.ops4j.pax.web.service.jetty.internal;
 
 import java.lang.reflect.InvocationTargetException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import javax.servlet.FilterChain;
 import javax.servlet.Servlet;
 import javax.servlet.ServletContext;
 import javax.servlet.ServletException;
@@ -24,12 +27,14 @@ import javax.servlet.ServletResponse;
 import javax.servlet.UnavailableException;
 
 import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.servlet.FilterMapping;
 import org.eclipse.jetty.servlet.ServletHolder;
 import org.eclipse.jetty.servlet.ServletMapping;
 import org.ops4j.pax.web.service.WebContainerContext;
 import org.ops4j.pax.web.service.jetty.internal.web.JettyResourceServlet;
 import org.ops4j.pax.web.service.spi.model.OsgiContextModel;
 import org.ops4j.pax.web.service.spi.model.elements.ServletModel;
+import org.ops4j.pax.web.service.spi.servlet.OsgiFilterChainTemplate;
 import org.ops4j.pax.web.service.spi.servlet.OsgiInitializedServlet;
 import org.ops4j.pax.web.service.spi.servlet.OsgiScopedServletContext;
 import org.ops4j.pax.web.service.spi.servlet.OsgiServletContext;
@@ -77,6 +82,24 @@ public class PaxWebServletHolder extends ServletHolder {
 
 	private boolean whiteboardTCCL;
 
+	/**
+	 * Filter chains (without OSGi preprocessors) calculated by {@link PaxWebServletHandler} for this holder,
+	 * indexed by {@link FilterMapping#dispatch(javax.servlet.DispatcherType)} and keyed by path in context.
+	 * Because the holder is associated with single {@link OsgiContextModel}, there's no need to include
+	 * OSGi context in the key. The cache is valid only for the {@link PaxWebFilterMappings} it was created for.
+	 */
+	private volatile FilterChainsCache filterChains;
+
+	/**
+	 * Precompiled, immutable part of the {@link org.ops4j.pax.web.service.spi.servlet.OsgiFilterChain} used
+	 * for this holder. Recreated only when the preprocessors, filters or servlets change.
+	 */
+	private volatile OsgiFilterChainTemplate osgiFilterChainTemplate;
+
+	/** The end of filter chain - when there are no filters mapped to this holder */
+	private final FilterChain chainEnd = (request, response)
+			-> handle(Request.getBaseRequest(request), request, response);
+
 	/**
 	 * Constructor to use when wrapping internal {@link Servlet servlets} which won't use OSGi machinery.
 	 *
@@ -316,4 +339,60 @@ public class PaxWebServletHolder extends ServletHolder {
 		this.whiteboardTCCL = whiteboardTCCL;
 	}
 
+	/**
+	 * Returns cache of filter chains for given dispatcher type, calculated from given filter mappings
+	 * @param mappings current snapshot of filter mappings
+	 * @param dispatch value returned from {@link FilterMapping#dispatch(javax.servlet.DispatcherType)}
+	 * @return
+	 */
+	ConcurrentMap<String, FilterChain> getFilterChains(PaxWebFilterMappings mappings, int dispatch) {
+		FilterChainsCache cache = filterChains;
+		if (cache == null || cache.mappings != mappings) {
+			cache = new FilterChainsCache(mappings);
+			filterChains = cache;
+		}
+		return cache.chains[dispatch];
+	}
+
+	/**
+	 * Clears all cached filter chains and precompiled {@link OsgiFilterChainTemplate}
+	 */
+	void invalidateFilterChains() {
+		filterChains = null;
+		osgiFilterChainTemplate = null;
+	}
+
+	OsgiFilterChainTemplate getOsgiFilterChainTemplate() {
+		return osgiFilterChainTemplate;
+	}
+
+	void setOsgiFilterChainTemplate(OsgiFilterChainTemplate osgiFilterChainTemplate) {
+		this.osgiFilterChainTemplate = osgiFilterChainTemplate;
+	}
+
+	/**
+	 * Returns a {@link FilterChain} which simply invokes this holder - to be used when there are no filters
+	 * @return
+	 */
+	FilterChain getChainEnd() {
+		return chainEnd;
+	}
+
+	private static final class FilterChainsCache {
+		private final PaxWebFilterMappings mappings;
+		private final ConcurrentMap<String, FilterChain>[] chains;
+
+		@SuppressWarnings("unchecked")
+		FilterChainsCache(PaxWebFilterMappings mappings) {
+			this.mappings = mappings;
+			// the same indexing as in org.eclipse.jetty.servlet.ServletHandler._chainCache
+			chains = new ConcurrentMap[FilterMapping.ALL];
+			chains[FilterMapping.REQUEST] = new ConcurrentHashMap<>();
+			chains[FilterMapping.FORWARD] = new ConcurrentHashMap<>();
+			chains[FilterMapping.INCLUDE] = new ConcurrentHashMap<>();
+			chains[FilterMapping.ERROR] = new ConcurrentHashMap<>();
+			chains[FilterMapping.ASYNC] = new ConcurrentHashMap<>();
+		}
+	}
+
 }
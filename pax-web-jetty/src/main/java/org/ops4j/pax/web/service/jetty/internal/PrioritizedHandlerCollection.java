@@ -16,8 +16,10 @@
 package org.ops4j.pax.web.service.jetty.internal;
 
 import java.io.IOException;
+import java.util.Map;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
 import javax.servlet.ServletException;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
@@ -26,6 +28,9 @@ import org.eclipse.jetty.server.Handler;
 import org.eclipse.jetty.server.Request;
 import org.eclipse.jetty.server.handler.ContextHandlerCollection;
 import org.eclipse.jetty.server.handler.HandlerCollection;
+import org.ops4j.pax.web.service.spi.servlet.LazyStartGate;
+import org.ops4j.pax.web.service.spi.servlet.LazyStartGates;
+import org.ops4j.pax.web.service.spi.servlet.RedeployGate;
 
 /**
  * <p>This {@link ContextHandlerCollection} keeps three sets of {@link org.eclipse.jetty.server.Handler handlers}:<ul>
@@ -43,6 +48,12 @@ public class PrioritizedHandlerCollection extends ContextHandlerCollection {
 	private final Set<PriorityValue<Handler>> handlersBefore = new TreeSet<>(JettyServerControllerFactory.priorityComparator);
 	private final Set<PriorityValue<Handler>> handlersAfter = new TreeSet<>(JettyServerControllerFactory.priorityComparator);
 
+	/** Gates of the contexts (by context path) that should hold the requests while being restarted */
+	private final Map<String, RedeployGate> redeployGates = new ConcurrentHashMap<>();
+
+	/** Gates of the contexts that should be started when they receive first request */
+	private LazyStartGates lazyStartGates;
+
 	/**
 	 * Dedicated method to add a handler retrieved from OSGi registry. If the priority is higher than 0, this
 	 * {@link Handler} should be called before calling actual context handlers. if the priority is lower or equal
@@ -62,6 +73,24 @@ public class PrioritizedHandlerCollection extends ContextHandlerCollection {
 		handlerCollectionAfter.setHandlers(handlersAfter.stream().map(PriorityValue::getValue).toArray(Handler[]::new));
 	}
 
+	/**
+	 * Sets (or removes if {@code gate} is {@code null}) a {@link RedeployGate} for given context path.
+	 * @param contextPath
+	 * @param gate
+	 */
+	public void setRedeployGate(String contextPath, RedeployGate gate) {
+		String path = "/".equals(contextPath) ? "" : contextPath;
+		if (gate == null) {
+			redeployGates.remove(path);
+		} else {
+			redeployGates.put(path, gate);
+		}
+	}
+
+	public void setLazyStartGates(LazyStartGates lazyStartGates) {
+		this.lazyStartGates = lazyStartGates;
+	}
+
 	@Override
 	protected void doStart() throws Exception {
 		super.doStart();
@@ -93,7 +122,29 @@ public class PrioritizedHandlerCollection extends ContextHandlerCollection {
 					}
 					// User should know what (s)he's doing - if a handler marks the request as handled, there's
 					// no need to call real context handlers.
-					super.handle(target, baseRequest, request, response);
+					LazyStartGate lazyGate = lazyStartGates == null || lazyStartGates.isEmpty() ? null
+							: lazyStartGates.find(target);
+					if (lazyGate == null) {
+						handleContext(target, baseRequest, request, response);
+					} else {
+						// the context may be started here (and the request waits for it)
+						boolean available = lazyGate.enter();
+						try {
+							if (available) {
+								handleContext(target, baseRequest, request, response);
+							} else {
+								baseRequest.setHandled(true);
+								response.sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+							}
+						} finally {
+							if (available && request.isAsyncStarted()) {
+								// the request is still in progress, so the context can't be stopped yet
+								request.getAsyncContext().addListener(lazyGate.exitOnComplete());
+							} else {
+								lazyGate.exit();
+							}
+						}
+					}
 				}
 				// however, let's allow the "after" handlers to run - whatever they are
 				handlerCollectionAfter.handle(target, baseRequest, request, response);
@@ -105,4 +156,41 @@ public class PrioritizedHandlerCollection extends ContextHandlerCollection {
 		}
 	}
 
+	/**
+	 * Passes the request to the context handlers, possibly waiting for the context being restarted.
+	 * @param target
+	 * @param baseRequest
+	 * @param request
+	 * @param response
+	 */
+	private void handleContext(String target, Request baseRequest, HttpServletRequest request,
+			HttpServletResponse response) throws IOException, ServletException {
+		RedeployGate gate = redeployGates.isEmpty() ? null : findRedeployGate(target);
+		if (gate == null) {
+			super.handle(target, baseRequest, request, response);
+			return;
+		}
+		boolean available = gate.enter(true);
+		try {
+			if (available) {
+				super.handle(target, baseRequest, request, response);
+			} else {
+				baseRequest.setHandled(true);
+				response.sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+			}
+		} finally {
+			gate.exit();
+		}
+	}
+
+	/**
+	 * Finds a gate for the longest context path matching the target - the same context that'll be selected
+	 * by {@link ContextHandlerCollection}.
+	 * @param target
+	 * @return
+	 */
+	private RedeployGate findRedeployGate(String target) {
+		return RedeployGate.find(redeployGates, target);
+	}
+
 }
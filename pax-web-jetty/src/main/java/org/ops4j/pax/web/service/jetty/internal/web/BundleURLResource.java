@@ -0,0 +1,58 @@
+/*
+ * Copyright 2023 OPS4J.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.web.service.jetty.internal.web;
+
+import org.eclipse.jetty.util.resource.URLResource;
+import org.ops4j.pax.web.service.spi.util.ResourceMetadataCache.ResourceMetadata;
+
+/**
+ * {@link URLResource} for bundle entries (not directories) with length and last modification time taken from
+ * (possibly cached) {@link ResourceMetadata} instead of opening {@link java.net.URLConnection} each time.
+ */
+public class BundleURLResource extends URLResource {
+
+	private final ResourceMetadata metadata;
+
+	public BundleURLResource(ResourceMetadata metadata) {
+		super(metadata.getUrl(), null);
+		this.metadata = metadata;
+	}
+
+	public ResourceMetadata getMetadata() {
+		return metadata;
+	}
+
+	@Override
+	public boolean exists() {
+		return true;
+	}
+
+	@Override
+	public boolean isDirectory() {
+		return false;
+	}
+
+	@Override
+	public long length() {
+		return metadata.getLength() >= 0L ? metadata.getLength() : super.length();
+	}
+
+	@Override
+	public long lastModified() {
+		return metadata.getLastModified() > 0L ? metadata.getLastModified() : super.lastModified();
+	}
+
+}
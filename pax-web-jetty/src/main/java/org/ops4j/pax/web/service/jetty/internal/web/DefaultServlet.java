@@ -158,7 +158,7 @@ public class DefaultServlet extends HttpServlet implements ResourceFactory, Welc
     private Resource _resourceBase;
     protected CachedContentFactory _cache;
 
-    private MimeTypes _mimeTypes;
+    protected MimeTypes _mimeTypes;
     protected String[] _welcomes;
     private Resource _stylesheet;
     private boolean _useFileMappedBuffer = false;
@@ -17,15 +17,31 @@ package org.ops4j.pax.web.service.jetty.internal.web;
 
 import java.io.IOException;
 import java.net.URL;
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Map;
 import javax.servlet.ServletContext;
+import javax.servlet.ServletException;
 import javax.servlet.UnavailableException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
 
+import org.eclipse.jetty.http.CompressedContentFormat;
+import org.eclipse.jetty.http.HttpContent;
+import org.eclipse.jetty.http.ResourceHttpContent;
+import org.eclipse.jetty.server.ResourceContentFactory;
 import org.eclipse.jetty.server.handler.ContextHandler;
+import org.eclipse.jetty.util.URIUtil;
 import org.eclipse.jetty.util.resource.PathResource;
 import org.eclipse.jetty.util.resource.Resource;
 import org.ops4j.pax.web.service.jetty.internal.PaxWebServletContextHandler;
+import org.ops4j.pax.web.service.spi.config.ResourceConfiguration;
 import org.ops4j.pax.web.service.spi.servlet.OsgiScopedServletContext;
+import org.ops4j.pax.web.service.spi.util.ContentCache;
 import org.ops4j.pax.web.service.spi.util.Path;
+import org.ops4j.pax.web.service.spi.util.ResourceCompression;
+import org.ops4j.pax.web.service.spi.util.ResourceMetadataCache;
+import org.ops4j.pax.web.service.spi.util.ResourceMetadataCache.ResourceMetadata;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -49,16 +65,53 @@ public class JettyResourceServlet extends DefaultServlet {
 	// super._welcomes can be cleared after super.init()...
 	private String[] welcomeFiles;
 
+	/** Metadata of resources obtained from {@link ServletContext#getResource(String)} */
+	private ResourceMetadataCache metadataCache;
+
+	/** Optional content cache shared by all resource servlets */
+	private ContentCache contentCache;
+
+	private ResourceConfiguration resourceConfig;
+
+	/** Support for compressed variants of bundle resources - {@code null} if not enabled */
+	private ResourceCompression compression;
+
 	public JettyResourceServlet(PathResource baseUrlResource, String chroot) {
 		this.baseUrlResource = baseUrlResource;
 		this.chroot = chroot;
 	}
 
+	/**
+	 * Sets the {@link ContentCache} shared by all the resource servlets. The content of bundle resources will be
+	 * sent directly from this cache instead of Jetty's {@link org.eclipse.jetty.server.CachedContentFactory}.
+	 * @param contentCache
+	 */
+	public void setContentCache(ContentCache contentCache) {
+		this.contentCache = contentCache;
+	}
+
+	/**
+	 * Sets global {@link ResourceConfiguration} used to configure compressed variants of resources
+	 * @param resourceConfig
+	 */
+	public void setResourceConfiguration(ResourceConfiguration resourceConfig) {
+		this.resourceConfig = resourceConfig;
+	}
+
 	@Override
 	public void init() throws UnavailableException {
 		super.init();
 		_welcomes = welcomeFiles;
 
+		if (contentCache != null && baseUrlResource == null) {
+			if (_cache != null) {
+				_cache.flushCache();
+				_cache = null;
+			}
+			_resourceService.setContentFactory(new SharedContentFactory(new ResourceContentFactory(this,
+					_mimeTypes, _resourceService.getPrecompressedFormats())));
+		}
+
 		String maxCacheSize = getInitParameter("maxCacheSize");
 		String maxCachedFileSize = getInitParameter("maxCachedFileSize");
 		String maxCachedFiles = getInitParameter("maxCachedFiles");
@@ -71,6 +124,16 @@ public class JettyResourceServlet extends DefaultServlet {
 		if (maxCachedFiles == null) {
 			maxCachedFiles = "2048";
 		}
+		String maxCacheTTL = getInitParameter("maxCacheTTL");
+		if (maxCacheTTL == null) {
+			maxCacheTTL = Long.toString(ResourceMetadataCache.ttl(resourceConfig));
+		}
+
+		if (baseUrlResource == null) {
+			metadataCache = new ResourceMetadataCache(getServletContext(), Integer.parseInt(maxCachedFiles),
+					Long.parseLong(maxCacheTTL));
+			compression = ResourceCompression.configure(getServletContext(), resourceConfig, contentCache);
+		}
 
 		LOG.info("Initialized Jetty Resource Servlet for base=\"{}\" with cache maxSize={}kB, maxEntrySize={}kB, maxEntries={}",
 				baseUrlResource != null ? baseUrlResource.getPath() : chroot,
@@ -90,12 +153,34 @@ public class JettyResourceServlet extends DefaultServlet {
 		if (_cache != null) {
 			_cache.flushCache();
 		}
+		if (metadataCache != null) {
+			metadataCache.invalidate();
+		}
 	}
 
 	public void setWelcomeFilesRedirect(boolean welcomeFilesRedirect) {
 		_resourceService.setRedirectWelcome(welcomeFilesRedirect);
 	}
 
+	@Override
+	protected void doGet(HttpServletRequest request, HttpServletResponse response) throws ServletException, IOException {
+		if (compression != null && metadataCache != null) {
+			// the same path as calculated by org.eclipse.jetty.server.ResourceService.doGet() and passed
+			// to getResource() (included requests are not handled by ResourceCompression anyway)
+			String servletPath = _resourceService.isPathInfoOnly() ? "/" : request.getServletPath();
+			String childPath = Path.securePath(URIUtil.addPaths(servletPath, request.getPathInfo()));
+			if (childPath != null) {
+				if (childPath.startsWith("/")) {
+					childPath = childPath.substring(1);
+				}
+				if (compression.handle(request, response, metadataCache, chroot + "/" + childPath)) {
+					return;
+				}
+			}
+		}
+		super.doGet(request, response);
+	}
+
 	@Override
 	protected ContextHandler initContextHandler(ServletContext servletContext) {
 		// necessary for super.init()
@@ -131,13 +216,62 @@ public class JettyResourceServlet extends DefaultServlet {
 				// HttpContext or ServletContextHelper
 				// before Pax Web 8 there was explicit delegation to HttpContext, but now, it's hidden
 				// under Osgi(Scoped)ServletContext
-				URL url = getServletContext().getResource(chroot + "/" + childPath);
-
-				return PaxWebServletContextHandler.toJettyResource(url);
+				if (metadataCache == null) {
+					URL url = getServletContext().getResource(chroot + "/" + childPath);
+					return PaxWebServletContextHandler.toJettyResource(url);
+				}
+				return PaxWebServletContextHandler.toJettyResource(metadataCache.getResource(chroot + "/" + childPath));
 			}
 		} catch (IOException e) {
 			throw new RuntimeException(e.getMessage(), e);
 		}
 	}
 
+	@Override
+	public void destroy() {
+		if (metadataCache != null) {
+			metadataCache.destroy();
+		}
+		super.destroy();
+	}
+
+	/**
+	 * {@link HttpContent.ContentFactory} which uses {@link ContentCache} to provide direct buffers with
+	 * the content of bundle resources.
+	 */
+	private class SharedContentFactory implements HttpContent.ContentFactory {
+
+		private final HttpContent.ContentFactory delegate;
+
+		SharedContentFactory(HttpContent.ContentFactory delegate) {
+			this.delegate = delegate;
+		}
+
+		@Override
+		public HttpContent getContent(String path, int maxBufferSize) throws IOException {
+			HttpContent content = delegate.getContent(path, maxBufferSize);
+			if (content == null || !(content.getResource() instanceof BundleURLResource)) {
+				return content;
+			}
+			ResourceMetadata metadata = ((BundleURLResource) content.getResource()).getMetadata();
+			ByteBuffer buffer = contentCache.get(metadata.getUrl(), metadata.getLength(), metadata.getLastModified());
+			if (buffer == null) {
+				return content;
+			}
+			Map<CompressedContentFormat, HttpContent> precompressed = content.getPrecompressedContents() == null
+					? null : new HashMap<>(content.getPrecompressedContents());
+			return new ResourceHttpContent(content.getResource(), content.getContentTypeValue(), maxBufferSize, precompressed) {
+				@Override
+				public ByteBuffer getDirectBuffer() {
+					return buffer.duplicate();
+				}
+
+				@Override
+				public ByteBuffer getIndirectBuffer() {
+					return buffer.duplicate();
+				}
+			};
+		}
+	}
+
 }
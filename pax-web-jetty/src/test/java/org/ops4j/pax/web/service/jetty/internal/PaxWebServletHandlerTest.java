@@ -0,0 +1,266 @@
+/*
+ * Copyright 2023 OPS4J.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.web.service.jetty.internal;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import javax.servlet.DispatcherType;
+import javax.servlet.FilterChain;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.http.HttpServlet;
+
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.servlet.FilterHolder;
+import org.eclipse.jetty.servlet.FilterMapping;
+import org.junit.Before;
+import org.junit.Test;
+import org.ops4j.pax.web.service.WebContainerContext;
+import org.ops4j.pax.web.service.spi.model.OsgiContextModel;
+import org.ops4j.pax.web.service.spi.model.elements.FilterModel;
+import org.ops4j.pax.web.service.spi.model.elements.ServletModel;
+import org.ops4j.pax.web.service.spi.servlet.OsgiServletContext;
+
+import static java.util.Arrays.asList;
+import static java.util.Collections.singletonList;
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.withSettings;
+
+public class PaxWebServletHandlerTest {
+
+	private OsgiContextModel c1;
+	private OsgiContextModel c2;
+	private OsgiServletContext sc1;
+	private OsgiServletContext sc2;
+
+	private RecordingServletHandler handler;
+
+	@Before
+	public void init() {
+		c1 = new OsgiContextModel(mock(WebContainerContext.class), null, "/", false);
+		c2 = new OsgiContextModel(mock(WebContainerContext.class), null, "/", false);
+		sc1 = mock(OsgiServletContext.class);
+		when(sc1.getOsgiContextModel()).thenReturn(c1);
+		sc2 = mock(OsgiServletContext.class);
+		when(sc2.getOsgiContextModel()).thenReturn(c2);
+
+		handler = new RecordingServletHandler();
+	}
+
+	@Test
+	public void filterChainsPerDispatcherTypeAndOsgiContext() {
+		PaxWebFilterHolder wild = filter("wild", c1, sc1, null, new String[] { "*" }, "REQUEST", "FORWARD", "INCLUDE");
+		PaxWebFilterHolder byName = filter("byName", c1, sc1, null, new String[] { "s1" }, "FORWARD");
+		PaxWebFilterHolder byPath1 = filter("byPath1", c1, sc1, new String[] { "/p/*" }, null, "REQUEST");
+		PaxWebFilterHolder byPath2 = filter("byPath2", c1, sc1, new String[] { "/p/x" }, null, "REQUEST", "INCLUDE");
+		PaxWebFilterHolder otherContext = filter("otherContext", c2, sc2, new String[] { "/*" }, null, "REQUEST");
+		configure(asList(wild, byName, byPath1, byPath2, otherContext));
+
+		PaxWebServletHolder s1 = servlet("s1", c1, sc1);
+		PaxWebServletHolder s2 = servlet("s2", c2, sc2);
+
+		// path mappings (in declaration order) first, then name mappings and wildcard name mappings, but
+		// only for filters registered in the same OSGi context as the servlet
+		assertThat(names(handler.getFilterChain(request(DispatcherType.REQUEST), "/p/x", s1)),
+				equalTo(asList("byPath1", "byPath2", "wild")));
+		assertThat(names(handler.getFilterChain(request(DispatcherType.REQUEST), "/p/y", s1)),
+				equalTo(asList("byPath1", "wild")));
+		assertThat(names(handler.getFilterChain(request(DispatcherType.REQUEST), "/q", s1)),
+				equalTo(singletonList("wild")));
+		assertThat(names(handler.getFilterChain(request(DispatcherType.FORWARD), "/p/x", s1)),
+				equalTo(asList("byName", "wild")));
+		assertThat(names(handler.getFilterChain(request(DispatcherType.INCLUDE), "/p/x", s1)),
+				equalTo(asList("byPath2", "wild")));
+		// named dispatch - no path mappings
+		assertThat(names(handler.getFilterChain(request(DispatcherType.FORWARD), null, s1)),
+				equalTo(asList("byName", "wild")));
+
+		assertThat(names(handler.getFilterChain(request(DispatcherType.REQUEST), "/p/x", s2)),
+				equalTo(singletonList("otherContext")));
+		assertThat(names(handler.getFilterChain(request(DispatcherType.FORWARD), "/p/x", s2)),
+				equalTo(new ArrayList<String>()));
+	}
+
+	@Test
+	public void filterChainsAreCachedPerMappings() {
+		PaxWebFilterHolder f1 = filter("f1", c1, sc1, new String[] { "/*" }, null, "REQUEST");
+		PaxWebFilterHolder f2 = filter("f2", c1, sc1, new String[] { "/*" }, null, "REQUEST");
+		configure(singletonList(f1));
+		PaxWebServletHolder s1 = servlet("s1", c1, sc1);
+
+		FilterChain chain = handler.getFilterChain(request(DispatcherType.REQUEST), "/x", s1);
+		assertThat(handler.getFilterChain(request(DispatcherType.REQUEST), "/x", s1), sameInstance(chain));
+
+		configure(asList(f1, f2));
+		FilterChain chain2 = handler.getFilterChain(request(DispatcherType.REQUEST), "/x", s1);
+		assertThat(chain2, not(sameInstance(chain)));
+		assertThat(names(chain2), equalTo(asList("f1", "f2")));
+	}
+
+	@Test
+	public void concurrentMappingUpdates() throws Exception {
+		PaxWebFilterHolder f1 = filter("f1", c1, sc1, new String[] { "/*" }, null, "REQUEST");
+		PaxWebFilterHolder f2 = filter("f2", c1, sc1, null, new String[] { "s1" }, "REQUEST");
+		PaxWebFilterHolder f3 = filter("f3", c1, sc1, null, new String[] { "*" }, "REQUEST");
+		handler.setFilters(new FilterHolder[] { f1, f2, f3 });
+		FilterMapping[] mappings1 = new FilterMapping[] { f1.getMapping().get(0) };
+		FilterMapping[] mappings2 = new FilterMapping[] { f1.getMapping().get(0), f2.getMapping().get(0),
+				f3.getMapping().get(0) };
+		// expected chains for the path and for named dispatch
+		List<List<String>> expected1 = asList(singletonList("f1"), new ArrayList<>());
+		List<List<String>> expected2 = asList(asList("f1", "f2", "f3"), asList("f2", "f3"));
+		handler.setFilterMappings(mappings1);
+		handler.updateMappings();
+
+		PaxWebServletHolder s1 = servlet("s1", c1, sc1);
+		Request request = request(DispatcherType.REQUEST);
+
+		AtomicBoolean done = new AtomicBoolean(false);
+		List<Throwable> errors = new CopyOnWriteArrayList<>();
+		ExecutorService pool = Executors.newFixedThreadPool(4);
+		for (int t = 0; t < 4; t++) {
+			int idx = t % 2;
+			String path = idx == 0 ? "/x" : null;
+			pool.submit(() -> {
+				try {
+					while (!done.get()) {
+						// request threads should see either old or new mappings - never partial state
+						List<String> names = names(handler.getFilterChain(request, path, s1));
+						if (!names.equals(expected1.get(idx)) && !names.equals(expected2.get(idx))) {
+							errors.add(new AssertionError("Unexpected chain: " + names));
+							return;
+						}
+					}
+				} catch (Throwable e) {
+					errors.add(e);
+				}
+			});
+		}
+
+		for (int i = 0; i < 2000; i++) {
+			handler.setFilterMappings(i % 2 == 0 ? mappings2 : mappings1);
+			handler.updateMappings();
+		}
+		done.set(true);
+		pool.shutdown();
+		assertThat(pool.awaitTermination(10, TimeUnit.SECONDS), equalTo(true));
+		assertThat(errors.toString(), errors.size(), equalTo(0));
+
+		// no chain built from previous mappings is cached for current mappings
+		assertThat(names(handler.getFilterChain(request, "/x", s1)), equalTo(expected1.get(0)));
+		assertThat(names(handler.getFilterChain(request, null, s1)), equalTo(expected1.get(1)));
+		handler.setFilterMappings(mappings2);
+		handler.updateMappings();
+		assertThat(names(handler.getFilterChain(request, "/x", s1)), equalTo(expected2.get(0)));
+		assertThat(names(handler.getFilterChain(request, null, s1)), equalTo(expected2.get(1)));
+	}
+
+	private void configure(List<PaxWebFilterHolder> filters) {
+		List<FilterMapping> mappings = new ArrayList<>();
+		filters.forEach(f -> mappings.addAll(f.getMapping()));
+		handler.setFilters(filters.toArray(new FilterHolder[0]));
+		handler.setFilterMappings(mappings.toArray(new FilterMapping[0]));
+		// Jetty calls it from setFilterMappings() only when the handler is running
+		handler.updateMappings();
+	}
+
+	private static PaxWebFilterHolder filter(String name, OsgiContextModel context, OsgiServletContext servletContext,
+			String[] urlPatterns, String[] servletNames, String... dispatcherTypes) {
+		FilterModel model = new FilterModel.Builder(name)
+				.withFilter((req, res, chain) -> chain.doFilter(req, res))
+				.withUrlPatterns(urlPatterns)
+				.withServletNames(servletNames)
+				.withDispatcherTypes(dispatcherTypes)
+				.withOsgiContextModel(context)
+				.build();
+		PaxWebFilterHolder holder = new PaxWebFilterHolder(model, servletContext);
+		holder.setMapping(singletonList(new PaxWebFilterMapping(model, model.getMappingsPerDispatcherTypes().get(0))));
+		return holder;
+	}
+
+	private static PaxWebServletHolder servlet(String name, OsgiContextModel context, OsgiServletContext servletContext) {
+		ServletModel model = new ServletModel.Builder(name)
+				.withUrlPatterns(new String[] { "/*" })
+				.withServlet(new HttpServlet() { })
+				.withOsgiContextModel(context)
+				.build();
+		return new PaxWebServletHolder(model, context, servletContext);
+	}
+
+	private static Request request(DispatcherType type) {
+		Request request = mock(Request.class, withSettings().stubOnly());
+		when(request.getDispatcherType()).thenReturn(type);
+		return request;
+	}
+
+	/**
+	 * Names of the filters in the chain in order of invocation
+	 * @param chain
+	 * @return
+	 */
+	private static List<String> names(FilterChain chain) {
+		List<String> names = new ArrayList<>();
+		while (chain instanceof RecordedChain) {
+			names.add(((RecordedChain) chain).name);
+			chain = ((RecordedChain) chain).next;
+		}
+		return names;
+	}
+
+	/**
+	 * {@link PaxWebServletHandler} that creates chains which can be inspected without invoking the filters.
+	 */
+	private static class RecordingServletHandler extends PaxWebServletHandler {
+
+		RecordingServletHandler() {
+			super(new HttpServlet() { }, null);
+		}
+
+		@Override
+		protected FilterChain newFilterChain(FilterHolder filterHolder, FilterChain chain) {
+			return new RecordedChain(filterHolder.getName(), chain);
+		}
+
+	}
+
+	private static class RecordedChain implements FilterChain {
+
+		private final String name;
+		private final FilterChain next;
+
+		RecordedChain(String name, FilterChain next) {
+			this.name = name;
+			this.next = next;
+		}
+
+		@Override
+		public void doFilter(ServletRequest request, ServletResponse response) {
+			throw new UnsupportedOperationException();
+		}
+
+	}
+
+}
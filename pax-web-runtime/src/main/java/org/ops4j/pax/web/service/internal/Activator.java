@@ -25,6 +25,9 @@ import java.util.HashMap;
 import java.util.Hashtable;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeSet;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
@@ -43,6 +46,7 @@ import org.ops4j.pax.web.service.spi.ServerControllerFactory;
 import org.ops4j.pax.web.service.spi.config.Configuration;
 import org.ops4j.pax.web.service.spi.config.JspConfiguration;
 import org.ops4j.pax.web.service.spi.config.LogConfiguration;
+import org.ops4j.pax.web.service.spi.config.ReconfigurationScope;
 import org.ops4j.pax.web.service.spi.config.ResourceConfiguration;
 import org.ops4j.pax.web.service.spi.config.SecurityConfiguration;
 import org.ops4j.pax.web.service.spi.config.ServerConfiguration;
@@ -52,13 +56,17 @@ import org.ops4j.pax.web.service.spi.model.events.ServerEvent;
 import org.ops4j.pax.web.service.spi.model.events.ServerListener;
 import org.ops4j.pax.web.service.spi.model.events.WebApplicationEventListener;
 import org.ops4j.pax.web.service.spi.model.events.WebElementEventListener;
+import org.ops4j.pax.web.service.spi.util.ContentCache;
 import org.ops4j.pax.web.service.spi.util.NamedThreadFactory;
+import org.ops4j.pax.web.service.spi.util.ResourceMetadataCache;
 import org.ops4j.pax.web.service.spi.util.Utils;
 import org.ops4j.util.property.DictionaryPropertyResolver;
 import org.ops4j.util.property.PropertyResolver;
 import org.osgi.framework.Bundle;
 import org.osgi.framework.BundleActivator;
 import org.osgi.framework.BundleContext;
+import org.osgi.framework.BundleEvent;
+import org.osgi.framework.BundleListener;
 import org.osgi.framework.Constants;
 import org.osgi.framework.Filter;
 import org.osgi.framework.ServiceFactory;
@@ -159,6 +167,9 @@ public class Activator implements BundleActivator, PaxWebManagedService.Configur
 
 	private final AtomicBoolean initialConfigSet = new AtomicBoolean(false);
 
+	/** Listener invalidating cached metadata and content of bundle resources when bundles change */
+	private BundleListener resourceCacheListener;
+
 	/**
 	 * Global, single instance of {@link ServerModel} recreated together with each (re)registration of
 	 * {@link HttpService}.
@@ -184,6 +195,15 @@ public class Activator implements BundleActivator, PaxWebManagedService.Configur
 		serverListenerTracker = new ServiceTracker<>(bundleContext, ServerListener.class, new ServerListenerCustomizer());
 		serverListenerTracker.open();
 
+		resourceCacheListener = event -> {
+			int type = event.getType();
+			if (type == BundleEvent.UPDATED || type == BundleEvent.UNRESOLVED || type == BundleEvent.UNINSTALLED) {
+				ResourceMetadataCache.bundleChanged(event.getBundle().getBundleId());
+				ContentCache.bundleChanged(event.getBundle().getBundleId());
+			}
+		};
+		context.addBundleListener(resourceCacheListener);
+
 		if (Utils.isConfigurationAdminAvailable(this.getClass())) {
 			// ManagedService for org.ops4j.pax.web PID monitoring, so configuration won't happen yet
 			// (for example in FelixStartLevel thread), but only after Configuration Admin notifies us
@@ -231,6 +251,10 @@ public class Activator implements BundleActivator, PaxWebManagedService.Configur
 			serverListenerTracker.close();
 			serverListenerTracker = null;
 		}
+		if (resourceCacheListener != null) {
+			context.removeBundleListener(resourceCacheListener);
+			resourceCacheListener = null;
+		}
 		if (serverControllerFactoryTracker != null) {
 			serverControllerFactoryTracker.close();
 			serverControllerFactoryTracker = null;
@@ -405,6 +429,13 @@ public class Activator implements BundleActivator, PaxWebManagedService.Configur
 			return;
 		}
 
+		if (serverController != null && serverModel != null
+				&& Utils.same(controllerFactory, this.serverControllerFactory)
+				&& reconfigureController(dictionary)) {
+			// running server was reconfigured without affecting registered web applications
+			return;
+		}
+
 		if (serverModel != null) {
 			serverModel.setStopping();
 			serverModel = null;
@@ -455,17 +486,8 @@ public class Activator implements BundleActivator, PaxWebManagedService.Configur
 			// information (in such order).
 			// Properties as map will also be available in proper order
 
-			Map<String, String> allProperties = new HashMap<>(System.getenv());
-			allProperties.putAll(Utils.toMap(System.getProperties()));
-
-			MetaTypePropertyResolver defaultResolver = new MetaTypePropertyResolver();
-			allProperties.putAll(Utils.toMap(defaultResolver.getProperties()));
-
-			// can't get all bundle context properties as map...
-			PropertyResolver tmpResolver = new BundleContextPropertyResolver(bundleContext, defaultResolver);
-
-			PropertyResolver resolver = this.configuration != null ? new DictionaryPropertyResolver(this.configuration, tmpResolver) : tmpResolver;
-			allProperties.putAll(Utils.toMap(this.configuration));
+			Map<String, String> allProperties = new HashMap<>();
+			PropertyResolver resolver = createPropertyResolver(this.configuration, allProperties);
 
 			// before creating a configuration, we have to check if the encryption is enabled - and there are two
 			// ways to implement the decryption
@@ -544,6 +566,8 @@ public class Activator implements BundleActivator, PaxWebManagedService.Configur
 
 			// create a controller object to operate on any supported web server
 			serverController = serverControllerFactory.createServerController(configuration);
+			// lazily started contexts are started in the same thread as all other configuration tasks
+			serverController.setConfigurationExecutor(runtimeExecutor);
 			// immediately add current ServerListeners.
 			serverListeners.forEach(listener -> serverController.addListener(listener));
 
@@ -554,10 +578,20 @@ public class Activator implements BundleActivator, PaxWebManagedService.Configur
 			LOG.info("Starting server controller {}", serverController.getClass().getName());
 			serverController.start();
 
+			// with group commit, registration tasks are queued and processed together, so bundle-scoped services
+			// use a controller which delays the (re)start of the contexts until the end of the group
+			ServerController registrationController = serverController;
+			Integer groupCommitDelay = configuration.server().getRegistrationGroupCommitDelay();
+			if (groupCommitDelay != null && groupCommitDelay > 0) {
+				LOG.info("Registration tasks will be committed in groups (max delay: {}ms)", groupCommitDelay);
+				serverModel.configureGroupCommit(serverController, groupCommitDelay);
+				registrationController = new GroupCommitServerController(serverController, serverModel);
+			}
+
 			// this is where org.osgi.service.http.HttpService bundle-scoped service is registered in OSGi
 			// this is the most fundamental operation related to Http Service specification
 			Dictionary<String, Object> props = determineServiceProperties(configuration);
-			ServiceFactory<StoppableHttpService> factory = new StoppableHttpServiceFactory(serverController, serverModel,
+			ServiceFactory<StoppableHttpService> factory = new StoppableHttpServiceFactory(registrationController, serverModel,
 					webElementEventDispatcher) {
 				@Override
 				StoppableHttpService createService(Bundle bundle, ServerController serverController,
@@ -626,6 +660,81 @@ public class Activator implements BundleActivator, PaxWebManagedService.Configur
 		}
 	}
 
+	/**
+	 * Creates chained {@link PropertyResolver} (without decryption support) for given PID configuration and
+	 * collects all the properties in proper order.
+	 * @param dictionary
+	 * @param allProperties
+	 * @return
+	 */
+	private PropertyResolver createPropertyResolver(Dictionary<String, ?> dictionary, Map<String, String> allProperties) {
+		allProperties.putAll(System.getenv());
+		allProperties.putAll(Utils.toMap(System.getProperties()));
+
+		MetaTypePropertyResolver defaultResolver = new MetaTypePropertyResolver();
+		allProperties.putAll(Utils.toMap(defaultResolver.getProperties()));
+
+		// can't get all bundle context properties as map...
+		PropertyResolver tmpResolver = new BundleContextPropertyResolver(bundleContext, defaultResolver);
+
+		PropertyResolver resolver = dictionary != null ? new DictionaryPropertyResolver(dictionary, tmpResolver) : tmpResolver;
+		allProperties.putAll(Utils.toMap(dictionary));
+
+		return resolver;
+	}
+
+	/**
+	 * <p>Tries to apply changed PID configuration to running server without unregistering {@link HttpService}
+	 * and recreating the {@link ServerController} (which would redeploy all web applications).</p>
+	 *
+	 * <p>Changed properties are classified using {@link ReconfigurationScope} and only changes that don't require
+	 * {@link ReconfigurationScope#FULL full restart} are passed to {@link ServerController#reconfigure}.</p>
+	 *
+	 * @param dictionary new PID configuration
+	 * @return {@code true} if the configuration was applied
+	 */
+	private boolean reconfigureController(Dictionary<String, ?> dictionary) {
+		Map<String, String> oldProperties = Utils.toMap(this.configuration);
+		Map<String, String> newProperties = Utils.toMap(dictionary);
+		Set<String> changed = new TreeSet<>();
+		for (String key : oldProperties.keySet()) {
+			if (!Objects.equals(oldProperties.get(key), newProperties.get(key))) {
+				changed.add(key);
+			}
+		}
+		for (String key : newProperties.keySet()) {
+			if (!oldProperties.containsKey(key)) {
+				changed.add(key);
+			}
+		}
+
+		ReconfigurationScope scope = ReconfigurationScope.of(changed);
+		if (scope == ReconfigurationScope.FULL) {
+			LOG.debug("Configuration changes require full restart of Pax Web runtime: {}", changed);
+			return false;
+		}
+
+		Map<String, String> allProperties = new HashMap<>();
+		PropertyResolver resolver = createPropertyResolver(dictionary, allProperties);
+		if ("true".equalsIgnoreCase(allProperties.get(PaxWebConfig.PID_CFG_ENC_ENABLED))) {
+			// decryption is configured only with full configuration
+			return false;
+		}
+		Configuration newConfiguration = ConfigurationBuilder.getConfiguration(resolver, allProperties);
+
+		if (!serverController.reconfigure(newConfiguration, changed)) {
+			LOG.info("{} can't apply configuration changes without restart: {}", serverController, changed);
+			return false;
+		}
+
+		LOG.info("Applied configuration changes (scope: {}) to running server: {}", scope, changed);
+		this.configuration = dictionary;
+		if (httpServiceFactoryReg != null) {
+			httpServiceFactoryReg.setProperties(determineServiceProperties(newConfiguration));
+		}
+		return true;
+	}
+
 	private void cleanUpHttpServiceRegistrations() {
 		if (httpServiceRuntimeReg != null) {
 			LOG.info("Unregistering current HttpServiceRuntime");
@@ -678,6 +787,12 @@ public class Activator implements BundleActivator, PaxWebManagedService.Configur
 		setProperty(properties, PaxWebConfig.PID_CFG_SERVER_THREAD_NAME_PREFIX, sc.getServerThreadNamePrefix());
 		setProperty(properties, PaxWebConfig.PID_CFG_SHOW_STACKS, sc.isShowStacks());
 		setProperty(properties, PaxWebConfig.PID_CFG_EVENT_DISPATCHER_THREAD_COUNT, sc.getEventDispatcherThreadCount());
+		setProperty(properties, PaxWebConfig.PID_CFG_SERVER_PATH_MATCH_CACHE_SIZE, sc.getPathMatchCacheSize());
+		setProperty(properties, PaxWebConfig.PID_CFG_SERVER_REGISTRATION_GROUP_COMMIT_DELAY, sc.getRegistrationGroupCommitDelay());
+		setProperty(properties, PaxWebConfig.PID_CFG_SERVER_REDEPLOY_DRAIN_TIMEOUT, sc.getRedeployDrainTimeout());
+		setProperty(properties, PaxWebConfig.PID_CFG_SERVER_LAZY_CONTEXT_START, sc.isLazyContextStart());
+		setProperty(properties, PaxWebConfig.PID_CFG_SERVER_LAZY_CONTEXT_IDLE_TIMEOUT, sc.getLazyContextIdleTimeout());
+		setProperty(properties, PaxWebConfig.PID_CFG_SERVER_LAZY_CONTEXT_START_TIMEOUT, sc.getLazyContextStartTimeout());
 		setProperty(properties, PaxWebConfig.PID_CFG_HTTP_CHECK_FORWARDED_HEADERS, sc.checkForwardedHeaders());
 		setProperty(properties, PaxWebConfig.PID_CFG_TEMP_DIR, sc.getTemporaryDirectory());
 		setProperty(properties, PaxWebConfig.PID_CFG_HTTP_CHECK_FORWARDED_HEADERS, sc.checkForwardedHeaders());
@@ -757,6 +872,8 @@ public class Activator implements BundleActivator, PaxWebManagedService.Configur
 		setProperty(properties, PaxWebConfig.PID_CFG_DIGESTAUTH_MAX_NONCE_AGE, sec.getDigestAuthMaxNonceAge());
 		setProperty(properties, PaxWebConfig.PID_CFG_DIGESTAUTH_MAX_NONCE_COUNT, sec.getDigestAuthMaxNonceCount());
 		setProperty(properties, PaxWebConfig.PID_CFG_FORMAUTH_REDIRECT, sec.getFormAuthRedirect());
+		setProperty(properties, PaxWebConfig.PID_CFG_AUTH_CACHE_SIZE, sec.getAuthCacheSize());
+		setProperty(properties, PaxWebConfig.PID_CFG_AUTH_CACHE_TTL, sec.getAuthCacheTtl());
 
 		setProperty(properties, PaxWebConfig.PID_CFG_ENC_ENABLED, sec.isEncEnabled());
 		setProperty(properties, PaxWebConfig.PID_CFG_ENC_MASTERPASSWORD, "********"/*sec.getEncMasterPassword()*/);
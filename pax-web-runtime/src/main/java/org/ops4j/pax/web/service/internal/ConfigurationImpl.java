@@ -242,6 +242,18 @@ public class ConfigurationImpl extends PropertyStore implements Configuration {
 
 		private final int eventDispatcherThreadCount;
 
+		private final int pathMatchCacheSize;
+
+		private final int registrationGroupCommitDelay;
+
+		private final int redeployDrainTimeout;
+
+		private final boolean lazyContextStart;
+
+		private final int lazyContextIdleTimeout;
+
+		private final int lazyContextStartTimeout;
+
 		private final boolean showStacks;
 
 		private final String[] virtualHosts;
@@ -318,6 +330,22 @@ public class ConfigurationImpl extends PropertyStore implements Configuration {
 			Integer eventDispatcherThreadCount = resolveIntegerProperty(PaxWebConfig.PID_CFG_EVENT_DISPATCHER_THREAD_COUNT);
 			this.eventDispatcherThreadCount = eventDispatcherThreadCount == null ? 1 : eventDispatcherThreadCount;
 
+			Integer pathMatchCacheSize = resolveIntegerProperty(PaxWebConfig.PID_CFG_SERVER_PATH_MATCH_CACHE_SIZE);
+			this.pathMatchCacheSize = pathMatchCacheSize == null ? 0 : Math.max(0, pathMatchCacheSize);
+
+			Integer groupCommitDelay = resolveIntegerProperty(PaxWebConfig.PID_CFG_SERVER_REGISTRATION_GROUP_COMMIT_DELAY);
+			this.registrationGroupCommitDelay = groupCommitDelay == null ? 0 : Math.max(0, groupCommitDelay);
+
+			Integer drainTimeout = resolveIntegerProperty(PaxWebConfig.PID_CFG_SERVER_REDEPLOY_DRAIN_TIMEOUT);
+			this.redeployDrainTimeout = drainTimeout == null ? 0 : Math.max(0, drainTimeout);
+
+			Boolean lazyStart = resolveBooleanProperty(PaxWebConfig.PID_CFG_SERVER_LAZY_CONTEXT_START);
+			this.lazyContextStart = lazyStart != null && lazyStart;
+			Integer idleTimeout = resolveIntegerProperty(PaxWebConfig.PID_CFG_SERVER_LAZY_CONTEXT_IDLE_TIMEOUT);
+			this.lazyContextIdleTimeout = idleTimeout == null ? 0 : Math.max(0, idleTimeout);
+			Integer startTimeout = resolveIntegerProperty(PaxWebConfig.PID_CFG_SERVER_LAZY_CONTEXT_START_TIMEOUT);
+			this.lazyContextStartTimeout = startTimeout == null ? 10000 : Math.max(0, startTimeout);
+
 			Boolean stacks = resolveBooleanProperty(PaxWebConfig.PID_CFG_SHOW_STACKS);
 			showStacks = stacks != null && stacks;
 
@@ -430,6 +458,36 @@ public class ConfigurationImpl extends PropertyStore implements Configuration {
 			return this.eventDispatcherThreadCount;
 		}
 
+		@Override
+		public Integer getPathMatchCacheSize() {
+			return this.pathMatchCacheSize;
+		}
+
+		@Override
+		public Integer getRegistrationGroupCommitDelay() {
+			return this.registrationGroupCommitDelay;
+		}
+
+		@Override
+		public Integer getRedeployDrainTimeout() {
+			return this.redeployDrainTimeout;
+		}
+
+		@Override
+		public Boolean isLazyContextStart() {
+			return this.lazyContextStart;
+		}
+
+		@Override
+		public Integer getLazyContextIdleTimeout() {
+			return this.lazyContextIdleTimeout;
+		}
+
+		@Override
+		public Integer getLazyContextStartTimeout() {
+			return this.lazyContextStartTimeout;
+		}
+
 		@Override
 		public Boolean isShowStacks() {
 			return showStacks;
@@ -658,6 +716,18 @@ public class ConfigurationImpl extends PropertyStore implements Configuration {
 			return resolveBooleanProperty(PaxWebConfig.PID_CFG_FORMAUTH_REDIRECT);
 		}
 
+		@Override
+		public Integer getAuthCacheSize() {
+			Integer size = resolveIntegerProperty(PaxWebConfig.PID_CFG_AUTH_CACHE_SIZE);
+			return size == null ? 0 : Math.max(0, size);
+		}
+
+		@Override
+		public Long getAuthCacheTtl() {
+			Long ttl = resolveLongProperty(PaxWebConfig.PID_CFG_AUTH_CACHE_TTL);
+			return ttl == null || ttl <= 0L ? 60000L : ttl;
+		}
+
 		@Override
 		public Boolean isEncEnabled() {
 			Boolean enabled = resolveBooleanProperty(PaxWebConfig.PID_CFG_ENC_ENABLED);
@@ -751,6 +821,27 @@ public class ConfigurationImpl extends PropertyStore implements Configuration {
 		public Integer maxCacheTTL() {
 			return resolveIntegerProperty(PaxWebConfig.PID_CFG_DEFAULT_SERVLET_CACHE_TTL);
 		}
+
+		@Override
+		public Integer sharedCacheSize() {
+			return resolveIntegerProperty(PaxWebConfig.PID_CFG_DEFAULT_SERVLET_SHARED_CACHE_SIZE);
+		}
+
+		@Override
+		public String precompressed() {
+			return resolveStringProperty(PaxWebConfig.PID_CFG_DEFAULT_SERVLET_PRECOMPRESSED);
+		}
+
+		@Override
+		public boolean compress() {
+			Boolean compress = resolveBooleanProperty(PaxWebConfig.PID_CFG_DEFAULT_SERVLET_COMPRESS);
+			return compress != null && compress;
+		}
+
+		@Override
+		public Integer compressMinSize() {
+			return resolveIntegerProperty(PaxWebConfig.PID_CFG_DEFAULT_SERVLET_COMPRESS_MIN_SIZE);
+		}
 	}
 
 	private class SessionConfigurationImpl implements SessionConfiguration {
@@ -0,0 +1,218 @@
+/*
+ * Copyright 2023 OPS4J.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.web.service.internal;
+
+import java.net.URL;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import javax.servlet.Servlet;
+
+import org.ops4j.pax.web.service.spi.ServerController;
+import org.ops4j.pax.web.service.spi.ServerState;
+import org.ops4j.pax.web.service.spi.config.Configuration;
+import org.ops4j.pax.web.service.spi.model.OsgiContextModel;
+import org.ops4j.pax.web.service.spi.model.ServerModel;
+import org.ops4j.pax.web.service.spi.model.ServletContextModel;
+import org.ops4j.pax.web.service.spi.model.events.ServerListener;
+import org.ops4j.pax.web.service.spi.task.Batch;
+import org.ops4j.pax.web.service.spi.task.Change;
+import org.ops4j.pax.web.service.spi.task.ContainerInitializerModelChange;
+import org.ops4j.pax.web.service.spi.task.EventListenerModelChange;
+import org.ops4j.pax.web.service.spi.task.FilterModelChange;
+import org.ops4j.pax.web.service.spi.task.OpCode;
+import org.ops4j.pax.web.service.spi.task.ServletModelChange;
+import org.ops4j.pax.web.service.spi.task.TransactionStateChange;
+import org.ops4j.pax.web.service.spi.task.WebSocketModelChange;
+
+/**
+ * <p>{@link ServerController} always used by {@link HttpServiceEnabled}, so the registration tasks run as a
+ * group - queued when group commit of registration tasks is enabled (see {@link ServerModel#configureGroupCommit})
+ * or run by {@link ServerModel#runAsGroup} for bulk registrations - don't (re)start the contexts after each
+ * batch.</p>
+ *
+ * <p>When a {@link Batch} is sent by one of the tasks of a group, the contexts it (re)configures are first
+ * associated with config transaction, so the actual container doesn't (re)start them after each batch. The
+ * transactions are committed by {@link ServerModel} at the end of the group, so each context is (re)started
+ * at most once per group.</p>
+ *
+ * <p>Outside of a group ({@link ServerModel#getGroupCommitContexts()} returns {@code null}) each batch is simply
+ * passed to the delegate, so wrapping the controller doesn't change the behavior of other registrations.</p>
+ */
+class GroupCommitServerController implements ServerController {
+
+	private final ServerController delegate;
+	private final ServerModel serverModel;
+
+	GroupCommitServerController(ServerController delegate, ServerModel serverModel) {
+		this.delegate = delegate;
+		this.serverModel = serverModel;
+	}
+
+	@Override
+	public void sendBatch(Batch batch) {
+		Map<String, Boolean> groupContexts = serverModel.getGroupCommitContexts();
+		if (groupContexts == null) {
+			// not part of a group
+			delegate.sendBatch(batch);
+			return;
+		}
+
+		Set<String> ownTransactions = new LinkedHashSet<>();
+		Set<String> touched = new LinkedHashSet<>();
+		for (Change change : batch.getOperations()) {
+			if (change instanceof TransactionStateChange) {
+				ownTransactions.add(((TransactionStateChange) change).getContextPath());
+			} else if (change.getKind() == OpCode.ADD) {
+				collectContexts(change, touched);
+			}
+		}
+
+		Batch prepare = new Batch("Group transaction for " + batch);
+		for (String contextPath : ownTransactions) {
+			// batch manages transaction of the context on its own - commit ours first
+			if (Boolean.TRUE.equals(groupContexts.put(contextPath, Boolean.FALSE))) {
+				prepare.commitTransaction(contextPath);
+			}
+		}
+		for (String contextPath : touched) {
+			if (!groupContexts.containsKey(contextPath)) {
+				groupContexts.put(contextPath, Boolean.TRUE);
+				prepare.beginTransaction(contextPath);
+			}
+		}
+		if (!prepare.getOperations().isEmpty()) {
+			delegate.sendBatch(prepare);
+		}
+
+		delegate.sendBatch(batch);
+	}
+
+	/**
+	 * Collects paths of the contexts which would be started or restarted by given change.
+	 * @param change
+	 * @param contexts
+	 */
+	private void collectContexts(Change change, Set<String> contexts) {
+		if (change instanceof ServletModelChange) {
+			ServletModelChange c = (ServletModelChange) change;
+			if (c.getServletModel() != null && !c.isDisabled()) {
+				// first active servlet starts the context
+				addContexts(c.getContextModels(), contexts, false);
+			}
+		} else if (change instanceof WebSocketModelChange) {
+			WebSocketModelChange c = (WebSocketModelChange) change;
+			if (c.getWebSocketModel() != null && !c.isDisabled()) {
+				addContexts(c.getContextModels(), contexts, false);
+			}
+		} else if (change instanceof FilterModelChange) {
+			FilterModelChange c = (FilterModelChange) change;
+			if (c.getFilterModel() != null && !c.isDisabled()) {
+				addContexts(c.getContextModels(), contexts, true);
+			}
+		} else if (change instanceof EventListenerModelChange) {
+			EventListenerModelChange c = (EventListenerModelChange) change;
+			if (c.getEventListenerModel() != null) {
+				addContexts(c.getContextModels(), contexts, true);
+			}
+		} else if (change instanceof ContainerInitializerModelChange) {
+			ContainerInitializerModelChange c = (ContainerInitializerModelChange) change;
+			if (c.getContainerInitializerModel() != null) {
+				addContexts(c.getContextModels(), contexts, true);
+			}
+		}
+	}
+
+	/**
+	 * Adds the paths of passed contexts. If {@code activeOnly} is {@code true}, only the contexts with servlets
+	 * are added - we don't want to start a context only because a filter or listener was registered to it.
+	 * @param models
+	 * @param contexts
+	 * @param activeOnly
+	 */
+	private void addContexts(List<OsgiContextModel> models, Set<String> contexts, boolean activeOnly) {
+		for (OsgiContextModel ocm : models) {
+			String contextPath = ocm.getContextPath();
+			if (activeOnly) {
+				ServletContextModel scm = serverModel.getServletContextModel(contextPath);
+				if (scm == null || scm.getServletNameMapping().isEmpty()) {
+					continue;
+				}
+			}
+			contexts.add(contextPath);
+		}
+	}
+
+	// --- pure delegation
+
+	@Override
+	public ServerState getState() {
+		return delegate.getState();
+	}
+
+	@Override
+	public void configure() throws Exception {
+		delegate.configure();
+	}
+
+	@Override
+	public void start() throws Exception {
+		delegate.start();
+	}
+
+	@Override
+	public void stop() throws Exception {
+		delegate.stop();
+	}
+
+	@Override
+	public Configuration getConfiguration() {
+		return delegate.getConfiguration();
+	}
+
+	@Override
+	public boolean reconfigure(Configuration configuration, Set<String> changedProperties) {
+		return delegate.reconfigure(configuration, changedProperties);
+	}
+
+	@Override
+	public void setConfigurationExecutor(Executor executor) {
+		delegate.setConfigurationExecutor(executor);
+	}
+
+	@Override
+	public void addListener(ServerListener listener) {
+		delegate.addListener(listener);
+	}
+
+	@Override
+	public void removeListener(ServerListener listener) {
+		delegate.removeListener(listener);
+	}
+
+	@Override
+	public Servlet createResourceServlet(URL urlBase, String base) {
+		return delegate.createResourceServlet(urlBase, base);
+	}
+
+	@Override
+	public String toString() {
+		return delegate.toString();
+	}
+
+}
@@ -28,6 +28,7 @@ import javax.servlet.SessionCookieConfig;
 import javax.servlet.descriptor.JspPropertyGroupDescriptor;
 import javax.servlet.descriptor.TaglibDescriptor;
 
+import org.ops4j.pax.web.service.BulkRegistration;
 import org.ops4j.pax.web.service.MultiBundleWebContainerContext;
 import org.ops4j.pax.web.service.WebContainer;
 import org.ops4j.pax.web.service.views.PaxWebContainerView;
@@ -403,6 +404,14 @@ class HttpServiceDisabled implements WebContainer {
 		warn();
 	}
 
+	// --- methods used to register many web elements at once
+
+	@Override
+	public BulkRegistration bulkRegistration(HttpContext httpContext) {
+		warn();
+		return null;
+	}
+
 	@Override
 	public String toString() {
 		return "HttpService (disabled) for bundle " + serviceBundle;
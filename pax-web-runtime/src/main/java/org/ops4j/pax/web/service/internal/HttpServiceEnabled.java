@@ -19,10 +19,12 @@ package org.ops4j.pax.web.service.internal;
 
 import java.lang.reflect.InvocationTargetException;
 import java.net.URL;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Deque;
 import java.util.Dictionary;
 import java.util.EventListener;
 import java.util.HashMap;
@@ -47,6 +49,7 @@ import javax.servlet.descriptor.TaglibDescriptor;
 
 import org.ops4j.pax.web.annotations.PaxWebConfiguration;
 import org.ops4j.pax.web.annotations.PaxWebTesting;
+import org.ops4j.pax.web.service.BulkRegistration;
 import org.ops4j.pax.web.service.MultiBundleWebContainerContext;
 import org.ops4j.pax.web.service.PaxWebConstants;
 import org.ops4j.pax.web.service.WebContainer;
@@ -158,7 +161,10 @@ public class HttpServiceEnabled implements WebContainer, StoppableHttpService {
 
 		this.serviceBundle = bundle;
 
-		this.serverController = srvController;
+		// bulk registrations (re)start the contexts only once, at the end of the group, so the controller has
+		// to be aware of the groups. Batches sent outside of a group are passed to srvController unchanged
+		this.serverController = srvController instanceof GroupCommitServerController ? srvController
+				: new GroupCommitServerController(srvController, serverModel);
 
 		// dispatcher to send events related to web element/context (un)registration
 		this.eventDispatcher = eventDispatcher;
@@ -166,6 +172,17 @@ public class HttpServiceEnabled implements WebContainer, StoppableHttpService {
 		this.configuration = configuration;
 	}
 
+	/**
+	 * Returns current {@link Configuration}. PID changes applied without restart (see
+	 * {@link ServerController#reconfigure}) replace the configuration of the {@link ServerController} only, so
+	 * its configuration takes precedence over the one passed to the constructor.
+	 * @return
+	 */
+	private Configuration configuration() {
+		Configuration current = serverController.getConfiguration();
+		return current != null ? current : configuration;
+	}
+
 	@PaxWebTesting
 	public ServiceModel getServiceModel() {
 		return serviceModel;
@@ -464,7 +481,7 @@ public class HttpServiceEnabled implements WebContainer, StoppableHttpService {
 
 				// this can be done only after translating the contexts ...
 				if (model.isJspServlet()) {
-					model.configureJspServlet(configuration.jsp());
+					model.configureJspServlet(configuration().jsp());
 				}
 
 				try {
@@ -1446,6 +1463,72 @@ public class HttpServiceEnabled implements WebContainer, StoppableHttpService {
 		}
 	}
 
+	// --- methods used to register many web elements at once
+
+	@Override
+	public BulkRegistration bulkRegistration(HttpContext httpContext) {
+		return new HttpServiceBulkRegistration(httpContext);
+	}
+
+	/**
+	 * <p>Registers all the passed models in single configuration task, run as a group (see
+	 * {@link ServerModel#runAsGroup}), so the affected contexts are (re)started at most once.</p>
+	 *
+	 * <p>If registration of any model fails, the models registered so far are unregistered in reverse order.
+	 * Until then, they may already serve requests if their context is running.</p>
+	 *
+	 * @param httpContexts contexts for Http Service scenario, empty list for Whiteboard scenario
+	 * @param models
+	 * @throws ServletException
+	 * @throws NamespaceException
+	 */
+	private void doRegisterAll(List<HttpContext> httpContexts, List<ElementModel<?, ?>> models)
+			throws ServletException, NamespaceException {
+		LOG.debug("Passing registration of {} web elements to configuration thread", models.size());
+
+		serverModel.runAsGroup(serverController, () -> {
+			Deque<ElementModel<?, ?>> registered = new ArrayDeque<>(models.size());
+			try {
+				for (ElementModel<?, ?> model : models) {
+					// nested tasks have to be run immediately
+					model.setAsynchronusRegistration(false);
+					if (httpContexts.isEmpty()) {
+						// Whiteboard scenario - the models are already associated with OsgiContextModels
+						model.register(whiteboardWebContainer);
+					} else if (model instanceof ServletModel) {
+						doRegisterServlet(httpContexts, (ServletModel) model);
+					} else if (model instanceof FilterModel) {
+						doRegisterFilter(httpContexts, (FilterModel) model);
+					} else if (model instanceof EventListenerModel) {
+						doRegisterEventListener(httpContexts, (EventListenerModel) model);
+					} else if (model instanceof WelcomeFileModel) {
+						doRegisterWelcomeFiles(httpContexts, (WelcomeFileModel) model);
+					} else if (model instanceof ErrorPageModel) {
+						doRegisterErrorPages(httpContexts, (ErrorPageModel) model);
+					} else {
+						throw new IllegalArgumentException("Can't register " + model + " together with other web elements");
+					}
+					registered.push(model);
+				}
+			} catch (ServletException | NamespaceException | RuntimeException e) {
+				LOG.warn("Bulk registration failed, unregistering {} already registered web elements: {}",
+						registered.size(), e.getMessage());
+				while (!registered.isEmpty()) {
+					// after registration, the models are associated with OsgiContextModels, so we can use
+					// Whiteboard unregistration, which relies on model identity
+					ElementModel<?, ?> model = registered.pop();
+					try {
+						model.unregister(whiteboardWebContainer);
+					} catch (RuntimeException ue) {
+						LOG.warn("Problem unregistering {}: {}", model, ue.getMessage(), ue);
+					}
+				}
+				throw e;
+			}
+			return null;
+		}, "Bulk registration of " + models.size() + " web elements");
+	}
+
 	// methods used to register / configure JSPs
 
 	@Override
@@ -1453,7 +1536,7 @@ public class HttpServiceEnabled implements WebContainer, StoppableHttpService {
 		try {
 			ServletModel jspServletModel = serverModel.createJspServletModel(serviceBundle,
 					PaxWebConstants.DEFAULT_JSP_SERVLET_NAME, null, urlPatterns, Utils.toMap(initParams),
-					configuration.jsp());
+					configuration().jsp());
 			// there can be only one such servlet because of its fixed "jsp" name
 			doRegisterServlet(Collections.singletonList(context), jspServletModel);
 		} catch (NamespaceException | ServletException e) {
@@ -1465,7 +1548,7 @@ public class HttpServiceEnabled implements WebContainer, StoppableHttpService {
 	public void registerJspServlet(String jspFile, String[] urlPatterns, Dictionary<String, String> initParams, HttpContext context) {
 		try {
 			ServletModel model = serverModel.createJspServletModel(serviceBundle,
-					jspFile, jspFile, urlPatterns, Utils.toMap(initParams), configuration.jsp());
+					jspFile, jspFile, urlPatterns, Utils.toMap(initParams), configuration().jsp());
 			// "jsp servlet" is special servlet mapped to anything, but actually implemented using JSP file.
 			// Such servlet actually requires full JSP engine to be configured and ready, but it'll be added
 			// automatically
@@ -2470,6 +2553,17 @@ public class HttpServiceEnabled implements WebContainer, StoppableHttpService {
 			serverModel.registerWabOsgiContextListener(whiteboardExtenderContext);
 		}
 
+		@Override
+		public void registerAll(List<ElementModel<?, ?>> models) {
+			try {
+				doRegisterAll(Collections.emptyList(), models);
+			} catch (RuntimeException e) {
+				throw e;
+			} catch (Exception e) {
+				throw new RuntimeException(e.getMessage(), e);
+			}
+		}
+
 		@Override
 		public void addWhiteboardOsgiContextModel(OsgiContextModel model) {
 			serverModel.runSilently(() -> {
@@ -2515,11 +2609,11 @@ public class HttpServiceEnabled implements WebContainer, StoppableHttpService {
 			if (file != null) {
 				jspServletModel = serverModel.createJspServletModel(serviceBundle,
 						file, file,
-						model.getMappings(), model.getInitParams(), configuration.jsp());
+						model.getMappings(), model.getInitParams(), configuration().jsp());
 			} else {
 				jspServletModel = serverModel.createJspServletModel(serviceBundle,
 						PaxWebConstants.DEFAULT_JSP_SERVLET_NAME, null,
-						model.getMappings(), model.getInitParams(), configuration.jsp());
+						model.getMappings(), model.getInitParams(), configuration().jsp());
 			}
 			for (OsgiContextModel ocm : model.getContextModels()) {
 				jspServletModel.addContextModel(ocm);
@@ -2590,6 +2684,32 @@ public class HttpServiceEnabled implements WebContainer, StoppableHttpService {
 			}, true);
 		}
 
+		@Override
+		public boolean updateServiceRank(ElementModel<?, ?> webElement, int rank) {
+			int previousRank = webElement.getServiceRank();
+			try {
+				Boolean updated = serverModel.run(() -> {
+					Batch batch = new Batch("Ranking change of " + webElement);
+					if (!serverModel.updateServiceRank(webElement, rank, batch)) {
+						return false;
+					}
+					LOG.info("Changed service ranking of {} from {} to {}", webElement, previousRank, rank);
+					try {
+						serverController.sendBatch(batch);
+						batch.accept(serviceModel);
+					} catch (RuntimeException e) {
+						webElement.setServiceRank(previousRank);
+						throw e;
+					}
+					return true;
+				}, false);
+				return updated != null && updated;
+			} catch (Exception e) {
+				LOG.warn("Can't change service ranking of {}: {}", webElement, e.getMessage(), e);
+				return false;
+			}
+		}
+
 		private void handleReRegistrationEvents(WebElementEvent.State state, Batch batch, Exception e) {
 			if (e == null) {
 				for (Change change : batch.getOperations()) {
@@ -2720,7 +2840,7 @@ public class HttpServiceEnabled implements WebContainer, StoppableHttpService {
 							if (model.isJspServlet()
 									|| (model.getServletClass() != null
 									&& PaxWebConstants.DEFAULT_JSP_SERVLET_CLASS.equals(model.getServletClass().getName()))) {
-								model.configureJspServlet(configuration.jsp());
+								model.configureJspServlet(configuration().jsp());
 							}
 						}
 					}
@@ -2783,7 +2903,7 @@ public class HttpServiceEnabled implements WebContainer, StoppableHttpService {
 
 		@Override
 		public Configuration getConfiguration() {
-			return configuration;
+			return configuration();
 		}
 	}
 
@@ -2822,6 +2942,83 @@ public class HttpServiceEnabled implements WebContainer, StoppableHttpService {
 		}
 	}
 
+	/**
+	 * {@link BulkRegistration} collecting the models to be registered with {@link #doRegisterAll}.
+	 */
+	private class HttpServiceBulkRegistration implements BulkRegistration {
+
+		private final HttpContext httpContext;
+		private final List<ElementModel<?, ?>> models = new ArrayList<>();
+		private boolean committed = false;
+
+		HttpServiceBulkRegistration(HttpContext httpContext) {
+			this.httpContext = httpContext;
+		}
+
+		@Override
+		public BulkRegistration servlet(Servlet servlet, String servletName, String[] urlPatterns,
+				Dictionary<String, String> initParams) {
+			return add(new ServletModel(servletName, urlPatterns, servlet, initParams, null, null, null));
+		}
+
+		@Override
+		public BulkRegistration servlet(Class<? extends Servlet> servletClass, String[] urlPatterns,
+				Dictionary<String, String> initParams) {
+			return add(new ServletModel(urlPatterns, servletClass, initParams, null, null, null));
+		}
+
+		@Override
+		public BulkRegistration servlet(String alias, Servlet servlet, Dictionary<?, ?> initParams) {
+			return add(new ServletModel(alias, servlet, initParams, null, null));
+		}
+
+		@Override
+		public BulkRegistration filter(Filter filter, String filterName, String[] urlPatterns, String[] servletNames,
+				Dictionary<String, String> initParams) {
+			return add(new FilterModel(filterName, urlPatterns, servletNames, null, filter, initParams, null));
+		}
+
+		@Override
+		public BulkRegistration filter(Class<? extends Filter> filterClass, String filterName, String[] urlPatterns,
+				String[] servletNames, Dictionary<String, String> initParams) {
+			return add(new FilterModel(filterName, urlPatterns, servletNames, null, filterClass, initParams, null));
+		}
+
+		@Override
+		public BulkRegistration eventListener(EventListener listener) {
+			return add(new EventListenerModel(listener));
+		}
+
+		@Override
+		public BulkRegistration welcomeFiles(String[] welcomeFiles, boolean redirect) {
+			return add(new WelcomeFileModel(welcomeFiles, redirect));
+		}
+
+		@Override
+		public BulkRegistration errorPages(String[] errors, String location) {
+			return add(new ErrorPageModel(errors, location));
+		}
+
+		@Override
+		public void commit() throws ServletException, NamespaceException {
+			if (committed) {
+				throw new IllegalStateException("Bulk registration was already committed");
+			}
+			committed = true;
+			if (!models.isEmpty()) {
+				doRegisterAll(Collections.singletonList(httpContext), models);
+			}
+		}
+
+		private BulkRegistration add(ElementModel<?, ?> model) {
+			if (committed) {
+				throw new IllegalStateException("Bulk registration was already committed");
+			}
+			models.add(model);
+			return this;
+		}
+	}
+
 	private static class ResourceServlet {
 		public final Supplier<Servlet> supplier;
 		public final URL urlBase;
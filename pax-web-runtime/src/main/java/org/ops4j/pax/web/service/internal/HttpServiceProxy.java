@@ -28,6 +28,7 @@ import javax.servlet.SessionCookieConfig;
 import javax.servlet.descriptor.JspPropertyGroupDescriptor;
 import javax.servlet.descriptor.TaglibDescriptor;
 
+import org.ops4j.pax.web.service.BulkRegistration;
 import org.ops4j.pax.web.service.MultiBundleWebContainerContext;
 import org.ops4j.pax.web.service.WebContainer;
 import org.ops4j.pax.web.service.views.PaxWebContainerView;
@@ -432,6 +433,13 @@ class HttpServiceProxy implements WebContainer, StoppableHttpService {
 		delegate.unregisterConstraintMapping(httpContext);
 	}
 
+	// --- methods used to register many web elements at once
+
+	@Override
+	public BulkRegistration bulkRegistration(HttpContext httpContext) {
+		return delegate.bulkRegistration(httpContext);
+	}
+
 	@Override
 	public String toString() {
 		return "Proxy for " + delegate.toString();
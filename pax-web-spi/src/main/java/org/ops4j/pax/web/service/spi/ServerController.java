@@ -17,9 +17,12 @@
 package org.ops4j.pax.web.service.spi;
 
 import java.net.URL;
+import java.util.Set;
+import java.util.concurrent.Executor;
 import javax.servlet.Servlet;
 
 import org.ops4j.pax.web.service.spi.config.Configuration;
+import org.ops4j.pax.web.service.spi.config.ReconfigurationScope;
 import org.ops4j.pax.web.service.spi.model.events.ServerListener;
 import org.ops4j.pax.web.service.spi.task.Batch;
 
@@ -96,6 +99,36 @@ public interface ServerController {
 	 */
 	void sendBatch(Batch batch);
 
+	/**
+	 * <p>Tries to apply changed {@link Configuration} to running server without recreating it, so registered
+	 * web applications are not affected. Depending on {@link ReconfigurationScope} of the changed properties, the
+	 * controller may change the server in place or recreate only its connectors.</p>
+	 *
+	 * <p>When {@code false} is returned, the server is not changed at all and the runtime has to recreate
+	 * entire controller. That's what the default implementation does - only Jetty's controller overrides it,
+	 * so with Tomcat and Undertow every change of the configuration leads to full restart.</p>
+	 *
+	 * @param configuration new configuration, which becomes the configuration of this controller when the change
+	 *        is applied
+	 * @param changedProperties names of PID properties that have changed
+	 * @return {@code true} if the change was applied
+	 */
+	default boolean reconfigure(Configuration configuration, Set<String> changedProperties) {
+		return false;
+	}
+
+	/**
+	 * <p>Passes an {@link Executor} of the configuration thread - the one which sends the {@link Batch batches}
+	 * to this controller. The controller may use it to change the server outside of any {@link Batch}, for
+	 * example to start a context lazily when it receives the first request.</p>
+	 *
+	 * <p>Without such executor, the controller has to perform these changes in the calling thread.</p>
+	 *
+	 * @param executor
+	 */
+	default void setConfigurationExecutor(Executor executor) {
+	}
+
 	/**
 	 * Each native Servlet container has own version of <em>default/resource servlet</em> usually implementing such
 	 * aspects as resource caching. Such servlet can be created using two (distinct) parameters:<ul>
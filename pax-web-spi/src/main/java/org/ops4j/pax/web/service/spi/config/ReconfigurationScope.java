@@ -0,0 +1,116 @@
+/*
+ * Copyright 2023 OPS4J.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.web.service.spi.config;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.ops4j.pax.web.service.PaxWebConfig;
+
+/**
+ * <p>Classification of the changes of {@code org.ops4j.pax.web} PID properties by their impact on running
+ * server. Values are ordered by the impact, so the scope of several changed properties is the highest scope
+ * of them.</p>
+ *
+ * <p>The scope only tells what <em>can</em> be done - it's up to
+ * {@link org.ops4j.pax.web.service.spi.ServerController#reconfigure} to apply the change. Currently only Jetty
+ * applies {@link #HOT} and {@link #CONNECTORS} changes to running server. Tomcat and Undertow don't implement
+ * the reconfiguration, so any change of the PID recreates entire server and redeploys all web applications,
+ * the same as for {@link #FULL} changes.</p>
+ */
+public enum ReconfigurationScope {
+
+	/** Property can be applied to running server without affecting connections or web applications */
+	HOT,
+
+	/** Connectors have to be recreated (listening sockets are reopened), but web applications are not affected */
+	CONNECTORS,
+
+	/** Entire server runtime has to be recreated and all web applications have to be redeployed */
+	FULL;
+
+	private static final Set<String> HOT_PROPERTIES = new HashSet<>(Arrays.asList(
+			PaxWebConfig.PID_CFG_SERVER_MAX_THREADS,
+			PaxWebConfig.PID_CFG_SERVER_MIN_THREADS,
+			PaxWebConfig.PID_CFG_SERVER_IDLE_TIMEOUT,
+			PaxWebConfig.PID_CFG_CONNECTOR_IDLE_TIMEOUT,
+			PaxWebConfig.PID_CFG_DEFAULT_SERVLET_CACHE_TTL,
+			PaxWebConfig.PID_CFG_LOG_NCSA_ENABLED,
+			PaxWebConfig.PID_CFG_LOG_NCSA_LOGDIR,
+			PaxWebConfig.PID_CFG_LOG_NCSA_LOGFILE,
+			PaxWebConfig.PID_CFG_LOG_NCSA_LOGFILE_DATE_FORMAT,
+			PaxWebConfig.PID_CFG_LOG_NCSA_APPEND,
+			PaxWebConfig.PID_CFG_LOG_NCSA_RETAINDAYS,
+			PaxWebConfig.PID_CFG_LOG_NCSA_EXTENDED,
+			PaxWebConfig.PID_CFG_LOG_NCSA_LOGTIMEZONE,
+			PaxWebConfig.PID_CFG_LOG_NCSA_BUFFERED
+	));
+
+	private static final Set<String> CONNECTOR_PROPERTIES = new HashSet<>(Arrays.asList(
+			PaxWebConfig.PID_CFG_HTTP_PORT,
+			PaxWebConfig.PID_CFG_HTTP_PORT_SECURE,
+			PaxWebConfig.PID_CFG_HTTP_ENABLED,
+			PaxWebConfig.PID_CFG_HTTP_SECURE_ENABLED,
+			PaxWebConfig.PID_CFG_LISTENING_ADDRESSES,
+			PaxWebConfig.PID_CFG_HTTP_CONNECTOR_NAME,
+			PaxWebConfig.PID_CFG_HTTP_SECURE_CONNECTOR_NAME,
+			PaxWebConfig.PID_CFG_HTTP_CHECK_FORWARDED_HEADERS,
+			PaxWebConfig.PID_CFG_VALIDATE_CERTS,
+			PaxWebConfig.PID_CFG_VALIDATE_PEER_CERTS,
+			PaxWebConfig.PID_CFG_ENABLE_OCSP,
+			PaxWebConfig.PID_CFG_ENABLE_CRLDP,
+			PaxWebConfig.PID_CFG_CRL_PATH,
+			PaxWebConfig.PID_CFG_OCSP_RESPONDER_URL,
+			PaxWebConfig.PID_CFG_MAX_CERT_PATH_LENGTH
+	));
+
+	/** All {@code org.ops4j.pax.web.ssl.*} properties are used only to create secure connectors */
+	private static final String SSL_PREFIX = "org.ops4j.pax.web.ssl.";
+
+	/**
+	 * Returns the scope of a change of single property.
+	 * @param property
+	 * @return
+	 */
+	public static ReconfigurationScope of(String property) {
+		if (HOT_PROPERTIES.contains(property)) {
+			return HOT;
+		}
+		if (CONNECTOR_PROPERTIES.contains(property) || property.startsWith(SSL_PREFIX)) {
+			return CONNECTORS;
+		}
+		return FULL;
+	}
+
+	/**
+	 * Returns the highest scope of changes of all passed properties.
+	 * @param properties
+	 * @return
+	 */
+	public static ReconfigurationScope of(Collection<String> properties) {
+		ReconfigurationScope scope = HOT;
+		for (String property : properties) {
+			ReconfigurationScope s = of(property);
+			if (s.compareTo(scope) > 0) {
+				scope = s;
+			}
+		}
+		return scope;
+	}
+
+}
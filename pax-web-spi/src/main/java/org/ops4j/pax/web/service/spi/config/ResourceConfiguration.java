@@ -58,4 +58,32 @@ public interface ResourceConfiguration {
 	 */
 	Integer maxCacheTTL();
 
+	/**
+	 * <p>Integer property to specify maximum total size of the content cache shared by all the resource servlets
+	 * in kB. {@code null} or {@code 0} means the shared cache is not used.</p>
+	 * @return
+	 */
+	Integer sharedCacheSize();
+
+	/**
+	 * <p>String property to specify encodings (and optionally file extensions) of precompressed resources.
+	 * {@code true} means {@code br=.br,gzip=.gz}.</p>
+	 * @return
+	 */
+	String precompressed();
+
+	/**
+	 * <p>Boolean property to specify whether compressible resources should be compressed (and cached) on the
+	 * fly. Without {@link #sharedCacheSize() shared cache}, compressed variants are kept in single cache of
+	 * {@link #maxTotalCacheSize()} size used by all the resource servlets.</p>
+	 * @return
+	 */
+	boolean compress();
+
+	/**
+	 * <p>Integer property to specify minimal size of the resource to be compressed in bytes.</p>
+	 * @return
+	 */
+	Integer compressMinSize();
+
 }
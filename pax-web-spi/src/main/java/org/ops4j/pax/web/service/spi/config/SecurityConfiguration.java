@@ -246,6 +246,18 @@ public interface SecurityConfiguration {
 	 */
 	Boolean getFormAuthRedirect();
 
+	/**
+	 * Returns maximum number of cached successful credential verifications, {@code 0} (default) disables the cache
+	 * @return
+	 */
+	Integer getAuthCacheSize();
+
+	/**
+	 * Returns time (in ms) after which cached credential verification expires, defaults to 60s (60000ms)
+	 * @return
+	 */
+	Long getAuthCacheTtl();
+
 	/**
 	 * Checks if configuration values are expected to be encrypted - this triggers a configuration (or tracking)
 	 * of Jasypt StringEncryptor (optional dependency)
@@ -160,6 +160,48 @@ public interface ServerConfiguration {
 	 */
 	Integer getEventDispatcherThreadCount();
 
+	/**
+	 * Returns the maximum number of request paths for which the matched context is cached ({@code 0} means
+	 * no cache). Only relevant for Undertow, where {@code io.undertow.server.handlers.PathHandler} is used to
+	 * select the context.
+	 * @return
+	 */
+	Integer getPathMatchCacheSize();
+
+	/**
+	 * Returns maximum delay in milliseconds of registration tasks committed together as a group. {@code 0} means
+	 * that each registration task is processed separately.
+	 * @return
+	 */
+	Integer getRegistrationGroupCommitDelay();
+
+	/**
+	 * Returns maximum time in milliseconds to drain in-flight requests (and to hold new requests) when a context
+	 * is restarted. {@code 0} means that contexts are restarted without draining.
+	 * @return
+	 */
+	Integer getRedeployDrainTimeout();
+
+	/**
+	 * Returns whether the contexts should be started when they receive first request instead of when first
+	 * active web element is registered.
+	 * @return
+	 */
+	Boolean isLazyContextStart();
+
+	/**
+	 * Returns time in milliseconds after which idle, lazily started context is stopped. {@code 0} means that
+	 * such contexts are never stopped.
+	 * @return
+	 */
+	Integer getLazyContextIdleTimeout();
+
+	/**
+	 * Returns maximum time in milliseconds a request waits for lazily started context to be started.
+	 * @return
+	 */
+	Integer getLazyContextStartTimeout();
+
 	/**
 	 * Flag that specifies whether stack traces should be visible in error pages.
 	 * @return
@@ -0,0 +1,399 @@
+/*
+ * Copyright 2023 OPS4J.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.web.service.spi.model;
+
+import java.lang.reflect.Array;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+import org.osgi.dto.DTO;
+import org.osgi.framework.dto.ServiceReferenceDTO;
+import org.osgi.service.http.runtime.dto.FilterDTO;
+import org.osgi.service.http.runtime.dto.RequestInfoDTO;
+import org.osgi.service.http.runtime.dto.ResourceDTO;
+import org.osgi.service.http.runtime.dto.RuntimeDTO;
+import org.osgi.service.http.runtime.dto.ServletContextDTO;
+import org.osgi.service.http.runtime.dto.ServletDTO;
+
+/**
+ * <p>Immutable snapshot of {@link RuntimeDTO} created by {@link ServerModel} for given value of
+ * {@code service.changecount}. It is created in configuration thread only after the model changes and
+ * then read by any thread without synchronization.</p>
+ *
+ * <p>The snapshot also keeps an index of contexts and servlet/resource/filter mappings, so
+ * {@link #calculateRequestInfoDTO(String)} doesn't have to sort the DTOs for each path.</p>
+ *
+ * <p>The DTOs of the snapshot are never passed to the callers - {@link #toRuntimeDTO} and
+ * {@link #calculateRequestInfoDTO} return copies.</p>
+ */
+final class RuntimeDTOSnapshot {
+
+	/** Public, non-static fields of DTO classes */
+	private static final ClassValue<Field[]> DTO_FIELDS = new ClassValue<Field[]>() {
+		@Override
+		protected Field[] computeValue(Class<?> type) {
+			List<Field> fields = new ArrayList<>();
+			for (Field f : type.getFields()) {
+				if (!Modifier.isStatic(f.getModifiers()) && !Modifier.isFinal(f.getModifiers())) {
+					fields.add(f);
+				}
+			}
+			return fields.toArray(new Field[0]);
+		}
+	};
+
+	private final long changeCount;
+
+	/** Template {@link RuntimeDTO} without {@link RuntimeDTO#serviceDTO} */
+	private final RuntimeDTO runtime;
+
+	/** Contexts ordered by context path, the most specific first */
+	private final ContextMappings[] contexts;
+
+	RuntimeDTOSnapshot(long changeCount, RuntimeDTO runtime) {
+		this.changeCount = changeCount;
+		this.runtime = runtime;
+
+		Set<ServletContextDTO> orderedServletContexts = new TreeSet<>(new ContextComparator());
+		Collections.addAll(orderedServletContexts, runtime.servletContextDTOs);
+		List<ContextMappings> mappings = new ArrayList<>(orderedServletContexts.size());
+		for (ServletContextDTO scdto : orderedServletContexts) {
+			mappings.add(new ContextMappings(scdto));
+		}
+		this.contexts = mappings.toArray(new ContextMappings[0]);
+	}
+
+	public long getChangeCount() {
+		return changeCount;
+	}
+
+	/**
+	 * Returns new {@link RuntimeDTO} with a copy of all the information of this snapshot and passed
+	 * {@link ServiceReferenceDTO}, which is not kept in the snapshot. The DTOs are copied, so the caller can't
+	 * change the snapshot used by other callers.
+	 * @param serviceDTO
+	 * @return
+	 */
+	public RuntimeDTO toRuntimeDTO(ServiceReferenceDTO serviceDTO) {
+		RuntimeDTO dto = copy(runtime);
+		dto.serviceDTO = serviceDTO;
+		return dto;
+	}
+
+	/**
+	 * Calculates {@link RequestInfoDTO} using precomputed index of mappings
+	 * @param path
+	 * @return
+	 */
+	public RequestInfoDTO calculateRequestInfoDTO(String path) {
+		RequestInfoDTO dto = new RequestInfoDTO();
+		dto.path = path;
+
+		for (ContextMappings context : contexts) {
+			ServletContextDTO scdto = context.servletContextDTO;
+			if (!path.startsWith(scdto.contextPath)) {
+				continue;
+			}
+			dto.servletContextId = scdto.serviceId;
+
+			String remaining = path.substring(scdto.contextPath.length());
+			if (remaining.contains("?")) {
+				// remove query string
+				remaining = remaining.substring(0, remaining.indexOf("?"));
+			}
+			if (!remaining.startsWith("/")) {
+				remaining = "/" + remaining;
+			}
+
+			// checking servlets/resources
+
+			for (int i = 0; i < context.patterns.length; i++) {
+				String mapping = context.patterns[i];
+				// "/" is always checked last
+				if ("/".equals(mapping) || matches(mapping, remaining)) {
+					DTO target = context.targets[i];
+					if (target instanceof ResourceDTO) {
+						dto.resourceDTO = (ResourceDTO) target;
+					} else {
+						dto.servletDTO = (ServletDTO) target;
+					}
+					// end of searching through servlet/resource mappings
+					break;
+				}
+			}
+
+			// checking filters
+			String targetName = null;
+			if (dto.servletDTO != null) {
+				targetName = dto.servletDTO.name;
+			} else if (dto.resourceDTO != null) {
+				targetName = "default";
+			}
+
+			List<FilterDTO> matchingFilters = new ArrayList<>();
+			for (int i = 0; i < context.filters.length; i++) {
+				if (context.filters[i].matches(targetName, remaining)) {
+					matchingFilters.add(context.filters[i].filterDTO);
+				}
+			}
+			dto.filterDTOs = matchingFilters.toArray(new FilterDTO[0]);
+
+			// end of searching through context paths
+			break;
+		}
+
+		// DTOs found in the index are shared, so the result is copied
+		return copy(dto);
+	}
+
+	/**
+	 * Deep copy of a {@link DTO} - DTOs have only public fields with primitive values, {@link String Strings},
+	 * other DTOs, arrays and maps (OSGi Core, 57.2).
+	 * @param dto
+	 * @param <T>
+	 * @return
+	 */
+	@SuppressWarnings("unchecked")
+	static <T extends DTO> T copy(T dto) {
+		return (T) copyValue(dto);
+	}
+
+	private static Object copyValue(Object value) {
+		if (value == null || value instanceof String || value instanceof Number || value instanceof Boolean
+				|| value instanceof Character) {
+			return value;
+		}
+		Class<?> c = value.getClass();
+		if (c.isArray()) {
+			if (c.getComponentType().isPrimitive()) {
+				return copyPrimitiveArray(value);
+			}
+			Object[] array = ((Object[]) value).clone();
+			for (int i = 0; i < array.length; i++) {
+				array[i] = copyValue(array[i]);
+			}
+			return array;
+		}
+		if (value instanceof Map) {
+			Map<Object, Object> map = new LinkedHashMap<>();
+			((Map<?, ?>) value).forEach((k, v) -> map.put(k, copyValue(v)));
+			return map;
+		}
+		if (value instanceof List) {
+			List<Object> list = new ArrayList<>();
+			((List<?>) value).forEach(v -> list.add(copyValue(v)));
+			return list;
+		}
+		if (!(value instanceof DTO)) {
+			// e.g., values of ServletContextDTO.attributes - not part of DTO contract
+			return value;
+		}
+		try {
+			Object copy = c.getConstructor().newInstance();
+			for (Field f : DTO_FIELDS.get(c)) {
+				f.set(copy, copyValue(f.get(value)));
+			}
+			return copy;
+		} catch (ReflectiveOperationException e) {
+			throw new IllegalStateException("Can't copy " + c.getName() + ": " + e.getMessage(), e);
+		}
+	}
+
+	private static Object copyPrimitiveArray(Object array) {
+		int length = Array.getLength(array);
+		Object copy = Array.newInstance(array.getClass().getComponentType(), length);
+		System.arraycopy(array, 0, copy, 0, length);
+		return copy;
+	}
+
+	/**
+	 * Checks whether the path matches one of valid patterns: "/xxx/*", "/xxx", "*.x" ("/" is handled by
+	 * the caller).
+	 * @param pattern
+	 * @param path
+	 * @return
+	 */
+	private static boolean matches(String pattern, String path) {
+		if (!pattern.contains("*")) {
+			// exact match
+			return pattern.equals(path);
+		}
+		if (pattern.endsWith("/*") && path.startsWith(pattern.substring(0, pattern.length() - 2))) {
+			// prefix match
+			return true;
+		}
+		// extension match
+		return pattern.startsWith("*.") && path.endsWith(pattern.substring(1));
+	}
+
+	/**
+	 * Servlet/resource mappings and filters of single {@link ServletContextDTO}
+	 */
+	private static final class ContextMappings {
+		private final ServletContextDTO servletContextDTO;
+		/** Servlet and resource patterns ordered by {@link PatternComparator} */
+		private final String[] patterns;
+		private final DTO[] targets;
+		private final FilterMapping[] filters;
+
+		ContextMappings(ServletContextDTO scdto) {
+			this.servletContextDTO = scdto;
+
+			Map<String, DTO> orderedMappings = new TreeMap<>(new PatternComparator());
+			for (ServletDTO sdto : scdto.servletDTOs) {
+				for (String p : sdto.patterns) {
+					orderedMappings.put(p, sdto);
+				}
+			}
+			for (ResourceDTO rdto : scdto.resourceDTOs) {
+				for (String p : rdto.patterns) {
+					orderedMappings.put(p, rdto);
+				}
+			}
+			this.patterns = orderedMappings.keySet().toArray(new String[0]);
+			this.targets = orderedMappings.values().toArray(new DTO[0]);
+
+			this.filters = new FilterMapping[scdto.filterDTOs.length];
+			for (int i = 0; i < filters.length; i++) {
+				filters[i] = new FilterMapping(scdto.filterDTOs[i]);
+			}
+		}
+	}
+
+	/**
+	 * {@link FilterDTO} with precompiled regex patterns
+	 */
+	private static final class FilterMapping {
+		private final FilterDTO filterDTO;
+		private final Pattern[] regexs;
+
+		FilterMapping(FilterDTO filterDTO) {
+			this.filterDTO = filterDTO;
+			List<Pattern> compiled = new ArrayList<>();
+			if (filterDTO.regexs != null) {
+				for (String re : filterDTO.regexs) {
+					try {
+						compiled.add(Pattern.compile(re));
+					} catch (PatternSyntaxException ignored) {
+						// such filter is never registered, so it can't match anything
+					}
+				}
+			}
+			this.regexs = compiled.toArray(new Pattern[0]);
+		}
+
+		boolean matches(String targetName, String path) {
+			if (filterDTO.servletNames != null) {
+				for (String sn : filterDTO.servletNames) {
+					if (sn != null && sn.equals(targetName)) {
+						return true;
+					}
+				}
+			}
+			if (filterDTO.patterns != null) {
+				for (String p : filterDTO.patterns) {
+					if (RuntimeDTOSnapshot.matches(p, path)) {
+						return true;
+					}
+				}
+			}
+			for (Pattern re : regexs) {
+				if (re.matcher(path).matches()) {
+					return true;
+				}
+			}
+			return false;
+		}
+	}
+
+	/**
+	 * {@link Comparator} that sorts {@link ServletContextDTO} by the longest context path.
+	 */
+	private static class ContextComparator implements Comparator<ServletContextDTO> {
+		@Override
+		public int compare(ServletContextDTO o1, ServletContextDTO o2) {
+			String cp1 = o1.contextPath;
+			String cp2 = o2.contextPath;
+			long slashes1 = cp1.codePoints().mapToObj(cp -> (char) cp).filter(c -> c == '/').count();
+			long slashes2 = cp2.codePoints().mapToObj(cp -> (char) cp).filter(c -> c == '/').count();
+			if (slashes1 != slashes2) {
+				// more slashes - "earlier" (lower) context
+				return Long.compare(slashes2, slashes1);
+			}
+			if (cp1.length() != cp2.length()) {
+				// order by length, so "/" is at the end
+				return Integer.compare(cp2.length(), cp1.length());
+			}
+			// alphabetlically
+			return cp1.compareTo(cp2);
+		}
+	}
+
+	/**
+	 * {@link Comparator} that sorts pattern mappings of {@link ServletDTO} and {@link ResourceDTO} objects
+	 */
+	private static class PatternComparator implements Comparator<String> {
+		@Override
+		public int compare(String p1, String p2) {
+			long slashes1 = p1.codePoints().mapToObj(cp -> (char) cp).filter(c -> c == '/').count();
+			long slashes2 = p2.codePoints().mapToObj(cp -> (char) cp).filter(c -> c == '/').count();
+			// "/" always at the end
+			if ("/".equals(p1)) {
+				return 1;
+			}
+			if ("/".equals(p2)) {
+				return -1;
+			}
+			if (slashes1 != slashes2) {
+				// more slashes - "earlier" (lower) context. "*.xxx" has no slashes, so will have lowest priority
+				return Long.compare(slashes2, slashes1);
+			}
+			// 12.1 Use of URL Paths rules - exact matching is before pattern matching
+			if (p1.contains("*") && p2.contains("*")) {
+				if (p1.length() != p2.length()) {
+					// order by length, so "/" is at the end
+					return Integer.compare(p2.length(), p1.length());
+				}
+				// alphabetlically
+				return p1.compareTo(p2);
+			}
+			if (p1.contains("*")) {
+				return 1;
+			}
+			if (p2.contains("*")) {
+				return 1;
+			}
+			if (p1.length() != p2.length()) {
+				// order by length, so "/" is at the end
+				return Integer.compare(p2.length(), p1.length());
+			}
+			// alphabetlically
+			return p1.compareTo(p2);
+		}
+	}
+
+}
@@ -20,7 +20,6 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.Comparator;
 import java.util.Dictionary;
 import java.util.EventListener;
 import java.util.HashMap;
@@ -39,13 +38,15 @@ import java.util.TreeMap;
 import java.util.TreeSet;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Executor;
 import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicLong;
-import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 import javax.servlet.Filter;
 import javax.servlet.Servlet;
@@ -98,7 +99,6 @@ import org.ops4j.pax.web.service.spi.whiteboard.WhiteboardWebContainerView;
 import org.ops4j.pax.web.service.whiteboard.ContextMapping;
 import org.ops4j.pax.web.service.whiteboard.HttpContextMapping;
 import org.ops4j.pax.web.service.whiteboard.ServletContextHelperMapping;
-import org.osgi.dto.DTO;
 import org.osgi.framework.Bundle;
 import org.osgi.framework.Constants;
 import org.osgi.framework.ServiceFactory;
@@ -435,10 +435,39 @@ public class ServerModel implements BatchVisitor, HttpServiceRuntime, ReportView
 	 */
 	private final AtomicLong changeCount = new AtomicLong(0L);
 
+	/**
+	 * {@link RuntimeDTO} information calculated for current value of {@link #changeCount}. Recreated in
+	 * configuration thread only when the model changes.
+	 */
+	private volatile RuntimeDTOSnapshot runtimeDTOSnapshot;
+
 	private final List<ReportViewPlugin> plugins = new CopyOnWriteArrayList<>();
 
 	private final AtomicBoolean stopping = new AtomicBoolean(false);
 
+	// --- group commit of registration tasks
+
+	/**
+	 * Maximum delay (in milliseconds) of the registration tasks queued for group commit. {@code 0} means
+	 * the tasks are not grouped at all and each of them is scheduled separately.
+	 */
+	private volatile long groupCommitDelay = 0L;
+
+	/** {@link ServerController} used to commit the config transactions of the group */
+	private ServerController groupCommitController;
+
+	private final ConcurrentLinkedQueue<PendingTask<?>> pendingTasks = new ConcurrentLinkedQueue<>();
+
+	private final AtomicBoolean groupCommitScheduled = new AtomicBoolean(false);
+
+	/**
+	 * Context paths touched by the tasks of currently committed group. {@code TRUE} means that the context path
+	 * is associated with config transaction of the group, {@code FALSE} - the context path is managed by
+	 * transactions of the batches themselves (like WABs). Accessed only from the configuration thread and
+	 * {@code null} if no group is being committed.
+	 */
+	private Map<String, Boolean> groupCommitContexts;
+
 	/**
 	 * Creates new global model of all web applications with {@link Executor} to be used for configuration and
 	 * registration tasks.
@@ -523,10 +552,39 @@ public class ServerModel implements BatchVisitor, HttpServiceRuntime, ReportView
 	 * @throws NamespaceException
 	 */
 	public <T> T run(ModelRegistrationTask<T> task, boolean asynchronous) throws ServletException, NamespaceException {
-		// in theory, a task doesn't have to change the model, but we accept false positives
-		// that's the only required place to increment the change count thanks to single-threaded config pool ;)
-		incrementChangeCounter();
+		return execute(counted(task), asynchronous);
+	}
+
+	/**
+	 * Wraps a task, so the change counter is incremented after the task changes the model.
+	 * @param task
+	 * @param <T>
+	 * @return
+	 */
+	private <T> ModelRegistrationTask<T> counted(ModelRegistrationTask<T> task) {
+		return () -> {
+			try {
+				return task.run();
+			} finally {
+				// in theory, a task doesn't have to change the model, but we accept false positives
+				// that's the only required place to increment the change count thanks to single-threaded config
+				// pool ;) It's done after the task, so anything read from the model during the task (like
+				// RuntimeDTO snapshot) is outdated after the increment
+				incrementChangeCounter();
+			}
+		};
+	}
 
+	/**
+	 * Runs a task in configuration thread - either immediately or by scheduling it and waiting for the result.
+	 * @param task
+	 * @param asynchronous
+	 * @param <T>
+	 * @return
+	 * @throws ServletException
+	 * @throws NamespaceException
+	 */
+	private <T> T execute(ModelRegistrationTask<T> task, boolean asynchronous) throws ServletException, NamespaceException {
 		if (!asynchronous && Thread.currentThread().getId() == registrationThreadId) {
 			// we can run immediately
 			return task.run();
@@ -536,15 +594,8 @@ public class ServerModel implements BatchVisitor, HttpServiceRuntime, ReportView
 
 		try {
 			try {
-				CompletableFuture<T> future = CompletableFuture.supplyAsync(() -> {
-					try {
-						return task.run();
-					} catch (ServletException e) {
-						throw new ModelRegistrationException(e);
-					} catch (NamespaceException e) {
-						throw new ModelRegistrationException(e);
-					}
-				}, executor);
+				CompletableFuture<T> future = groupCommitDelay > 0L ? enqueue(task)
+						: CompletableFuture.supplyAsync(() -> call(task), executor);
 				if (asynchronous) {
 					return null;
 				} else {
@@ -587,7 +638,7 @@ public class ServerModel implements BatchVisitor, HttpServiceRuntime, ReportView
 	 * @throws NamespaceException
 	 */
 	public <T> void runAsync(ModelRegistrationTask<T> task) {
-		incrementChangeCounter();
+		ModelRegistrationTask<T> countedTask = counted(task);
 
 		if (Thread.currentThread().getId() == registrationThreadId) {
 			// we never try to block the current thread, so we ensure that the task is rescheduled to be invoked
@@ -598,21 +649,160 @@ public class ServerModel implements BatchVisitor, HttpServiceRuntime, ReportView
 		final Throwable originalTrace = new Throwable();
 
 		try {
-			CompletableFuture.supplyAsync(() -> {
-				try {
-					return task.run();
-				} catch (ServletException e) {
-					throw new ModelRegistrationException(e);
-				} catch (NamespaceException e) {
-					throw new ModelRegistrationException(e);
-				}
-			}, executor);
+			if (groupCommitDelay > 0L) {
+				enqueue(countedTask);
+			} else {
+				CompletableFuture.supplyAsync(() -> call(countedTask), executor);
+			}
 		} catch (RuntimeException e) {
 			e.addSuppressed(originalTrace);
 			throw e;
 		}
 	}
 
+	private static <T> T call(ModelRegistrationTask<T> task) {
+		try {
+			return task.run();
+		} catch (ServletException e) {
+			throw new ModelRegistrationException(e);
+		} catch (NamespaceException e) {
+			throw new ModelRegistrationException(e);
+		}
+	}
+
+	/**
+	 * <p>Configures <em>group commit</em> of registration tasks. When enabled, tasks passed to {@link #run} and
+	 * {@link #runAsync} from threads other than the configuration thread are queued and the configuration
+	 * thread runs all the queued tasks together, at most {@code maxDelay} milliseconds after the first of them
+	 * was queued.</p>
+	 *
+	 * <p>The contexts touched by the tasks of the group are associated with a config transaction (see
+	 * {@link Batch#beginTransaction(String)}), so each of them is (re)started at most once - at the end of the
+	 * group. Callers of {@link #run} are notified only after the group is committed.</p>
+	 *
+	 * @param controller {@link ServerController} to send the final, committing {@link Batch} to
+	 * @param maxDelay maximum delay in milliseconds, {@code 0} disables group commit
+	 */
+	public void configureGroupCommit(ServerController controller, long maxDelay) {
+		this.groupCommitController = controller;
+		this.groupCommitDelay = controller == null ? 0L : Math.max(0L, maxDelay);
+	}
+
+	/**
+	 * Returns the context paths touched by the group of tasks being currently committed. Should be called only
+	 * from the configuration thread - by a {@link ServerController} wrapper which associates the contexts
+	 * with group's config transaction.
+	 * @return mutable map of context paths or {@code null} if no group is being committed
+	 */
+	public Map<String, Boolean> getGroupCommitContexts() {
+		return groupCommitContexts;
+	}
+
+	/**
+	 * <p>Runs a task (possibly consisting of many registration tasks invoked from within) as single group - the
+	 * contexts touched by the nested tasks are associated with a config transaction and (re)started at most once,
+	 * at the end of the group. If the task is already part of a group (for example when group commit of
+	 * registration tasks is enabled), it simply becomes part of this group.</p>
+	 *
+	 * <p>The contexts are associated with the transaction only if the {@link ServerController} used by the
+	 * nested tasks checks {@link #getGroupCommitContexts()}.</p>
+	 *
+	 * @param controller {@link ServerController} to send the final, committing {@link Batch} to
+	 * @param task
+	 * @param description
+	 * @param <T>
+	 * @return
+	 * @throws ServletException
+	 * @throws NamespaceException
+	 */
+	public <T> T runAsGroup(ServerController controller, ModelRegistrationTask<T> task, String description)
+			throws ServletException, NamespaceException {
+		return run(() -> {
+			if (groupCommitContexts != null) {
+				return task.run();
+			}
+			groupCommitContexts = new LinkedHashMap<>();
+			try {
+				return task.run();
+			} finally {
+				commitGroup(controller, description);
+			}
+		}, false);
+	}
+
+	private <T> CompletableFuture<T> enqueue(ModelRegistrationTask<T> task) {
+		PendingTask<T> pending = new PendingTask<>(task);
+		pendingTasks.add(pending);
+		if (groupCommitScheduled.compareAndSet(false, true)) {
+			try {
+				if (executor instanceof ScheduledExecutorService) {
+					((ScheduledExecutorService) executor).schedule(this::runPendingTasks,
+							groupCommitDelay, TimeUnit.MILLISECONDS);
+				} else {
+					executor.execute(this::runPendingTasks);
+				}
+			} catch (RejectedExecutionException e) {
+				groupCommitScheduled.set(false);
+				pendingTasks.remove(pending);
+				throw e;
+			}
+		}
+		return pending.future;
+	}
+
+	/**
+	 * Runs all the queued tasks as single group in the configuration thread.
+	 */
+	private void runPendingTasks() {
+		groupCommitScheduled.set(false);
+		List<PendingTask<?>> group = new ArrayList<>();
+		PendingTask<?> pending;
+		while ((pending = pendingTasks.poll()) != null) {
+			group.add(pending);
+		}
+		if (group.isEmpty()) {
+			return;
+		}
+
+		LOG.debug("Running group of {} registration tasks", group.size());
+		groupCommitContexts = new LinkedHashMap<>();
+		try {
+			for (PendingTask<?> t : group) {
+				t.run();
+			}
+		} finally {
+			commitGroup(groupCommitController, "Group commit of " + group.size() + " registration tasks");
+
+			// only now the callers may continue
+			group.forEach(PendingTask::complete);
+		}
+	}
+
+	/**
+	 * Ends current group by committing the config transactions associated with the contexts touched by the
+	 * tasks of the group.
+	 * @param controller
+	 * @param description
+	 */
+	private void commitGroup(ServerController controller, String description) {
+		Map<String, Boolean> contexts = groupCommitContexts;
+		groupCommitContexts = null;
+
+		Batch commit = new Batch(description);
+		contexts.forEach((contextPath, associated) -> {
+			if (associated) {
+				commit.commitTransaction(contextPath);
+			}
+		});
+		if (!commit.getOperations().isEmpty()) {
+			try {
+				controller.sendBatch(commit);
+			} catch (RuntimeException e) {
+				LOG.error("Problem committing group of registration tasks: {}", e.getMessage(), e);
+			}
+		}
+	}
+
 	public void setStopping() {
 		this.stopping.set(true);
 	}
@@ -622,11 +812,12 @@ public class ServerModel implements BatchVisitor, HttpServiceRuntime, ReportView
 	 * {@link HttpServiceRuntime} and {@link ServiceReferenceDTO}
 	 */
 	private void incrementChangeCounter() {
+		// always incremented, because it's used to detect outdated RuntimeDTO snapshot
+		changeCount.incrementAndGet();
 		if (stopping.get()) {
 			return;
 		}
 
-		changeCount.incrementAndGet();
 		try {
 			if (httpServiceRuntimeReg == null || httpServiceRuntimeReg.getReference() == null) {
 				// usually during tests
@@ -1931,6 +2122,77 @@ public class ServerModel implements BatchVisitor, HttpServiceRuntime, ReportView
 		batch.updateFilters(currentlyEnabledByPath, false);
 	}
 
+	/**
+	 * <p>Changes the service ranking of already registered (and enabled) {@link ServletModel} or
+	 * {@link FilterModel} without unregistering it.</p>
+	 *
+	 * <p>Ranking is used only to resolve conflicts (servlet/filter names, servlet URL mappings) and to order the
+	 * filters, so if there are no disabled models in the same servlet contexts, the change can't enable or disable
+	 * any model. For servlets nothing has to be sent to the runtime and for filters, only new
+	 * {@link org.ops4j.pax.web.service.spi.task.FilterStateChange} for affected contexts is added to the batch.</p>
+	 *
+	 * @param model
+	 * @param rank
+	 * @param batch
+	 * @return {@code false} if the ranking can't be changed in place and the model has to be unregistered and
+	 *         registered again
+	 */
+	@PaxWebConfiguration
+	public boolean updateServiceRank(ElementModel<?, ?> model, int rank, Batch batch) {
+		if (model.getServiceRank() == rank) {
+			return true;
+		}
+		Set<ServletContextModel> targetServletContexts = getServletContextModels(model);
+		if (targetServletContexts.isEmpty()) {
+			return false;
+		}
+
+		if (model instanceof ServletModel) {
+			ServletModel servletModel = (ServletModel) model;
+			for (ServletContextModel sc : targetServletContexts) {
+				if (sc.getServletNameMapping().get(servletModel.getName()) != servletModel) {
+					return false;
+				}
+			}
+			for (ServletModel disabled : disabledServletModels) {
+				if (!Collections.disjoint(targetServletContexts, getServletContextModels(disabled))) {
+					return false;
+				}
+			}
+			model.setServiceRank(rank);
+			return true;
+		}
+
+		if (model instanceof FilterModel) {
+			FilterModel filterModel = (FilterModel) model;
+			if (filterModel.isDynamic()) {
+				return false;
+			}
+			for (ServletContextModel sc : targetServletContexts) {
+				if (sc.getFilterNameMapping().get(filterModel.getName()) != filterModel) {
+					return false;
+				}
+			}
+			for (FilterModel disabled : disabledFilterModels) {
+				if (!Collections.disjoint(targetServletContexts, getServletContextModels(disabled))) {
+					return false;
+				}
+			}
+			model.setServiceRank(rank);
+
+			// filter order may have changed, but only in the contexts of the filter
+			Map<String, TreeMap<FilterModel, List<OsgiContextModel>>> currentlyEnabledByPath = new HashMap<>();
+			prepareFiltersSnapshot(currentlyEnabledByPath, new TreeSet<>(), null, null);
+			Set<String> paths = targetServletContexts.stream()
+					.map(ServletContextModel::getContextPath).collect(Collectors.toSet());
+			currentlyEnabledByPath.keySet().retainAll(paths);
+			batch.updateFilters(currentlyEnabledByPath, false);
+			return true;
+		}
+
+		return false;
+	}
+
 	/**
 	 * Preparation for {@link #reEnableFilterModels(Set, Map, FilterModel, Batch)} that does
 	 * proper copy of current state of all {@link ServletContextModel}
@@ -3106,369 +3368,267 @@ public class ServerModel implements BatchVisitor, HttpServiceRuntime, ReportView
 
 	@Override
 	public RuntimeDTO getRuntimeDTO() {
-		return runSilently(() -> {
-			RuntimeDTO dto = new RuntimeDTO();
+		RuntimeDTOSnapshot snapshot = getRuntimeDTOSnapshot();
 
-			// --- service information
+		// --- service information - not part of the snapshot, because using bundles are not tracked by
+		//     service.changecount
 
-			dto.serviceDTO = new ServiceReferenceDTO();
-			dto.serviceDTO.id = httpServiceRuntimeDTO.id;
-			dto.serviceDTO.bundle = httpServiceRuntimeDTO.bundle;
-			dto.serviceDTO.usingBundles = Arrays.stream(httpServiceRuntimeReg.getReference().getUsingBundles())
-					.mapToLong(Bundle::getBundleId).toArray();
-			dto.serviceDTO.properties = new HashMap<>(httpServiceRuntimeDTO.properties);
-			dto.serviceDTO.properties.put("service.changecount", changeCount.get());
-			// osgi.http.endpoint will be updated by org.ops4j.pax.web.service.internal.Activator.AddressConfiguration
+		ServiceReferenceDTO serviceDTO = new ServiceReferenceDTO();
+		serviceDTO.id = httpServiceRuntimeDTO.id;
+		serviceDTO.bundle = httpServiceRuntimeDTO.bundle;
+		serviceDTO.usingBundles = Arrays.stream(httpServiceRuntimeReg.getReference().getUsingBundles())
+				.mapToLong(Bundle::getBundleId).toArray();
+		serviceDTO.properties = new HashMap<>(httpServiceRuntimeDTO.properties);
+		serviceDTO.properties.put("service.changecount", snapshot.getChangeCount());
+		// osgi.http.endpoint will be updated by org.ops4j.pax.web.service.internal.Activator.AddressConfiguration
 
-			// --- context information
+		return snapshot.toRuntimeDTO(serviceDTO);
+	}
 
-			Map<OsgiContextModel, ServletContextDTO> scDTOs = new LinkedHashMap<>();
-			List<FailedServletContextDTO> failedScDTOs = new ArrayList<>();
+	/**
+	 * Returns {@link RuntimeDTOSnapshot} for current {@link #changeCount}. If there was no change since last call,
+	 * no synchronization with configuration thread is needed. Otherwise the snapshot is recreated in
+	 * configuration thread, without incrementing the change counter.
+	 * @return
+	 */
+	private RuntimeDTOSnapshot getRuntimeDTOSnapshot() {
+		RuntimeDTOSnapshot snapshot = runtimeDTOSnapshot;
+		if (snapshot != null && snapshot.getChangeCount() == changeCount.get()) {
+			return snapshot;
+		}
+		try {
+			return execute(() -> {
+				// counter is changed only in this thread
+				long count = changeCount.get();
+				RuntimeDTOSnapshot current = runtimeDTOSnapshot;
+				if (current == null || current.getChangeCount() != count) {
+					current = new RuntimeDTOSnapshot(count, createRuntimeDTO());
+					runtimeDTOSnapshot = current;
+				}
+				return current;
+			}, false);
+		} catch (Exception e) {
+			throw new RuntimeException(e.getMessage(), e);
+		}
+	}
 
-			// OsgiContextModels from WABs - we don't care about contexts "awaiting allocation"
-			bundleWabAllocatedContexts.values().forEach(ocm -> {
-				scDTOs.put(ocm, ocm.toDTO());
-			});
-			// OsgiContextModels from HttpService/WebContainer (including Whiteboard ones with direct context instance)
-			// including non-failed ones and failed (usually shaded - set elements from 2nd to the end)
-			bundleContexts.values().forEach(ocms -> {
-				boolean first = true;
-				for (OsgiContextModel ocm : ocms) {
-					if (first) {
-						scDTOs.put(ocm, ocm.toDTO());
-					} else {
-						failedScDTOs.add(ocm.toFailedDTO(DTOConstants.FAILURE_REASON_SHADOWED_BY_OTHER_SERVICE));
-					}
-					first = false;
-				}
-			});
-			// HttpService/WebContainer which are shaded by Whiteboard-registered contexts with direct instance
-			bundleDefaultContexts.values().forEach(ocm -> {
-				failedScDTOs.add(ocm.toFailedDTO(DTOConstants.FAILURE_REASON_SHADOWED_BY_OTHER_SERVICE));
-			});
-			// OsgiContextModels from Whiteboard (excluding ones with direct context instance) - failed and non-failed
-			// they're not kept at ServerModel level at all
-			whiteboardContexts.values().stream().flatMap(Collection::stream).forEach(ocm -> {
-				if (ocm.getDtoFailureCode() >= 0) {
-					failedScDTOs.add(ocm.toFailedDTO(ocm.getDtoFailureCode()));
-				} else {
+	/**
+	 * Creates {@link RuntimeDTO} (without {@link RuntimeDTO#serviceDTO}) from current state of the model. Should
+	 * be called only in configuration thread.
+	 * @return
+	 */
+	private RuntimeDTO createRuntimeDTO() {
+		RuntimeDTO dto = new RuntimeDTO();
+
+		// --- context information
+
+		Map<OsgiContextModel, ServletContextDTO> scDTOs = new LinkedHashMap<>();
+		List<FailedServletContextDTO> failedScDTOs = new ArrayList<>();
+
+		// OsgiContextModels from WABs - we don't care about contexts "awaiting allocation"
+		bundleWabAllocatedContexts.values().forEach(ocm -> {
+			scDTOs.put(ocm, ocm.toDTO());
+		});
+		// OsgiContextModels from HttpService/WebContainer (including Whiteboard ones with direct context instance)
+		// including non-failed ones and failed (usually shaded - set elements from 2nd to the end)
+		bundleContexts.values().forEach(ocms -> {
+			boolean first = true;
+			for (OsgiContextModel ocm : ocms) {
+				if (first) {
 					scDTOs.put(ocm, ocm.toDTO());
+				} else {
+					failedScDTOs.add(ocm.toFailedDTO(DTOConstants.FAILURE_REASON_SHADOWED_BY_OTHER_SERVICE));
 				}
-			});
-			// we don't care about shared HttpService/WebContainer contexts as these are Pax Web specific
-
-			dto.servletContextDTOs = scDTOs.values().toArray(new ServletContextDTO[0]);
-			dto.failedServletContextDTOs = failedScDTOs.toArray(new FailedServletContextDTO[0]);
-
-			// --- element information
-			//     successful DTOs are attached to one of the ServletContextDTO
-			//     failed DTOs are attached directly to the RuntimeDTO
-
-			Map<ServletContextDTO, List<ErrorPageDTO>> scErrorPages = new IdentityHashMap<>();
-			Map<ServletContextDTO, List<FilterDTO>> scFilters = new IdentityHashMap<>();
-			Map<ServletContextDTO, List<ListenerDTO>> scListeners = new IdentityHashMap<>();
-			List<PreprocessorDTO> preprocessorDTOs = new ArrayList<>();
-			Map<ServletContextDTO, List<ResourceDTO>> scResources = new IdentityHashMap<>();
-			Map<ServletContextDTO, List<ServletDTO>> scServlets = new IdentityHashMap<>();
-
-			for (ServletContextDTO scDTO : dto.servletContextDTOs) {
-				scErrorPages.put(scDTO, new ArrayList<>());
-				scFilters.put(scDTO, new ArrayList<>());
-				scListeners.put(scDTO, new ArrayList<>());
-				scResources.put(scDTO, new ArrayList<>());
-				scServlets.put(scDTO, new ArrayList<>());
-			}
-
-			List<FailedErrorPageDTO> failedErrorPageDTOs = new ArrayList<>();
-			List<FailedFilterDTO> failedFilterDTOs = new ArrayList<>();
-			List<FailedListenerDTO> failedListenerDTOs = new ArrayList<>();
-			List<FailedPreprocessorDTO> failedPreprocessorDTOs = new ArrayList<>();
-			List<FailedResourceDTO> failedResourceDTOs = new ArrayList<>();
-			List<FailedServletDTO> failedServletDTOs = new ArrayList<>();
-
-			// ------ servlets, resources and error pages
-			this.servletsForDTO.forEach(sm -> {
-				if (sm.isResourceServlet()) {
-					if (!sm.isValid()) {
-						failedResourceDTOs.add(sm.toFailedResourceDTO(sm.getDtoFailureCode()));
-						return;
-					}
-				} else if (sm.getErrorPageModel() != null) {
-					if (!sm.getErrorPageModel().isValid()) {
-						failedErrorPageDTOs.add(sm.getErrorPageModel().toFailedDTO(sm, sm.getErrorPageModel().getDtoFailureCode()));
-						return;
-					}
-				} else if (!sm.isValid()) {
-					failedServletDTOs.add(sm.toFailedServletDTO(sm.getDtoFailureCode()));
+				first = false;
+			}
+		});
+		// HttpService/WebContainer which are shaded by Whiteboard-registered contexts with direct instance
+		bundleDefaultContexts.values().forEach(ocm -> {
+			failedScDTOs.add(ocm.toFailedDTO(DTOConstants.FAILURE_REASON_SHADOWED_BY_OTHER_SERVICE));
+		});
+		// OsgiContextModels from Whiteboard (excluding ones with direct context instance) - failed and non-failed
+		// they're not kept at ServerModel level at all
+		whiteboardContexts.values().stream().flatMap(Collection::stream).forEach(ocm -> {
+			if (ocm.getDtoFailureCode() >= 0) {
+				failedScDTOs.add(ocm.toFailedDTO(ocm.getDtoFailureCode()));
+			} else {
+				scDTOs.put(ocm, ocm.toDTO());
+			}
+		});
+		// we don't care about shared HttpService/WebContainer contexts as these are Pax Web specific
+
+		dto.servletContextDTOs = scDTOs.values().toArray(new ServletContextDTO[0]);
+		dto.failedServletContextDTOs = failedScDTOs.toArray(new FailedServletContextDTO[0]);
+
+		// --- element information
+		//     successful DTOs are attached to one of the ServletContextDTO
+		//     failed DTOs are attached directly to the RuntimeDTO
+
+		Map<ServletContextDTO, List<ErrorPageDTO>> scErrorPages = new IdentityHashMap<>();
+		Map<ServletContextDTO, List<FilterDTO>> scFilters = new IdentityHashMap<>();
+		Map<ServletContextDTO, List<ListenerDTO>> scListeners = new IdentityHashMap<>();
+		List<PreprocessorDTO> preprocessorDTOs = new ArrayList<>();
+		Map<ServletContextDTO, List<ResourceDTO>> scResources = new IdentityHashMap<>();
+		Map<ServletContextDTO, List<ServletDTO>> scServlets = new IdentityHashMap<>();
+
+		for (ServletContextDTO scDTO : dto.servletContextDTOs) {
+			scErrorPages.put(scDTO, new ArrayList<>());
+			scFilters.put(scDTO, new ArrayList<>());
+			scListeners.put(scDTO, new ArrayList<>());
+			scResources.put(scDTO, new ArrayList<>());
+			scServlets.put(scDTO, new ArrayList<>());
+		}
+
+		List<FailedErrorPageDTO> failedErrorPageDTOs = new ArrayList<>();
+		List<FailedFilterDTO> failedFilterDTOs = new ArrayList<>();
+		List<FailedListenerDTO> failedListenerDTOs = new ArrayList<>();
+		List<FailedPreprocessorDTO> failedPreprocessorDTOs = new ArrayList<>();
+		List<FailedResourceDTO> failedResourceDTOs = new ArrayList<>();
+		List<FailedServletDTO> failedServletDTOs = new ArrayList<>();
+
+		// ------ servlets, resources and error pages
+		this.servletsForDTO.forEach(sm -> {
+			if (sm.isResourceServlet()) {
+				if (!sm.isValid()) {
+					failedResourceDTOs.add(sm.toFailedResourceDTO(sm.getDtoFailureCode()));
+					return;
+				}
+			} else if (sm.getErrorPageModel() != null) {
+				if (!sm.getErrorPageModel().isValid()) {
+					failedErrorPageDTOs.add(sm.getErrorPageModel().toFailedDTO(sm, sm.getErrorPageModel().getDtoFailureCode()));
 					return;
 				}
+			} else if (!sm.isValid()) {
+				failedServletDTOs.add(sm.toFailedServletDTO(sm.getDtoFailureCode()));
+				return;
+			}
 
-				// case of valid models
-				sm.getContextModels().forEach(ocm -> {
-					if (sm.isResourceServlet()) {
-						scResources.get(scDTOs.get(ocm)).add(sm.toResourceDTO());
-					} else if (sm.getErrorPageModel() != null) {
-						scErrorPages.get(scDTOs.get(ocm)).add(sm.getErrorPageModel().toDTO(sm));
-					} else {
-						scServlets.get(scDTOs.get(ocm)).add(sm.toServletDTO());
-					}
-				});
-			});
-			this.disabledServletModels.forEach(sm -> {
+			// case of valid models
+			sm.getContextModels().forEach(ocm -> {
 				if (sm.isResourceServlet()) {
-					failedResourceDTOs.add(sm.toFailedResourceDTO(DTOConstants.FAILURE_REASON_SHADOWED_BY_OTHER_SERVICE));
+					scResources.get(scDTOs.get(ocm)).add(sm.toResourceDTO());
 				} else if (sm.getErrorPageModel() != null) {
-					failedErrorPageDTOs.add(sm.getErrorPageModel().toFailedDTO(sm, DTOConstants.FAILURE_REASON_SHADOWED_BY_OTHER_SERVICE));
+					scErrorPages.get(scDTOs.get(ocm)).add(sm.getErrorPageModel().toDTO(sm));
 				} else {
-					failedServletDTOs.add(sm.toFailedServletDTO(DTOConstants.FAILURE_REASON_SHADOWED_BY_OTHER_SERVICE));
+					scServlets.get(scDTOs.get(ocm)).add(sm.toServletDTO());
 				}
 			});
-			this.disabledErrorPageModels.forEach(epm -> {
-				failedErrorPageDTOs.add(epm.toFailedDTO(null, DTOConstants.FAILURE_REASON_SHADOWED_BY_OTHER_SERVICE));
-			});
-			// ------ filters and preprocessors
-			this.filtersForDTO.forEach(fm -> {
-				if (!fm.isValid()) {
-					if (fm.isPreprocessor()) {
-						failedPreprocessorDTOs.add(fm.toFailedPreprocessorDTO(fm.getDtoFailureCode()));
-					} else {
-						failedFilterDTOs.add(fm.toFailedFilterDTO(fm.getDtoFailureCode()));
-					}
-				} else {
-					fm.getContextModels().forEach(ocm -> {
-						if (fm.isPreprocessor()) {
-							// diagram Figure 140.3 Runtime DTO Overview Diagram is wrong, because
-							// PreprocessorDTOs are kept at RuntimeDTO level
-							preprocessorDTOs.add(fm.toPreprocessorDTO());
-						} else {
-							// only preprocessors are associated (according to Whiteboard DTO chapter) with
-							// any context - even if in Pax Web they're associated with ALL the contexts
-							scFilters.get(scDTOs.get(ocm)).add(fm.toFilterDTO());
-						}
-					});
-				}
-			});
-			this.disabledFilterModels.forEach(fm -> {
+		});
+		this.disabledServletModels.forEach(sm -> {
+			if (sm.isResourceServlet()) {
+				failedResourceDTOs.add(sm.toFailedResourceDTO(DTOConstants.FAILURE_REASON_SHADOWED_BY_OTHER_SERVICE));
+			} else if (sm.getErrorPageModel() != null) {
+				failedErrorPageDTOs.add(sm.getErrorPageModel().toFailedDTO(sm, DTOConstants.FAILURE_REASON_SHADOWED_BY_OTHER_SERVICE));
+			} else {
+				failedServletDTOs.add(sm.toFailedServletDTO(DTOConstants.FAILURE_REASON_SHADOWED_BY_OTHER_SERVICE));
+			}
+		});
+		this.disabledErrorPageModels.forEach(epm -> {
+			failedErrorPageDTOs.add(epm.toFailedDTO(null, DTOConstants.FAILURE_REASON_SHADOWED_BY_OTHER_SERVICE));
+		});
+		// ------ filters and preprocessors
+		this.filtersForDTO.forEach(fm -> {
+			if (!fm.isValid()) {
 				if (fm.isPreprocessor()) {
-					failedPreprocessorDTOs.add(fm.toFailedPreprocessorDTO(DTOConstants.FAILURE_REASON_SHADOWED_BY_OTHER_SERVICE));
+					failedPreprocessorDTOs.add(fm.toFailedPreprocessorDTO(fm.getDtoFailureCode()));
 				} else {
-					failedFilterDTOs.add(fm.toFailedFilterDTO(DTOConstants.FAILURE_REASON_SHADOWED_BY_OTHER_SERVICE));
+					failedFilterDTOs.add(fm.toFailedFilterDTO(fm.getDtoFailureCode()));
 				}
-			});
-			// ------ listeners
-			this.eventListenersForDTO.forEach(lm -> {
-				if (!lm.isValid()) {
-					failedListenerDTOs.add(lm.toFailedDTO(lm.getDtoFailureCode()));
-				} else {
-					lm.getContextModels().forEach(ocm -> {
-						scListeners.get(scDTOs.get(ocm)).add(lm.toDTO());
-					});
-				}
-			});
-			// ------ failed Whiteboard elements
-			this.failedWhiteboardElements.forEach(em -> {
-				if (em instanceof ErrorPageModel) {
-					failedErrorPageDTOs.add(((ErrorPageModel) em).toFailedDTO(null, em.getDtoFailureCode()));
-				} else if (em instanceof FilterModel) {
-					if (((FilterModel) em).isPreprocessor()) {
-						failedPreprocessorDTOs.add(((FilterModel) em).toFailedPreprocessorDTO(em.getDtoFailureCode()));
-					} else {
-						failedFilterDTOs.add(((FilterModel) em).toFailedFilterDTO(em.getDtoFailureCode()));
-					}
-				} else if (em instanceof EventListenerModel) {
-					failedListenerDTOs.add(((EventListenerModel) em).toFailedDTO(em.getDtoFailureCode()));
-				} else if (em instanceof ServletModel) {
-					if (((ServletModel) em).isResourceServlet()) {
-						failedResourceDTOs.add(((ServletModel) em).toFailedResourceDTO(em.getDtoFailureCode()));
-					} else if (((ServletModel) em).getErrorPageModel() != null) {
-						failedErrorPageDTOs.add(((ServletModel) em).getErrorPageModel().toFailedDTO((ServletModel) em,
-								((ServletModel) em).getErrorPageModel().getDtoFailureCode()));
+			} else {
+				fm.getContextModels().forEach(ocm -> {
+					if (fm.isPreprocessor()) {
+						// diagram Figure 140.3 Runtime DTO Overview Diagram is wrong, because
+						// PreprocessorDTOs are kept at RuntimeDTO level
+						preprocessorDTOs.add(fm.toPreprocessorDTO());
 					} else {
-						failedServletDTOs.add(((ServletModel) em).toFailedServletDTO(em.getDtoFailureCode()));
+						// only preprocessors are associated (according to Whiteboard DTO chapter) with
+						// any context - even if in Pax Web they're associated with ALL the contexts
+						scFilters.get(scDTOs.get(ocm)).add(fm.toFilterDTO());
 					}
+				});
+			}
+		});
+		this.disabledFilterModels.forEach(fm -> {
+			if (fm.isPreprocessor()) {
+				failedPreprocessorDTOs.add(fm.toFailedPreprocessorDTO(DTOConstants.FAILURE_REASON_SHADOWED_BY_OTHER_SERVICE));
+			} else {
+				failedFilterDTOs.add(fm.toFailedFilterDTO(DTOConstants.FAILURE_REASON_SHADOWED_BY_OTHER_SERVICE));
+			}
+		});
+		// ------ listeners
+		this.eventListenersForDTO.forEach(lm -> {
+			if (!lm.isValid()) {
+				failedListenerDTOs.add(lm.toFailedDTO(lm.getDtoFailureCode()));
+			} else {
+				lm.getContextModels().forEach(ocm -> {
+					scListeners.get(scDTOs.get(ocm)).add(lm.toDTO());
+				});
+			}
+		});
+		// ------ failed Whiteboard elements
+		this.failedWhiteboardElements.forEach(em -> {
+			if (em instanceof ErrorPageModel) {
+				failedErrorPageDTOs.add(((ErrorPageModel) em).toFailedDTO(null, em.getDtoFailureCode()));
+			} else if (em instanceof FilterModel) {
+				if (((FilterModel) em).isPreprocessor()) {
+					failedPreprocessorDTOs.add(((FilterModel) em).toFailedPreprocessorDTO(em.getDtoFailureCode()));
+				} else {
+					failedFilterDTOs.add(((FilterModel) em).toFailedFilterDTO(em.getDtoFailureCode()));
+				}
+			} else if (em instanceof EventListenerModel) {
+				failedListenerDTOs.add(((EventListenerModel) em).toFailedDTO(em.getDtoFailureCode()));
+			} else if (em instanceof ServletModel) {
+				if (((ServletModel) em).isResourceServlet()) {
+					failedResourceDTOs.add(((ServletModel) em).toFailedResourceDTO(em.getDtoFailureCode()));
+				} else if (((ServletModel) em).getErrorPageModel() != null) {
+					failedErrorPageDTOs.add(((ServletModel) em).getErrorPageModel().toFailedDTO((ServletModel) em,
+							((ServletModel) em).getErrorPageModel().getDtoFailureCode()));
+				} else {
+					failedServletDTOs.add(((ServletModel) em).toFailedServletDTO(em.getDtoFailureCode()));
 				}
-			});
+			}
+		});
 
-			for (ServletContextDTO scDTO : dto.servletContextDTOs) {
-				scDTO.errorPageDTOs = scErrorPages.get(scDTO).toArray(new ErrorPageDTO[0]);
-				for (ErrorPageDTO d : scDTO.errorPageDTOs) {
-					d.servletContextId = scDTO.serviceId;
-				}
-				scDTO.filterDTOs = scFilters.get(scDTO).toArray(new FilterDTO[0]);
-				for (FilterDTO d : scDTO.filterDTOs) {
-					d.servletContextId = scDTO.serviceId;
-				}
-				// this should work according to Figure 140.3 Runtime DTO Overview Diagram...
+		for (ServletContextDTO scDTO : dto.servletContextDTOs) {
+			scDTO.errorPageDTOs = scErrorPages.get(scDTO).toArray(new ErrorPageDTO[0]);
+			for (ErrorPageDTO d : scDTO.errorPageDTOs) {
+				d.servletContextId = scDTO.serviceId;
+			}
+			scDTO.filterDTOs = scFilters.get(scDTO).toArray(new FilterDTO[0]);
+			for (FilterDTO d : scDTO.filterDTOs) {
+				d.servletContextId = scDTO.serviceId;
+			}
+			// this should work according to Figure 140.3 Runtime DTO Overview Diagram...
 //				scDTO.preprocessorDTOs = scPreprocessors.get(scDTO).toArray(new PreprocessorDTO[0]);
-				scDTO.listenerDTOs = scListeners.get(scDTO).toArray(new ListenerDTO[0]);
-				for (ListenerDTO d : scDTO.listenerDTOs) {
-					d.servletContextId = scDTO.serviceId;
-				}
-				scDTO.servletDTOs = scServlets.get(scDTO).toArray(new ServletDTO[0]);
-				for (ServletDTO d : scDTO.servletDTOs) {
-					d.servletContextId = scDTO.serviceId;
-				}
-				scDTO.resourceDTOs = scResources.get(scDTO).toArray(new ResourceDTO[0]);
-				for (ResourceDTO d : scDTO.resourceDTOs) {
-					d.servletContextId = scDTO.serviceId;
-				}
+			scDTO.listenerDTOs = scListeners.get(scDTO).toArray(new ListenerDTO[0]);
+			for (ListenerDTO d : scDTO.listenerDTOs) {
+				d.servletContextId = scDTO.serviceId;
+			}
+			scDTO.servletDTOs = scServlets.get(scDTO).toArray(new ServletDTO[0]);
+			for (ServletDTO d : scDTO.servletDTOs) {
+				d.servletContextId = scDTO.serviceId;
+			}
+			scDTO.resourceDTOs = scResources.get(scDTO).toArray(new ResourceDTO[0]);
+			for (ResourceDTO d : scDTO.resourceDTOs) {
+				d.servletContextId = scDTO.serviceId;
 			}
+		}
 
-			dto.failedErrorPageDTOs = failedErrorPageDTOs.toArray(new FailedErrorPageDTO[0]);
-			dto.failedFilterDTOs = failedFilterDTOs.toArray(new FailedFilterDTO[0]);
-			dto.preprocessorDTOs = preprocessorDTOs.toArray(new PreprocessorDTO[0]);
-			dto.failedPreprocessorDTOs = failedPreprocessorDTOs.toArray(new FailedPreprocessorDTO[0]);
-			dto.failedListenerDTOs = failedListenerDTOs.toArray(new FailedListenerDTO[0]);
-			dto.failedResourceDTOs = failedResourceDTOs.toArray(new FailedResourceDTO[0]);
-			dto.failedServletDTOs = failedServletDTOs.toArray(new FailedServletDTO[0]);
+		dto.failedErrorPageDTOs = failedErrorPageDTOs.toArray(new FailedErrorPageDTO[0]);
+		dto.failedFilterDTOs = failedFilterDTOs.toArray(new FailedFilterDTO[0]);
+		dto.preprocessorDTOs = preprocessorDTOs.toArray(new PreprocessorDTO[0]);
+		dto.failedPreprocessorDTOs = failedPreprocessorDTOs.toArray(new FailedPreprocessorDTO[0]);
+		dto.failedListenerDTOs = failedListenerDTOs.toArray(new FailedListenerDTO[0]);
+		dto.failedResourceDTOs = failedResourceDTOs.toArray(new FailedResourceDTO[0]);
+		dto.failedServletDTOs = failedServletDTOs.toArray(new FailedServletDTO[0]);
 
-			return dto;
-		}, false);
+		return dto;
 	}
 
 	@Override
 	public RequestInfoDTO calculateRequestInfoDTO(String path) {
-		return runSilently(() -> {
-			RequestInfoDTO dto = new RequestInfoDTO();
-			dto.path = path;
-
-			// let's ... simply get the information from RuntimeDTO
-			RuntimeDTO runtimeDTO = getRuntimeDTO();
-
-			Set<ServletContextDTO> orderedServletContexts = new TreeSet<>(new ContextComparator());
-			Collections.addAll(orderedServletContexts, runtimeDTO.servletContextDTOs);
-
-			for (ServletContextDTO scdto : orderedServletContexts) {
-				if (path.startsWith(scdto.contextPath)) {
-					dto.servletContextId = scdto.serviceId;
-
-					String remaining = path.substring(scdto.contextPath.length());
-					if (remaining.contains("?")) {
-						// remove query string
-						remaining = remaining.substring(0, remaining.indexOf("?"));
-					}
-					if (!remaining.startsWith("/")) {
-						remaining = "/" + remaining;
-					}
-
-					// checking servlets/resources
-
-					// we can assume valid patterns: "/", "/xxx/*", "/xxx", "*.x".
-					// "/" has to be saved as fallback pattern (default servlet)
-					Map<String, DTO> orderedMappings = new TreeMap<>(new PatternComparator());
-					for (ServletDTO sdto : scdto.servletDTOs) {
-						for (String p : sdto.patterns) {
-							orderedMappings.put(p, sdto);
-						}
-					}
-					for (ResourceDTO rdto : scdto.resourceDTOs) {
-						for (String p : rdto.patterns) {
-							orderedMappings.put(p, rdto);
-						}
-					}
-					for (Map.Entry<String, DTO> e : orderedMappings.entrySet()) {
-						String mapping = e.getKey();
-						DTO target = e.getValue();
-
-						boolean match = false;
-						if (!"/".equals(mapping)) {
-							if (!mapping.contains("*") && mapping.equals(remaining)) {
-								// found exact match
-								match = true;
-							} else if (mapping.contains("*")) {
-								if (mapping.endsWith("/*") && remaining.startsWith(mapping.substring(0, mapping.length() - 2))) {
-									// found prefix match
-									match = true;
-								} else if (mapping.startsWith("*.") && remaining.endsWith(mapping.substring(1))) {
-									// found extension match
-									match = true;
-								}
-							}
-						} else {
-							// checked always last
-							match = true;
-						}
-						if (match) {
-							if (target instanceof ResourceDTO) {
-								dto.resourceDTO = (ResourceDTO) target;
-							} else {
-								dto.servletDTO = (ServletDTO) target;
-							}
-							// end of searching through servlet/resource mappings
-							break;
-						}
-						// continue with the next pattern
-					}
-
-					// checking filters
-					String targetName = null;
-					if (dto.servletDTO != null) {
-						targetName = dto.servletDTO.name;
-					} else if (dto.resourceDTO != null) {
-						targetName = "default";
-					}
-
-					List<FilterDTO> matchingFilters = new ArrayList<>();
-					for (FilterDTO fdto : scdto.filterDTOs) {
-						if (fdto.servletNames != null) {
-							boolean match = false;
-							for (String sn : fdto.servletNames) {
-								if (sn != null && sn.equals(targetName)) {
-									matchingFilters.add(fdto);
-									match = true;
-									break;
-								}
-							}
-							if (match) {
-								// no need to check the URL mappings
-								continue;
-							}
-						}
-						if (fdto.patterns != null) {
-							boolean match = false;
-							for (String p : fdto.patterns) {
-								if (!p.contains("*") && p.equals(remaining)) {
-									// found exact match
-									match = true;
-								} else if (p.contains("*")) {
-									if (p.endsWith("/*") && remaining.startsWith(p.substring(0, p.length() - 2))) {
-										// found prefix match
-										match = true;
-									} else if (p.startsWith("*.") && remaining.endsWith(p.substring(1))) {
-										// found extension match
-										match = true;
-									}
-								}
-								if (match) {
-									matchingFilters.add(fdto);
-									break;
-								}
-							}
-							if (match) {
-								// no need to check the regex mapping
-								continue;
-							}
-						}
-						if (fdto.regexs != null) {
-							boolean match = false;
-							for (String p : fdto.regexs) {
-								Pattern re = Pattern.compile(p);
-								if (re.matcher(remaining).matches()) {
-									matchingFilters.add(fdto);
-									break;
-								}
-							}
-						}
-					}
-					dto.filterDTOs = matchingFilters.toArray(new FilterDTO[0]);
-
-					// end of searching through context paths
-					break;
-				}
-			}
-
-			return dto;
-		}, false);
+		// precomputed index is part of the snapshot
+		return getRuntimeDTOSnapshot().calculateRequestInfoDTO(path);
 	}
 
 	@Override
@@ -3620,68 +3780,33 @@ public class ServerModel implements BatchVisitor, HttpServiceRuntime, ReportView
 	}
 
 	/**
-	 * {@link Comparator} that sorts {@link ServletContextDTO} by the longest context path.
+	 * Registration task queued for group commit, with its result kept until the whole group is committed.
+	 * @param <T>
 	 */
-	private static class ContextComparator implements Comparator<ServletContextDTO> {
-		@Override
-		public int compare(ServletContextDTO o1, ServletContextDTO o2) {
-			String cp1 = o1.contextPath;
-			String cp2 = o2.contextPath;
-			long slashes1 = cp1.codePoints().mapToObj(cp -> (char) cp).filter(c -> c == '/').count();
-			long slashes2 = cp2.codePoints().mapToObj(cp -> (char) cp).filter(c -> c == '/').count();
-			if (slashes1 != slashes2) {
-				// more slashes - "earlier" (lower) context
-				return Long.compare(slashes2, slashes1);
-			}
-			if (cp1.length() != cp2.length()) {
-				// order by length, so "/" is at the end
-				return Integer.compare(cp2.length(), cp1.length());
-			}
-			// alphabetlically
-			return cp1.compareTo(cp2);
+	private static class PendingTask<T> {
+		private final ModelRegistrationTask<T> task;
+		private final CompletableFuture<T> future = new CompletableFuture<>();
+		private T result;
+		private Throwable failure;
+
+		PendingTask(ModelRegistrationTask<T> task) {
+			this.task = task;
 		}
-	}
 
-	/**
-	 * {@link Comparator} that sorts pattern mappings of {@link ServletDTO} and {@link ResourceDTO} objects
-	 */
-	private static class PatternComparator implements Comparator<String> {
-		@Override
-		public int compare(String p1, String p2) {
-			long slashes1 = p1.codePoints().mapToObj(cp -> (char) cp).filter(c -> c == '/').count();
-			long slashes2 = p2.codePoints().mapToObj(cp -> (char) cp).filter(c -> c == '/').count();
-			// "/" always at the end
-			if ("/".equals(p1)) {
-				return 1;
-			}
-			if ("/".equals(p2)) {
-				return -1;
-			}
-			if (slashes1 != slashes2) {
-				// more slashes - "earlier" (lower) context. "*.xxx" has no slashes, so will have lowest priority
-				return Long.compare(slashes2, slashes1);
-			}
-			// 12.1 Use of URL Paths rules - exact matching is before pattern matching
-			if (p1.contains("*") && p2.contains("*")) {
-				if (p1.length() != p2.length()) {
-					// order by length, so "/" is at the end
-					return Integer.compare(p2.length(), p1.length());
-				}
-				// alphabetlically
-				return p1.compareTo(p2);
-			}
-			if (p1.contains("*")) {
-				return 1;
-			}
-			if (p2.contains("*")) {
-				return 1;
+		void run() {
+			try {
+				result = call(task);
+			} catch (Throwable e) {
+				failure = e;
 			}
-			if (p1.length() != p2.length()) {
-				// order by length, so "/" is at the end
-				return Integer.compare(p2.length(), p1.length());
+		}
+
+		void complete() {
+			if (failure != null) {
+				future.completeExceptionally(failure);
+			} else {
+				future.complete(result);
 			}
-			// alphabetlically
-			return p1.compareTo(p2);
 		}
 	}
 
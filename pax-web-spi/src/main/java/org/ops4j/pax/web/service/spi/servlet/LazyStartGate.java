@@ -0,0 +1,224 @@
+/*
+ * Copyright 2023 OPS4J.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.web.service.spi.servlet;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * <p>A gate in front of single (runtime-specific) context which is started lazily. Instead of starting the context,
+ * the configuration thread only {@link LazyStartGates#defer defers} the start and the context is started (still
+ * in the configuration thread) when first request {@link #enter() enters} the gate. Concurrent requests wait for
+ * the same start.</p>
+ *
+ * <p>The gate also counts in-flight requests and remembers the time of last request, so the context may be
+ * stopped again after some idle time.</p>
+ */
+public final class LazyStartGate {
+
+	private static final Logger LOG = LoggerFactory.getLogger(LazyStartGate.class);
+
+	private final String name;
+	private final LazyStartGates gates;
+
+	private final AtomicInteger inFlight = new AtomicInteger();
+	private volatile long lastAccess = System.nanoTime();
+
+	/** Whether the context has to be started before processing next request */
+	private volatile boolean deferred;
+
+	/** Start shared by concurrent requests */
+	private CompletableFuture<Void> pendingStart;
+
+	// fields accessed only in configuration thread
+
+	/** Whether the context was started through this gate and not stopped because of inactivity */
+	private boolean active;
+	/** Thread, which performs the start - the start should not be deferred again */
+	private Thread starting;
+	private Runnable start;
+	private Runnable stop;
+
+	LazyStartGate(String name, LazyStartGates gates) {
+		this.name = name;
+		this.gates = gates;
+	}
+
+	/**
+	 * Marks the beginning of request processing. If the start of the context is deferred, the context is started
+	 * in configuration thread and current thread waits until it's done (but not longer than configured timeout).
+	 * @return {@code true} if the context may be used, {@code false} if it couldn't be started (in time). In both
+	 *         cases {@link #exit()} has to be called.
+	 */
+	public boolean enter() {
+		while (true) {
+			inFlight.incrementAndGet();
+			lastAccess = System.nanoTime();
+			if (!deferred) {
+				return true;
+			}
+			// not counted while the context is being started
+			inFlight.decrementAndGet();
+			if (!awaitStart()) {
+				inFlight.incrementAndGet();
+				return false;
+			}
+		}
+	}
+
+	/**
+	 * Marks the end of request processing.
+	 */
+	public void exit() {
+		lastAccess = System.nanoTime();
+		inFlight.decrementAndGet();
+	}
+
+	/**
+	 * Returns an {@link AsyncListener} which calls {@link #exit()} when asynchronous request completes - to be
+	 * used instead of calling {@link #exit()} directly, when the request is still in progress after the
+	 * container's handler returns.
+	 * @return
+	 */
+	public AsyncListener exitOnComplete() {
+		return new AsyncListener() {
+			@Override
+			public void onComplete(AsyncEvent event) {
+				exit();
+			}
+
+			@Override
+			public void onTimeout(AsyncEvent event) {
+			}
+
+			@Override
+			public void onError(AsyncEvent event) {
+			}
+
+			@Override
+			public void onStartAsync(AsyncEvent event) {
+				// listeners are removed when the request is dispatched again with startAsync()
+				event.getAsyncContext().addListener(this);
+			}
+		};
+	}
+
+	public boolean isDeferred() {
+		return deferred;
+	}
+
+	public int getInFlight() {
+		return inFlight.get();
+	}
+
+	/**
+	 * Called in configuration thread instead of starting the context.
+	 * @param start
+	 * @param stop
+	 * @return {@code true} if the start is deferred, {@code false} if the context should be started now
+	 */
+	boolean defer(Runnable start, Runnable stop) {
+		if (starting == Thread.currentThread() || active) {
+			// lazy start in progress or restart of the context that was already started lazily
+			return false;
+		}
+		this.start = start;
+		this.stop = stop;
+		deferred = true;
+		return true;
+	}
+
+	/**
+	 * Stops the context if it's started and there were no requests for given time. Called in configuration thread.
+	 * @param idleNanos
+	 */
+	void stopIfIdle(long idleNanos) {
+		if (!active || deferred || stop == null || System.nanoTime() - lastAccess < idleNanos) {
+			return;
+		}
+		// new requests have to wait for next start from now on
+		deferred = true;
+		if (inFlight.get() > 0) {
+			deferred = false;
+			return;
+		}
+		LOG.info("Stopping context \"{}\" idle for more than {}ms", name, TimeUnit.NANOSECONDS.toMillis(idleNanos));
+		active = false;
+		try {
+			stop.run();
+		} catch (RuntimeException e) {
+			LOG.warn("Problem stopping idle context \"{}\": {}", name, e.getMessage(), e);
+		}
+	}
+
+	private boolean awaitStart() {
+		CompletableFuture<Void> future;
+		synchronized (this) {
+			future = pendingStart;
+			if (future == null) {
+				CompletableFuture<Void> started = gates.runInConfigurationThread(this::start);
+				pendingStart = started;
+				future = started;
+				// the start may already be finished, so it's not cleared in start() itself
+				started.whenComplete((v, e) -> clearPendingStart(started));
+			}
+		}
+		try {
+			// the configuration thread may be busy with other tasks (like WAB deployments), so the request
+			// doesn't wait for too long. The start continues and later requests may wait for it again
+			future.get(gates.getStartTimeout(), TimeUnit.MILLISECONDS);
+			return true;
+		} catch (TimeoutException e) {
+			LOG.warn("Context \"{}\" was not started within {}ms", name, gates.getStartTimeout());
+			return false;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return false;
+		} catch (ExecutionException e) {
+			LOG.warn("Can't start context \"{}\": {}", name, e.getCause().getMessage());
+			return false;
+		}
+	}
+
+	private void start() {
+		try {
+			if (deferred) {
+				LOG.info("Starting context \"{}\" on first request", name);
+				starting = Thread.currentThread();
+				start.run();
+				active = true;
+				deferred = false;
+			}
+		} finally {
+			starting = null;
+		}
+	}
+
+	private synchronized void clearPendingStart(CompletableFuture<Void> started) {
+		if (pendingStart == started) {
+			pendingStart = null;
+		}
+	}
+
+}
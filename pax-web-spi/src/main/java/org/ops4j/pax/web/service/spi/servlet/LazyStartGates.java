@@ -0,0 +1,249 @@
+/*
+ * Copyright 2023 OPS4J.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.web.service.spi.servlet;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.ops4j.pax.web.service.PaxWebConstants;
+import org.ops4j.pax.web.service.spi.model.OsgiContextModel;
+import org.ops4j.pax.web.service.spi.util.NamedThreadFactory;
+
+/**
+ * <p>All {@link LazyStartGate gates} of single server runtime (by context path).</p>
+ *
+ * <p>Lazy start and idle stop of the contexts are performed in configuration thread passed with
+ * {@link #setConfigurationExecutor(Executor)}, so they don't run concurrently with the
+ * {@link org.ops4j.pax.web.service.spi.task.Batch batches} and nested registrations (for example from
+ * {@link javax.servlet.ServletContainerInitializer SCIs}) work the same way as for eagerly started contexts.
+ * Without such executor, they're performed in calling thread while holding the lock, which server controller
+ * should also hold when processing batches.</p>
+ */
+public final class LazyStartGates {
+
+	/** Default time in milliseconds a request waits for the start of the context */
+	public static final long DEFAULT_START_TIMEOUT = 10000L;
+
+	private final boolean lazyByDefault;
+	private final long idleTimeout;
+	private final long startTimeout;
+
+	/** Gates by context path ({@code ""} for root context) */
+	private final Map<String, LazyStartGate> gates = new ConcurrentHashMap<>();
+
+	/** Paths of the contexts started eagerly - needed to find proper gate for nested context paths */
+	private final Set<String> eagerContexts = ConcurrentHashMap.newKeySet();
+
+	private final ReentrantLock lock = new ReentrantLock();
+
+	private volatile Executor configurationExecutor;
+
+	private ScheduledExecutorService idleChecker;
+
+	/**
+	 * Creates the gates for a server
+	 * @param lazyByDefault whether the contexts are started lazily unless configured otherwise
+	 * @param idleTimeout time in milliseconds after which idle, lazily started context is stopped ({@code 0}
+	 *        means never)
+	 */
+	public LazyStartGates(boolean lazyByDefault, long idleTimeout) {
+		this(lazyByDefault, idleTimeout, DEFAULT_START_TIMEOUT);
+	}
+
+	/**
+	 * Creates the gates for a server
+	 * @param lazyByDefault whether the contexts are started lazily unless configured otherwise
+	 * @param idleTimeout time in milliseconds after which idle, lazily started context is stopped ({@code 0}
+	 *        means never)
+	 * @param startTimeout time in milliseconds a request waits for the start of the context performed in
+	 *        configuration thread
+	 */
+	public LazyStartGates(boolean lazyByDefault, long idleTimeout, long startTimeout) {
+		this.lazyByDefault = lazyByDefault;
+		this.idleTimeout = Math.max(0L, idleTimeout);
+		this.startTimeout = Math.max(0L, startTimeout);
+	}
+
+	public void setConfigurationExecutor(Executor configurationExecutor) {
+		this.configurationExecutor = configurationExecutor;
+	}
+
+	/**
+	 * Locks the gates for the time of processing a {@link org.ops4j.pax.web.service.spi.task.Batch}.
+	 */
+	public void lock() {
+		lock.lock();
+	}
+
+	public void unlock() {
+		lock.unlock();
+	}
+
+	/**
+	 * Checks whether a context should be started lazily - {@link PaxWebConstants#CONTEXT_PARAM_LAZY_CONTEXT_START}
+	 * context parameter of highest ranked {@link OsgiContextModel} which has it overrides global setting.
+	 * @param osgiContextModels ordered {@link OsgiContextModel models} of the context
+	 * @return
+	 */
+	public boolean isLazy(Collection<OsgiContextModel> osgiContextModels) {
+		if (osgiContextModels != null) {
+			for (OsgiContextModel ocm : osgiContextModels) {
+				String lazy = ocm.getContextParams().get(PaxWebConstants.CONTEXT_PARAM_LAZY_CONTEXT_START);
+				if (lazy != null) {
+					return Boolean.parseBoolean(lazy.trim());
+				}
+			}
+		}
+		return lazyByDefault;
+	}
+
+	/**
+	 * Called in configuration thread before a context is started. Lazy context is not started - only its gate
+	 * is created.
+	 * @param contextPath
+	 * @param lazy whether the context should be started lazily (see {@link #isLazy(Collection)})
+	 * @param start runtime-specific start of the context, called when first request arrives
+	 * @param stop runtime-specific stop of the context, called when the context is idle
+	 * @return {@code true} if the start is deferred, {@code false} if the context should be started now
+	 */
+	public boolean defer(String contextPath, boolean lazy, Runnable start, Runnable stop) {
+		String path = path(contextPath);
+		if (!lazy) {
+			// also when the context was lazy before, but its configuration has changed
+			gates.remove(path);
+			eagerContexts.add(path);
+			return false;
+		}
+		LazyStartGate gate = gates.get(path);
+		if (gate == null) {
+			eagerContexts.remove(path);
+			gate = new LazyStartGate("".equals(path) ? "/" : path, this);
+			gates.put(path, gate);
+			scheduleIdleChecks();
+		}
+		return gate.defer(start, stop);
+	}
+
+	public LazyStartGate get(String contextPath) {
+		return gates.get(path(contextPath));
+	}
+
+	/**
+	 * Finds a gate for the longest context path matching the request path. If such context is started eagerly,
+	 * there's no gate.
+	 * @param requestPath
+	 * @return
+	 */
+	public LazyStartGate find(String requestPath) {
+		String path = requestPath == null ? "" : requestPath;
+		while (true) {
+			LazyStartGate gate = gates.get(path);
+			if (gate != null || eagerContexts.contains(path)) {
+				return gate;
+			}
+			int slash = path.lastIndexOf('/');
+			if (slash < 0) {
+				return null;
+			}
+			path = path.substring(0, slash);
+		}
+	}
+
+	/**
+	 * Removes the gate when the context is removed
+	 * @param contextPath
+	 */
+	public void remove(String contextPath) {
+		gates.remove(path(contextPath));
+		eagerContexts.remove(path(contextPath));
+	}
+
+	public boolean isEmpty() {
+		return gates.isEmpty();
+	}
+
+	/**
+	 * Removes all the gates and stops checking idle contexts when the server is stopped.
+	 */
+	public void shutdown() {
+		synchronized (this) {
+			if (idleChecker != null) {
+				idleChecker.shutdownNow();
+				idleChecker = null;
+			}
+		}
+		gates.clear();
+		eagerContexts.clear();
+	}
+
+	long getStartTimeout() {
+		return startTimeout;
+	}
+
+	/**
+	 * Runs a task in configuration thread (or in current thread if there's no configuration executor).
+	 * @param task
+	 * @return
+	 */
+	CompletableFuture<Void> runInConfigurationThread(Runnable task) {
+		Runnable lockedTask = () -> {
+			lock.lock();
+			try {
+				task.run();
+			} finally {
+				lock.unlock();
+			}
+		};
+		Executor executor = configurationExecutor;
+		try {
+			if (executor != null) {
+				return CompletableFuture.runAsync(lockedTask, executor);
+			}
+			lockedTask.run();
+			return CompletableFuture.completedFuture(null);
+		} catch (RuntimeException e) {
+			// for example RejectedExecutionException when the runtime is stopping
+			CompletableFuture<Void> failed = new CompletableFuture<>();
+			failed.completeExceptionally(e);
+			return failed;
+		}
+	}
+
+	private synchronized void scheduleIdleChecks() {
+		if (idleTimeout == 0L || idleChecker != null) {
+			return;
+		}
+		long idleNanos = TimeUnit.MILLISECONDS.toNanos(idleTimeout);
+		long period = Math.max(idleTimeout / 2L, 10L);
+		idleChecker = Executors.newSingleThreadScheduledExecutor(new NamedThreadFactory("paxweb-lazy-context"));
+		idleChecker.scheduleWithFixedDelay(() -> runInConfigurationThread(() -> {
+			gates.values().forEach(gate -> gate.stopIfIdle(idleNanos));
+		}), period, period, TimeUnit.MILLISECONDS);
+	}
+
+	private static String path(String contextPath) {
+		return contextPath == null || "/".equals(contextPath) ? "" : contextPath;
+	}
+
+}
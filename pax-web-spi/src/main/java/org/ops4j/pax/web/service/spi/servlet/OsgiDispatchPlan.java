@@ -0,0 +1,213 @@
+/*
+ * Copyright 2023 OPS4J.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.web.service.spi.servlet;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
+import javax.servlet.FilterChain;
+import javax.servlet.ServletContext;
+import javax.servlet.http.HttpServletRequest;
+
+import org.ops4j.pax.web.service.WebContainerContext;
+import org.ops4j.pax.web.service.spi.model.elements.FilterModel;
+import org.osgi.service.http.whiteboard.Preprocessor;
+
+/**
+ * <p>Container-neutral <em>dispatch plan</em> for single physical servlet context. It describes the part of
+ * request processing pipeline that's defined by OSGi CMPN Http Service and Whiteboard specifications:<ol>
+ *     <li>{@link Preprocessor preprocessors}</li>
+ *     <li>{@code handleSecurity()} of {@link org.osgi.service.http.HttpContext} or
+ *     {@link org.osgi.service.http.context.ServletContextHelper}</li>
+ *     <li>normal filters and target servlet - handled by actual container as the last {@link FilterChain}</li>
+ * </ol></p>
+ *
+ * <p>The plan is immutable. It's compiled by a {@link org.ops4j.pax.web.service.spi.ServerController} when
+ * {@link org.ops4j.pax.web.service.spi.task.FilterStateChange} is applied and published to the request
+ * threads. Jetty, Tomcat and Undertow only create (and cache) {@link OsgiFilterChainTemplate templates} for given
+ * target of the request and for each request they call {@link OsgiFilterChainTemplate#newChain(FilterChain)}.
+ * This ensures the same per-request cost on every container.</p>
+ *
+ * <p>The plan doesn't resolve normal filters and target servlets - mapping of the request to a servlet and
+ * its filter chain is still done by each container (using its own, already cached, structures).</p>
+ */
+public final class OsgiDispatchPlan {
+
+	private static final PreprocessorFilterConfig[] NO_CONFIGS = new PreprocessorFilterConfig[0];
+
+	private final PreprocessorFilterConfig[] preprocessors;
+
+	private final OsgiSessionAttributeListener osgiSessionsBridge;
+	private final Consumer<HttpServletRequest> authListener;
+
+	/** Preprocessors that were not part of previous plan and have to be initialized */
+	private final List<PreprocessorFilterConfig> preprocessorsToInit;
+	/** Preprocessors from previous plan that are no longer part of this plan and have to be destroyed */
+	private final List<PreprocessorFilterConfig> preprocessorsToDestroy;
+
+	/**
+	 * Instances of {@link Preprocessor preprocessors} are obtained lazily (from the first request), because
+	 * we can't obtain them before the context is started.
+	 */
+	private volatile Preprocessor[] instances;
+
+	/** Template used when there's no particular target (no OSGi context, no security handling) */
+	private volatile OsgiFilterChainTemplate defaultTemplate;
+
+	private OsgiDispatchPlan(PreprocessorFilterConfig[] preprocessors,
+			OsgiSessionAttributeListener osgiSessionsBridge, Consumer<HttpServletRequest> authListener,
+			List<PreprocessorFilterConfig> preprocessorsToInit, List<PreprocessorFilterConfig> preprocessorsToDestroy) {
+		this.preprocessors = preprocessors;
+		this.osgiSessionsBridge = osgiSessionsBridge;
+		this.authListener = authListener;
+		this.preprocessorsToInit = preprocessorsToInit;
+		this.preprocessorsToDestroy = preprocessorsToDestroy;
+	}
+
+	/**
+	 * Creates an empty plan (without preprocessors) for given runtime-specific bridge and authentication listener
+	 *
+	 * @param osgiSessionsBridge
+	 * @param authListener listener called after {@code handleSecurity()} returns {@code true}. It can't capture
+	 *        any per-request state.
+	 * @return
+	 */
+	public static OsgiDispatchPlan empty(OsgiSessionAttributeListener osgiSessionsBridge,
+			Consumer<HttpServletRequest> authListener) {
+		return new OsgiDispatchPlan(NO_CONFIGS, osgiSessionsBridge, authListener,
+				Collections.emptyList(), Collections.emptyList());
+	}
+
+	/**
+	 * <p>Compiles new plan using the state of filters for single physical context. All the
+	 * {@link FilterModel#isPreprocessor() preprocessors} are <strong>removed</strong> from passed set, so
+	 * the caller can process remaining (normal) filters in container-specific way.</p>
+	 *
+	 * <p>{@link PreprocessorFilterConfig configs} of the preprocessors that were already part of this plan are
+	 * reused, so new plan contains information about preprocessors that have to be initialized and destroyed.</p>
+	 *
+	 * @param filters ordered set of filters for a context as found in
+	 *        {@link org.ops4j.pax.web.service.spi.task.FilterStateChange}
+	 * @param context {@link OsgiServletContext} to be used by {@link javax.servlet.FilterConfig} of preprocessors
+	 * @return
+	 */
+	public OsgiDispatchPlan compile(Set<FilterModel> filters, OsgiServletContext context) {
+		List<PreprocessorFilterConfig> current = new ArrayList<>();
+		List<PreprocessorFilterConfig> toInit = new ArrayList<>();
+		List<PreprocessorFilterConfig> toDestroy = new ArrayList<>(Arrays.asList(preprocessors));
+
+		for (Iterator<FilterModel> iterator = filters.iterator(); iterator.hasNext(); ) {
+			FilterModel model = iterator.next();
+			if (!model.isPreprocessor()) {
+				continue;
+			}
+			iterator.remove();
+
+			PreprocessorFilterConfig filterConfig = new PreprocessorFilterConfig(model, context);
+			boolean existing = false;
+			for (Iterator<PreprocessorFilterConfig> it = toDestroy.iterator(); it.hasNext(); ) {
+				PreprocessorFilterConfig pfc = it.next();
+				if (pfc.getModel().equals(model)) {
+					// there's existing PreprocessorFilterConfig, so copy the instance and
+					// potentially the ServiceObjects. We don't have to destroy() it
+					filterConfig.copyFrom(pfc);
+					filterConfig.setInitCalled(pfc.isInitCalled());
+					it.remove();
+					existing = true;
+				}
+			}
+			if (!existing) {
+				// new preprocessor - we have to init() it
+				toInit.add(filterConfig);
+			}
+			current.add(filterConfig);
+		}
+
+		return new OsgiDispatchPlan(current.toArray(NO_CONFIGS), osgiSessionsBridge, authListener,
+				Collections.unmodifiableList(toInit), Collections.unmodifiableList(toDestroy));
+	}
+
+	/**
+	 * Returns a copy of this plan without cached {@link Preprocessor} instances. Should be used after the
+	 * lifecycle of the preprocessors changes (they are initialized or destroyed with the context), because
+	 * {@link PreprocessorFilterConfig#getInstance()} may then return different instance.
+	 *
+	 * @return
+	 */
+	public OsgiDispatchPlan refresh() {
+		return new OsgiDispatchPlan(preprocessors, osgiSessionsBridge, authListener,
+				Collections.emptyList(), Collections.emptyList());
+	}
+
+	/**
+	 * Creates new template of {@link OsgiFilterChain} for given target. The template is valid as long as
+	 * {@link OsgiFilterChainTemplate#getPlan()} is the current plan of the runtime.
+	 *
+	 * @param servletContext {@link ServletContext} to wrap the request with
+	 * @param webContext {@link WebContainerContext} to call {@code handleSecurity()} on
+	 * @return
+	 */
+	public OsgiFilterChainTemplate newTemplate(ServletContext servletContext, WebContainerContext webContext) {
+		return new OsgiFilterChainTemplate(this, getPreprocessorInstances(), servletContext, webContext,
+				osgiSessionsBridge, authListener);
+	}
+
+	/**
+	 * Returns cached template without any target - only preprocessors will be invoked.
+	 * @return
+	 */
+	public OsgiFilterChainTemplate getDefaultTemplate() {
+		OsgiFilterChainTemplate template = defaultTemplate;
+		if (template == null) {
+			template = newTemplate(null, null);
+			defaultTemplate = template;
+		}
+		return template;
+	}
+
+	/**
+	 * Returns unmodifiable, ordered list of preprocessors of this plan.
+	 * @return
+	 */
+	public List<PreprocessorFilterConfig> getPreprocessors() {
+		return Collections.unmodifiableList(Arrays.asList(preprocessors));
+	}
+
+	public List<PreprocessorFilterConfig> getPreprocessorsToInit() {
+		return preprocessorsToInit;
+	}
+
+	public List<PreprocessorFilterConfig> getPreprocessorsToDestroy() {
+		return preprocessorsToDestroy;
+	}
+
+	private Preprocessor[] getPreprocessorInstances() {
+		Preprocessor[] result = instances;
+		if (result == null) {
+			result = new Preprocessor[preprocessors.length];
+			for (int i = 0; i < preprocessors.length; i++) {
+				result[i] = preprocessors[i].getInstance();
+			}
+			instances = result;
+		}
+		return result;
+	}
+
+}
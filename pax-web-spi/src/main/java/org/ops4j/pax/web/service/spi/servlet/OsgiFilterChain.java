@@ -16,7 +16,6 @@
 package org.ops4j.pax.web.service.spi.servlet;
 
 import java.io.IOException;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.function.Consumer;
 import javax.servlet.FilterChain;
@@ -42,16 +41,11 @@ import org.osgi.service.http.whiteboard.Preprocessor;
  */
 public class OsgiFilterChain implements FilterChain {
 
-	private final List<Preprocessor> preprocessors = new LinkedList<>();
-
-	private final ServletContext servletContext;
-	private final WebContainerContext webContext;
-
-	private final OsgiSessionAttributeListener osgiSessionsBridge;
-	private final Consumer<HttpServletRequest> authListener;
+	private final OsgiFilterChainTemplate template;
 
 	private FilterChain chain;
 
+	/** Per-request position within {@link OsgiFilterChainTemplate#getPreprocessors()} */
 	private int index = 0;
 
 	/**
@@ -66,12 +60,20 @@ public class OsgiFilterChain implements FilterChain {
 	public OsgiFilterChain(List<Preprocessor> preprocessors, ServletContext servletContext,
 			WebContainerContext context, FilterChain originalChain,
 			OsgiSessionAttributeListener osgiSessionsBridge, Consumer<HttpServletRequest> authListener) {
-		this.preprocessors.addAll(preprocessors);
-		this.webContext = context;
-		this.servletContext = servletContext;
+		this(new OsgiFilterChainTemplate(preprocessors.toArray(new Preprocessor[0]), servletContext, context,
+				osgiSessionsBridge, authListener), originalChain);
+	}
+
+	/**
+	 * Creates {@link FilterChain} using precompiled {@link OsgiFilterChainTemplate}. Only per-request state
+	 * is kept in the created chain.
+	 *
+	 * @param template
+	 * @param originalChain
+	 */
+	OsgiFilterChain(OsgiFilterChainTemplate template, FilterChain originalChain) {
+		this.template = template;
 		this.chain = originalChain;
-		this.osgiSessionsBridge = osgiSessionsBridge;
-		this.authListener = authListener;
 	}
 
 	public void setChain(FilterChain chain) {
@@ -83,14 +85,18 @@ public class OsgiFilterChain implements FilterChain {
 		HttpServletRequest req = (HttpServletRequest) request;
 		HttpServletResponse res = (HttpServletResponse) response;
 
+		ServletContext servletContext = template.getServletContext();
+		WebContainerContext webContext = template.getWebContext();
+
 		// Here's the best place to wrap a request - but only when called for the first time!
 		if (index == 0 && servletContext != null) {
-			req = new OsgiHttpServletRequestWrapper(req, servletContext, osgiSessionsBridge);
+			req = new OsgiHttpServletRequestWrapper(req, servletContext, template.getOsgiSessionsBridge());
 		}
 
-		if (index < preprocessors.size()) {
+		Preprocessor[] preprocessors = template.getPreprocessors();
+		if (index < preprocessors.length) {
 			// still something left
-			Preprocessor filter = preprocessors.get(index++);
+			Preprocessor filter = preprocessors[index++];
 			filter.doFilter(req, res, this);
 			return;
 		}
@@ -99,6 +105,7 @@ public class OsgiFilterChain implements FilterChain {
 		// and target servlet)
 		try {
 			if (webContext == null || webContext.handleSecurity(req, res)) {
+				Consumer<HttpServletRequest> authListener = template.getAuthListener();
 				if (authListener != null && webContext != null) {
 					// it means we've passed the OSGi security handler
 					// here, the listener may translate (if available):
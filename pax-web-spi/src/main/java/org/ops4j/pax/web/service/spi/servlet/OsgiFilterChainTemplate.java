@@ -0,0 +1,124 @@
+/*
+ * Copyright 2023 OPS4J.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.web.service.spi.servlet;
+
+import java.util.function.Consumer;
+import javax.servlet.FilterChain;
+import javax.servlet.ServletContext;
+import javax.servlet.http.HttpServletRequest;
+
+import org.ops4j.pax.web.service.WebContainerContext;
+import org.osgi.service.http.whiteboard.Preprocessor;
+
+/**
+ * <p>Immutable, precompiled part of {@link OsgiFilterChain} - everything that doesn't change between requests
+ * targeting the same servlet (and the same OSGi context): {@link Preprocessor} instances, {@link ServletContext}
+ * used to wrap the request, resolved {@link WebContainerContext} used for {@code handleSecurity()} and
+ * an <em>authentication listener</em>.</p>
+ *
+ * <p>Runtimes should create such template (usually with {@link OsgiDispatchPlan#newTemplate}) only when the set
+ * of preprocessors, filters or servlets changes and then, for each request, only call {@link #newChain(FilterChain)},
+ * which creates a lightweight cursor with per-request state only.</p>
+ */
+public final class OsgiFilterChainTemplate {
+
+	private static final Preprocessor[] NO_PREPROCESSORS = new Preprocessor[0];
+
+	private final OsgiDispatchPlan plan;
+
+	private final Preprocessor[] preprocessors;
+
+	private final ServletContext servletContext;
+	private final WebContainerContext webContext;
+
+	private final OsgiSessionAttributeListener osgiSessionsBridge;
+	private final Consumer<HttpServletRequest> authListener;
+
+	/**
+	 * Creates an immutable template for {@link OsgiFilterChain}.
+	 *
+	 * @param preprocessors array of {@link Preprocessor preprocessors}, which is <strong>not</strong> copied, so
+	 *        the caller should not modify it after passing it here
+	 * @param servletContext wrapped {@link ServletContext} with proper delegation
+	 * @param context already resolved {@link WebContainerContext}
+	 * @param osgiSessionsBridge
+	 * @param authListener listener called after successful {@code handleSecurity()}. It should not capture any
+	 *        per-request state.
+	 */
+	public OsgiFilterChainTemplate(Preprocessor[] preprocessors, ServletContext servletContext,
+			WebContainerContext context, OsgiSessionAttributeListener osgiSessionsBridge,
+			Consumer<HttpServletRequest> authListener) {
+		this(null, preprocessors, servletContext, context, osgiSessionsBridge, authListener);
+	}
+
+	OsgiFilterChainTemplate(OsgiDispatchPlan plan, Preprocessor[] preprocessors, ServletContext servletContext,
+			WebContainerContext context, OsgiSessionAttributeListener osgiSessionsBridge,
+			Consumer<HttpServletRequest> authListener) {
+		this.plan = plan;
+		this.preprocessors = preprocessors == null ? NO_PREPROCESSORS : preprocessors;
+		this.servletContext = servletContext;
+		this.webContext = context;
+		this.osgiSessionsBridge = osgiSessionsBridge;
+		this.authListener = authListener;
+	}
+
+	/**
+	 * Creates new, per-request {@link OsgiFilterChain} that'll invoke the preprocessors, security handlers and
+	 * eventually the passed {@link FilterChain} (normal filters and target servlet).
+	 *
+	 * @param chain
+	 * @return
+	 */
+	public OsgiFilterChain newChain(FilterChain chain) {
+		return new OsgiFilterChain(this, chain);
+	}
+
+	/**
+	 * Returns {@link OsgiDispatchPlan} from which this template was created. Callers may use the identity
+	 * of returned plan to check whether the template is still valid.
+	 *
+	 * @return
+	 */
+	public OsgiDispatchPlan getPlan() {
+		return plan;
+	}
+
+	/**
+	 * Returns the array of {@link Preprocessor preprocessors} used by this template.
+	 *
+	 * @return
+	 */
+	public Preprocessor[] getPreprocessors() {
+		return preprocessors;
+	}
+
+	public ServletContext getServletContext() {
+		return servletContext;
+	}
+
+	public WebContainerContext getWebContext() {
+		return webContext;
+	}
+
+	public OsgiSessionAttributeListener getOsgiSessionsBridge() {
+		return osgiSessionsBridge;
+	}
+
+	public Consumer<HttpServletRequest> getAuthListener() {
+		return authListener;
+	}
+
+}
@@ -105,25 +105,23 @@ public class OsgiHttpServletRequestWrapper extends HttpServletRequestWrapper {
 
 	@Override
 	public HttpSession getSession(boolean create) {
-		if (session != null) {
-			session = null;
+		// container has to be asked every time - the session may have been invalidated or replaced
+		HttpSession original = super.getSession(create);
+		if (original == null) {
+			return null;
 		}
-		if (session == null) {
-			synchronized (this) {
-				if (session == null) {
-					HttpSession original = super.getSession(create);
-					if (original == null) {
-						return null;
-					}
-					if (original instanceof OsgiHttpSession) {
-						session = (OsgiHttpSession) original;
-						return session;
-					}
-
-					// the only place where org.ops4j.pax.web.service.spi.servlet.OsgiHttpSession is created
-					this.session = new OsgiHttpSession(original, osgiContext, context, osgiSessionsBridge);
-				}
-			}
+		if (original instanceof OsgiHttpSession) {
+			return original;
+		}
+
+		// lock-free fast path - the wrapper is reused as long as the container returns the same session
+		// object (changed session ID doesn't matter, because the wrapper delegates getId()).
+		// In case of a race we may create two equivalent wrappers, which is harmless
+		OsgiHttpSession session = this.session;
+		if (session == null || session.getOriginal() != original) {
+			// the only place where org.ops4j.pax.web.service.spi.servlet.OsgiHttpSession is created
+			session = new OsgiHttpSession(original, osgiContext, context, osgiSessionsBridge);
+			this.session = session;
 		}
 
 		return session;
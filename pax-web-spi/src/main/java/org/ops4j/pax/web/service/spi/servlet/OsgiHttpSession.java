@@ -38,6 +38,14 @@ public class OsgiHttpSession implements HttpSession {
 		this.context = context;
 	}
 
+	/**
+	 * Returns the container-specific {@link HttpSession} wrapped by this session.
+	 * @return
+	 */
+	public HttpSession getOriginal() {
+		return original;
+	}
+
 	@Override
 	public long getCreationTime() {
 		return original.getCreationTime();
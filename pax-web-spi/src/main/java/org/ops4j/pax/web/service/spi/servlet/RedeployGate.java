@@ -0,0 +1,208 @@
+/*
+ * Copyright 2023 OPS4J.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.web.service.spi.servlet;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * <p>A gate in front of single (runtime-specific) context used to restart the context without failing the
+ * requests. When the context is about to be stopped, the gate is {@link #close() closed} - it waits for in-flight
+ * requests to finish and new requests are held in {@link #enter(boolean)} until the gate is {@link #open() opened}
+ * again after the context is started.</p>
+ *
+ * <p>A new deployment is not started next to the old one, because servlet and filter instances (registered
+ * directly through {@link org.osgi.service.http.HttpService} or as singleton services) are shared between the
+ * old and the restarted context and {@link javax.servlet.Servlet#destroy()} has to be called before
+ * {@link javax.servlet.Servlet#init(javax.servlet.ServletConfig)}.</p>
+ *
+ * <p>Both draining and holding are limited by the same timeout.</p>
+ *
+ * <p>While the gate is open, requests only update an atomic counter - the lock is used only when the gate is
+ * closed.</p>
+ */
+public final class RedeployGate {
+
+	private static final Logger LOG = LoggerFactory.getLogger(RedeployGate.class);
+
+	private final String name;
+	private final long timeoutNanos;
+
+	/** Used only when the gate is closed (or being closed) */
+	private final ReentrantLock lock = new ReentrantLock();
+	private final Condition changed = lock.newCondition();
+
+	/** Nesting level of current thread - for forwards/includes and to not wait for itself when closing */
+	private final ThreadLocal<int[]> depth = ThreadLocal.withInitial(() -> new int[1]);
+
+	private final AtomicInteger inFlight = new AtomicInteger();
+	private volatile boolean closed;
+
+	/**
+	 * Creates a gate for a context
+	 * @param name name of the context (for logging)
+	 * @param timeout timeout in milliseconds
+	 */
+	public RedeployGate(String name, long timeout) {
+		this.name = name;
+		this.timeoutNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0L, timeout));
+	}
+
+	/**
+	 * Finds a gate for the longest context path matching the request path.
+	 * @param gates gates by context path ({@code ""} for root context)
+	 * @param path request path (not including the context path)
+	 * @return
+	 */
+	public static RedeployGate find(Map<String, RedeployGate> gates, String path) {
+		String p = path == null ? "" : path;
+		while (true) {
+			RedeployGate gate = gates.get(p);
+			if (gate != null) {
+				return gate;
+			}
+			int slash = p.lastIndexOf('/');
+			if (slash < 0) {
+				return null;
+			}
+			p = p.substring(0, slash);
+		}
+	}
+
+	/**
+	 * Marks the beginning of request processing. If the gate is closed, the request may wait until it's opened
+	 * (unless the calling thread is already processing a request passed through this gate).
+	 * @param hold whether to wait if the gate is closed
+	 * @return {@code true} if the context may be used, {@code false} if the gate is still closed. In both cases
+	 *         {@link #exit()} has to be called.
+	 */
+	public boolean enter(boolean hold) {
+		int[] level = depth.get();
+		if (level[0]++ > 0) {
+			return true;
+		}
+		// fast path - the counter is incremented before checking the flag, so close() either sees this
+		// request or this request sees the closed gate
+		inFlight.incrementAndGet();
+		if (!closed || !hold) {
+			return !closed;
+		}
+
+		// slow path - not counted while waiting, so close() doesn't wait for held requests
+		decrement();
+		lock.lock();
+		try {
+			long nanos = timeoutNanos;
+			while (closed && nanos > 0L) {
+				nanos = changed.awaitNanos(nanos);
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} finally {
+			lock.unlock();
+		}
+		inFlight.incrementAndGet();
+		return !closed;
+	}
+
+	/**
+	 * Marks the end of request processing.
+	 */
+	public void exit() {
+		int[] level = depth.get();
+		if (--level[0] > 0) {
+			return;
+		}
+		depth.remove();
+		decrement();
+	}
+
+	/**
+	 * Closes the gate and waits for in-flight requests (other than the one processed by current thread).
+	 * @return {@code true} if all the requests have finished within the timeout
+	 */
+	public boolean close() {
+		boolean inside = depth.get()[0] > 0;
+		if (!inside) {
+			depth.remove();
+		}
+		lock.lock();
+		try {
+			closed = true;
+			int own = inside ? 1 : 0;
+			long nanos = timeoutNanos;
+			while (inFlight.get() > own && nanos > 0L) {
+				nanos = changed.awaitNanos(nanos);
+			}
+			int remaining = inFlight.get() - own;
+			if (remaining > 0) {
+				LOG.warn("{} request(s) to context \"{}\" still in progress after {}ms", remaining, name,
+						TimeUnit.NANOSECONDS.toMillis(timeoutNanos));
+				return false;
+			}
+			return true;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return false;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Opens the gate and releases held requests.
+	 */
+	public void open() {
+		lock.lock();
+		try {
+			closed = false;
+			changed.signalAll();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	public boolean isClosed() {
+		return closed;
+	}
+
+	public int getInFlight() {
+		return inFlight.get();
+	}
+
+	/**
+	 * Decrements the number of in-flight requests and, only if the gate is closed, wakes up the thread
+	 * waiting in {@link #close()}.
+	 */
+	private void decrement() {
+		inFlight.decrementAndGet();
+		if (closed) {
+			lock.lock();
+			try {
+				changed.signalAll();
+			} finally {
+				lock.unlock();
+			}
+		}
+	}
+
+}
@@ -0,0 +1,746 @@
+/*
+ * Copyright 2023 OPS4J.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.web.service.spi.util;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.GZIPOutputStream;
+
+import org.ops4j.pax.web.service.spi.config.ResourceConfiguration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * <p>Cache of the content of bundle resources served by the resource servlets of all the runtimes. The content
+ * is stored in direct (off-heap) {@link ByteBuffer buffers} which can be written to the network without copying and
+ * the entries are keyed by resource {@link URL}, so the same resource served from many contexts (or many resource
+ * servlets) is stored once. All the entries share single memory budget.</p>
+ *
+ * <p>The eviction policy is W-TinyLFU: new entries are added to small LRU <em>admission window</em>, entries
+ * leaving the window are admitted to <em>main</em> segmented LRU space only if they were requested more often than
+ * the entries they'd replace. The frequencies are estimated by periodically aged count-min sketch, which also
+ * remembers the resources that were not (or are no longer) cached. This way single scan over many resources doesn't
+ * flush the resources which are requested frequently.</p>
+ *
+ * <p>There's single {@link #getShared() shared instance}, {@link #configureShared(long, long) configured} by the
+ * runtimes, when {@link ResourceConfiguration#sharedCacheSize()} is set. When it's not set, compressed variants
+ * of the resources are kept in single {@link #configureCompression compression cache} of the runtime.</p>
+ */
+public final class ContentCache {
+
+	/** Same as default maximum size of cached file in resource servlets (Jetty's default divided by 64) */
+	public static final long DEFAULT_MAX_ENTRY_SIZE = 128 * 1024 * 1024 / 64;
+
+	/** Default size of compression cache - the same as default total cache size of Jetty's resource servlet */
+	public static final long DEFAULT_COMPRESSION_CACHE_SIZE = 256 * 1024 * 1024 / 64;
+
+	/** The only encoding supported by {@link #getCompressed(URL, long, long, String)} */
+	public static final String GZIP = "gzip";
+
+	private static final Logger LOG = LoggerFactory.getLogger(ContentCache.class);
+
+	/** Percentage of the budget for the admission window */
+	private static final int WINDOW_PERCENT = 1;
+	/** Percentage of the main space for protected segment */
+	private static final int PROTECTED_PERCENT = 80;
+
+	private static final Object SHARED_LOCK = new Object();
+	private static volatile ContentCache shared;
+	private static volatile ContentCache compression;
+
+
+	private final long maxSize;
+	private final long maxEntrySize;
+	private final long maxWindowSize;
+	private final long maxProtectedSize;
+
+	/** Entries for lock-free lookup - the LRU segments below are guarded by the lock */
+	private final ConcurrentHashMap<String, Node> data = new ConcurrentHashMap<>();
+
+	private final ReentrantLock lock = new ReentrantLock();
+	private final LinkedHashMap<String, Node> window = new LinkedHashMap<>(16, 0.75f, true);
+	private final LinkedHashMap<String, Node> probation = new LinkedHashMap<>(16, 0.75f, true);
+	private final LinkedHashMap<String, Node> protectedSegment = new LinkedHashMap<>(16, 0.75f, true);
+	private final FrequencySketch sketch;
+
+	private long windowSize;
+	private long probationSize;
+	private long protectedSize;
+
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+	private final LongAdder evictions = new LongAdder();
+	private final LongAdder rejections = new LongAdder();
+
+	/**
+	 * Creates new cache
+	 * @param maxSize total size of cached content in bytes
+	 * @param maxEntrySize maximum size of single resource in bytes
+	 */
+	public ContentCache(long maxSize, long maxEntrySize) {
+		if (maxSize <= 0L) {
+			throw new IllegalArgumentException("Content cache size should be positive");
+		}
+		this.maxSize = maxSize;
+		this.maxEntrySize = Math.min(maxEntrySize <= 0L ? maxSize : maxEntrySize, maxSize);
+		this.maxWindowSize = Math.max(1L, maxSize * WINDOW_PERCENT / 100);
+		this.maxProtectedSize = (maxSize - maxWindowSize) * PROTECTED_PERCENT / 100;
+		// assume 4kB average resource for sketch size
+		this.sketch = new FrequencySketch((int) Math.min(1 << 20, Math.max(64L, maxSize / 4096)));
+	}
+
+	/**
+	 * Returns shared instance of the cache or {@code null} if it was not {@link #configureShared configured}
+	 * @return
+	 */
+	public static ContentCache getShared() {
+		return shared;
+	}
+
+	/**
+	 * Configures the shared instance of the cache using {@link ResourceConfiguration#sharedCacheSize()} (kB) and
+	 * {@link ResourceConfiguration#maxCacheEntrySize()} (kB, defaults to 2MB).
+	 * @param configuration
+	 * @return shared cache or {@code null} if the shared cache is not enabled
+	 */
+	public static ContentCache configureShared(ResourceConfiguration configuration) {
+		Integer size = configuration == null ? null : configuration.sharedCacheSize();
+		if (size == null || size <= 0) {
+			return null;
+		}
+		Integer maxEntrySize = configuration.maxCacheEntrySize();
+		return configureShared(size * 1024L, maxEntrySize == null ? DEFAULT_MAX_ENTRY_SIZE : maxEntrySize * 1024L);
+	}
+
+	/**
+	 * Configures the shared instance of the cache. If the configuration is different than the one of existing
+	 * instance, new (empty) instance is created.
+	 * @param maxSize
+	 * @param maxEntrySize
+	 * @return
+	 */
+	public static ContentCache configureShared(long maxSize, long maxEntrySize) {
+		synchronized (SHARED_LOCK) {
+			ContentCache current = shared;
+			if (current == null || !current.hasLimits(maxSize, maxEntrySize)) {
+				LOG.info("Configuring shared content cache with maxSize={}kB, maxEntrySize={}kB",
+						maxSize / 1024, maxEntrySize / 1024);
+				current = new ContentCache(maxSize, maxEntrySize);
+				shared = current;
+			}
+			return current;
+		}
+	}
+
+	/**
+	 * Returns the cache for compressed variants of the resources - the {@link #getShared() shared cache} if it's
+	 * configured, otherwise single instance (for all the resource servlets) sized using
+	 * {@link ResourceConfiguration#maxTotalCacheSize()} (kB) and {@link ResourceConfiguration#maxCacheEntrySize()}
+	 * (kB).
+	 * @param configuration
+	 * @return
+	 */
+	public static ContentCache configureCompression(ResourceConfiguration configuration) {
+		ContentCache current = shared;
+		if (current != null) {
+			return current;
+		}
+		Integer size = configuration == null ? null : configuration.maxTotalCacheSize();
+		Integer entrySize = configuration == null ? null : configuration.maxCacheEntrySize();
+		long maxSize = size == null || size <= 0 ? DEFAULT_COMPRESSION_CACHE_SIZE : size * 1024L;
+		long maxEntrySize = entrySize == null ? DEFAULT_MAX_ENTRY_SIZE : entrySize * 1024L;
+		synchronized (SHARED_LOCK) {
+			current = compression;
+			if (current == null || !current.hasLimits(maxSize, maxEntrySize)) {
+				LOG.info("Configuring compression cache with maxSize={}kB, maxEntrySize={}kB",
+						maxSize / 1024, maxEntrySize / 1024);
+				current = new ContentCache(maxSize, maxEntrySize);
+				compression = current;
+			}
+			return current;
+		}
+	}
+
+	/**
+	 * Removes the entries of given bundle from shared cache and compression cache
+	 * @param bundleId
+	 */
+	public static void bundleChanged(long bundleId) {
+		ContentCache current = shared;
+		if (current != null) {
+			current.invalidate(bundleId);
+		}
+		current = compression;
+		if (current != null) {
+			current.invalidate(bundleId);
+		}
+	}
+
+	private boolean hasLimits(long maxSize, long maxEntrySize) {
+		return this.maxSize == maxSize
+				&& this.maxEntrySize == Math.min(maxEntrySize <= 0L ? maxSize : maxEntrySize, maxSize);
+	}
+
+	/**
+	 * <p>Returns read-only buffer with the content of the resource. If the content is not cached yet, it's
+	 * loaded and the returned buffer may not be admitted to the cache, but can be used by the caller anyway.
+	 * Content which is not going to be admitted is loaded into heap buffer.</p>
+	 *
+	 * <p>The {@code length} and {@code lastModified} (as known by the caller) are used to detect stale entries.</p>
+	 *
+	 * @param url
+	 * @param length
+	 * @param lastModified
+	 * @return buffer, which can be consumed by the caller, or {@code null} if the resource is too big (or its
+	 *         length is not known)
+	 */
+	public ByteBuffer get(URL url, long length, long lastModified) {
+		String key = url.toExternalForm();
+		Node node = data.get(key);
+		if (node != null) {
+			if (node.length == length && node.lastModified == lastModified) {
+				hits.increment();
+				onAccess(node);
+				return node.content.duplicate();
+			}
+			remove(node);
+		}
+		misses.increment();
+		if (length < 0L || length > maxEntrySize) {
+			return null;
+		}
+
+		// content that won't be cached anyway is loaded into heap buffer, which is cheaper to allocate and
+		// can be simply garbage collected
+		boolean admissible = admissible(key, length);
+		ByteBuffer content;
+		try {
+			content = load(url, length, admissible);
+		} catch (IOException e) {
+			LOG.debug("Can't load content of {}: {}", url, e.getMessage());
+			return null;
+		}
+		if (content == null) {
+			return null;
+		}
+		if (!admissible) {
+			reject(key);
+			return content;
+		}
+
+		add(new Node(key, content, length, lastModified, ResourceMetadataCache.bundleId(url)));
+		return content.duplicate();
+	}
+
+	/**
+	 * Returns read-only buffer with the content of the resource compressed with given encoding. The compressed
+	 * variant is cached separately from the original content (if the original content is cached at all).
+	 * @param url
+	 * @param length
+	 * @param lastModified
+	 * @param encoding only {@code gzip} is supported
+	 * @return buffer with compressed content or {@code null} if the resource is too big, its length is not known
+	 *         or the encoding is not supported
+	 */
+	public ByteBuffer getCompressed(URL url, long length, long lastModified, String encoding) {
+		if (!GZIP.equals(encoding)) {
+			return null;
+		}
+		String key = url.toExternalForm() + "#" + encoding;
+		Node node = data.get(key);
+		if (node != null) {
+			if (node.length == length && node.lastModified == lastModified) {
+				hits.increment();
+				onAccess(node);
+				return node.content.duplicate();
+			}
+			remove(node);
+		}
+		misses.increment();
+		if (length < 0L || length > maxEntrySize) {
+			return null;
+		}
+
+		byte[] compressed;
+		try {
+			compressed = gzip(url, length);
+		} catch (IOException e) {
+			LOG.debug("Can't compress content of {}: {}", url, e.getMessage());
+			return null;
+		}
+		if (compressed == null) {
+			return null;
+		}
+		if (!admissible(key, compressed.length)) {
+			reject(key);
+			return ByteBuffer.wrap(compressed).asReadOnlyBuffer();
+		}
+
+		ByteBuffer content = ByteBuffer.allocateDirect(compressed.length);
+		content.put(compressed);
+		content.flip();
+		add(new Node(key, content.asReadOnlyBuffer(), length, lastModified, ResourceMetadataCache.bundleId(url)));
+		return content.asReadOnlyBuffer();
+	}
+
+	/**
+	 * Removes all the entries of given bundle
+	 * @param bundleId
+	 */
+	public void invalidate(long bundleId) {
+		for (Node node : data.values()) {
+			if (node.bundleId == bundleId) {
+				remove(node);
+			}
+		}
+	}
+
+	/**
+	 * Removes all the entries
+	 */
+	public void invalidate() {
+		lock.lock();
+		try {
+			data.values().forEach(node -> node.segment = Segment.REMOVED);
+			data.clear();
+			window.clear();
+			probation.clear();
+			protectedSegment.clear();
+			windowSize = 0L;
+			probationSize = 0L;
+			protectedSize = 0L;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	public long getMaxSize() {
+		return maxSize;
+	}
+
+	public long getMaxEntrySize() {
+		return maxEntrySize;
+	}
+
+	/**
+	 * Total size of cached content (including compressed variants) in bytes
+	 * @return
+	 */
+	public long getWeightedSize() {
+		lock.lock();
+		try {
+			return windowSize + probationSize + protectedSize;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	public int size() {
+		return data.size();
+	}
+
+	public boolean contains(URL url) {
+		return data.containsKey(url.toExternalForm());
+	}
+
+	public long getHits() {
+		return hits.sum();
+	}
+
+	public long getMisses() {
+		return misses.sum();
+	}
+
+	public long getEvictions() {
+		return evictions.sum();
+	}
+
+	/**
+	 * Number of loaded resources which were not admitted to the main space of the cache
+	 * @return
+	 */
+	public long getRejections() {
+		return rejections.sum();
+	}
+
+	private static ByteBuffer load(URL url, long length, boolean direct) throws IOException {
+		ByteBuffer buffer = direct ? ByteBuffer.allocateDirect((int) length) : ByteBuffer.allocate((int) length);
+		try (InputStream is = url.openStream(); ReadableByteChannel channel = Channels.newChannel(is)) {
+			while (buffer.hasRemaining()) {
+				if (channel.read(buffer) < 0) {
+					break;
+				}
+			}
+			if (buffer.hasRemaining() || is.read() != -1) {
+				// the resource has changed in the meantime
+				return null;
+			}
+		}
+		buffer.flip();
+		return buffer.asReadOnlyBuffer();
+	}
+
+	private static byte[] gzip(URL url, long length) throws IOException {
+		ByteArrayOutputStream baos = new ByteArrayOutputStream((int) Math.max(64L, length / 4));
+		long read = 0L;
+		try (InputStream is = url.openStream(); GZIPOutputStream gzip = new GZIPOutputStream(baos)) {
+			byte[] buf = new byte[8192];
+			int count;
+			while ((count = is.read(buf)) > 0) {
+				gzip.write(buf, 0, count);
+				read += count;
+			}
+		}
+		if (read != length) {
+			// the resource has changed in the meantime
+			return null;
+		}
+		return baos.toByteArray();
+	}
+
+	/**
+	 * <p>Checks (without changing the cache) whether an entry of given size would stay in the cache after being
+	 * {@link #add added}. Entries not bigger than the admission window always stay there for a while. Bigger
+	 * entries leave the window immediately and are admitted to main space only if they're requested more often
+	 * than the entries they'd replace - see {@link #admit(Node, long)}.</p>
+	 *
+	 * <p>The check is only a prediction - the cache may change before the entry is added.</p>
+	 * @param key
+	 * @param size
+	 * @return
+	 */
+	private boolean admissible(String key, long size) {
+		if (size <= maxWindowSize) {
+			return true;
+		}
+		long maxMainSize = maxSize - maxWindowSize;
+		if (size > maxMainSize) {
+			return false;
+		}
+		lock.lock();
+		try {
+			long needed = probationSize + protectedSize + size - maxMainSize;
+			if (needed <= 0L) {
+				return true;
+			}
+			// current access is recorded by add() or reject()
+			int candidateFrequency = sketch.frequency(key.hashCode()) + 1;
+			for (LinkedHashMap<String, Node> segment : Arrays.asList(probation, protectedSegment)) {
+				for (Node victim : segment.values()) {
+					if (sketch.frequency(victim.key.hashCode()) >= candidateFrequency) {
+						return false;
+					}
+					needed -= victim.size;
+					if (needed <= 0L) {
+						return true;
+					}
+				}
+			}
+			return false;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Records an access to a resource, which was loaded, but not added to the cache.
+	 * @param key
+	 */
+	private void reject(String key) {
+		sketch.increment(key.hashCode());
+		rejections.increment();
+	}
+
+	/**
+	 * Records an access to cached entry. The frequency is always recorded (without locking), but reordering is
+	 * skipped if the lock is busy - it's just a hint for the eviction policy, not worth waiting for.
+	 * @param node
+	 */
+	private void onAccess(Node node) {
+		sketch.increment(node.key.hashCode());
+		if (!lock.tryLock()) {
+			return;
+		}
+		try {
+			if (data.get(node.key) != node) {
+				// the node was removed/evicted after the caller has found it
+				return;
+			}
+			switch (node.segment) {
+				case WINDOW:
+					window.get(node.key);
+					break;
+				case PROBATION:
+					// promotion to protected segment
+					probation.remove(node.key);
+					probationSize -= node.size;
+					node.segment = Segment.PROTECTED;
+					protectedSegment.put(node.key, node);
+					protectedSize += node.size;
+					demoteProtected();
+					break;
+				case PROTECTED:
+					protectedSegment.get(node.key);
+					break;
+				default:
+					break;
+			}
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	private void add(Node node) {
+		lock.lock();
+		try {
+			sketch.increment(node.key.hashCode());
+			Node existing = data.putIfAbsent(node.key, node);
+			if (existing != null) {
+				// loaded concurrently
+				return;
+			}
+			node.segment = Segment.WINDOW;
+			window.put(node.key, node);
+			windowSize += node.size;
+			evict();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	private void remove(Node node) {
+		lock.lock();
+		try {
+			if (!data.remove(node.key, node)) {
+				return;
+			}
+			Segment segment = node.segment;
+			node.segment = Segment.REMOVED;
+			switch (segment) {
+				case WINDOW:
+					window.remove(node.key);
+					windowSize -= node.size;
+					break;
+				case PROBATION:
+					probation.remove(node.key);
+					probationSize -= node.size;
+					break;
+				case PROTECTED:
+					protectedSegment.remove(node.key);
+					protectedSize -= node.size;
+					break;
+				default:
+					break;
+			}
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Moves the entries leaving the admission window to main space if their frequency is higher than the frequency
+	 * of the entries that would have to be evicted from main space. Called with the lock held.
+	 */
+	private void evict() {
+		long maxMainSize = maxSize - maxWindowSize;
+		while (windowSize > maxWindowSize) {
+			Iterator<Node> it = window.values().iterator();
+			Node candidate = it.next();
+			it.remove();
+			windowSize -= candidate.size;
+
+			if (admit(candidate, maxMainSize)) {
+				candidate.segment = Segment.PROBATION;
+				probation.put(candidate.key, candidate);
+				probationSize += candidate.size;
+			} else {
+				candidate.segment = Segment.REMOVED;
+				data.remove(candidate.key, candidate);
+				rejections.increment();
+			}
+		}
+	}
+
+	/**
+	 * Evicts the victims from main space to make room for the candidate, unless one of the victims is more
+	 * frequently used than the candidate.
+	 * @param candidate
+	 * @param maxMainSize
+	 * @return
+	 */
+	private boolean admit(Node candidate, long maxMainSize) {
+		if (candidate.size > maxMainSize) {
+			return false;
+		}
+		int candidateFrequency = sketch.frequency(candidate.key.hashCode());
+		while (probationSize + protectedSize + candidate.size > maxMainSize) {
+			LinkedHashMap<String, Node> segment = probation.isEmpty() ? protectedSegment : probation;
+			Node victim = segment.values().iterator().next();
+			if (sketch.frequency(victim.key.hashCode()) >= candidateFrequency) {
+				return false;
+			}
+			segment.remove(victim.key);
+			if (segment == probation) {
+				probationSize -= victim.size;
+			} else {
+				protectedSize -= victim.size;
+			}
+			victim.segment = Segment.REMOVED;
+			data.remove(victim.key, victim);
+			evictions.increment();
+		}
+		return true;
+	}
+
+	/**
+	 * Moves least recently used entries from protected segment back to probation segment. Called with the lock
+	 * held.
+	 */
+	private void demoteProtected() {
+		while (protectedSize > maxProtectedSize && !protectedSegment.isEmpty()) {
+			Iterator<Node> it = protectedSegment.values().iterator();
+			Node node = it.next();
+			it.remove();
+			protectedSize -= node.size;
+			node.segment = Segment.PROBATION;
+			probation.put(node.key, node);
+			probationSize += node.size;
+		}
+	}
+
+	private enum Segment {
+		WINDOW, PROBATION, PROTECTED,
+		/** The node is no longer in any segment (and no longer mapped) */
+		REMOVED
+	}
+
+	private static final class Node {
+		private final String key;
+		private final ByteBuffer content;
+		private final long length;
+		private final long lastModified;
+		private final long bundleId;
+		/** Size of cached content, which is different than {@link #length} for compressed variants */
+		private final long size;
+		/** Guarded by the lock */
+		private Segment segment;
+
+		Node(String key, ByteBuffer content, long length, long lastModified, long bundleId) {
+			this.key = key;
+			this.content = content;
+			this.size = content.remaining();
+			this.length = length;
+			this.lastModified = lastModified;
+			this.bundleId = bundleId;
+		}
+	}
+
+	/**
+	 * Count-min sketch with 4 rows of 4-bit counters, halved after the number of increments reaches 10 times
+	 * the width of the sketch, so old popularity fades away. The counters are updated without locking, so
+	 * the accesses are recorded also when the lock of the cache is busy.
+	 */
+	static final class FrequencySketch {
+
+		private static final int[] SEEDS = { 0x97cb3127, 0xb3c4ca6d, 0x6f5a7a2f, 0xe2b6d4c1 };
+
+		/** 16 counters per long */
+		private final AtomicLongArray table;
+		private final int mask;
+		private final int sampleSize;
+		private final AtomicInteger additions = new AtomicInteger();
+
+		FrequencySketch(int expectedEntries) {
+			int width = Integer.highestOneBit(Math.max(expectedEntries, 16) - 1) << 1;
+			this.table = new AtomicLongArray(width);
+			this.mask = width - 1;
+			this.sampleSize = 10 * width;
+		}
+
+		int frequency(int hash) {
+			int frequency = Integer.MAX_VALUE;
+			for (int i = 0; i < SEEDS.length; i++) {
+				int index = indexOf(hash, i);
+				int offset = counterOffset(hash, i);
+				frequency = Math.min(frequency, (int) ((table.get(index) >>> offset) & 0xFL));
+			}
+			return frequency;
+		}
+
+		void increment(int hash) {
+			boolean added = false;
+			for (int i = 0; i < SEEDS.length; i++) {
+				int index = indexOf(hash, i);
+				int offset = counterOffset(hash, i);
+				while (true) {
+					long value = table.get(index);
+					if (((value >>> offset) & 0xFL) == 0xFL) {
+						break;
+					}
+					if (table.compareAndSet(index, value, value + (1L << offset))) {
+						added = true;
+						break;
+					}
+				}
+			}
+			if (added && additions.incrementAndGet() >= sampleSize) {
+				reset();
+			}
+		}
+
+		private synchronized void reset() {
+			int current = additions.get();
+			if (current < sampleSize) {
+				// already reset by other thread
+				return;
+			}
+			for (int i = 0; i < table.length(); i++) {
+				// halve all 16 counters at once
+				long value;
+				do {
+					value = table.get(i);
+				} while (!table.compareAndSet(i, value, (value >>> 1) & 0x7777777777777777L));
+			}
+			additions.addAndGet(-(current - current / 2));
+		}
+
+		private int indexOf(int hash, int row) {
+			int h = (hash ^ SEEDS[row]) * SEEDS[row];
+			h ^= h >>> 16;
+			return h & mask;
+		}
+
+		private int counterOffset(int hash, int row) {
+			int h = hash * SEEDS[row] + row;
+			// 16 counters in a long, 4 bits each
+			return ((h >>> 28) & 0xF) << 2;
+		}
+	}
+
+}
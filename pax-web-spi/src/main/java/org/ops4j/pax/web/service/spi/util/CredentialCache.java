@@ -0,0 +1,177 @@
+/*
+ * Copyright 2023 OPS4J.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.web.service.spi.util;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * <p>Bounded cache of successful credential verifications, which can be used by identity managers, login services
+ * or realms of the target runtimes to avoid full authentication (like JAAS {@code LoginContext.login()} against
+ * LDAP) for every request carrying the same credentials.</p>
+ *
+ * <p>The entries are keyed by a salted SHA-256 hash of (realm, user, credential) - the credentials themselves are
+ * never stored. The salt is generated for each cache instance, so the keys can't be precomputed. Only successful
+ * verifications should be {@link #put stored} - failed attempts always reach the actual authentication
+ * mechanism.</p>
+ *
+ * <p>Each entry expires after configured time. When the cache is full, expired entries are removed and if that's
+ * not enough, arbitrary entry is evicted.</p>
+ *
+ * @param <T> the result of verification (like Undertow's {@code Account})
+ */
+public final class CredentialCache<T> {
+
+	private final int maxSize;
+	private final long ttlNanos;
+
+	private final byte[] salt = new byte[16];
+
+	private final ConcurrentHashMap<String, Entry<T>> entries = new ConcurrentHashMap<>();
+
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+
+	/**
+	 * Creates a cache with given maximum size and time-to-live of the entries
+	 * @param maxSize
+	 * @param ttl time-to-live in milliseconds
+	 */
+	public CredentialCache(int maxSize, long ttl) {
+		if (maxSize <= 0) {
+			throw new IllegalArgumentException("Credential cache size should be greater than 0");
+		}
+		if (ttl <= 0) {
+			throw new IllegalArgumentException("Credential cache TTL should be greater than 0");
+		}
+		this.maxSize = maxSize;
+		this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(ttl);
+		new SecureRandom().nextBytes(salt);
+	}
+
+	/**
+	 * Returns the result of previous successful verification of the credential, updating hit/miss counters.
+	 * @param realm
+	 * @param user
+	 * @param credential
+	 * @return cached result or {@code null} if there's no (valid) entry
+	 */
+	public T get(String realm, String user, char[] credential) {
+		String key = key(realm, user, credential);
+		Entry<T> entry = entries.get(key);
+		if (entry != null && entry.expires - System.nanoTime() > 0) {
+			hits.increment();
+			return entry.value;
+		}
+		if (entry != null) {
+			entries.remove(key, entry);
+		}
+		misses.increment();
+		return null;
+	}
+
+	/**
+	 * Stores the result of successful verification of the credential.
+	 * @param realm
+	 * @param user
+	 * @param credential
+	 * @param value
+	 */
+	public void put(String realm, String user, char[] credential, T value) {
+		if (value == null) {
+			return;
+		}
+		long now = System.nanoTime();
+		if (entries.mappingCount() >= maxSize) {
+			entries.values().removeIf(e -> e.expires - now <= 0);
+			Iterator<String> it = entries.keySet().iterator();
+			while (entries.mappingCount() >= maxSize && it.hasNext()) {
+				it.next();
+				it.remove();
+			}
+		}
+		entries.put(key(realm, user, credential), new Entry<>(value, now + ttlNanos));
+	}
+
+	/**
+	 * Drops all cached verifications, e.g., after the configuration of the realm has changed.
+	 */
+	public void invalidate() {
+		entries.clear();
+	}
+
+	public int getMaxSize() {
+		return maxSize;
+	}
+
+	public long getTtl() {
+		return TimeUnit.NANOSECONDS.toMillis(ttlNanos);
+	}
+
+	public int size() {
+		return entries.size();
+	}
+
+	public long getHits() {
+		return hits.sum();
+	}
+
+	public long getMisses() {
+		return misses.sum();
+	}
+
+	private String key(String realm, String user, char[] credential) {
+		try {
+			MessageDigest digest = MessageDigest.getInstance("SHA-256");
+			digest.update(salt);
+			digest.update(String.valueOf(realm).getBytes(StandardCharsets.UTF_8));
+			digest.update((byte) 0);
+			digest.update(String.valueOf(user).getBytes(StandardCharsets.UTF_8));
+			digest.update((byte) 0);
+			if (credential != null) {
+				ByteBuffer bytes = StandardCharsets.UTF_8.encode(CharBuffer.wrap(credential));
+				digest.update(bytes.duplicate());
+				if (bytes.hasArray()) {
+					Arrays.fill(bytes.array(), (byte) 0);
+				}
+			}
+			return Base64.getEncoder().encodeToString(digest.digest());
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e.getMessage(), e);
+		}
+	}
+
+	private static final class Entry<T> {
+		private final T value;
+		private final long expires;
+
+		Entry(T value, long expires) {
+			this.value = value;
+			this.expires = expires;
+		}
+	}
+
+}
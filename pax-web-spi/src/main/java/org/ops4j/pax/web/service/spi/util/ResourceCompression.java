@@ -0,0 +1,413 @@
+/*
+ * Copyright 2023 OPS4J.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.web.service.spi.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import javax.servlet.RequestDispatcher;
+import javax.servlet.ServletContext;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.ops4j.pax.web.service.PaxWebConfig;
+import org.ops4j.pax.web.service.spi.config.ResourceConfiguration;
+import org.ops4j.pax.web.service.spi.util.ResourceMetadataCache.ResourceMetadata;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * <p>Support for serving compressed variants of bundle resources, used by the resource servlets of all the
+ * runtimes before the request is passed to runtime-specific <em>default servlet</em>. Two kinds of variants
+ * are supported:<ul>
+ *     <li>precompressed siblings of the resource (like {@code app.js.br} or {@code app.js.gz}) found in the
+ *     bundle</li>
+ *     <li>{@code gzip} variant of compressible resources created once and kept in {@link ContentCache}</li>
+ * </ul></p>
+ *
+ * <p>The encoding is negotiated using {@code Accept-Encoding} request header (with quality values). Requests
+ * with {@code Range} header, included requests and resources for which no variant exists are left for the
+ * runtime.</p>
+ */
+public final class ResourceCompression {
+
+	public static final String BROTLI = "br";
+	public static final String GZIP = ContentCache.GZIP;
+	public static final String IDENTITY = "identity";
+
+	/** Resources smaller than this are not worth compressing */
+	public static final int DEFAULT_MIN_SIZE = 1024;
+
+	private static final Logger LOG = LoggerFactory.getLogger(ResourceCompression.class);
+
+	private static final Map<String, String> DEFAULT_EXTENSIONS;
+
+	static {
+		Map<String, String> extensions = new LinkedHashMap<>();
+		extensions.put(BROTLI, ".br");
+		extensions.put(GZIP, ".gz");
+		DEFAULT_EXTENSIONS = Collections.unmodifiableMap(extensions);
+	}
+
+	private final ServletContext context;
+
+	/** Encoding to file extension mapping of precompressed resources in order of preference */
+	private final Map<String, String> precompressed;
+
+	private final boolean compress;
+	private final int minSize;
+
+	/** Cache for precompressed siblings and compressed variants */
+	private final ContentCache cache;
+
+	public ResourceCompression(ServletContext context, Map<String, String> precompressed, boolean compress,
+			int minSize, ContentCache cache) {
+		this.context = context;
+		this.precompressed = precompressed == null ? Collections.emptyMap() : new LinkedHashMap<>(precompressed);
+		this.compress = compress;
+		this.minSize = minSize < 0 ? DEFAULT_MIN_SIZE : minSize;
+		this.cache = cache;
+	}
+
+	/**
+	 * Creates {@link ResourceCompression} for a resource servlet. Global configuration may be overridden
+	 * for single context using context init parameters with the same names as the
+	 * {@link PaxWebConfig#PID_CFG_DEFAULT_SERVLET_PRECOMPRESSED related} {@link PaxWebConfig properties}.
+	 * @param context
+	 * @param configuration
+	 * @param sharedCache shared cache to use - if {@code null}, {@link ContentCache#configureCompression}
+	 *        is used
+	 * @return {@code null} if neither precompressed resources nor compression are enabled
+	 */
+	public static ResourceCompression configure(ServletContext context, ResourceConfiguration configuration,
+			ContentCache sharedCache) {
+		String precompressedValue = context == null ? null
+				: context.getInitParameter(PaxWebConfig.PID_CFG_DEFAULT_SERVLET_PRECOMPRESSED);
+		if (precompressedValue == null && configuration != null) {
+			precompressedValue = configuration.precompressed();
+		}
+		String compressValue = context == null ? null
+				: context.getInitParameter(PaxWebConfig.PID_CFG_DEFAULT_SERVLET_COMPRESS);
+		boolean compress = compressValue != null ? Boolean.parseBoolean(compressValue)
+				: configuration != null && configuration.compress();
+		String minSizeValue = context == null ? null
+				: context.getInitParameter(PaxWebConfig.PID_CFG_DEFAULT_SERVLET_COMPRESS_MIN_SIZE);
+		Integer minSize = configuration == null ? null : configuration.compressMinSize();
+		if (minSizeValue != null) {
+			try {
+				minSize = Integer.parseInt(minSizeValue.trim());
+			} catch (NumberFormatException e) {
+				LOG.warn("Invalid value of {}: {}", PaxWebConfig.PID_CFG_DEFAULT_SERVLET_COMPRESS_MIN_SIZE, minSizeValue);
+			}
+		}
+
+		Map<String, String> precompressed = parsePrecompressed(precompressedValue);
+		if (precompressed.isEmpty() && !compress) {
+			return null;
+		}
+
+		// single cache of compressed variants is used by all the resource servlets of the runtime
+		ContentCache cache = sharedCache != null ? sharedCache : ContentCache.configureCompression(configuration);
+
+		return new ResourceCompression(context, precompressed, compress,
+				minSize == null ? DEFAULT_MIN_SIZE : minSize, cache);
+	}
+
+	/**
+	 * Parses the value of {@link PaxWebConfig#PID_CFG_DEFAULT_SERVLET_PRECOMPRESSED}. It's either a boolean or
+	 * comma-separated list of encodings (like Jetty's {@code precompressed} init parameter), optionally with
+	 * file extensions: {@code br=.br,gzip=.gz}.
+	 * @param value
+	 * @return
+	 */
+	static Map<String, String> parsePrecompressed(String value) {
+		if (value == null || "".equals(value.trim()) || "false".equalsIgnoreCase(value.trim())) {
+			return Collections.emptyMap();
+		}
+		if ("true".equalsIgnoreCase(value.trim())) {
+			return DEFAULT_EXTENSIONS;
+		}
+		Map<String, String> result = new LinkedHashMap<>();
+		for (String token : value.split(",")) {
+			String encoding = token.trim();
+			String extension = null;
+			int eq = encoding.indexOf('=');
+			if (eq != -1) {
+				extension = encoding.substring(eq + 1).trim();
+				encoding = encoding.substring(0, eq).trim();
+			}
+			if ("".equals(encoding)) {
+				continue;
+			}
+			encoding = encoding.toLowerCase(Locale.ROOT);
+			if (extension == null || "".equals(extension)) {
+				extension = DEFAULT_EXTENSIONS.getOrDefault(encoding, "." + encoding);
+			}
+			result.put(encoding, extension);
+		}
+		return result;
+	}
+
+	/**
+	 * Parses {@code Accept-Encoding} header into encoding to quality value mapping.
+	 * @param header
+	 * @return
+	 */
+	static Map<String, Float> parseAcceptEncoding(String header) {
+		if (header == null) {
+			return Collections.emptyMap();
+		}
+		Map<String, Float> result = new HashMap<>();
+		for (String token : header.split(",")) {
+			String[] parts = token.split(";");
+			String encoding = parts[0].trim().toLowerCase(Locale.ROOT);
+			if ("".equals(encoding)) {
+				continue;
+			}
+			float q = 1.0f;
+			for (int i = 1; i < parts.length; i++) {
+				String param = parts[i].trim();
+				if (param.startsWith("q=") || param.startsWith("Q=")) {
+					try {
+						q = Float.parseFloat(param.substring(2).trim());
+					} catch (NumberFormatException e) {
+						q = 0.0f;
+					}
+					// qvalue is 0 - 1 (RFC 9110, 12.4.2)
+					q = q > 0.0f ? Math.min(q, 1.0f) : 0.0f;
+				}
+			}
+			result.put(encoding, q);
+		}
+		return result;
+	}
+
+	/**
+	 * <p>Selects the encoding to use according to {@code Accept-Encoding} header (RFC 9110, 12.5.3). The
+	 * encoding with the highest quality value wins, {@code *} applies to encodings not listed explicitly and on
+	 * a tie the order of passed encodings (server preference) decides.</p>
+	 *
+	 * <p>{@code identity} (no encoding) is always acceptable, unless refused with {@code identity;q=0} or
+	 * {@code *;q=0}. If it's listed (directly or with {@code *}) with higher quality than the best encoding, no
+	 * encoding is selected. If it's not listed, it's the least preferred choice.</p>
+	 *
+	 * @param encodings available encodings in order of server preference
+	 * @param header value of {@code Accept-Encoding} header
+	 * @return selected encoding or {@code null} if the resource should be sent without encoding
+	 */
+	static String negotiate(Collection<String> encodings, String header) {
+		Map<String, Float> accepted = parseAcceptEncoding(header);
+		String encoding = null;
+		float bestQ = 0.0f;
+		Float any = accepted.get("*");
+		for (String candidate : encodings) {
+			Float q = accepted.get(candidate);
+			if (q == null) {
+				q = any;
+			}
+			if (q != null && q > bestQ) {
+				encoding = candidate;
+				bestQ = q;
+			}
+		}
+		if (encoding == null) {
+			return null;
+		}
+		Float identity = accepted.get(IDENTITY);
+		if (identity == null) {
+			identity = any;
+		}
+		if (identity != null && identity > bestQ) {
+			// the client prefers the resource without encoding
+			return null;
+		}
+		return encoding;
+	}
+
+	/**
+	 * Tries to serve compressed variant of a resource.
+	 * @param request
+	 * @param response
+	 * @param metadataCache cache of the resource servlet used to find the resource and its precompressed siblings
+	 * @param path full path of the resource (as passed to {@link ServletContext#getResource(String)})
+	 * @return {@code true} if the response was sent, {@code false} if the runtime should serve the resource
+	 * @throws IOException
+	 */
+	public boolean handle(HttpServletRequest request, HttpServletResponse response,
+			ResourceMetadataCache metadataCache, String path) throws IOException {
+		String method = request.getMethod();
+		boolean head = "HEAD".equals(method);
+		if (!head && !"GET".equals(method)) {
+			return false;
+		}
+		if (path == null || path.endsWith("/") || request.getHeader("Range") != null
+				|| request.getAttribute(RequestDispatcher.INCLUDE_REQUEST_URI) != null) {
+			return false;
+		}
+
+		ResourceMetadata metadata = metadataCache.getResource(path);
+		if (metadata == null || !metadata.isBundleResource() || metadata.isDirectory() || metadata.getLength() < 0L) {
+			return false;
+		}
+		String mimeType = context.getMimeType(path);
+
+		// variants in order of server preference
+		Map<String, ResourceMetadata> variants = new LinkedHashMap<>();
+		for (Map.Entry<String, String> e : precompressed.entrySet()) {
+			ResourceMetadata sibling = metadataCache.getResource(path + e.getValue());
+			if (sibling != null && sibling.isBundleResource() && !sibling.isDirectory() && sibling.getLength() >= 0L) {
+				variants.put(e.getKey(), sibling);
+			}
+		}
+		if (compress && !variants.containsKey(GZIP) && metadata.getLength() >= minSize && isCompressible(mimeType)) {
+			// the original resource is used as the source of compressed content
+			variants.put(GZIP, metadata);
+		}
+		if (variants.isEmpty()) {
+			return false;
+		}
+
+		// the representation depends on Accept-Encoding even if we don't return compressed variant now
+		response.addHeader("Vary", "Accept-Encoding");
+
+		String encoding = negotiate(variants.keySet(), request.getHeader("Accept-Encoding"));
+		if (encoding == null) {
+			return false;
+		}
+
+		ResourceMetadata variant = variants.get(encoding);
+		ByteBuffer content;
+		long contentLength;
+		if (variant == metadata) {
+			content = cache.getCompressed(metadata.getUrl(), metadata.getLength(), metadata.getLastModified(), GZIP);
+			if (content == null || content.remaining() >= metadata.getLength()) {
+				// too big or not worth compressing
+				return false;
+			}
+			contentLength = content.remaining();
+		} else {
+			content = cache.get(variant.getUrl(), variant.getLength(), variant.getLastModified());
+			contentLength = variant.getLength();
+		}
+
+		// weak ETag of the original resource extended with the encoding
+		String eTag = "W/\"" + metadata.getLength() + "-" + metadata.getLastModified() + "-" + encoding + "\"";
+		long lastModified = Math.max(metadata.getLastModified(), variant.getLastModified());
+		response.setHeader("ETag", eTag);
+		if (lastModified > 0L) {
+			response.setDateHeader("Last-Modified", lastModified);
+		}
+		if (notModified(request, eTag, lastModified)) {
+			response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+			return true;
+		}
+
+		if (mimeType != null) {
+			response.setContentType(mimeType);
+		}
+		response.setHeader("Content-Encoding", encoding);
+		response.setContentLengthLong(contentLength);
+		if (head) {
+			return true;
+		}
+
+		OutputStream os = response.getOutputStream();
+		if (content != null) {
+			byte[] buffer = new byte[(int) Math.min(8192L, Math.max(1L, contentLength))];
+			while (content.hasRemaining()) {
+				int count = Math.min(buffer.length, content.remaining());
+				content.get(buffer, 0, count);
+				os.write(buffer, 0, count);
+			}
+		} else {
+			// precompressed sibling which is too big for the cache
+			try (InputStream is = variant.getUrl().openStream()) {
+				byte[] buffer = new byte[8192];
+				int count;
+				while ((count = is.read(buffer)) > 0) {
+					os.write(buffer, 0, count);
+				}
+			}
+		}
+		return true;
+	}
+
+	public ContentCache getCache() {
+		return cache;
+	}
+
+	/**
+	 * Checks {@code If-None-Match} and (only if there's no such header) {@code If-Modified-Since} headers.
+	 * @param request
+	 * @param eTag
+	 * @param lastModified
+	 * @return
+	 */
+	private static boolean notModified(HttpServletRequest request, String eTag, long lastModified) {
+		String ifNoneMatch = request.getHeader("If-None-Match");
+		if (ifNoneMatch != null) {
+			for (String tag : ifNoneMatch.split(",")) {
+				String t = tag.trim();
+				// weak comparison
+				if ("*".equals(t) || t.equals(eTag) || ("W/" + t).equals(eTag)) {
+					return true;
+				}
+			}
+			return false;
+		}
+		if (lastModified > 0L) {
+			try {
+				long ifModifiedSince = request.getDateHeader("If-Modified-Since");
+				// HTTP dates have second precision
+				return ifModifiedSince != -1L && lastModified / 1000L <= ifModifiedSince / 1000L;
+			} catch (IllegalArgumentException e) {
+				return false;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Whether it makes sense to compress the content of given type. Images (other than SVG), archives, fonts
+	 * and media are usually compressed already.
+	 * @param mimeType
+	 * @return
+	 */
+	static boolean isCompressible(String mimeType) {
+		if (mimeType == null) {
+			return false;
+		}
+		String type = mimeType.toLowerCase(Locale.ROOT);
+		int semicolon = type.indexOf(';');
+		if (semicolon != -1) {
+			type = type.substring(0, semicolon).trim();
+		}
+		return type.startsWith("text/")
+				|| type.endsWith("+xml") || type.endsWith("+json")
+				|| "application/javascript".equals(type) || "application/x-javascript".equals(type)
+				|| "application/ecmascript".equals(type)
+				|| "application/json".equals(type) || "application/xml".equals(type)
+				|| "application/wasm".equals(type);
+	}
+
+}
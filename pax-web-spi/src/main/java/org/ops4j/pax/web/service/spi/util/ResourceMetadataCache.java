@@ -0,0 +1,364 @@
+/*
+ * Copyright 2023 OPS4J.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.web.service.spi.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.net.URLConnection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import javax.servlet.ServletContext;
+
+import org.ops4j.pax.web.service.spi.config.ResourceConfiguration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * <p>Bounded cache of metadata of the resources returned by {@link ServletContext#getResource(String)} (which
+ * eventually calls {@link org.osgi.service.http.context.ServletContextHelper#getResource(String)}) used by
+ * the resource servlets of all the runtimes. Each resource servlet (so each combination of OSGi servlet context and
+ * <em>chroot</em>) has its own instance and the entries are keyed by the path passed to
+ * {@link ServletContext#getResource(String)}.</p>
+ *
+ * <p>For bundle resources, the cache stores whether the resource is a directory (checking it requires opening
+ * additional streams because of <a href="https://issues.apache.org/jira/browse/FELIX-6294">FELIX-6294</a>), its
+ * length, last modification time and ETag. Non-existing resources are cached as well.</p>
+ *
+ * <p>The entries expire after configured time and entries for bundle resources are
+ * {@link #bundleChanged(long) invalidated} when the bundle is updated, refreshed or uninstalled.</p>
+ */
+public final class ResourceMetadataCache {
+
+	/** Same as default number of cached files in Jetty's resource servlet */
+	public static final int DEFAULT_MAX_ENTRIES = 2048;
+	/** Default TTL of the entries (ms) - the same as default TTL of Tomcat's resource cache */
+	public static final long DEFAULT_TTL = 5000L;
+
+	private static final Logger LOG = LoggerFactory.getLogger(ResourceMetadataCache.class);
+
+	/** Marker for non-existing resource */
+	private static final ResourceMetadata NOT_FOUND = new ResourceMetadata(null, false, -1L, 0L);
+
+	/** All the caches that should be notified about bundle changes */
+	private static final Set<ResourceMetadataCache> CACHES = Collections.synchronizedSet(Collections.newSetFromMap(new WeakHashMap<>()));
+
+	private final ServletContext context;
+	private final int maxEntries;
+	private volatile long ttlNanos;
+
+	private final ConcurrentHashMap<String, Entry> entries = new ConcurrentHashMap<>();
+
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+
+	/**
+	 * Creates a cache for resources of given {@link ServletContext}
+	 * @param context
+	 * @param maxEntries
+	 * @param ttl time-to-live in milliseconds
+	 */
+	public ResourceMetadataCache(ServletContext context, int maxEntries, long ttl) {
+		this.context = context;
+		this.maxEntries = maxEntries <= 0 ? DEFAULT_MAX_ENTRIES : maxEntries;
+		this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(ttl <= 0 ? DEFAULT_TTL : ttl);
+		CACHES.add(this);
+	}
+
+	/**
+	 * Returns the TTL of the entries for given configuration - {@link ResourceConfiguration#maxCacheTTL()} or
+	 * {@link #DEFAULT_TTL}. All the runtimes should use this method, so they have the same default.
+	 * @param configuration
+	 * @return
+	 */
+	public static long ttl(ResourceConfiguration configuration) {
+		Integer ttl = configuration == null ? null : configuration.maxCacheTTL();
+		return ttl == null || ttl <= 0 ? DEFAULT_TTL : ttl;
+	}
+
+	/**
+	 * Changes the TTL of all the caches, so changed {@link ResourceConfiguration#maxCacheTTL()} is applied without
+	 * restarting the resource servlets. Existing entries are removed, so none of them outlives the new TTL.
+	 * @param ttl time-to-live in milliseconds
+	 */
+	public static void ttlChanged(long ttl) {
+		long ttlNanos = TimeUnit.MILLISECONDS.toNanos(ttl <= 0 ? DEFAULT_TTL : ttl);
+		ResourceMetadataCache[] caches;
+		synchronized (CACHES) {
+			caches = CACHES.toArray(new ResourceMetadataCache[0]);
+		}
+		for (ResourceMetadataCache cache : caches) {
+			cache.ttlNanos = ttlNanos;
+			cache.entries.clear();
+		}
+	}
+
+	/**
+	 * Invalidates the entries related to given bundle in all the caches. Should be called when a bundle is updated,
+	 * refreshed or uninstalled. Entries for non-existing resources are removed as well, because the changed bundle
+	 * may now provide them.
+	 * @param bundleId
+	 */
+	public static void bundleChanged(long bundleId) {
+		ResourceMetadataCache[] caches;
+		synchronized (CACHES) {
+			caches = CACHES.toArray(new ResourceMetadataCache[0]);
+		}
+		for (ResourceMetadataCache cache : caches) {
+			cache.invalidate(bundleId);
+		}
+	}
+
+	/**
+	 * Returns metadata of a resource, calling {@link ServletContext#getResource(String)} only if there's no valid
+	 * entry for the path.
+	 * @param path
+	 * @return metadata or {@code null} if the resource doesn't exist
+	 */
+	public ResourceMetadata getResource(String path) {
+		Entry entry = entries.get(path);
+		long now = System.nanoTime();
+		if (entry != null && entry.expires - now > 0) {
+			hits.increment();
+			return entry.metadata == NOT_FOUND ? null : entry.metadata;
+		}
+		misses.increment();
+
+		ResourceMetadata metadata = NOT_FOUND;
+		try {
+			URL url = context.getResource(path);
+			if (url != null) {
+				metadata = resolve(url);
+			}
+		} catch (MalformedURLException e) {
+			LOG.warn(e.getMessage(), e);
+		}
+
+		if (entries.mappingCount() >= maxEntries) {
+			entries.values().removeIf(e -> e.expires - now <= 0);
+			Iterator<String> it = entries.keySet().iterator();
+			while (entries.mappingCount() >= maxEntries && it.hasNext()) {
+				it.next();
+				it.remove();
+			}
+		}
+		entries.put(path, new Entry(metadata, now + ttlNanos));
+
+		return metadata == NOT_FOUND ? null : metadata;
+	}
+
+	/**
+	 * Removes entries for resources of given bundle and all the entries for non-existing resources.
+	 * @param bundleId
+	 */
+	public void invalidate(long bundleId) {
+		entries.values().removeIf(e -> e.metadata == NOT_FOUND || e.metadata.getBundleId() == bundleId);
+	}
+
+	/**
+	 * Removes all the entries, e.g., when welcome files are changed.
+	 */
+	public void invalidate() {
+		entries.clear();
+	}
+
+	/**
+	 * Stops receiving notifications about bundle changes.
+	 */
+	public void destroy() {
+		CACHES.remove(this);
+		entries.clear();
+	}
+
+	public int size() {
+		return entries.size();
+	}
+
+	public long getHits() {
+		return hits.sum();
+	}
+
+	public long getMisses() {
+		return misses.sum();
+	}
+
+	/**
+	 * Determines the metadata of a resource. For {@code bundle:} URLs without trailing slash, it's checked (as
+	 * {@code org.eclipse.osgi.storage.bundlefile.BundleFile#fixTrailingSlash()} does it) whether the resource
+	 * is actually a directory.
+	 * @param url
+	 * @return
+	 */
+	static ResourceMetadata resolve(URL url) {
+		String protocol = url.getProtocol();
+		if (!"bundle".equals(protocol) && !"bundleentry".equals(protocol) && !"bundleresource".equals(protocol)) {
+			// file: or some custom URL from custom ServletContextHelper - the runtime has to check it
+			return new ResourceMetadata(url, false, -1L, 0L);
+		}
+		if (url.getPath().endsWith("/")) {
+			return new ResourceMetadata(url, true, -1L, 0L);
+		}
+
+		long length = -1L;
+		long lastModified = 0L;
+		boolean empty = false;
+		try {
+			URLConnection connection = url.openConnection();
+			length = connection.getContentLengthLong();
+			lastModified = connection.getLastModified();
+			// Felix' connection opens the stream when connecting
+			try (InputStream is = connection.getInputStream()) {
+				empty = is == null || is.available() == 0;
+			}
+		} catch (IOException e) {
+			LOG.debug("Problem checking bundle resource {}: {}", url, e.getMessage());
+		}
+
+		if ("bundle".equals(protocol) && length <= 0L && empty) {
+			// unfortunately, due to https://issues.apache.org/jira/browse/FELIX-6294
+			// we have to check ourselves if it's a directory and possibly append a slash
+			// just as org.eclipse.osgi.storage.bundlefile.BundleFile#fixTrailingSlash() does it
+			try {
+				// relative to original URL, so its handler is used
+				URL fixedURL = new URL(url, url.getPath() + "/");
+				try (InputStream is = fixedURL.openStream()) {
+					if (is != null && is.available() == 0) {
+						return new ResourceMetadata(fixedURL, true, -1L, lastModified);
+					}
+				}
+			} catch (IOException e) {
+				// not a directory - e.g., empty file
+			}
+		}
+
+		return new ResourceMetadata(url, false, length, lastModified);
+	}
+
+	/**
+	 * Both Felix ({@code bundle://<id>.<revision>:<index>/path}) and Equinox
+	 * ({@code bundleentry://<id>.fwk<hash>/path}) start the host with bundle ID.
+	 * @param url
+	 * @return
+	 */
+	static long bundleId(URL url) {
+		if (url == null) {
+			return -1L;
+		}
+		String protocol = url.getProtocol();
+		if (!"bundle".equals(protocol) && !"bundleentry".equals(protocol) && !"bundleresource".equals(protocol)) {
+			return -1L;
+		}
+		String host = url.getHost();
+		int dot = host == null ? -1 : host.indexOf('.');
+		try {
+			return Long.parseLong(dot == -1 ? host : host.substring(0, dot));
+		} catch (NumberFormatException e) {
+			return -1L;
+		}
+	}
+
+	private static final class Entry {
+		private final ResourceMetadata metadata;
+		private final long expires;
+
+		Entry(ResourceMetadata metadata, long expires) {
+			this.metadata = metadata;
+			this.expires = expires;
+		}
+	}
+
+	/**
+	 * Metadata of single resource. For resources other than bundle entries, only the {@link URL} is known.
+	 */
+	public static final class ResourceMetadata {
+
+		private final URL url;
+		private final boolean directory;
+		private final long length;
+		private final long lastModified;
+		private final String eTag;
+		private final long bundleId;
+
+		ResourceMetadata(URL url, boolean directory, long length, long lastModified) {
+			this.url = url;
+			this.directory = directory;
+			this.length = length;
+			this.lastModified = lastModified;
+			// weak ETag, just as org.apache.catalina.webresources.AbstractResource.getETag()
+			this.eTag = url == null || directory || length < 0L ? null
+					: "W/\"" + length + "-" + lastModified + "\"";
+			this.bundleId = bundleId(url);
+		}
+
+		/**
+		 * Actual {@link URL} of the resource - for bundle directories, it always ends with slash.
+		 * @return
+		 */
+		public URL getUrl() {
+			return url;
+		}
+
+		/**
+		 * Whether the metadata was determined (which is the case only for bundle entries). Otherwise only
+		 * {@link #getUrl()} should be used.
+		 * @return
+		 */
+		public boolean isBundleResource() {
+			return bundleId >= 0L;
+		}
+
+		public boolean isDirectory() {
+			return directory;
+		}
+
+		/**
+		 * Whether it's a root of a bundle (Felix returns {@code bundle://<id>.<revision>:<index>/} URLs for which
+		 * the connection can't be opened)
+		 * @return
+		 */
+		public boolean isBundleRoot() {
+			return isBundleResource() && "bundle".equals(url.getProtocol()) && "/".equals(url.getPath());
+		}
+
+		public long getLength() {
+			return length;
+		}
+
+		public long getLastModified() {
+			return lastModified;
+		}
+
+		public String getETag() {
+			return eTag;
+		}
+
+		long getBundleId() {
+			return bundleId;
+		}
+
+		@Override
+		public String toString() {
+			return "ResourceMetadata{" + url + (directory ? ", directory" : ", length=" + length) + "}";
+		}
+	}
+
+}
@@ -15,8 +15,8 @@
  */
 package org.ops4j.pax.web.service.spi.util;
 
-import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Executor;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
@@ -81,7 +81,12 @@ public class WebContainerManager implements BundleListener, ServiceTrackerCustom
 
 	private final Executor pool;
 
-	private final Map<ServiceReference<WebContainer>, Map<Bundle, WebContainer>> containers = new HashMap<>();
+	/**
+	 * Bundle-scoped {@link WebContainer} instances per {@link WebContainer} reference. The maps are concurrent, so
+	 * already obtained containers can be looked up without locking (this happens for every Whiteboard registration).
+	 * Obtaining and releasing the services is synchronized on this map.
+	 */
+	private final Map<ServiceReference<WebContainer>, Map<Bundle, WebContainer>> containers = new ConcurrentHashMap<>();
 
 	/**
 	 * Creates a manager that delivers service events synchronously (for test purposes).
@@ -197,13 +202,11 @@ public class WebContainerManager implements BundleListener, ServiceTrackerCustom
 	 * @return
 	 */
 	public <T extends PaxWebContainerView> T containerView(Bundle bundle, ServiceReference<WebContainer> ref, Class<T> viewClass) {
-		synchronized (containers) {
-			WebContainer webContainer = container(bundle, ref);
-			if (webContainer != null) {
-				return webContainer.adapt(viewClass);
-			}
-			return null;
+		WebContainer webContainer = container(bundle, ref);
+		if (webContainer != null) {
+			return webContainer.adapt(viewClass);
 		}
+		return null;
 	}
 
 	public WebContainer container(Bundle bundle, ServiceReference<WebContainer> ref) {
@@ -211,6 +214,14 @@ public class WebContainerManager implements BundleListener, ServiceTrackerCustom
 		if (ref == null || bundle == null) {
 			return null;
 		}
+		// fast path without locking
+		Map<Bundle, WebContainer> cached = containers.get(ref);
+		if (cached != null) {
+			WebContainer container = cached.get(bundle);
+			if (container != null) {
+				return container;
+			}
+		}
 		synchronized (containers) {
 			Map<Bundle, WebContainer> bundleContainers = containers.get(ref);
 			if (bundleContainers != null) {
@@ -233,7 +244,7 @@ public class WebContainerManager implements BundleListener, ServiceTrackerCustom
 				LOG.warn("Can't get a WebContainer service from {}", ref);
 				return null;
 			} else {
-				containers.computeIfAbsent(ref, r -> new HashMap<>()).put(bundle, webContainer);
+				containers.computeIfAbsent(ref, r -> new ConcurrentHashMap<>()).put(bundle, webContainer);
 				return webContainer;
 			}
 		}
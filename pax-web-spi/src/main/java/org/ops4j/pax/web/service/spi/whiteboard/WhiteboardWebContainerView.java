@@ -112,6 +112,16 @@ public interface WhiteboardWebContainerView extends PaxWebContainerView {
 	 */
 	void unregisterErrorPages(ErrorPageModel model);
 
+	/**
+	 * Registers many {@link ServletModel servlets (also resources)}, {@link FilterModel filters},
+	 * {@link EventListenerModel listeners}, {@link WelcomeFileModel welcome files} and
+	 * {@link ErrorPageModel error pages} in single configuration task. Affected contexts are (re)started at most
+	 * once and if any registration fails, the models registered so far are unregistered. The models are always
+	 * registered synchronously.
+	 * @param models
+	 */
+	void registerAll(List<ElementModel<?, ?>> models);
+
 	/**
 	 * Passes Whiteboard-registered (customized) {@link OsgiContextModel} to be managed in
 	 * {@link org.ops4j.pax.web.service.WebContainer}. Such {@link OsgiContextModel} should have
@@ -220,4 +230,13 @@ public interface WhiteboardWebContainerView extends PaxWebContainerView {
 	 */
 	void clearFailedDTOInformation(OsgiContextModel webContext);
 
+	/**
+	 * Changes service ranking of already registered {@link ElementModel} without unregistering it, which is
+	 * possible when new ranking doesn't affect conflict resolution.
+	 * @param webElement
+	 * @param rank
+	 * @return {@code false} if the ranking can't be changed in place and the element has to be registered again
+	 */
+	boolean updateServiceRank(ElementModel<?, ?> webElement, int rank);
+
 }
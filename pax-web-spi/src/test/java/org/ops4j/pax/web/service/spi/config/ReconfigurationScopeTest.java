@@ -0,0 +1,44 @@
+/*
+ * Copyright 2023 OPS4J.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.web.service.spi.config;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.Test;
+import org.ops4j.pax.web.service.PaxWebConfig;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class ReconfigurationScopeTest {
+
+	@Test
+	public void scopes() {
+		assertThat(ReconfigurationScope.of(Collections.emptyList()), equalTo(ReconfigurationScope.HOT));
+		assertThat(ReconfigurationScope.of(PaxWebConfig.PID_CFG_SERVER_MAX_THREADS), equalTo(ReconfigurationScope.HOT));
+		assertThat(ReconfigurationScope.of(PaxWebConfig.PID_CFG_DEFAULT_SERVLET_CACHE_TTL), equalTo(ReconfigurationScope.HOT));
+		assertThat(ReconfigurationScope.of(PaxWebConfig.PID_CFG_HTTP_PORT), equalTo(ReconfigurationScope.CONNECTORS));
+		assertThat(ReconfigurationScope.of("org.ops4j.pax.web.ssl.keystore"), equalTo(ReconfigurationScope.CONNECTORS));
+		assertThat(ReconfigurationScope.of(PaxWebConfig.PID_CFG_TEMP_DIR), equalTo(ReconfigurationScope.FULL));
+
+		assertThat(ReconfigurationScope.of(Arrays.asList(PaxWebConfig.PID_CFG_LOG_NCSA_ENABLED,
+				PaxWebConfig.PID_CFG_HTTP_PORT)), equalTo(ReconfigurationScope.CONNECTORS));
+		assertThat(ReconfigurationScope.of(Arrays.asList(PaxWebConfig.PID_CFG_LOG_NCSA_ENABLED,
+				PaxWebConfig.PID_CFG_SESSION_TIMEOUT, PaxWebConfig.PID_CFG_HTTP_PORT)), equalTo(ReconfigurationScope.FULL));
+	}
+
+}
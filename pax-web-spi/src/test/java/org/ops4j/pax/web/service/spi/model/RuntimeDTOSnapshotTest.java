@@ -0,0 +1,144 @@
+/*
+ * Copyright 2023 OPS4J.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.web.service.spi.model;
+
+import java.util.HashMap;
+
+import org.junit.Test;
+import org.osgi.framework.dto.ServiceReferenceDTO;
+import org.osgi.service.http.runtime.dto.FilterDTO;
+import org.osgi.service.http.runtime.dto.RequestInfoDTO;
+import org.osgi.service.http.runtime.dto.ResourceDTO;
+import org.osgi.service.http.runtime.dto.RuntimeDTO;
+import org.osgi.service.http.runtime.dto.ServletContextDTO;
+import org.osgi.service.http.runtime.dto.ServletDTO;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class RuntimeDTOSnapshotTest {
+
+	@Test
+	public void requestInfoFromPrecomputedMappings() {
+		ServletContextDTO root = context(1L, "", new ServletDTO[] {
+				servlet("default", "/"),
+				servlet("s1", "/s1/*", "*.do")
+		}, new ResourceDTO[0], new FilterDTO[] {
+				filter("f1", new String[] { "/*" }, null, null),
+				filter("f2", null, new String[] { "s1" }, null),
+				filter("f3", null, null, new String[] { ".*\\.do" })
+		});
+		ResourceDTO res = new ResourceDTO();
+		res.patterns = new String[] { "/static/*" };
+		ServletContextDTO c = context(2L, "/c", new ServletDTO[] {
+				servlet("exact", "/x")
+		}, new ResourceDTO[] { res }, new FilterDTO[0]);
+
+		RuntimeDTO runtime = new RuntimeDTO();
+		runtime.servletContextDTOs = new ServletContextDTO[] { root, c };
+		RuntimeDTOSnapshot snapshot = new RuntimeDTOSnapshot(42L, runtime);
+
+		ServiceReferenceDTO serviceDTO = new ServiceReferenceDTO();
+		RuntimeDTO dto = snapshot.toRuntimeDTO(serviceDTO);
+		assertThat(dto.serviceDTO, sameInstance(serviceDTO));
+		assertThat(dto.servletContextDTOs.length, equalTo(2));
+		assertThat(dto.servletContextDTOs[0], not(sameInstance(root)));
+		assertThat(dto.servletContextDTOs[0].servletDTOs[1].patterns, equalTo(new String[] { "/s1/*", "*.do" }));
+		assertThat(snapshot.getChangeCount(), equalTo(42L));
+
+		RequestInfoDTO info = snapshot.calculateRequestInfoDTO("/s1/a.do?x=y");
+		assertThat(info.servletContextId, equalTo(1L));
+		assertThat(info.servletDTO.name, equalTo("s1"));
+		assertThat(info.filterDTOs.length, equalTo(3));
+
+		info = snapshot.calculateRequestInfoDTO("/other");
+		assertThat(info.servletDTO.name, equalTo("default"));
+		assertThat(info.filterDTOs.length, equalTo(1));
+		assertThat(info.filterDTOs[0].name, equalTo("f1"));
+
+		info = snapshot.calculateRequestInfoDTO("/c/x");
+		assertThat(info.servletContextId, equalTo(2L));
+		assertThat(info.servletDTO.name, equalTo("exact"));
+
+		info = snapshot.calculateRequestInfoDTO("/c/static/a.css");
+		assertThat(info.servletDTO, nullValue());
+		assertThat(info.resourceDTO.patterns, equalTo(res.patterns));
+		assertThat(info.filterDTOs.length, equalTo(0));
+	}
+
+	@Test
+	public void callersCantChangeTheSnapshot() {
+		ServletContextDTO root = context(1L, "", new ServletDTO[] {
+				servlet("s1", "/s1/*")
+		}, new ResourceDTO[0], new FilterDTO[] {
+				filter("f1", new String[] { "/*" }, null, null)
+		});
+		root.initParams = new HashMap<>();
+		root.initParams.put("p1", "v1");
+		RuntimeDTO runtime = new RuntimeDTO();
+		runtime.servletContextDTOs = new ServletContextDTO[] { root };
+		RuntimeDTOSnapshot snapshot = new RuntimeDTOSnapshot(1L, runtime);
+
+		RuntimeDTO dto = snapshot.toRuntimeDTO(new ServiceReferenceDTO());
+		dto.servletContextDTOs[0].servletDTOs[0].patterns[0] = "/changed/*";
+		dto.servletContextDTOs[0].servletDTOs[0].name = "changed";
+		dto.servletContextDTOs[0].initParams.put("p1", "changed");
+		dto.servletContextDTOs[0] = null;
+
+		RequestInfoDTO info = snapshot.calculateRequestInfoDTO("/s1/x");
+		assertThat(info.servletDTO.name, equalTo("s1"));
+		info.servletDTO.patterns[0] = "/changed/*";
+		info.filterDTOs[0].name = "changed";
+
+		dto = snapshot.toRuntimeDTO(new ServiceReferenceDTO());
+		assertThat(dto.servletContextDTOs[0].servletDTOs[0].name, equalTo("s1"));
+		assertThat(dto.servletContextDTOs[0].servletDTOs[0].patterns[0], equalTo("/s1/*"));
+		assertThat(dto.servletContextDTOs[0].filterDTOs[0].name, equalTo("f1"));
+		assertThat(dto.servletContextDTOs[0].initParams.get("p1"), equalTo("v1"));
+		assertThat(snapshot.calculateRequestInfoDTO("/s1/x").servletDTO.patterns[0], equalTo("/s1/*"));
+	}
+
+	private static ServletContextDTO context(long id, String path, ServletDTO[] servlets, ResourceDTO[] resources,
+			FilterDTO[] filters) {
+		ServletContextDTO dto = new ServletContextDTO();
+		dto.serviceId = id;
+		dto.contextPath = path;
+		dto.servletDTOs = servlets;
+		dto.resourceDTOs = resources;
+		dto.filterDTOs = filters;
+		return dto;
+	}
+
+	private static ServletDTO servlet(String name, String... patterns) {
+		ServletDTO dto = new ServletDTO();
+		dto.name = name;
+		dto.patterns = patterns;
+		return dto;
+	}
+
+	private static FilterDTO filter(String name, String[] patterns, String[] servletNames, String[] regexs) {
+		FilterDTO dto = new FilterDTO();
+		dto.name = name;
+		dto.patterns = patterns;
+		dto.servletNames = servletNames;
+		dto.regexs = regexs;
+		return dto;
+	}
+
+}
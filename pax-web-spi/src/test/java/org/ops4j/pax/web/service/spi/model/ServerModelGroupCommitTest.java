@@ -0,0 +1,107 @@
+/*
+ * Copyright 2023 OPS4J.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.web.service.spi.model;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+import org.ops4j.pax.web.service.spi.ServerController;
+import org.ops4j.pax.web.service.spi.task.Batch;
+import org.ops4j.pax.web.service.spi.task.TransactionStateChange;
+
+import static java.util.Arrays.asList;
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.fail;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+
+public class ServerModelGroupCommitTest {
+
+	@Test
+	public void tasksAreCommittedAsSingleGroup() throws Exception {
+		// the test decides when the "configuration thread" runs the queued group
+		List<Runnable> scheduled = new CopyOnWriteArrayList<>();
+		CountDownLatch groupScheduled = new CountDownLatch(1);
+		Executor executor = task -> {
+			scheduled.add(task);
+			groupScheduled.countDown();
+		};
+
+		List<Batch> batches = new ArrayList<>();
+		ServerController controller = mock(ServerController.class);
+		doAnswer(inv -> batches.add(inv.getArgument(0))).when(controller).sendBatch(any(Batch.class));
+
+		ServerModel model = new ServerModel(executor, -1L);
+		model.configureGroupCommit(controller, 200L);
+
+		// synchronous task is queued first - its caller is blocked until the group is committed
+		CompletableFuture<Void> failed = new CompletableFuture<>();
+		new Thread(() -> {
+			try {
+				model.run(() -> {
+					model.getGroupCommitContexts().put("/c0", Boolean.TRUE);
+					throw new IllegalStateException("expected");
+				}, false);
+				failed.complete(null);
+			} catch (Throwable e) {
+				failed.completeExceptionally(e);
+			}
+		}).start();
+		assertThat(groupScheduled.await(5, TimeUnit.SECONDS), equalTo(true));
+
+		List<Integer> groupSizes = new ArrayList<>();
+		for (int i = 0; i < 2; i++) {
+			String contextPath = "/c" + i;
+			model.runAsync(() -> {
+				// simulates GroupCommitServerController
+				model.getGroupCommitContexts().put(contextPath, Boolean.TRUE);
+				groupSizes.add(model.getGroupCommitContexts().size());
+				return null;
+			});
+		}
+
+		// all three tasks are part of single group
+		assertThat(scheduled.size(), equalTo(1));
+		assertThat(failed.isDone(), equalTo(false));
+		scheduled.get(0).run();
+
+		try {
+			failed.get(5, TimeUnit.SECONDS);
+			fail("Should have failed");
+		} catch (ExecutionException e) {
+			assertThat(e.getCause(), instanceOf(IllegalStateException.class));
+			assertThat(e.getCause().getMessage(), equalTo("expected"));
+		}
+
+		// failure of one task doesn't prevent other tasks of the group from running
+		assertThat(groupSizes, equalTo(asList(1, 2)));
+		// one commit with two contexts
+		assertThat(batches.size(), equalTo(1));
+		assertThat(batches.get(0).getOperations().size(), equalTo(2));
+		batches.get(0).getOperations().forEach(c -> assertThat(c, instanceOf(TransactionStateChange.class)));
+	}
+
+}
@@ -0,0 +1,198 @@
+/*
+ * Copyright 2023 OPS4J.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.web.service.spi.servlet;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.servlet.AsyncListener;
+
+import org.junit.Test;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class LazyStartGatesTest {
+
+	@Test
+	public void concurrentRequestsShareSingleStartInConfigurationThread() throws Exception {
+		LazyStartGates gates = new LazyStartGates(true, 0L);
+		ExecutorService configThread = Executors.newSingleThreadExecutor(r -> new Thread(r, "config"));
+		ExecutorService pool = Executors.newFixedThreadPool(4);
+		gates.setConfigurationExecutor(configThread);
+		try {
+			AtomicInteger starts = new AtomicInteger();
+			CountDownLatch finishStart = new CountDownLatch(1);
+			List<Thread> startThreads = new ArrayList<>();
+			Runnable start = () -> {
+				startThreads.add(Thread.currentThread());
+				starts.incrementAndGet();
+				try {
+					finishStart.await();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+				// nested start of the context (as during batch processing) is not deferred again
+				assertThat(gates.defer("/c", true, () -> { }, () -> { }), equalTo(false));
+			};
+			assertThat(gates.defer("/c", true, start, () -> { }), equalTo(true));
+			LazyStartGate gate = gates.get("/c");
+			assertThat(gate.isDeferred(), equalTo(true));
+
+			List<Future<Boolean>> requests = new ArrayList<>();
+			for (int i = 0; i < 4; i++) {
+				requests.add(pool.submit(() -> {
+					try {
+						return gate.enter();
+					} finally {
+						gate.exit();
+					}
+				}));
+			}
+			Thread.sleep(100);
+			for (Future<Boolean> request : requests) {
+				assertThat(request.isDone(), equalTo(false));
+			}
+			finishStart.countDown();
+			for (Future<Boolean> request : requests) {
+				assertThat(request.get(5, TimeUnit.SECONDS), equalTo(true));
+			}
+			assertThat(starts.get(), equalTo(1));
+			assertThat(startThreads.get(0).getName(), equalTo("config"));
+			assertThat(gate.isDeferred(), equalTo(false));
+			assertThat(gate.getInFlight(), equalTo(0));
+
+			// restart of already started context (e.g., after registration of new servlet) is not deferred
+			assertThat(gates.defer("/c", true, start, () -> { }), equalTo(false));
+		} finally {
+			pool.shutdownNow();
+			configThread.shutdownNow();
+			gates.shutdown();
+		}
+	}
+
+	@Test
+	public void idleContextIsStoppedAndStartedAgain() throws Exception {
+		LazyStartGates gates = new LazyStartGates(false, 50L);
+		try {
+			AtomicInteger starts = new AtomicInteger();
+			CountDownLatch stopped = new CountDownLatch(1);
+			assertThat(gates.defer("/c", true, starts::incrementAndGet, stopped::countDown), equalTo(true));
+			LazyStartGate gate = gates.get("/c");
+
+			assertThat(gate.enter(), equalTo(true));
+			// context with in-flight request is never stopped
+			Thread.sleep(200);
+			assertThat(stopped.getCount(), equalTo(1L));
+			gate.exit();
+
+			assertThat(stopped.await(5, TimeUnit.SECONDS), equalTo(true));
+			assertThat(gate.isDeferred(), equalTo(true));
+
+			assertThat(gate.enter(), equalTo(true));
+			gate.exit();
+			assertThat(starts.get(), equalTo(2));
+		} finally {
+			gates.shutdown();
+		}
+	}
+
+	@Test
+	public void failedStart() {
+		LazyStartGates gates = new LazyStartGates(true, 0L);
+		gates.defer("/c", true, () -> {
+			throw new IllegalStateException("expected");
+		}, () -> { });
+		LazyStartGate gate = gates.get("/c");
+		assertThat(gate.enter(), equalTo(false));
+		gate.exit();
+		assertThat(gate.isDeferred(), equalTo(true));
+		assertThat(gate.getInFlight(), equalTo(0));
+	}
+
+	@Test
+	public void startNotFinishedInTime() throws Exception {
+		LazyStartGates gates = new LazyStartGates(true, 0L, 100L);
+		ExecutorService configThread = Executors.newSingleThreadExecutor();
+		gates.setConfigurationExecutor(configThread);
+		try {
+			CountDownLatch finishStart = new CountDownLatch(1);
+			gates.defer("/c", true, () -> {
+				try {
+					finishStart.await();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}, () -> { });
+			LazyStartGate gate = gates.get("/c");
+			assertThat(gate.enter(), equalTo(false));
+			gate.exit();
+			assertThat(gate.getInFlight(), equalTo(0));
+
+			// the start continues and next request uses the started context
+			finishStart.countDown();
+			configThread.submit(() -> { }).get(5, TimeUnit.SECONDS);
+			assertThat(gate.enter(), equalTo(true));
+			assertThat(gate.isDeferred(), equalTo(false));
+
+			// asynchronous request is counted until it completes
+			AsyncListener listener = gate.exitOnComplete();
+			assertThat(gate.getInFlight(), equalTo(1));
+			listener.onComplete(null);
+			assertThat(gate.getInFlight(), equalTo(0));
+		} finally {
+			configThread.shutdownNow();
+			gates.shutdown();
+		}
+	}
+
+	@Test
+	public void findingGates() {
+		LazyStartGates gates = new LazyStartGates(false, 0L);
+		assertThat(gates.isLazy(null), equalTo(false));
+		assertThat(new LazyStartGates(true, 0L).isLazy(null), equalTo(true));
+
+		gates.defer("/", true, () -> { }, () -> { });
+		gates.defer("/c1", true, () -> { }, () -> { });
+		gates.defer("/c2", false, () -> { }, () -> { });
+
+		LazyStartGate root = gates.get("/");
+		LazyStartGate c1 = gates.get("/c1");
+		assertThat(gates.find("/"), sameInstance(root));
+		assertThat(gates.find("/c"), sameInstance(root));
+		assertThat(gates.find("/c1"), sameInstance(c1));
+		assertThat(gates.find("/c1/s"), sameInstance(c1));
+		assertThat(gates.find("/c11/s"), sameInstance(root));
+		// eagerly started context doesn't pass the requests to root context
+		assertThat(gates.find("/c2/s"), nullValue());
+
+		// context which is no longer lazy
+		gates.defer("/c1", false, () -> { }, () -> { });
+		assertThat(gates.get("/c1"), nullValue());
+		assertThat(gates.find("/c1/s"), nullValue());
+
+		gates.remove("/c2");
+		assertThat(gates.find("/c2/s"), sameInstance(root));
+	}
+
+}
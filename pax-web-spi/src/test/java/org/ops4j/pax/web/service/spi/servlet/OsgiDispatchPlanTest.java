@@ -0,0 +1,113 @@
+/*
+ * Copyright 2023 OPS4J.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.web.service.spi.servlet;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.Test;
+import org.ops4j.pax.web.service.spi.model.elements.FilterModel;
+import org.osgi.service.http.whiteboard.Preprocessor;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.ops4j.pax.web.service.spi.servlet.OsgiFilterChainTemplateTest.preprocessor;
+
+public class OsgiDispatchPlanTest {
+
+	@Test
+	public void preprocessorsAreTakenFromFilters() {
+		List<String> calls = new ArrayList<>();
+		FilterModel p1 = preprocessor("p1", calls);
+		FilterModel p2 = preprocessor("p2", calls);
+		FilterModel f1 = new FilterModel.Builder("f1")
+				.withFilterSupplier(() -> (req, res, chain) -> chain.doFilter(req, res))
+				.withUrlPatterns(new String[] { "/*" })
+				.build();
+
+		Set<FilterModel> filters = new LinkedHashSet<>();
+		filters.add(p2);
+		filters.add(f1);
+		filters.add(p1);
+		OsgiDispatchPlan plan = OsgiDispatchPlan.empty(null, null).compile(filters, null);
+
+		// normal filters are left for the container, preprocessors keep the order of the set
+		assertThat(filters.size(), equalTo(1));
+		assertThat(filters.iterator().next(), sameInstance(f1));
+		assertThat(plan.getPreprocessors().size(), equalTo(2));
+		assertThat(plan.getPreprocessors().get(0).getModel(), sameInstance(p2));
+		assertThat(plan.getPreprocessors().get(1).getModel(), sameInstance(p1));
+		assertThat(plan.getPreprocessorsToInit().size(), equalTo(2));
+		assertThat(plan.getPreprocessorsToDestroy().size(), equalTo(0));
+	}
+
+	@Test
+	public void recompilationReusesExistingPreprocessors() {
+		List<String> calls = new ArrayList<>();
+		FilterModel p1 = preprocessor("p1", calls);
+		FilterModel p2 = preprocessor("p2", calls);
+		FilterModel p3 = preprocessor("p3", calls);
+
+		Set<FilterModel> filters = new LinkedHashSet<>();
+		filters.add(p1);
+		filters.add(p2);
+		OsgiDispatchPlan plan1 = OsgiDispatchPlan.empty(null, null).compile(filters, null);
+		Preprocessor instance1 = plan1.newTemplate(null, null).getPreprocessors()[0];
+		plan1.getPreprocessors().get(0).setInitCalled(true);
+
+		filters.clear();
+		filters.add(p3);
+		filters.add(p1);
+		OsgiDispatchPlan plan2 = plan1.compile(filters, null);
+
+		assertThat(plan2.getPreprocessors().size(), equalTo(2));
+		assertThat(plan2.getPreprocessors().get(0).getModel(), sameInstance(p3));
+		assertThat(plan2.getPreprocessors().get(1).getModel(), sameInstance(p1));
+		// p1 is neither initialized nor destroyed again and its instance is kept
+		assertThat(plan2.getPreprocessors().get(1).isInitCalled(), equalTo(true));
+		assertThat(plan2.newTemplate(null, null).getPreprocessors()[1], sameInstance(instance1));
+		assertThat(plan2.getPreprocessorsToInit().size(), equalTo(1));
+		assertThat(plan2.getPreprocessorsToInit().get(0).getModel(), sameInstance(p3));
+		assertThat(plan2.getPreprocessorsToDestroy().size(), equalTo(1));
+		assertThat(plan2.getPreprocessorsToDestroy().get(0).getModel(), sameInstance(p2));
+	}
+
+	@Test
+	public void refreshedPlanObtainsPreprocessorsAgain() {
+		List<String> calls = new ArrayList<>();
+		Set<FilterModel> filters = new LinkedHashSet<>();
+		filters.add(preprocessor("p1", calls));
+		OsgiDispatchPlan plan = OsgiDispatchPlan.empty(null, null).compile(filters, null);
+
+		PreprocessorFilterConfig config = plan.getPreprocessors().get(0);
+		Preprocessor instance = plan.newTemplate(null, null).getPreprocessors()[0];
+		// instances are cached by the plan
+		assertThat(plan.newTemplate(null, null).getPreprocessors()[0], sameInstance(instance));
+
+		// e.g., context was stopped and preprocessors destroyed
+		config.destroy();
+		OsgiDispatchPlan refreshed = plan.refresh();
+		assertThat(refreshed.getPreprocessors().get(0), sameInstance(config));
+		assertThat(refreshed.getPreprocessorsToInit().size(), equalTo(0));
+		assertThat(refreshed.getPreprocessorsToDestroy().size(), equalTo(0));
+		assertThat(refreshed.newTemplate(null, null).getPreprocessors()[0], not(sameInstance(instance)));
+	}
+
+}
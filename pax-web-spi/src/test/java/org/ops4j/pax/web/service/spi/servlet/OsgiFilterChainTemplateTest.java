@@ -0,0 +1,196 @@
+/*
+ * Copyright 2023 OPS4J.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.web.service.spi.servlet;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
+import javax.servlet.FilterChain;
+import javax.servlet.FilterConfig;
+import javax.servlet.ServletContext;
+import javax.servlet.ServletException;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.junit.Test;
+import org.ops4j.pax.web.service.WebContainerContext;
+import org.ops4j.pax.web.service.spi.model.elements.FilterModel;
+import org.osgi.service.http.whiteboard.Preprocessor;
+
+import static java.util.Arrays.asList;
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class OsgiFilterChainTemplateTest {
+
+	@Test
+	public void preprocessorsSecurityAndChainAreInvokedInOrder() throws Exception {
+		List<String> calls = new ArrayList<>();
+		ServletContext servletContext = mock(ServletContext.class);
+		WebContainerContext webContext = mock(WebContainerContext.class);
+		when(webContext.handleSecurity(any(), any())).thenAnswer(i -> calls.add("handleSecurity"));
+		Consumer<HttpServletRequest> authListener = req -> calls.add("auth");
+
+		OsgiFilterChainTemplate template = new OsgiFilterChainTemplate(new Preprocessor[] {
+				new RecordingPreprocessor("p1", calls), new RecordingPreprocessor("p2", calls)
+		}, servletContext, webContext, null, authListener);
+
+		List<ServletRequest> seenByChain = new ArrayList<>();
+		FilterChain chain = (req, res) -> {
+			calls.add("chain");
+			seenByChain.add(req);
+		};
+		HttpServletRequest request = mock(HttpServletRequest.class);
+		HttpServletResponse response = mock(HttpServletResponse.class);
+		template.newChain(chain).doFilter(request, response);
+
+		assertThat(calls, equalTo(asList("p1", "p2", "handleSecurity", "auth", "chain")));
+		// request is wrapped once, with the ServletContext of the template
+		assertThat(seenByChain.get(0), instanceOf(OsgiHttpServletRequestWrapper.class));
+		assertThat(((HttpServletRequest) seenByChain.get(0)).getServletContext(), sameInstance(servletContext));
+		verify(webContext).finishSecurity(any(), any());
+
+		// the template is reused and each chain has its own position
+		calls.clear();
+		template.newChain(chain).doFilter(request, response);
+		assertThat(calls, equalTo(asList("p1", "p2", "handleSecurity", "auth", "chain")));
+	}
+
+	@Test
+	public void failedSecurityStopsTheChain() throws Exception {
+		List<String> calls = new ArrayList<>();
+		WebContainerContext webContext = mock(WebContainerContext.class);
+		when(webContext.handleSecurity(any(), any())).thenReturn(false);
+
+		OsgiFilterChainTemplate template = new OsgiFilterChainTemplate(new Preprocessor[] {
+				new RecordingPreprocessor("p1", calls)
+		}, mock(ServletContext.class), webContext, null, req -> calls.add("auth"));
+
+		HttpServletResponse response = mock(HttpServletResponse.class);
+		template.newChain((req, res) -> calls.add("chain")).doFilter(mock(HttpServletRequest.class), response);
+
+		assertThat(calls, equalTo(asList("p1")));
+		verify(response).sendError(HttpServletResponse.SC_FORBIDDEN);
+		verify(webContext).finishSecurity(any(), any());
+	}
+
+	@Test
+	public void templatesMatchTheirContexts() throws Exception {
+		OsgiDispatchPlan plan = OsgiDispatchPlan.empty(null, req -> { });
+		ServletContext sc1 = mock(ServletContext.class);
+		ServletContext sc2 = mock(ServletContext.class);
+		WebContainerContext wc1 = mock(WebContainerContext.class);
+		WebContainerContext wc2 = mock(WebContainerContext.class);
+		when(wc1.handleSecurity(any(), any())).thenReturn(true);
+		when(wc2.handleSecurity(any(), any())).thenReturn(true);
+
+		OsgiFilterChainTemplate t1 = plan.newTemplate(sc1, wc1);
+		OsgiFilterChainTemplate t2 = plan.newTemplate(sc2, wc2);
+
+		List<ServletRequest> seen = new ArrayList<>();
+		t2.newChain((req, res) -> seen.add(req)).doFilter(mock(HttpServletRequest.class),
+				mock(HttpServletResponse.class));
+		assertThat(((HttpServletRequest) seen.get(0)).getServletContext(), sameInstance(sc2));
+		verify(wc2).handleSecurity(any(), any());
+		verify(wc1, never()).handleSecurity(any(), any());
+		assertThat(t1.getWebContext(), sameInstance(wc1));
+
+		// default template has no target - the request is neither wrapped nor secured
+		seen.clear();
+		HttpServletRequest request = mock(HttpServletRequest.class);
+		plan.getDefaultTemplate().newChain((req, res) -> seen.add(req)).doFilter(request,
+				mock(HttpServletResponse.class));
+		assertThat(seen.get(0), sameInstance(request));
+		assertThat(plan.getDefaultTemplate(), sameInstance(plan.getDefaultTemplate()));
+	}
+
+	@Test
+	public void templatesAreInvalidatedWithThePlan() throws Exception {
+		List<String> calls = new ArrayList<>();
+		OsgiDispatchPlan plan = OsgiDispatchPlan.empty(null, null);
+		OsgiFilterChainTemplate template = plan.newTemplate(null, null);
+		assertThat(template.getPlan(), sameInstance(plan));
+		assertThat(template.getPreprocessors().length, equalTo(0));
+
+		Set<FilterModel> filters = new LinkedHashSet<>();
+		filters.add(preprocessor("p1", calls));
+		OsgiDispatchPlan plan2 = plan.compile(filters, null);
+
+		// runtimes compare the plan of cached template with current plan
+		assertThat(template.getPlan(), not(sameInstance(plan2)));
+		OsgiFilterChainTemplate template2 = plan2.newTemplate(null, null);
+		assertThat(template2.getPlan(), sameInstance(plan2));
+		assertThat(plan2.getDefaultTemplate(), not(sameInstance(plan.getDefaultTemplate())));
+
+		template2.newChain((req, res) -> calls.add("chain")).doFilter(mock(HttpServletRequest.class),
+				mock(HttpServletResponse.class));
+		assertThat(calls, equalTo(asList("p1", "chain")));
+
+		// the template created before the change still works with its own (old) plan
+		calls.clear();
+		template.newChain((req, res) -> calls.add("chain")).doFilter(mock(HttpServletRequest.class),
+				mock(HttpServletResponse.class));
+		assertThat(calls, equalTo(asList("chain")));
+	}
+
+	static FilterModel preprocessor(String name, List<String> calls) {
+		return new FilterModel.Builder(name)
+				.withFilterSupplier(() -> new RecordingPreprocessor(name, calls))
+				.isPreprocessor(true)
+				.build();
+	}
+
+	static class RecordingPreprocessor implements Preprocessor {
+
+		private final String name;
+		private final List<String> calls;
+
+		RecordingPreprocessor(String name, List<String> calls) {
+			this.name = name;
+			this.calls = calls;
+		}
+
+		@Override
+		public void init(FilterConfig filterConfig) {
+		}
+
+		@Override
+		public void doFilter(ServletRequest request, ServletResponse response, FilterChain chain)
+				throws IOException, ServletException {
+			calls.add(name);
+			chain.doFilter(request, response);
+		}
+
+		@Override
+		public void destroy() {
+		}
+
+	}
+
+}
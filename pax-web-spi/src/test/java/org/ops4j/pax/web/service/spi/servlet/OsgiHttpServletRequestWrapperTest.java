@@ -0,0 +1,60 @@
+/*
+ * Copyright 2023 OPS4J.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.web.service.spi.servlet;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpSession;
+
+import org.junit.Test;
+
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class OsgiHttpServletRequestWrapperTest {
+
+	@Test
+	public void sessionWrapperIsReusedUntilContainerSessionChanges() {
+		HttpServletRequest request = mock(HttpServletRequest.class);
+		HttpSession s1 = mock(HttpSession.class);
+		HttpSession s2 = mock(HttpSession.class);
+
+		OsgiHttpServletRequestWrapper wrapper = new OsgiHttpServletRequestWrapper(request, null, null);
+
+		when(request.getSession(false)).thenReturn(null);
+		assertThat(wrapper.getSession(false), nullValue());
+
+		when(request.getSession(true)).thenReturn(s1);
+		when(request.getSession(false)).thenReturn(s1);
+		HttpSession osgiSession = wrapper.getSession();
+		assertThat(((OsgiHttpSession) osgiSession).getOriginal(), sameInstance(s1));
+		assertThat(wrapper.getSession(false), sameInstance(osgiSession));
+		assertThat(wrapper.getSession(), sameInstance(osgiSession));
+
+		// e.g., invalidate() + getSession(true)
+		when(request.getSession(true)).thenReturn(s2);
+		HttpSession osgiSession2 = wrapper.getSession();
+		assertThat(osgiSession2, not(sameInstance(osgiSession)));
+		assertThat(((OsgiHttpSession) osgiSession2).getOriginal(), sameInstance(s2));
+
+		when(request.getSession(false)).thenReturn(null);
+		assertThat(wrapper.getSession(false), nullValue());
+	}
+
+}
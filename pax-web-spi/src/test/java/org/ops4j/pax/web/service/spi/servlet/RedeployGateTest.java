@@ -0,0 +1,148 @@
+/*
+ * Copyright 2023 OPS4J.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.web.service.spi.servlet;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class RedeployGateTest {
+
+	@Test
+	public void closeWaitsForInFlightAndOpenReleasesHeldRequests() throws Exception {
+		RedeployGate gate = new RedeployGate("/c", 10000L);
+		ExecutorService pool = Executors.newFixedThreadPool(2);
+		try {
+			CountDownLatch entered = new CountDownLatch(1);
+			CountDownLatch finish = new CountDownLatch(1);
+			pool.submit(() -> {
+				gate.enter(true);
+				entered.countDown();
+				finish.await();
+				gate.exit();
+				return null;
+			});
+			entered.await();
+			assertThat(gate.getInFlight(), equalTo(1));
+
+			// the in-flight request finishes while the gate is being closed
+			pool.submit(() -> {
+				Thread.sleep(200);
+				finish.countDown();
+				return null;
+			});
+			long start = System.nanoTime();
+			assertThat(gate.close(), equalTo(true));
+			assertThat(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) >= 100, equalTo(true));
+			assertThat(gate.getInFlight(), equalTo(0));
+
+			// new request is held until the gate is opened
+			Future<Boolean> held = pool.submit(() -> {
+				try {
+					return gate.enter(true);
+				} finally {
+					gate.exit();
+				}
+			});
+			Thread.sleep(100);
+			assertThat(held.isDone(), equalTo(false));
+			gate.open();
+			assertThat(held.get(5, TimeUnit.SECONDS), equalTo(true));
+		} finally {
+			pool.shutdownNow();
+		}
+	}
+
+	@Test
+	public void timeouts() throws Exception {
+		RedeployGate gate = new RedeployGate("/c", 100L);
+
+		// current thread doesn't wait for itself and nested dispatches pass through
+		assertThat(gate.enter(true), equalTo(true));
+		assertThat(gate.close(), equalTo(true));
+		assertThat(gate.enter(true), equalTo(true));
+		gate.exit();
+		gate.exit();
+
+		// closed gate lets the request through after the timeout, but the context is not available
+		assertThat(gate.enter(true), equalTo(false));
+		gate.exit();
+		assertThat(gate.getInFlight(), equalTo(0));
+
+		gate.open();
+		Thread other = new Thread(() -> gate.enter(false));
+		other.start();
+		other.join();
+		// request that never finishes
+		assertThat(gate.close(), equalTo(false));
+	}
+
+	@Test
+	public void closingWhileRequestsEnterConcurrently() throws Exception {
+		RedeployGate gate = new RedeployGate("/c", 5000L);
+		ExecutorService pool = Executors.newFixedThreadPool(4);
+		try {
+			CountDownLatch done = new CountDownLatch(4);
+			for (int t = 0; t < 4; t++) {
+				pool.submit(() -> {
+					for (int i = 0; i < 50_000; i++) {
+						gate.enter(true);
+						gate.exit();
+					}
+					done.countDown();
+					return null;
+				});
+			}
+			for (int i = 0; i < 10; i++) {
+				Thread.sleep(5);
+				assertThat(gate.close(), equalTo(true));
+				gate.open();
+			}
+			assertThat(done.await(30, TimeUnit.SECONDS), equalTo(true));
+			assertThat(gate.getInFlight(), equalTo(0));
+		} finally {
+			pool.shutdownNow();
+		}
+	}
+
+	@Test
+	public void findingGates() {
+		Map<String, RedeployGate> gates = new HashMap<>();
+		RedeployGate root = new RedeployGate("/", 0L);
+		RedeployGate c1 = new RedeployGate("/c1", 0L);
+		gates.put("", root);
+		gates.put("/c1", c1);
+
+		assertThat(RedeployGate.find(gates, "/"), sameInstance(root));
+		assertThat(RedeployGate.find(gates, "/c1"), sameInstance(c1));
+		assertThat(RedeployGate.find(gates, "/c1/s"), sameInstance(c1));
+		assertThat(RedeployGate.find(gates, "/c11/s"), sameInstance(root));
+		gates.remove("");
+		assertThat(RedeployGate.find(gates, "/c2/s"), nullValue());
+	}
+
+}
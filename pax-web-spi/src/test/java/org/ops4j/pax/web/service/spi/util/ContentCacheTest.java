@@ -0,0 +1,193 @@
+/*
+ * Copyright 2023 OPS4J.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.web.service.spi.util;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.net.URL;
+import java.net.URLConnection;
+import java.net.URLStreamHandler;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class ContentCacheTest {
+
+	private final AtomicInteger loads = new AtomicInteger();
+
+	@Test
+	public void contentIsSharedAndDirect() throws Exception {
+		ContentCache cache = new ContentCache(1024 * 1024, 1024);
+		URL url = url(1, "/static/app.js", 100);
+
+		ByteBuffer b1 = cache.get(url, 100, 1000L);
+		ByteBuffer b2 = cache.get(url, 100, 1000L);
+		assertThat(b1.isDirect(), equalTo(true));
+		assertThat(b1.remaining(), equalTo(100));
+		assertThat(StandardCharsets.US_ASCII.decode(b2).toString(), equalTo(content(100)));
+		// consuming one buffer doesn't affect other readers
+		assertThat(cache.get(url, 100, 1000L).remaining(), equalTo(100));
+		assertThat(loads.get(), equalTo(1));
+		assertThat(cache.getHits(), equalTo(2L));
+		assertThat(cache.getWeightedSize(), equalTo(100L));
+
+		// changed resource
+		cache.get(url, 100, 2000L);
+		assertThat(loads.get(), equalTo(2));
+
+		// too big
+		assertThat(cache.get(url(1, "/big.js", 2048), 2048, 1000L), nullValue());
+
+		cache.invalidate(2L);
+		assertThat(cache.size(), equalTo(1));
+		cache.invalidate(1L);
+		assertThat(cache.size(), equalTo(0));
+		assertThat(cache.getWeightedSize(), equalTo(0L));
+	}
+
+	@Test
+	public void frequentlyUsedEntriesSurviveScan() throws Exception {
+		// room for 10 entries of 1000 bytes
+		ContentCache cache = new ContentCache(10_000, 1000);
+		URL[] hot = new URL[5];
+		for (int i = 0; i < hot.length; i++) {
+			hot[i] = url(1, "/hot/" + i, 1000);
+		}
+		for (int round = 0; round < 5; round++) {
+			for (URL url : hot) {
+				cache.get(url, 1000, 1L);
+			}
+		}
+
+		// single scan over many resources requested only once
+		for (int i = 0; i < 100; i++) {
+			cache.get(url(2, "/cold/" + i, 1000), 1000, 1L);
+		}
+
+		assertThat(cache.getWeightedSize() <= 10_000, equalTo(true));
+		for (URL url : hot) {
+			assertThat(url + " should still be cached", cache.contains(url), equalTo(true));
+		}
+		assertThat(cache.getRejections() > 0L, equalTo(true));
+	}
+
+	@Test
+	public void rejectedContentIsNotDirect() throws Exception {
+		// room for 9 entries of 1000 bytes in main space
+		ContentCache cache = new ContentCache(10_000, 1000);
+		URL[] hot = new URL[9];
+		for (int i = 0; i < hot.length; i++) {
+			hot[i] = url(1, "/hot/" + i, 1000);
+		}
+		for (int round = 0; round < 5; round++) {
+			for (URL url : hot) {
+				assertThat(cache.get(url, 1000, 1L).isDirect(), equalTo(true));
+			}
+		}
+
+		// the content is still returned, but without allocating off-heap memory which would be thrown away
+		URL cold = url(2, "/cold", 1000);
+		ByteBuffer content = cache.get(cold, 1000, 1L);
+		assertThat(content.isDirect(), equalTo(false));
+		assertThat(content.isReadOnly(), equalTo(true));
+		assertThat(StandardCharsets.US_ASCII.decode(content).toString(), equalTo(content(1000)));
+		assertThat(cache.contains(cold), equalTo(false));
+		assertThat(cache.getRejections(), equalTo(1L));
+
+		ByteBuffer compressed = cache.getCompressed(cold, 1000, 1L, ContentCache.GZIP);
+		assertThat(compressed.remaining() > 0, equalTo(true));
+		assertThat(cache.getWeightedSize() <= 10_000, equalTo(true));
+		for (URL url : hot) {
+			assertThat(url + " should still be cached", cache.contains(url), equalTo(true));
+		}
+	}
+
+	@Test
+	public void concurrentAccessAndEvictionKeepSizeAccounting() throws Exception {
+		// room for 10 entries of 100 bytes, concurrently accessed and evicted
+		ContentCache cache = new ContentCache(1000, 100);
+		URL[] urls = new URL[30];
+		for (int i = 0; i < urls.length; i++) {
+			urls[i] = url(1, "/r/" + i, 100);
+		}
+		ExecutorService pool = Executors.newFixedThreadPool(8);
+		try {
+			List<Future<?>> results = new ArrayList<>();
+			for (int t = 0; t < 8; t++) {
+				final int seed = t;
+				results.add(pool.submit(() -> {
+					for (int i = 0; i < 5000; i++) {
+						// skewed access - low indexes are hot
+						int index = ((i * 31 + seed) % urls.length) % (i % 3 == 0 ? urls.length : 5);
+						ByteBuffer content = cache.get(urls[index], 100, 1L);
+						assertThat(content.remaining(), equalTo(100));
+					}
+					return null;
+				}));
+			}
+			for (Future<?> result : results) {
+				result.get(30, TimeUnit.SECONDS);
+			}
+		} finally {
+			pool.shutdownNow();
+		}
+
+		// each cached entry is counted exactly once
+		assertThat(cache.getWeightedSize(), equalTo(cache.size() * 100L));
+		assertThat(cache.getWeightedSize() <= 1000L, equalTo(true));
+	}
+
+	private URL url(long bundleId, String path, int length) throws Exception {
+		String content = content(length);
+		return new URL(null, "bundle://" + bundleId + ".0:1" + path, new URLStreamHandler() {
+			@Override
+			protected URLConnection openConnection(URL u) {
+				return new URLConnection(u) {
+					@Override
+					public void connect() {
+					}
+
+					@Override
+					public InputStream getInputStream() {
+						loads.incrementAndGet();
+						return new ByteArrayInputStream(content.getBytes(StandardCharsets.US_ASCII));
+					}
+				};
+			}
+		});
+	}
+
+	private static String content(int length) {
+		StringBuilder sb = new StringBuilder(length);
+		for (int i = 0; i < length; i++) {
+			sb.append((char) ('a' + i % 26));
+		}
+		return sb.toString();
+	}
+
+}
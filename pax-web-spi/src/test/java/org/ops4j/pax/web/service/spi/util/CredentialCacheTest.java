@@ -0,0 +1,60 @@
+/*
+ * Copyright 2023 OPS4J.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.web.service.spi.util;
+
+import org.junit.Test;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class CredentialCacheTest {
+
+	@Test
+	public void cachedVerifications() {
+		CredentialCache<String> cache = new CredentialCache<>(10, 60000L);
+		assertThat(cache.get("r", "user", "secret".toCharArray()), nullValue());
+		cache.put("r", "user", "secret".toCharArray(), "account");
+
+		assertThat(cache.get("r", "user", "secret".toCharArray()), equalTo("account"));
+		// any part of the key is different
+		assertThat(cache.get("r", "user", "Secret".toCharArray()), nullValue());
+		assertThat(cache.get("r", "user2", "secret".toCharArray()), nullValue());
+		assertThat(cache.get("r2", "user", "secret".toCharArray()), nullValue());
+
+		assertThat(cache.getHits(), equalTo(1L));
+		assertThat(cache.getMisses(), equalTo(4L));
+
+		cache.invalidate();
+		assertThat(cache.get("r", "user", "secret".toCharArray()), nullValue());
+	}
+
+	@Test
+	public void expiredAndEvictedEntries() throws Exception {
+		CredentialCache<String> cache = new CredentialCache<>(2, 50L);
+		cache.put("r", "u1", "p".toCharArray(), "a1");
+		Thread.sleep(100L);
+		assertThat(cache.get("r", "u1", "p".toCharArray()), nullValue());
+		assertThat(cache.size(), equalTo(0));
+
+		for (int i = 0; i < 10; i++) {
+			cache.put("r", "u" + i, "p".toCharArray(), "a" + i);
+		}
+		assertThat(cache.size(), equalTo(2));
+		assertThat(cache.get("r", "u9", "p".toCharArray()), equalTo("a9"));
+	}
+
+}
@@ -0,0 +1,234 @@
+/*
+ * Copyright 2023 OPS4J.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.web.service.spi.util;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.net.URL;
+import java.net.URLConnection;
+import java.net.URLStreamHandler;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+import javax.servlet.ServletContext;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.junit.Test;
+import org.ops4j.pax.web.service.spi.config.ResourceConfiguration;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class ResourceCompressionTest {
+
+	@Test
+	public void configuration() {
+		Map<String, String> precompressed = ResourceCompression.parsePrecompressed("true");
+		assertThat(precompressed.get("br"), equalTo(".br"));
+		assertThat(precompressed.get("gzip"), equalTo(".gz"));
+		precompressed = ResourceCompression.parsePrecompressed("gzip, deflate=.zz");
+		assertThat(precompressed.size(), equalTo(2));
+		assertThat(precompressed.get("gzip"), equalTo(".gz"));
+		assertThat(precompressed.get("deflate"), equalTo(".zz"));
+		assertThat(ResourceCompression.parsePrecompressed("false").isEmpty(), equalTo(true));
+
+		Map<String, Float> accepted = ResourceCompression.parseAcceptEncoding("gzip;q=0.5, br, identity;q=0");
+		assertThat(accepted.get("gzip"), equalTo(0.5f));
+		assertThat(accepted.get("br"), equalTo(1.0f));
+		assertThat(accepted.get("identity"), equalTo(0.0f));
+
+		assertThat(ResourceCompression.isCompressible("text/css"), equalTo(true));
+		assertThat(ResourceCompression.isCompressible("image/svg+xml"), equalTo(true));
+		assertThat(ResourceCompression.isCompressible("application/javascript;charset=UTF-8"), equalTo(true));
+		assertThat(ResourceCompression.isCompressible("image/png"), equalTo(false));
+	}
+
+	@Test
+	public void negotiation() {
+		List<String> both = Arrays.asList("br", "gzip");
+		List<String> gzip = Collections.singletonList("gzip");
+		assertThat(ResourceCompression.negotiate(both, "gzip, br"), equalTo("br"));
+		assertThat(ResourceCompression.negotiate(both, "br;q=0.5, gzip"), equalTo("gzip"));
+		assertThat(ResourceCompression.negotiate(gzip, "gzip;q=0.2"), equalTo("gzip"));
+		assertThat(ResourceCompression.negotiate(gzip, "deflate"), nullValue());
+		assertThat(ResourceCompression.negotiate(gzip, null), nullValue());
+		assertThat(ResourceCompression.negotiate(gzip, "gzip;q=0"), nullValue());
+
+		// identity preferred by the client
+		assertThat(ResourceCompression.negotiate(gzip, "gzip;q=0.1, identity;q=1"), nullValue());
+		assertThat(ResourceCompression.negotiate(gzip, "gzip;q=0.1, *;q=0.5"), nullValue());
+		// the same quality - server prefers compression
+		assertThat(ResourceCompression.negotiate(gzip, "gzip, identity"), equalTo("gzip"));
+		// identity refused
+		assertThat(ResourceCompression.negotiate(gzip, "gzip;q=0.1, identity;q=0"), equalTo("gzip"));
+		assertThat(ResourceCompression.negotiate(gzip, "*;q=0.3, identity;q=0.2"), equalTo("gzip"));
+		assertThat(ResourceCompression.negotiate(gzip, "*;q=0.3, identity;q=0.4"), nullValue());
+	}
+
+	@Test
+	public void compressionCacheIsSharedByResourceServlets() {
+		ResourceConfiguration configuration = mock(ResourceConfiguration.class);
+		when(configuration.compress()).thenReturn(true);
+		when(configuration.maxTotalCacheSize()).thenReturn(1024);
+		ResourceCompression c1 = ResourceCompression.configure(mock(ServletContext.class), configuration, null);
+		ResourceCompression c2 = ResourceCompression.configure(mock(ServletContext.class), configuration, null);
+		assertThat(c1.getCache(), sameInstance(c2.getCache()));
+
+		ContentCache shared = new ContentCache(1024 * 1024, 64 * 1024);
+		assertThat(ResourceCompression.configure(mock(ServletContext.class), configuration, shared).getCache(),
+				sameInstance(shared));
+	}
+
+	@Test
+	public void precompressedAndCompressedVariants() throws Exception {
+		String js = repeat("function f() { return 42; }\n", 100);
+		ServletContext context = mock(ServletContext.class);
+		when(context.getResource("/static/app.js")).thenReturn(url("/static/app.js", js.getBytes(StandardCharsets.UTF_8)));
+		when(context.getResource("/static/app.js.br")).thenReturn(url("/static/app.js.br", new byte[] { 1, 2, 3 }));
+		when(context.getMimeType("/static/app.js")).thenReturn("application/javascript");
+
+		ResourceMetadataCache metadataCache = new ResourceMetadataCache(context, 10, 60000L);
+		ContentCache cache = new ContentCache(1024 * 1024, 64 * 1024);
+		ResourceCompression compression = new ResourceCompression(context,
+				ResourceCompression.parsePrecompressed("true"), true, 1024, cache);
+		try {
+			// brotli is preferred by the server if accepted with the same quality
+			Response r1 = new Response();
+			assertThat(compression.handle(request("gzip, deflate, br", null), r1.response, metadataCache, "/static/app.js"), equalTo(true));
+			verify(r1.response).setHeader("Content-Encoding", "br");
+			verify(r1.response).setContentLengthLong(3L);
+			assertThat(r1.body.size(), equalTo(3));
+
+			// quality values are respected
+			Response r2 = new Response();
+			assertThat(compression.handle(request("br;q=0.5, gzip", null), r2.response, metadataCache, "/static/app.js"), equalTo(true));
+			verify(r2.response).setHeader("Content-Encoding", "gzip");
+			verify(r2.response).addHeader("Vary", "Accept-Encoding");
+			String eTag = "W/\"" + js.length() + "-1000-gzip\"";
+			verify(r2.response).setHeader("ETag", eTag);
+			try (GZIPInputStream gzip = new GZIPInputStream(new ByteArrayInputStream(r2.body.toByteArray()))) {
+				ByteArrayOutputStream baos = new ByteArrayOutputStream();
+				byte[] buf = new byte[1024];
+				int count;
+				while ((count = gzip.read(buf)) > 0) {
+					baos.write(buf, 0, count);
+				}
+				assertThat(new String(baos.toByteArray(), StandardCharsets.UTF_8), equalTo(js));
+			}
+
+			// compressed once
+			compression.handle(request("gzip", null), new Response().response, metadataCache, "/static/app.js");
+			assertThat(cache.size(), equalTo(2));
+			assertThat(cache.getHits(), equalTo(1L));
+
+			// conditional request
+			Response r3 = new Response();
+			assertThat(compression.handle(request("gzip", eTag), r3.response, metadataCache, "/static/app.js"), equalTo(true));
+			verify(r3.response).setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+			assertThat(r3.body.size(), equalTo(0));
+
+			// no accepted encoding - left for the runtime
+			Response r4 = new Response();
+			assertThat(compression.handle(request(null, null), r4.response, metadataCache, "/static/app.js"), equalTo(false));
+			verify(r4.response).addHeader("Vary", "Accept-Encoding");
+			verify(r4.response, never()).setHeader("Content-Encoding", "gzip");
+		} finally {
+			metadataCache.destroy();
+		}
+	}
+
+	private static HttpServletRequest request(String acceptEncoding, String ifNoneMatch) {
+		HttpServletRequest request = mock(HttpServletRequest.class);
+		when(request.getMethod()).thenReturn("GET");
+		when(request.getHeader("Accept-Encoding")).thenReturn(acceptEncoding);
+		when(request.getHeader("If-None-Match")).thenReturn(ifNoneMatch);
+		when(request.getDateHeader("If-Modified-Since")).thenReturn(-1L);
+		return request;
+	}
+
+	private static URL url(String path, byte[] content) throws Exception {
+		return new URL(null, "bundle://42.0:1" + path, new URLStreamHandler() {
+			@Override
+			protected URLConnection openConnection(URL u) {
+				return new URLConnection(u) {
+					@Override
+					public void connect() {
+					}
+
+					@Override
+					public long getContentLengthLong() {
+						return content.length;
+					}
+
+					@Override
+					public long getLastModified() {
+						return 1000L;
+					}
+
+					@Override
+					public InputStream getInputStream() {
+						return new ByteArrayInputStream(content);
+					}
+				};
+			}
+		});
+	}
+
+	private static String repeat(String s, int count) {
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < count; i++) {
+			sb.append(s);
+		}
+		return sb.toString();
+	}
+
+	private static class Response {
+		private final HttpServletResponse response = mock(HttpServletResponse.class);
+		private final ByteArrayOutputStream body = new ByteArrayOutputStream();
+
+		Response() throws Exception {
+			when(response.getOutputStream()).thenReturn(new ServletOutputStream() {
+				@Override
+				public boolean isReady() {
+					return true;
+				}
+
+				@Override
+				public void setWriteListener(WriteListener writeListener) {
+				}
+
+				@Override
+				public void write(int b) {
+					body.write(b);
+				}
+			});
+		}
+	}
+
+}
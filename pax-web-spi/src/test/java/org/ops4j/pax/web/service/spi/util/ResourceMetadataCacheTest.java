@@ -0,0 +1,210 @@
+/*
+ * Copyright 2023 OPS4J.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.web.service.spi.util;
+
+import java.io.ByteArrayInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.net.URLConnection;
+import java.net.URLStreamHandler;
+import javax.servlet.ServletContext;
+
+import org.junit.Test;
+import org.ops4j.pax.web.service.spi.config.ResourceConfiguration;
+import org.ops4j.pax.web.service.spi.util.ResourceMetadataCache.ResourceMetadata;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class ResourceMetadataCacheTest {
+
+	@Test
+	public void cachedBundleResources() throws Exception {
+		ServletContext context = mock(ServletContext.class);
+		URL url = new URL(null, "bundle://42.0:1/static/index.html", new FixedContentHandler("<html/>"));
+		when(context.getResource("/static/index.html")).thenReturn(url);
+
+		ResourceMetadataCache cache = new ResourceMetadataCache(context, 10, 60000L);
+		try {
+			ResourceMetadata md = cache.getResource("/static/index.html");
+			assertThat(md.isBundleResource(), equalTo(true));
+			assertThat(md.isDirectory(), equalTo(false));
+			assertThat(md.getLength(), equalTo(7L));
+			assertThat(md.getLastModified(), equalTo(1000L));
+			assertThat(md.getETag(), equalTo("W/\"7-1000\""));
+
+			// missing resources are cached too
+			assertThat(cache.getResource("/static/missing.html"), nullValue());
+			assertThat(cache.getResource("/static/missing.html"), nullValue());
+			assertThat(cache.getResource("/static/index.html").getUrl(), equalTo(url));
+
+			verify(context, times(1)).getResource("/static/index.html");
+			verify(context, times(1)).getResource("/static/missing.html");
+			assertThat(cache.getHits(), equalTo(2L));
+			assertThat(cache.getMisses(), equalTo(2L));
+
+			// change of other bundle removes only negative entries
+			ResourceMetadataCache.bundleChanged(43L);
+			assertThat(cache.size(), equalTo(1));
+			ResourceMetadataCache.bundleChanged(42L);
+			assertThat(cache.size(), equalTo(0));
+		} finally {
+			cache.destroy();
+		}
+	}
+
+	@Test
+	public void expiredAndEvictedEntries() throws Exception {
+		ServletContext context = mock(ServletContext.class);
+		when(context.getResource("/a")).thenReturn(new URL("file:/tmp/a"));
+
+		ResourceMetadataCache cache = new ResourceMetadataCache(context, 2, 50L);
+		try {
+			ResourceMetadata md = cache.getResource("/a");
+			// non-bundle resources have only the URL
+			assertThat(md.isBundleResource(), equalTo(false));
+			assertThat(md.getETag(), nullValue());
+			Thread.sleep(100L);
+			cache.getResource("/a");
+			verify(context, times(2)).getResource("/a");
+
+			for (int i = 0; i < 10; i++) {
+				cache.getResource("/b" + i);
+			}
+			assertThat(cache.size(), equalTo(2));
+		} finally {
+			cache.destroy();
+		}
+	}
+
+	@Test
+	public void changedTtl() throws Exception {
+		ServletContext context = mock(ServletContext.class);
+		when(context.getResource("/a")).thenReturn(new URL("file:/tmp/a"));
+
+		ResourceMetadataCache cache = new ResourceMetadataCache(context, 10, 60000L);
+		try {
+			cache.getResource("/a");
+			cache.getResource("/a");
+			verify(context, times(1)).getResource("/a");
+
+			// entries cached with previous TTL are removed
+			ResourceMetadataCache.ttlChanged(120000L);
+			assertThat(cache.size(), equalTo(0));
+			cache.getResource("/a");
+			cache.getResource("/a");
+			verify(context, times(2)).getResource("/a");
+		} finally {
+			cache.destroy();
+		}
+	}
+
+	@Test
+	public void felixDirectoriesAndEmptyFiles() throws Exception {
+		// Felix returns empty content for directory entries without trailing slash (FELIX-6294), but there's no
+		// entry for a file with trailing slash
+		URLStreamHandler handler = new URLStreamHandler() {
+			@Override
+			protected URLConnection openConnection(URL u) {
+				return new URLConnection(u) {
+					@Override
+					public void connect() {
+					}
+
+					@Override
+					public long getContentLengthLong() {
+						return 0L;
+					}
+
+					@Override
+					public InputStream getInputStream() throws IOException {
+						if ("/static/empty.txt/".equals(u.getPath())) {
+							throw new FileNotFoundException(u.getPath());
+						}
+						return new ByteArrayInputStream(new byte[0]);
+					}
+				};
+			}
+		};
+		ServletContext context = mock(ServletContext.class);
+		when(context.getResource("/static/dir")).thenReturn(new URL(null, "bundle://42.0:1/static/dir", handler));
+		when(context.getResource("/static/empty.txt")).thenReturn(new URL(null, "bundle://42.0:1/static/empty.txt", handler));
+
+		ResourceMetadataCache cache = new ResourceMetadataCache(context, 10, 60000L);
+		try {
+			ResourceMetadata dir = cache.getResource("/static/dir");
+			assertThat(dir.isDirectory(), equalTo(true));
+			assertThat(dir.getUrl().getPath(), equalTo("/static/dir/"));
+
+			ResourceMetadata empty = cache.getResource("/static/empty.txt");
+			assertThat(empty.isDirectory(), equalTo(false));
+			assertThat(empty.getLength(), equalTo(0L));
+			assertThat(empty.getUrl().getPath(), equalTo("/static/empty.txt"));
+		} finally {
+			cache.destroy();
+		}
+	}
+
+	@Test
+	public void sameDefaultTtlForAllRuntimes() {
+		assertThat(ResourceMetadataCache.ttl(null), equalTo(ResourceMetadataCache.DEFAULT_TTL));
+		ResourceConfiguration configuration = mock(ResourceConfiguration.class);
+		when(configuration.maxCacheTTL()).thenReturn(null);
+		assertThat(ResourceMetadataCache.ttl(configuration), equalTo(ResourceMetadataCache.DEFAULT_TTL));
+		when(configuration.maxCacheTTL()).thenReturn(1234);
+		assertThat(ResourceMetadataCache.ttl(configuration), equalTo(1234L));
+	}
+
+	private static class FixedContentHandler extends URLStreamHandler {
+		private final byte[] content;
+
+		FixedContentHandler(String content) {
+			this.content = content.getBytes();
+		}
+
+		@Override
+		protected URLConnection openConnection(URL u) {
+			return new URLConnection(u) {
+				@Override
+				public void connect() {
+				}
+
+				@Override
+				public long getContentLengthLong() {
+					return content.length;
+				}
+
+				@Override
+				public long getLastModified() {
+					return 1000L;
+				}
+
+				@Override
+				public InputStream getInputStream() {
+					return new ByteArrayInputStream(content);
+				}
+			};
+		}
+	}
+
+}
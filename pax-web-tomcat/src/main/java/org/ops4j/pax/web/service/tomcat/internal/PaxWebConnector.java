@@ -15,8 +15,12 @@
  */
 package org.ops4j.pax.web.service.tomcat.internal;
 
+import java.util.Map;
+
 import org.apache.catalina.LifecycleException;
 import org.apache.catalina.connector.Connector;
+import org.ops4j.pax.web.service.spi.servlet.LazyStartGates;
+import org.ops4j.pax.web.service.spi.servlet.RedeployGate;
 
 /**
  * Special {@link Connector} where we can override the mechanism of setting session ID from incoming data at proper
@@ -24,10 +28,35 @@ import org.apache.catalina.connector.Connector;
  */
 public class PaxWebConnector extends Connector {
 
+	/** Gates of lazily started contexts, used by {@link PaxWebCoyoteAdapter} before mapping the requests */
+	private volatile LazyStartGates lazyStartGates;
+
+	/**
+	 * Gates (by context path) of the contexts that hold the requests while being restarted, used by
+	 * {@link PaxWebCoyoteAdapter} before mapping the requests
+	 */
+	private volatile Map<String, RedeployGate> redeployGates;
+
 	public PaxWebConnector(String protocol) {
 		super(protocol);
 	}
 
+	public LazyStartGates getLazyStartGates() {
+		return lazyStartGates;
+	}
+
+	public void setLazyStartGates(LazyStartGates lazyStartGates) {
+		this.lazyStartGates = lazyStartGates;
+	}
+
+	public Map<String, RedeployGate> getRedeployGates() {
+		return redeployGates;
+	}
+
+	public void setRedeployGates(Map<String, RedeployGate> redeployGates) {
+		this.redeployGates = redeployGates;
+	}
+
 	@Override
 	protected void initInternal() throws LifecycleException {
 		// org.apache.catalina.connector.Connector.protocolHandler is already set
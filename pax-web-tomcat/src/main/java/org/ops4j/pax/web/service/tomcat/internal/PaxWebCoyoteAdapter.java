@@ -15,20 +15,101 @@
  */
 package org.ops4j.pax.web.service.tomcat.internal;
 
+import java.io.IOException;
+import java.util.Map;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletResponse;
+
 import org.apache.catalina.Context;
 import org.apache.catalina.Wrapper;
 import org.apache.catalina.connector.Connector;
 import org.apache.catalina.connector.CoyoteAdapter;
 import org.apache.catalina.connector.Request;
+import org.apache.catalina.connector.Response;
+import org.apache.catalina.core.AsyncContextImpl;
 import org.ops4j.pax.web.service.spi.model.OsgiContextModel;
+import org.ops4j.pax.web.service.spi.servlet.LazyStartGate;
+import org.ops4j.pax.web.service.spi.servlet.LazyStartGates;
+import org.ops4j.pax.web.service.spi.servlet.RedeployGate;
 
 /**
  * Special {@link CoyoteAdapter}, which can alter the requested session IDs to match Whiteboard requirements.
+ * It also starts lazily started contexts and holds the requests to restarted contexts before the request is
+ * mapped.
  */
 public class PaxWebCoyoteAdapter extends CoyoteAdapter {
 
+	/** {@link LazyStartGate} entered by the request processed in current thread */
+	private static final ThreadLocal<LazyStartGate> ENTERED_GATE = new ThreadLocal<>();
+
+	/** {@link RedeployGate} entered by the request processed in current thread */
+	private static final ThreadLocal<RedeployGate> ENTERED_REDEPLOY_GATE = new ThreadLocal<>();
+
+	private final Connector connector;
+
 	public PaxWebCoyoteAdapter(Connector connector) {
 		super(connector);
+		this.connector = connector;
+	}
+
+	@Override
+	public void service(org.apache.coyote.Request req, org.apache.coyote.Response res) throws Exception {
+		try {
+			super.service(req, res);
+		} finally {
+			RedeployGate redeployGate = ENTERED_REDEPLOY_GATE.get();
+			if (redeployGate != null) {
+				ENTERED_REDEPLOY_GATE.remove();
+				redeployGate.exit();
+			}
+			LazyStartGate gate = ENTERED_GATE.get();
+			if (gate != null) {
+				ENTERED_GATE.remove();
+				Request request = (Request) req.getNote(ADAPTER_NOTES);
+				AsyncContextImpl asyncContext = request != null && request.isAsync()
+						? request.getAsyncContextInternal() : null;
+				if (asyncContext != null) {
+					// the context may be stopped when idle, so async request is counted until it's completed
+					asyncContext.addListener(gate.exitOnComplete());
+				} else {
+					gate.exit();
+				}
+			}
+		}
+	}
+
+	@Override
+	protected boolean postParseRequest(org.apache.coyote.Request req, Request request,
+			org.apache.coyote.Response res, Response response) throws IOException, ServletException {
+		LazyStartGates gates = connector instanceof PaxWebConnector
+				? ((PaxWebConnector) connector).getLazyStartGates() : null;
+		if (gates != null && !gates.isEmpty()) {
+			// Tomcat maps only started contexts, so a context started lazily has to be started before the
+			// mapping. Context paths are matched against not yet decoded URI.
+			LazyStartGate gate = gates.find(req.requestURI().toString());
+			if (gate != null) {
+				ENTERED_GATE.set(gate);
+				if (!gate.enter()) {
+					response.sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+					return false;
+				}
+			}
+		}
+		Map<String, RedeployGate> redeployGates = connector instanceof PaxWebConnector
+				? ((PaxWebConnector) connector).getRedeployGates() : null;
+		if (redeployGates != null && !redeployGates.isEmpty()) {
+			// Tomcat unmaps stopped contexts, so the requests to restarted context are held before the mapping
+			// (for at most redeployDrainTimeout) and in-flight requests are counted until they're processed
+			RedeployGate gate = RedeployGate.find(redeployGates, req.requestURI().toString());
+			if (gate != null) {
+				ENTERED_REDEPLOY_GATE.set(gate);
+				if (!gate.enter(true)) {
+					response.sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+					return false;
+				}
+			}
+		}
+		return super.postParseRequest(req, request, res, response);
 	}
 
 	@Override
@@ -0,0 +1,51 @@
+/*
+ * Copyright 2023 OPS4J.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.web.service.tomcat.internal;
+
+import java.io.IOException;
+
+import org.apache.catalina.Session;
+import org.apache.catalina.session.PersistentManagerBase;
+
+/**
+ * <p>{@link PersistentManagerBase} (same as Tomcat's final {@code PersistentManager}) used when
+ * {@link org.ops4j.pax.web.service.PaxWebConfig#PID_CFG_SESSION_STORE_DIRECTORY} is configured. Together with {@link org.apache.catalina.session.FileStore} each session is kept in its own file,
+ * sessions are backed up incrementally (only the ones accessed since previous backup) and loaded from the store
+ * only when requested - same as in Jetty's {@code FileSessionDataStore} and Undertow's
+ * {@code FileSessionPersistence}.</p>
+ *
+ * <p>Session IDs are handled the same way as in {@link PaxWebSessionManager}.</p>
+ */
+public class PaxWebPersistentSessionManager extends PersistentManagerBase {
+
+	private static final String NAME = "PaxWebPersistentSessionManager";
+
+	@Override
+	public String getName() {
+		return NAME;
+	}
+
+	@Override
+	public Session findSession(String id) throws IOException {
+		return super.findSession(PaxWebSessionManager.sessionId(id));
+	}
+
+	@Override
+	public Session createSession(String sessionId) {
+		return super.createSession(PaxWebSessionManager.newSessionId(sessionId));
+	}
+
+}
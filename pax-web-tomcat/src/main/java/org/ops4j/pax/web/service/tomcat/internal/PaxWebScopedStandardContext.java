@@ -15,7 +15,7 @@
  */
 package org.ops4j.pax.web.service.tomcat.internal;
 
-import java.util.LinkedList;
+import java.util.ArrayList;
 import java.util.List;
 import javax.servlet.FilterConfig;
 
@@ -36,14 +36,18 @@ import org.ops4j.pax.web.service.spi.model.OsgiContextModel;
  * <p>The methods from super class are <strong>not</strong> working correctly, because this class doesn't do
  * proper delegation. Only implemented methods are correct.</p>
  *
- * <p>New instance of this cheap class is created in every call to
- * {@link PaxWebStandardWrapperValve#invoke(Request, Response)}.</p>
+ * <p>Single instance of this class is used by {@link PaxWebStandardWrapper} as its parent, so OSGi-scoped
+ * filter mappings are calculated only when the mappings of the real context (or its default OSGi context)
+ * change - not in every call to {@link PaxWebStandardWrapperValve#invoke(Request, Response)}.</p>
  */
 public class PaxWebScopedStandardContext extends StandardContext {
 
 	private final PaxWebStandardWrapper wrapper;
 	private final PaxWebStandardContext delegate;
 
+	/** Immutable result of last {@link #findFilterMaps()} call together with the state it was calculated for */
+	private volatile ScopedFilterMaps scopedFilterMaps;
+
 	public PaxWebScopedStandardContext(PaxWebStandardWrapper paxWebStandardWrapper, PaxWebStandardContext delegate) {
 		this.wrapper = paxWebStandardWrapper;
 		this.delegate = delegate;
@@ -53,6 +57,7 @@ public class PaxWebScopedStandardContext extends StandardContext {
 
 	@Override
 	public FilterMap[] findFilterMaps() {
+		// immutable array published by the delegate
 		FilterMap[] maps = delegate.findFilterMaps();
 
 		OsgiContextModel targetContext = wrapper.getOsgiContextModel();
@@ -60,7 +65,12 @@ public class PaxWebScopedStandardContext extends StandardContext {
 			targetContext = delegate.getDefaultOsgiContextModel();
 		}
 
-		List<FilterMap> osgiScopedFilters = new LinkedList<>();
+		ScopedFilterMaps scoped = scopedFilterMaps;
+		if (scoped != null && scoped.source == maps && scoped.targetContext == targetContext) {
+			return scoped.maps;
+		}
+
+		List<FilterMap> osgiScopedFilters = new ArrayList<>(maps.length);
 
 		for (FilterMap filter : maps) {
 			PaxWebFilterMap fDef = (PaxWebFilterMap) filter;
@@ -70,7 +80,9 @@ public class PaxWebScopedStandardContext extends StandardContext {
 		}
 
 		// the caller will further narrow the list for given target servlet's name / request URI
-		return osgiScopedFilters.toArray(new FilterMap[0]);
+		scoped = new ScopedFilterMaps(maps, targetContext, osgiScopedFilters.toArray(new FilterMap[0]));
+		scopedFilterMaps = scoped;
+		return scoped.maps;
 	}
 
 	// that's a bit tricky - I've delegated only these methods that I found necessary (the more tests, the better)
@@ -117,4 +129,16 @@ public class PaxWebScopedStandardContext extends StandardContext {
 		return delegate.hashCode();
 	}
 
+	private static final class ScopedFilterMaps {
+		private final FilterMap[] source;
+		private final OsgiContextModel targetContext;
+		private final FilterMap[] maps;
+
+		ScopedFilterMaps(FilterMap[] source, OsgiContextModel targetContext, FilterMap[] maps) {
+			this.source = source;
+			this.targetContext = targetContext;
+			this.maps = maps;
+		}
+	}
+
 }
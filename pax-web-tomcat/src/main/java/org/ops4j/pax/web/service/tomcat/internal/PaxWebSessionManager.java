@@ -24,22 +24,41 @@ public class PaxWebSessionManager extends StandardManager {
 
 	@Override
 	public Session findSession(String id) throws IOException {
+		return super.findSession(sessionId(id));
+	}
+
+	@Override
+	public Session createSession(String sessionId) {
+		return super.createSession(newSessionId(sessionId));
+	}
+
+	/**
+	 * Returns full session ID (with a prefix indicating an {@link org.ops4j.pax.web.service.spi.model.OsgiContextModel})
+	 * for an ID passed by the client.
+	 * @param id
+	 * @return
+	 */
+	static String sessionId(String id) {
 		String sessionIdPrefix = PaxWebSessionIdGenerator.sessionIdPrefix.get();
 		if (sessionIdPrefix != null && !id.startsWith(sessionIdPrefix + "~")) {
-			id = sessionIdPrefix + "~" + id;
+			return sessionIdPrefix + "~" + id;
 		}
-		return super.findSession(id);
+		return id;
 	}
 
-	@Override
-	public Session createSession(String sessionId) {
+	/**
+	 * Returns an ID for new session - possibly reusing the ID sent by the client.
+	 * @param sessionId
+	 * @return
+	 */
+	static String newSessionId(String sessionId) {
 		if (sessionId == null && PaxWebSessionIdGenerator.sessionIdPrefix.get() != null
 			&& PaxWebSessionIdGenerator.cookieSessionId.get() != null) {
 			// it means the client has sent sessionId but it _may_ have a session associated in another OsgiContextModel
 			// so we'll create new session with provided Session Id and available prefix indicating an OsgiContextModel
-			sessionId = PaxWebSessionIdGenerator.sessionIdPrefix.get() + "~" + PaxWebSessionIdGenerator.cookieSessionId.get();
+			return PaxWebSessionIdGenerator.sessionIdPrefix.get() + "~" + PaxWebSessionIdGenerator.cookieSessionId.get();
 		}
-		return super.createSession(sessionId);
+		return sessionId;
 	}
 
 }
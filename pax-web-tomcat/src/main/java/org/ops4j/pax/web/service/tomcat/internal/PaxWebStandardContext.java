@@ -23,8 +23,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeMap;
-import java.util.function.Consumer;
-import java.util.stream.Collectors;
+import java.util.concurrent.ConcurrentHashMap;
 import javax.servlet.DispatcherType;
 import javax.servlet.Filter;
 import javax.servlet.Servlet;
@@ -32,10 +31,13 @@ import javax.servlet.ServletContainerInitializer;
 import javax.servlet.ServletContext;
 import javax.servlet.ServletContextListener;
 import javax.servlet.ServletException;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletRequestWrapper;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpSessionListener;
 
 import org.apache.catalina.Container;
+import org.apache.catalina.Lifecycle;
 import org.apache.catalina.LifecycleException;
 import org.apache.catalina.LifecycleState;
 import org.apache.catalina.connector.Request;
@@ -43,6 +45,7 @@ import org.apache.catalina.core.StandardContext;
 import org.apache.catalina.realm.GenericPrincipal;
 import org.apache.catalina.valves.ValveBase;
 import org.apache.tomcat.util.descriptor.web.ErrorPage;
+import org.apache.tomcat.util.descriptor.web.FilterMap;
 import org.ops4j.pax.web.service.WebContainerContext;
 import org.ops4j.pax.web.service.spi.model.OsgiContextModel;
 import org.ops4j.pax.web.service.spi.model.elements.ErrorPageModel;
@@ -51,11 +54,13 @@ import org.ops4j.pax.web.service.spi.model.elements.EventListenerModel;
 import org.ops4j.pax.web.service.spi.model.elements.FilterModel;
 import org.ops4j.pax.web.service.spi.model.elements.ServletModel;
 import org.ops4j.pax.web.service.spi.servlet.Default404Servlet;
-import org.ops4j.pax.web.service.spi.servlet.OsgiFilterChain;
+import org.ops4j.pax.web.service.spi.servlet.OsgiDispatchPlan;
+import org.ops4j.pax.web.service.spi.servlet.OsgiFilterChainTemplate;
 import org.ops4j.pax.web.service.spi.servlet.OsgiScopedServletContext;
 import org.ops4j.pax.web.service.spi.servlet.OsgiServletContext;
 import org.ops4j.pax.web.service.spi.servlet.OsgiSessionAttributeListener;
 import org.ops4j.pax.web.service.spi.servlet.PreprocessorFilterConfig;
+import org.ops4j.pax.web.service.spi.servlet.RedeployGate;
 import org.ops4j.pax.web.service.spi.servlet.SCIWrapper;
 import org.osgi.service.http.context.ServletContextHelper;
 import org.osgi.service.http.whiteboard.Preprocessor;
@@ -76,27 +81,18 @@ public class PaxWebStandardContext extends StandardContext {
 	 * Name of an attribute that indicates a {@link PaxWebStandardContext} for given request processing
 	 */
 	public static final String PAXWEB_STANDARD_CONTEXT = ".paxweb.standard.context";
-	/**
-	 * Name of an attribute that indicates a {@link PaxWebStandardWrapper} for given request processing
-	 */
-	public static final String PAXWEB_STANDARD_WRAPPER = ".paxweb.standard.wrapper";
-	/**
-	 * Name of the attribute for real {@link org.apache.catalina.connector.Request}
-	 */
-	public static final String PAXWEB_TOMCAT_REQUEST = ".paxweb.tomcat.request";
-
 	/**
 	 * Default {@link ServletContext} to use for chains without target servlet (e.g., filters only)
 	 */
-	private OsgiServletContext defaultServletContext;
+	private volatile OsgiServletContext defaultServletContext;
 	/**
 	 * Default {@link OsgiContextModel} to use for chains without target servlet (e.g., filters only)
 	 */
-	private OsgiContextModel defaultOsgiContextModel;
+	private volatile OsgiContextModel defaultOsgiContextModel;
 	/**
 	 * Default {@link WebContainerContext} for chains without target {@link Servlet}
 	 */
-	private WebContainerContext defaultWebContainerContext;
+	private volatile WebContainerContext defaultWebContainerContext;
 
 	private String osgiInitFilterName;
 
@@ -108,9 +104,34 @@ public class PaxWebStandardContext extends StandardContext {
 	/**
 	 * {@link Preprocessor} are registered as filters, but without particular target
 	 * {@link org.ops4j.pax.web.service.spi.servlet.OsgiServletContext}, so they're effectively registered in
-	 * all available physical servlet contexts.
+	 * all available physical servlet contexts. They're part of immutable {@link OsgiDispatchPlan}, which is
+	 * compiled when filter state changes.
 	 */
-	private final List<PreprocessorFilterConfig> preprocessors = new LinkedList<>();
+	private volatile OsgiDispatchPlan dispatchPlan;
+
+	/**
+	 * Filter mappings published after each change, so request threads calling {@link #findFilterMaps()} don't
+	 * have to synchronize with configuration thread. The array is never modified.
+	 */
+	private volatile FilterMap[] filterMaps = new FilterMap[0];
+
+	/** Precompiled {@link OsgiFilterChainTemplate} for chains without target servlet (or with 404 servlet) */
+	private volatile OsgiFilterChainTemplate defaultTemplate;
+
+	/**
+	 * {@link PaxWebStandardWrapper wrappers} indexed by name, so we don't have to iterate over all children
+	 * (for example for includes and forwards, where {@link PaxWebStandardWrapperValve} is not invoked)
+	 */
+	private final Map<String, PaxWebStandardWrapper> wrappers = new ConcurrentHashMap<>();
+
+	/**
+	 * Slot used to pass {@link PaxWebStandardWrapper} and Tomcat's {@link Request} from
+	 * {@link PaxWebStandardWrapperValve} to {@link #createInitialOsgiFilter() initial OSGi filter} of this
+	 * context. Valves and filters are invoked in the same thread, so we don't need request attributes for this
+	 * purpose. The slot is set only while the valve processes the request (see {@link #enterDispatch} and
+	 * {@link #exitDispatch}), so it never outlives the request.
+	 */
+	private final ThreadLocal<DispatchSlot> dispatchSlot = new ThreadLocal<>();
 
 	private final Collection<SCIWrapper> servletContainerInitializers = new LinkedList<>();
 
@@ -132,10 +153,17 @@ public class PaxWebStandardContext extends StandardContext {
 	private String[] connectorNames;
 	private boolean whiteboardTCCL;
 
+	/**
+	 * Optional gate closed when this context is stopped and opened when it's started again. While it's closed,
+	 * {@link PaxWebCoyoteAdapter} holds new requests before they're mapped.
+	 */
+	private RedeployGate redeployGate;
+
 	public PaxWebStandardContext(Default404Servlet defaultServlet, OsgiSessionAttributeListener osgiSessionsBridge) {
 		super();
 		getPipeline().addValve(new PaxWebStandardContextValve((ValveBase) getPipeline().getBasic(), defaultServlet));
 		this.osgiSessionsBridge = osgiSessionsBridge;
+		this.dispatchPlan = OsgiDispatchPlan.empty(osgiSessionsBridge, this::translateAuthentication);
 		this.setClearReferencesObjectStreamClassCaches(false);
 		this.setClearReferencesRmiTargets(false);
 		this.setClearReferencesThreadLocals(false);
@@ -148,52 +176,43 @@ public class PaxWebStandardContext extends StandardContext {
 	public void createInitialOsgiFilter() {
 		// turn a chain into a filter - to satisfy Tomcat's static methods
 		Filter osgiInitFilter = (request, response, chain) -> {
-			// this is definitiely the first filter, so we should get these attributes
+			// this is definitiely the first filter, so we should get the wrapper from the valve. For forwards,
+			// includes and error dispatches, there's no wrapper passed from the valve, but Tomcat's request
+			// is still the one of the original request
 			PaxWebStandardContext delegate = PaxWebStandardContext.this;
-			PaxWebStandardWrapper wrapper = (PaxWebStandardWrapper) request.getAttribute(PAXWEB_STANDARD_WRAPPER);
-			request.removeAttribute(PAXWEB_STANDARD_WRAPPER);
-			Request tomcatRequest = (Request) request.getAttribute(PAXWEB_TOMCAT_REQUEST);
-			request.removeAttribute(PAXWEB_TOMCAT_REQUEST);
-
-			if (wrapper == null) {
-				Container[] children = PaxWebStandardContext.this.findChildren();
-				for (Container c : children) {
-					if (c instanceof PaxWebStandardWrapper && request instanceof HttpServletRequest
-							&& c.getName() != null
-							&& c.getName().equals(((HttpServletRequest) request).getHttpServletMapping().getServletName())) {
-						wrapper = (PaxWebStandardWrapper) c;
-					}
-				}
+			DispatchSlot slot = dispatchSlot.get();
+			PaxWebStandardWrapper wrapper = null;
+			if (slot != null) {
+				wrapper = slot.wrapper;
+				slot.wrapper = null;
 			}
 
-			// listener called when org.osgi.service.http.HttpContext.handleSecurity() returns true
-			Consumer<HttpServletRequest> authListener = (req) -> {
-				final Object user = req.getAttribute(ServletContextHelper.REMOTE_USER);
-				final Object authType = req.getAttribute(ServletContextHelper.AUTHENTICATION_TYPE);
-
-				if (user != null || authType != null) {
-					// translate it into Tomcat specific authentication
-					String userName = user != null ? user.toString() : null;
-					String authMethod = authType != null ? authType.toString() : null;
-					if (tomcatRequest.getPrincipal() == null) {
-						tomcatRequest.setUserPrincipal(new GenericPrincipal(userName, null, Collections.emptyList()));
-					}
+			if (wrapper == null && request instanceof HttpServletRequest) {
+				String servletName = ((HttpServletRequest) request).getHttpServletMapping().getServletName();
+				if (servletName != null) {
+					wrapper = wrappers.get(servletName);
 				}
-			};
+			}
 
-			final OsgiFilterChain osgiChain;
-			List<Preprocessor> preprocessorInstances = preprocessors.stream().map(PreprocessorFilterConfig::getInstance).collect(Collectors.toList());
+			// everything except the chain itself is precompiled and only recreated when the dispatch plan changes
+			OsgiDispatchPlan plan = dispatchPlan;
+			OsgiFilterChainTemplate template;
 			if (wrapper != null && !wrapper.is404()) {
-				osgiChain = new OsgiFilterChain(new ArrayList<>(preprocessorInstances),
-						wrapper.getServletContext(), wrapper.getWebContainerContext(), null, osgiSessionsBridge, authListener);
+				template = wrapper.getOsgiFilterChainTemplate();
+				if (template == null || template.getPlan() != plan) {
+					template = plan.newTemplate(wrapper.getServletContext(), wrapper.getWebContainerContext());
+					wrapper.setOsgiFilterChainTemplate(template);
+				}
 			} else {
-				osgiChain = new OsgiFilterChain(new ArrayList<>(preprocessorInstances),
-						delegate.getDefaultServletContext(), delegate.getDefaultWebContainerContext(), null, osgiSessionsBridge, authListener);
+				template = defaultTemplate;
+				if (template == null || template.getPlan() != plan) {
+					template = plan.newTemplate(delegate.getDefaultServletContext(), delegate.getDefaultWebContainerContext());
+					defaultTemplate = template;
+				}
 			}
 
 			// this chain will be called (or not)
-			osgiChain.setChain(chain);
-			osgiChain.doFilter(request, response);
+			template.newChain(chain).doFilter(request, response);
 		};
 
 		FilterModel filterModel = new FilterModel("__osgi@" + System.identityHashCode(osgiInitFilter),
@@ -221,6 +240,7 @@ public class PaxWebStandardContext extends StandardContext {
 	 */
 	public void setDefaultServletContext(OsgiServletContext defaultServletContext) {
 		this.defaultServletContext = defaultServletContext;
+		this.defaultTemplate = null;
 	}
 
 	/**
@@ -253,15 +273,40 @@ public class PaxWebStandardContext extends StandardContext {
 		return superContext;
 	}
 
+	@Override
+	public void addFilterMap(FilterMap filterMap) {
+		super.addFilterMap(filterMap);
+		filterMaps = super.findFilterMaps();
+	}
+
+	@Override
+	public void addFilterMapBefore(FilterMap filterMap) {
+		super.addFilterMapBefore(filterMap);
+		filterMaps = super.findFilterMaps();
+	}
+
+	@Override
+	public void removeFilterMap(FilterMap filterMap) {
+		super.removeFilterMap(filterMap);
+		filterMaps = super.findFilterMaps();
+	}
+
+	@Override
+	public FilterMap[] findFilterMaps() {
+		return filterMaps;
+	}
+
 	@Override
 	public boolean filterStart() {
-		for (PreprocessorFilterConfig fc : preprocessors) {
+		for (PreprocessorFilterConfig fc : dispatchPlan.getPreprocessors()) {
 			try {
 				fc.getInstance().init(fc);
 			} catch (ServletException e) {
 				LOG.warn("Problem during preprocessor initialization: {}", e.getMessage(), e);
 			}
 		}
+		// preprocessor instances may have changed
+		dispatchPlan = dispatchPlan.refresh();
 
 		return super.filterStart();
 	}
@@ -271,9 +316,10 @@ public class PaxWebStandardContext extends StandardContext {
 		boolean result = super.filterStop();
 
 		// destroy the preprocessors
-		for (PreprocessorFilterConfig fc : preprocessors) {
+		for (PreprocessorFilterConfig fc : dispatchPlan.getPreprocessors()) {
 			fc.destroy();
 		}
+		dispatchPlan = dispatchPlan.refresh();
 
 		return result;
 	}
@@ -423,6 +469,22 @@ public class PaxWebStandardContext extends StandardContext {
 		orderedListeners.clear();
 	}
 
+	@Override
+	public void addChild(Container child) {
+		super.addChild(child);
+		if (child instanceof PaxWebStandardWrapper && child.getName() != null) {
+			wrappers.put(child.getName(), (PaxWebStandardWrapper) child);
+		}
+	}
+
+	@Override
+	public void removeChild(Container child) {
+		super.removeChild(child);
+		if (child instanceof PaxWebStandardWrapper && child.getName() != null) {
+			wrappers.remove(child.getName(), child);
+		}
+	}
+
 	@Override
 	public void addApplicationEventListener(Object listener) {
 		addApplicationEventListener(null, listener);
@@ -518,6 +580,7 @@ public class PaxWebStandardContext extends StandardContext {
 	public void setDefaultOsgiContextModel(OsgiContextModel defaultOsgiContextModel, WebContainerContext resolvedWebContainerContext) {
 		this.defaultOsgiContextModel = defaultOsgiContextModel;
 		this.defaultWebContainerContext = resolvedWebContainerContext;
+		this.defaultTemplate = null;
 	}
 
 	public OsgiServletContext getDefaultServletContext() {
@@ -533,7 +596,44 @@ public class PaxWebStandardContext extends StandardContext {
 	}
 
 	public List<PreprocessorFilterConfig> getPreprocessors() {
-		return preprocessors;
+		return dispatchPlan.getPreprocessors();
+	}
+
+	public OsgiDispatchPlan getDispatchPlan() {
+		return dispatchPlan;
+	}
+
+	/**
+	 * Sets new {@link OsgiDispatchPlan} (compiled on configuration thread)
+	 * @param dispatchPlan
+	 */
+	public void setDispatchPlan(OsgiDispatchPlan dispatchPlan) {
+		this.dispatchPlan = dispatchPlan;
+	}
+
+	/**
+	 * Translates OSGi specific authentication information into Tomcat specific {@link java.security.Principal}
+	 * @param req
+	 */
+	private void translateAuthentication(HttpServletRequest req) {
+		final Object user = req.getAttribute(ServletContextHelper.REMOTE_USER);
+		final Object authType = req.getAttribute(ServletContextHelper.AUTHENTICATION_TYPE);
+
+		if (user != null || authType != null) {
+			// translate it into Tomcat specific authentication
+			String userName = user != null ? user.toString() : null;
+			DispatchSlot slot = dispatchSlot.get();
+			Request tomcatRequest = slot == null ? null : slot.request;
+			ServletRequest unwrapped = req;
+			while (unwrapped instanceof ServletRequestWrapper) {
+				unwrapped = ((ServletRequestWrapper) unwrapped).getRequest();
+			}
+			// the slot has to hold the request being processed - not e.g., a request of outer context
+			if (tomcatRequest != null && tomcatRequest.getRequest() == unwrapped
+					&& tomcatRequest.getPrincipal() == null) {
+				tomcatRequest.setUserPrincipal(new GenericPrincipal(userName, null, Collections.emptyList()));
+			}
+		}
 	}
 
 	public void setVirtualHosts(String[] virtualHosts) {
@@ -633,4 +733,65 @@ public class PaxWebStandardContext extends StandardContext {
 		this.whiteboardTCCL = whiteboardTCCL;
 	}
 
+	public RedeployGate getRedeployGate() {
+		return redeployGate;
+	}
+
+	public void setRedeployGate(RedeployGate redeployGate) {
+		this.redeployGate = redeployGate;
+	}
+
+	@Override
+	protected void fireLifecycleEvent(String type, Object data) {
+		if (redeployGate != null && Lifecycle.BEFORE_STOP_EVENT.equals(type)) {
+			// hold new requests and wait for in-flight requests
+			redeployGate.close();
+		}
+		super.fireLifecycleEvent(type, data);
+		if (redeployGate != null && Lifecycle.AFTER_START_EVENT.equals(type)) {
+			redeployGate.open();
+		}
+	}
+
+	/**
+	 * Called by {@link PaxWebStandardWrapperValve} before the request is passed to the filter chain of this
+	 * context.
+	 * @param request
+	 * @param wrapper
+	 * @return previous slot (for nested dispatch) to be passed to {@link #exitDispatch}
+	 */
+	DispatchSlot enterDispatch(Request request, PaxWebStandardWrapper wrapper) {
+		DispatchSlot previous = dispatchSlot.get();
+		dispatchSlot.set(new DispatchSlot(request, wrapper));
+		return previous;
+	}
+
+	/**
+	 * Called by {@link PaxWebStandardWrapperValve} when the request leaves this context (also on exception).
+	 * @param previous
+	 */
+	void exitDispatch(DispatchSlot previous) {
+		if (previous == null) {
+			dispatchSlot.remove();
+		} else {
+			dispatchSlot.set(previous);
+		}
+	}
+
+	/**
+	 * Typed holder of the information passed from {@link PaxWebStandardWrapperValve} to initial OSGi filter
+	 * for single request.
+	 */
+	static final class DispatchSlot {
+		/** Tomcat's request currently processed */
+		private final Request request;
+		/** The wrapper found by Tomcat's mapper - consumed by initial OSGi filter */
+		private PaxWebStandardWrapper wrapper;
+
+		DispatchSlot(Request request, PaxWebStandardWrapper wrapper) {
+			this.request = request;
+			this.wrapper = wrapper;
+		}
+	}
+
 }
@@ -25,6 +25,7 @@ import org.apache.catalina.connector.Response;
 import org.apache.catalina.valves.ValveBase;
 import org.apache.tomcat.util.buf.MessageBytes;
 import org.ops4j.pax.web.service.spi.servlet.Default404Servlet;
+import org.ops4j.pax.web.service.spi.servlet.RedeployGate;
 
 /**
  * <p>This valve for entire context ensures (for now, could do more soon) that if there's no target servlet
@@ -77,11 +78,20 @@ public class PaxWebStandardContextValve extends ValveBase {
 			request.getMappingData().wrapper = wrapperFor404Servlet;
 		}
 
+		// requests are held by PaxWebCoyoteAdapter before mapping, here we only count them (also
+		// the async dispatches)
+		RedeployGate gate = ctx.getRedeployGate();
+		if (gate != null) {
+			gate.enter(false);
+		}
 		ClassLoader tccl = Thread.currentThread().getContextClassLoader();
 		try {
 			Thread.currentThread().setContextClassLoader(ctx.getServletContext() == null ? tccl : ctx.getServletContext().getClassLoader());
 			getNext().invoke(request, response);
 		} finally {
+			if (gate != null) {
+				gate.exit();
+			}
 			PaxWebSessionIdGenerator.sessionIdPrefix.set(null);
 			PaxWebSessionIdGenerator.cookieSessionId.set(null);
 			Thread.currentThread().setContextClassLoader(tccl);
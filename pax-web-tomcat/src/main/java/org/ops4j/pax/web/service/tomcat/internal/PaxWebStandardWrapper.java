@@ -26,6 +26,7 @@ import org.apache.catalina.valves.ValveBase;
 import org.ops4j.pax.web.service.WebContainerContext;
 import org.ops4j.pax.web.service.spi.model.OsgiContextModel;
 import org.ops4j.pax.web.service.spi.model.elements.ServletModel;
+import org.ops4j.pax.web.service.spi.servlet.OsgiFilterChainTemplate;
 import org.ops4j.pax.web.service.spi.servlet.OsgiInitializedServlet;
 import org.ops4j.pax.web.service.spi.servlet.OsgiScopedServletContext;
 import org.ops4j.pax.web.service.spi.servlet.OsgiServletContext;
@@ -75,6 +76,12 @@ public class PaxWebStandardWrapper extends StandardWrapper {
 
 	private boolean whiteboardTCCL;
 
+	/**
+	 * Precompiled, immutable part of the {@link org.ops4j.pax.web.service.spi.servlet.OsgiFilterChain} used
+	 * for this wrapper. Recreated only when {@link org.ops4j.pax.web.service.spi.servlet.OsgiDispatchPlan} changes.
+	 */
+	private volatile OsgiFilterChainTemplate osgiFilterChainTemplate;
+
 	/**
 	 * Constructor to use when wrapping internal {@link Servlet servlets} which won't use OSGi machinery.
 	 * @param name
@@ -276,4 +283,12 @@ public class PaxWebStandardWrapper extends StandardWrapper {
 		this.highestRankedContext = highestRankedContext;
 	}
 
+	OsgiFilterChainTemplate getOsgiFilterChainTemplate() {
+		return osgiFilterChainTemplate;
+	}
+
+	void setOsgiFilterChainTemplate(OsgiFilterChainTemplate osgiFilterChainTemplate) {
+		this.osgiFilterChainTemplate = osgiFilterChainTemplate;
+	}
+
 }
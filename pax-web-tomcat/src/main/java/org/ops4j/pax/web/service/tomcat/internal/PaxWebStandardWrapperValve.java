@@ -22,9 +22,6 @@ import org.apache.catalina.connector.Request;
 import org.apache.catalina.connector.Response;
 import org.apache.catalina.valves.ValveBase;
 
-import static org.ops4j.pax.web.service.tomcat.internal.PaxWebStandardContext.PAXWEB_STANDARD_WRAPPER;
-import static org.ops4j.pax.web.service.tomcat.internal.PaxWebStandardContext.PAXWEB_TOMCAT_REQUEST;
-
 public class PaxWebStandardWrapperValve extends ValveBase {
 
 	public PaxWebStandardWrapperValve(ValveBase next, PaxWebStandardWrapper wrapper) {
@@ -44,11 +41,21 @@ public class PaxWebStandardWrapperValve extends ValveBase {
 	 */
 	@Override
 	public void invoke(Request request, Response response) throws IOException, ServletException {
-		// attributes to be used ONLY by "initial OSGi filter"
-		request.setAttribute(PAXWEB_STANDARD_WRAPPER, request.getWrapper());
-		request.setAttribute(PAXWEB_TOMCAT_REQUEST, request);
-
-		getNext().invoke(request, response);
+		// information to be used ONLY by "initial OSGi filter" - passed through the context's slot instead of
+		// request attributes
+		if (!(getContainer().getParent() instanceof PaxWebStandardContext)) {
+			getNext().invoke(request, response);
+			return;
+		}
+		PaxWebStandardContext context = (PaxWebStandardContext) getContainer().getParent();
+		PaxWebStandardWrapper wrapper = request.getWrapper() instanceof PaxWebStandardWrapper
+				? (PaxWebStandardWrapper) request.getWrapper() : null;
+		PaxWebStandardContext.DispatchSlot previous = context.enterDispatch(request, wrapper);
+		try {
+			getNext().invoke(request, response);
+		} finally {
+			context.exitDispatch(previous);
+		}
 	}
 
 }
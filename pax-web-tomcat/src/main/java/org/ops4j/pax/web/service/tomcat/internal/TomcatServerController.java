@@ -21,6 +21,7 @@ import java.net.URL;
 import java.util.Collections;
 import java.util.LinkedHashSet;
 import java.util.Set;
+import java.util.concurrent.Executor;
 import javax.servlet.Servlet;
 
 import org.ops4j.pax.web.service.spi.ServerController;
@@ -28,6 +29,7 @@ import org.ops4j.pax.web.service.spi.ServerState;
 import org.ops4j.pax.web.service.spi.config.Configuration;
 import org.ops4j.pax.web.service.spi.model.events.ServerEvent;
 import org.ops4j.pax.web.service.spi.model.events.ServerListener;
+import org.ops4j.pax.web.service.spi.servlet.LazyStartGates;
 import org.ops4j.pax.web.service.spi.task.Batch;
 import org.ops4j.pax.web.service.tomcat.internal.web.TomcatResourceServlet;
 import org.osgi.framework.Bundle;
@@ -60,6 +62,9 @@ class TomcatServerController implements ServerController {
 	 */
 	private TomcatServerWrapper tomcatServerWrapper;
 
+	/** Executor used to start (and stop) lazily started contexts */
+	private Executor configurationExecutor;
+
 	TomcatServerController(Bundle paxWebTomcatBundle, ClassLoader classLoader,
 			TomcatFactory tomcatFactory, Configuration configuration) {
 		this.paxWebTomcatBundle = paxWebTomcatBundle;
@@ -88,6 +93,7 @@ class TomcatServerController implements ServerController {
 		}
 
 		tomcatServerWrapper = new TomcatServerWrapper(configuration, tomcatFactory, paxWebTomcatBundle, classLoader);
+		tomcatServerWrapper.getLazyStartGates().setConfigurationExecutor(configurationExecutor);
 		tomcatServerWrapper.configure();
 
 		state = ServerState.STOPPED;
@@ -181,12 +187,25 @@ class TomcatServerController implements ServerController {
 			throw new IllegalStateException("Can't process batch in Tomcat server controller in state " + state);
 		}
 
+		// lazily started contexts are not started or stopped while processing the batch
+		LazyStartGates lazyStartGates = tomcatServerWrapper.getLazyStartGates();
 		ClassLoader tccl = Thread.currentThread().getContextClassLoader();
+		lazyStartGates.lock();
 		try {
 			Thread.currentThread().setContextClassLoader(getClass().getClassLoader());
 			batch.accept(tomcatServerWrapper);
+			tomcatServerWrapper.releaseRedeployGates(batch);
 		} finally {
 			Thread.currentThread().setContextClassLoader(tccl);
+			lazyStartGates.unlock();
+		}
+	}
+
+	@Override
+	public void setConfigurationExecutor(Executor executor) {
+		this.configurationExecutor = executor;
+		if (tomcatServerWrapper != null) {
+			tomcatServerWrapper.getLazyStartGates().setConfigurationExecutor(executor);
 		}
 	}
 
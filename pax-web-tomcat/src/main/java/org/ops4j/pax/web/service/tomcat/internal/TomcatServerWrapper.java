@@ -22,6 +22,8 @@ import java.net.InetAddress;
 import java.net.InetSocketAddress;
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
@@ -32,9 +34,11 @@ import java.util.Iterator;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
 import java.util.TreeMap;
 import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Supplier;
 import javax.servlet.Servlet;
 import javax.servlet.ServletContext;
@@ -64,7 +68,9 @@ import org.apache.catalina.core.StandardServer;
 import org.apache.catalina.core.StandardService;
 import org.apache.catalina.loader.ParallelWebappClassLoader;
 import org.apache.catalina.loader.WebappLoader;
-import org.apache.catalina.session.StandardManager;
+import org.apache.catalina.session.FileStore;
+import org.apache.catalina.session.ManagerBase;
+import org.apache.catalina.session.PersistentManagerBase;
 import org.apache.catalina.util.ToStringUtil;
 import org.apache.catalina.valves.AccessLogValve;
 import org.apache.catalina.webresources.TomcatURLStreamHandlerFactory;
@@ -98,15 +104,18 @@ import org.ops4j.pax.web.service.spi.model.elements.WelcomeFileModel;
 import org.ops4j.pax.web.service.spi.model.events.ServerEvent;
 import org.ops4j.pax.web.service.spi.servlet.Default404Servlet;
 import org.ops4j.pax.web.service.spi.servlet.DynamicRegistrations;
+import org.ops4j.pax.web.service.spi.servlet.LazyStartGates;
 import org.ops4j.pax.web.service.spi.servlet.OsgiDynamicServletContext;
 import org.ops4j.pax.web.service.spi.servlet.OsgiInitializedServlet;
 import org.ops4j.pax.web.service.spi.servlet.OsgiServletContext;
 import org.ops4j.pax.web.service.spi.servlet.OsgiServletContextClassLoader;
 import org.ops4j.pax.web.service.spi.servlet.OsgiSessionAttributeListener;
-import org.ops4j.pax.web.service.spi.servlet.PreprocessorFilterConfig;
+import org.ops4j.pax.web.service.spi.servlet.RedeployGate;
 import org.ops4j.pax.web.service.spi.servlet.RegisteringContainerInitializer;
 import org.ops4j.pax.web.service.spi.servlet.SCIWrapper;
+import org.ops4j.pax.web.service.spi.task.Batch;
 import org.ops4j.pax.web.service.spi.task.BatchVisitor;
+import org.ops4j.pax.web.service.spi.task.Change;
 import org.ops4j.pax.web.service.spi.task.ClearDynamicRegistrationsChange;
 import org.ops4j.pax.web.service.spi.task.ContainerInitializerModelChange;
 import org.ops4j.pax.web.service.spi.task.ContextMetadataModelChange;
@@ -266,12 +275,21 @@ class TomcatServerWrapper implements BatchVisitor {
 
 	private final Map<String, TreeMap<OsgiContextModel, SecurityConfigurationModel>> contextSecurityConstraints = new HashMap<>();
 
+	/** Gates of the contexts started when they receive first request */
+	private final LazyStartGates lazyStartGates;
+
+	/** Gates (by context path, {@code ""} for root context) holding the requests while the contexts are restarted */
+	private final Map<String, RedeployGate> redeployGates = new ConcurrentHashMap<>();
+
 	TomcatServerWrapper(Configuration config, TomcatFactory tomcatFactory,
 			Bundle paxWebTomcatBundle, ClassLoader classLoader) {
 		this.configuration = config;
 		this.tomcatFactory = tomcatFactory;
 		this.paxWebTomcatBundle = paxWebTomcatBundle;
 		this.classLoader = classLoader;
+
+		this.lazyStartGates = new LazyStartGates(config.server().isLazyContextStart(),
+				config.server().getLazyContextIdleTimeout(), config.server().getLazyContextStartTimeout());
 	}
 
 	// --- lifecycle and configuration methods
@@ -297,6 +315,15 @@ class TomcatServerWrapper implements BatchVisitor {
 			// If external configuration added some connectors, we have to ensure they match declaration from
 			// PID config: org.osgi.service.http.enabled and org.osgi.service.http.secure.enabled
 			verifyConnectorConfiguration();
+
+			// the connectors start lazily started contexts and hold requests to restarted contexts before
+			// mapping the requests
+			for (Connector connector : service.findConnectors()) {
+				if (connector instanceof PaxWebConnector) {
+					((PaxWebConnector) connector).setLazyStartGates(lazyStartGates);
+					((PaxWebConnector) connector).setRedeployGates(redeployGates);
+				}
+			}
 		} finally {
 			Thread.currentThread().setContextClassLoader(tccl);
 		}
@@ -697,6 +724,10 @@ class TomcatServerWrapper implements BatchVisitor {
 		try {
 			LOG.info("Stopping {}", server);
 			server.stop();
+			contextHandlers.values().stream().map(PaxWebStandardContext::getRedeployGate)
+					.filter(Objects::nonNull).forEach(RedeployGate::open);
+			redeployGates.clear();
+			lazyStartGates.shutdown();
 
 			LOG.info("Destroying Tomcat server {}", server);
 			server.destroy();
@@ -801,6 +832,14 @@ class TomcatServerWrapper implements BatchVisitor {
 			// name is used in final toString(), so better to have it clearer
 			context.setName(contextPath);
 
+			// optional gate to hold the requests when the context is restarted
+			int drainTimeout = configuration.server().getRedeployDrainTimeout();
+			if (drainTimeout > 0) {
+				RedeployGate gate = new RedeployGate(contextPath, drainTimeout);
+				context.setRedeployGate(gate);
+				redeployGates.put("/".equals(contextPath) ? "" : contextPath, gate);
+			}
+
 			// in this new context, we need "initial OSGi filter" which will:
 			// - call preprocessors
 			// - handle security using proper httpContext/servletContextHelper
@@ -857,11 +896,23 @@ class TomcatServerWrapper implements BatchVisitor {
 			}
 			context.setCookieProcessor(cookieProcessor);
 
-			StandardManager manager = new PaxWebSessionManager();
-			manager.setSessionIdGenerator(new PaxWebSessionIdGenerator());
+			ManagerBase manager;
 			if (sc.getSessionStoreDirectory() != null) {
-				manager.setPathname(new File(sc.getSessionStoreDirectory(), "SESSIONS.ser").getAbsolutePath());
+				// one file per session in a directory of the context. Context path is URL-encoded, so for example
+				// "/a/b" and "/a_b" don't share the directory
+				String storeName = "/".equals(contextPath) ? "ROOT"
+						: URLEncoder.encode(contextPath.substring(1), StandardCharsets.UTF_8);
+				FileStore store = new FileStore();
+				store.setDirectory(new File(sc.getSessionStoreDirectory(), storeName).getAbsolutePath());
+				PersistentManagerBase persistentManager = new PaxWebPersistentSessionManager();
+				persistentManager.setStore(store);
+				// sessions accessed since last backup are written during background processing
+				persistentManager.setMaxIdleBackup(0);
+				manager = persistentManager;
+			} else {
+				manager = new PaxWebSessionManager();
 			}
+			manager.setSessionIdGenerator(new PaxWebSessionIdGenerator());
 			context.setManager(manager);
 
 			//		// TODO: what about the AccessControlContext?
@@ -902,6 +953,12 @@ class TomcatServerWrapper implements BatchVisitor {
 				}
 			}
 
+			if (context != null && context.getRedeployGate() != null) {
+				// held requests will get 404
+				redeployGates.remove("/".equals(contextPath) ? "" : contextPath);
+				context.getRedeployGate().open();
+			}
+			lazyStartGates.remove(contextPath);
 			defaultHost.removeChild(context);
 		}
 	}
@@ -1435,17 +1492,10 @@ class TomcatServerWrapper implements BatchVisitor {
 				context.removeFilterMap(map);
 			}
 
-			// clear to keep the order of all available preprocessors
-			context.getPreprocessors().clear();
-
-			for (Iterator<FilterModel> iterator = filters.iterator(); iterator.hasNext(); ) {
-				FilterModel model = iterator.next();
-				if (model.isPreprocessor()) {
-					context.getPreprocessors()
-							.add(new PreprocessorFilterConfig(model, osgiServletContexts.get(defaultHighestRankedModel)));
-					iterator.remove();
-				}
-			}
+			// compile new dispatch plan - preprocessors are removed from the set of filters. Their lifecycle
+			// is managed by filterStop()/filterStart()
+			context.setDispatchPlan(context.getDispatchPlan()
+					.compile(filters, osgiServletContexts.get(defaultHighestRankedModel)));
 
 			// order -> [ FilterModel, FilterModel.Mapping ]
 			Map<Integer, Object[]> webOrderMapping = new TreeMap<>();
@@ -2068,6 +2118,12 @@ class TomcatServerWrapper implements BatchVisitor {
 		if (context == null || context.isStarted() || context.getState() == LifecycleState.DESTROYED || pendingTransaction(contextPath)) {
 			return;
 		}
+		if (lazyStartGates.defer(contextPath, lazyStartGates.isLazy(osgiContextModels.get(contextPath)),
+				() -> startLazyContext(context), () -> stopIdleContext(context))) {
+			// the connectors will start the context with first request
+			LOG.info("Tomcat context \"{}\" will be started when it receives first request", contextPath);
+			return;
+		}
 		try {
 			OsgiContextModel highestRanked = context.getDefaultOsgiContextModel();
 			OsgiServletContext highestRankedContext = context.getDefaultServletContext();
@@ -2202,6 +2258,67 @@ class TomcatServerWrapper implements BatchVisitor {
 		return transactions.contains(contextPath);
 	}
 
+	/**
+	 * Called after processing a {@link Batch} to open the gates of the contexts that were stopped, but not
+	 * started again, so held requests get normal 404 responses. Contexts to be started in next batch or within
+	 * pending transaction are not released.
+	 * @param batch
+	 */
+	public void releaseRedeployGates(Batch batch) {
+		Set<String> restarting = new HashSet<>(transactions);
+		for (Change change : batch.getOperations()) {
+			if (change.getBatchCompletedAction() instanceof ContextStartChange) {
+				restarting.add(((ContextStartChange) change.getBatchCompletedAction()).getContextPath());
+			}
+		}
+		contextHandlers.forEach((contextPath, context) -> {
+			RedeployGate gate = context.getRedeployGate();
+			if (gate != null && gate.isClosed() && !context.getState().isAvailable()
+					&& !restarting.contains(contextPath)) {
+				gate.open();
+			}
+		});
+	}
+
+	/**
+	 * Starts lazily started context outside of {@link Batch} processing, with the same TCCL as used by
+	 * {@link TomcatServerController#sendBatch(Batch)}.
+	 * @param context
+	 */
+	private void startLazyContext(PaxWebStandardContext context) {
+		ClassLoader tccl = Thread.currentThread().getContextClassLoader();
+		try {
+			Thread.currentThread().setContextClassLoader(TomcatServerWrapper.class.getClassLoader());
+			ensureServletContextStarted(context);
+		} finally {
+			Thread.currentThread().setContextClassLoader(tccl);
+		}
+	}
+
+	/**
+	 * Stops lazily started context, which will be started again with next request. The context is not restarted
+	 * within a batch, so requests shouldn't be held.
+	 * @param context
+	 */
+	private void stopIdleContext(PaxWebStandardContext context) {
+		if (!context.isStarted()) {
+			return;
+		}
+		try {
+			context.stop();
+		} catch (Exception e) {
+			LOG.warn("Error stopping Tomcat context \"{}\": {}", context, e.getMessage(), e);
+		}
+		RedeployGate gate = context.getRedeployGate();
+		if (gate != null && gate.isClosed()) {
+			gate.open();
+		}
+	}
+
+	public LazyStartGates getLazyStartGates() {
+		return lazyStartGates;
+	}
+
 	private OsgiServletContext getHighestRankedContext(String contextPath, FilterModel model,
 			List<OsgiContextModel> contextModels) {
 		OsgiContextModel highestRankedModel = null;
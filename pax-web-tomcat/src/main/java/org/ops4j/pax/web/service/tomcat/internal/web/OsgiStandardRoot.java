@@ -19,10 +19,10 @@ import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
-import java.net.MalformedURLException;
 import java.net.URISyntaxException;
 import java.net.URL;
 import java.net.URLConnection;
+import java.nio.ByteBuffer;
 import java.security.cert.Certificate;
 import java.util.Collections;
 import java.util.Set;
@@ -40,6 +40,9 @@ import org.apache.catalina.webresources.EmptyResource;
 import org.apache.catalina.webresources.FileResource;
 import org.apache.catalina.webresources.StandardRoot;
 import org.apache.juli.logging.Log;
+import org.ops4j.pax.web.service.spi.util.ContentCache;
+import org.ops4j.pax.web.service.spi.util.ResourceMetadataCache;
+import org.ops4j.pax.web.service.spi.util.ResourceMetadataCache.ResourceMetadata;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -54,13 +57,62 @@ class OsgiStandardRoot extends StandardRoot {
 	private final WebResourceRoot root;
 	private final int maxEntrySize;
 
-	OsgiStandardRoot(WebResourceRoot root, File baseDirectory, String chroot, ServletContext osgiScopedServletContext, int maxEntrySize) {
+	/** Metadata of resources, so bundle is not checked for every request */
+	private final ResourceMetadataCache metadataCache;
+
+	/** Optional content cache shared by all resource servlets */
+	private final ContentCache contentCache;
+
+	OsgiStandardRoot(WebResourceRoot root, File baseDirectory, String chroot, ServletContext osgiScopedServletContext,
+			int maxEntrySize, int maxMetadataEntries, long metadataTtl, ContentCache contentCache) {
 		super(root.getContext());
 		this.root = root;
 		this.baseDirectory = baseDirectory;
 		this.chroot = chroot;
 		this.osgiScopedServletContext = osgiScopedServletContext;
 		this.maxEntrySize = maxEntrySize;
+		this.metadataCache = baseDirectory != null ? null
+				: new ResourceMetadataCache(osgiScopedServletContext, maxMetadataEntries, metadataTtl);
+		this.contentCache = contentCache;
+	}
+
+	/**
+	 * Returns the cache used to find bundle resources - {@code null} if the resources are served from a directory
+	 * @return
+	 */
+	ResourceMetadataCache getMetadataCache() {
+		return metadataCache;
+	}
+
+	/**
+	 * Returns a path passed to {@link ServletContext#getResource(String)} for a path relative to this root
+	 * @param path path with leading slash
+	 * @return
+	 */
+	String getFullPath(String path) {
+		// chroot is without trailing slash, path is always with leading slash
+		String fullPath = chroot + path;
+		if (fullPath.startsWith("/")) {
+			fullPath = fullPath.substring(1);
+		}
+		return fullPath;
+	}
+
+	@Override
+	protected void destroyInternal() throws LifecycleException {
+		if (metadataCache != null) {
+			metadataCache.destroy();
+		}
+		super.destroyInternal();
+	}
+
+	@Override
+	public void setCachingAllowed(boolean cachingAllowed) {
+		// called also to clear the cache when welcome files change
+		if (metadataCache != null && !cachingAllowed) {
+			metadataCache.invalidate();
+		}
+		super.setCachingAllowed(cachingAllowed);
 	}
 
 	@Override
@@ -91,31 +143,20 @@ class OsgiStandardRoot extends StandardRoot {
 
 				@Override
 				public WebResource getResource(String path) {
-					// chroot is without trailing slash, path is always with leading slash because that's
-					// a requirement of org.apache.catalina.webresources.StandardRoot.validate()
-					String fullPath = chroot + path;
-					if (fullPath.startsWith("/")) {
-						fullPath = fullPath.substring(1);
-					}
-					URL resource = null;
-					try {
-						resource = osgiScopedServletContext.getResource(fullPath);
-					} catch (MalformedURLException e) {
-						TomcatResourceServlet.LOG.warn(e.getMessage(), e);
-					}
-					if (resource == null) {
+					// path is always with leading slash because that's a requirement of
+					// org.apache.catalina.webresources.StandardRoot.validate()
+					String fullPath = getFullPath(path);
+					ResourceMetadata metadata = metadataCache.getResource(fullPath);
+					if (metadata == null) {
 						if (fullPath.equals("")) {
 							fullPath = "/";
 						}
-						try {
-							resource = osgiScopedServletContext.getResource(fullPath);
-						} catch (MalformedURLException e) {
-							TomcatResourceServlet.LOG.warn(e.getMessage(), e);
-						}
-						if (resource == null) {
+						metadata = metadataCache.getResource(fullPath);
+						if (metadata == null) {
 							return new EmptyResource(root, path);
 						}
 					}
+					URL resource = metadata.getUrl();
 					if (resource.getProtocol().equals("file")) {
 						try {
 							File file = new File(resource.toURI());
@@ -127,33 +168,15 @@ class OsgiStandardRoot extends StandardRoot {
 							LOG.warn(e.getMessage(), e);
 							return new EmptyResource(root, path);
 						}
-					} else if (resource.getProtocol().equals("bundle")) {
-						if ("/".equals(resource.getPath())) {
-							// Felix, root of the bundle - return a resource which says it's a directory
-							return new RootBundleURLResource(OsgiStandardRoot.this, resource, fullPath);
-						} else if (!resource.getPath().endsWith("/")) {
-							// unfortunately, due to https://issues.apache.org/jira/browse/FELIX-6294
-							// we have to check ourselves if it's a directory and possibly append a slash
-							// just as org.eclipse.osgi.storage.bundlefile.BundleFile#fixTrailingSlash() does it
-							try {
-								UrlResource potentialDirectory = new UrlResource(OsgiStandardRoot.this, resource, fullPath, maxEntrySize);
-								if (potentialDirectory.exists()) {
-									try (InputStream is = potentialDirectory.getInputStream()) {
-										if ((is == null || is.available() == 0)
-												&& (potentialDirectory.getContent() == null || potentialDirectory.getContent().length == 0)) {
-											URL fixedURL = new URL(resource.toExternalForm() + "/");
-											UrlResource properDirectory = new UrlResource(OsgiStandardRoot.this, fixedURL, fullPath, maxEntrySize);
-											if (properDirectory.exists()) {
-												return properDirectory;
-											}
-										}
-									}
-								}
-							} catch (IOException e) {
-								LOG.warn("Problem checking directory bundle resource: {}", e.getMessage(), e);
-								return new EmptyResource(root, path);
-							}
-						}
+					} else if (metadata.isBundleRoot()) {
+						// Felix, root of the bundle - return a resource which says it's a directory
+						return new RootBundleURLResource(OsgiStandardRoot.this, resource, fullPath);
+					}
+					// directory check (FELIX-6294) for bundle: URLs was already done by the cache
+
+					if (contentCache != null && metadata.isBundleResource() && !metadata.isDirectory()
+							&& metadata.getLength() >= 0L && metadata.getLength() <= contentCache.getMaxEntrySize()) {
+						return new SharedContentResource(OsgiStandardRoot.this, metadata, fullPath, contentCache);
 					}
 
 					try {
@@ -365,6 +388,167 @@ class OsgiStandardRoot extends StandardRoot {
 		}
 	}
 
+	/**
+	 * Bundle resource with metadata taken from {@link ResourceMetadataCache} and content read from (off-heap)
+	 * {@link ContentCache}. {@link #getContent()} returns {@code null}, so Tomcat's cache doesn't keep another
+	 * copy of the content on heap and the content is streamed from the shared buffer instead.
+	 */
+	private static class SharedContentResource extends AbstractResource {
+
+		private final ResourceMetadata metadata;
+		private final ContentCache contentCache;
+		private final String name;
+
+		SharedContentResource(WebResourceRoot root, ResourceMetadata metadata, String fullPath, ContentCache contentCache) {
+			super(root, fullPath);
+			this.metadata = metadata;
+			this.contentCache = contentCache;
+			String path = metadata.getUrl().getPath();
+			this.name = path.substring(path.lastIndexOf('/') + 1);
+		}
+
+		@Override
+		protected InputStream doGetInputStream() {
+			ByteBuffer buffer = contentCache.get(metadata.getUrl(), metadata.getLength(), metadata.getLastModified());
+			if (buffer != null) {
+				return new ByteBufferInputStream(buffer);
+			}
+			try {
+				return metadata.getUrl().openStream();
+			} catch (IOException e) {
+				LOG.warn(e.getMessage(), e);
+				return null;
+			}
+		}
+
+		@Override
+		protected Log getLog() {
+			return null;
+		}
+
+		@Override
+		public long getLastModified() {
+			return metadata.getLastModified();
+		}
+
+		@Override
+		public boolean exists() {
+			return true;
+		}
+
+		@Override
+		public boolean isVirtual() {
+			return true;
+		}
+
+		@Override
+		public boolean isDirectory() {
+			return false;
+		}
+
+		@Override
+		public boolean isFile() {
+			return true;
+		}
+
+		@Override
+		public boolean delete() {
+			return false;
+		}
+
+		@Override
+		public String getName() {
+			return name;
+		}
+
+		@Override
+		public long getContentLength() {
+			return metadata.getLength();
+		}
+
+		@Override
+		public String getCanonicalPath() {
+			return null;
+		}
+
+		@Override
+		public boolean canRead() {
+			return true;
+		}
+
+		@Override
+		public byte[] getContent() {
+			return null;
+		}
+
+		@Override
+		public long getCreation() {
+			return metadata.getLastModified();
+		}
+
+		@Override
+		public URL getURL() {
+			return metadata.getUrl();
+		}
+
+		@Override
+		public URL getCodeBase() {
+			return null;
+		}
+
+		@Override
+		public Certificate[] getCertificates() {
+			return new Certificate[0];
+		}
+
+		@Override
+		public Manifest getManifest() {
+			return null;
+		}
+	}
+
+	/**
+	 * {@link InputStream} reading from a (direct) {@link ByteBuffer}
+	 */
+	private static class ByteBufferInputStream extends InputStream {
+
+		private final ByteBuffer buffer;
+
+		ByteBufferInputStream(ByteBuffer buffer) {
+			this.buffer = buffer;
+		}
+
+		@Override
+		public int read() {
+			return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) {
+			if (len == 0) {
+				return 0;
+			}
+			if (!buffer.hasRemaining()) {
+				return -1;
+			}
+			int count = Math.min(len, buffer.remaining());
+			buffer.get(b, off, count);
+			return count;
+		}
+
+		@Override
+		public long skip(long n) {
+			int count = (int) Math.max(0L, Math.min(n, buffer.remaining()));
+			buffer.position(buffer.position() + count);
+			return count;
+		}
+
+		@Override
+		public int available() {
+			return buffer.remaining();
+		}
+	}
+
 	private static class RootBundleURLResource extends AbstractResource {
 
 		private final URL url;
@@ -33,7 +33,10 @@ import org.apache.catalina.servlets.DefaultServlet;
 import org.ops4j.pax.web.service.spi.config.ResourceConfiguration;
 import org.ops4j.pax.web.service.spi.servlet.OsgiScopedServletContext;
 import org.ops4j.pax.web.service.spi.servlet.OsgiServletContext;
+import org.ops4j.pax.web.service.spi.util.ContentCache;
 import org.ops4j.pax.web.service.spi.util.Path;
+import org.ops4j.pax.web.service.spi.util.ResourceCompression;
+import org.ops4j.pax.web.service.spi.util.ResourceMetadataCache;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -63,6 +66,9 @@ public class TomcatResourceServlet extends DefaultServlet {
 
 	private OsgiServletContext highestRankedContext;
 
+	/** Support for compressed variants of bundle resources - {@code null} if not enabled */
+	private ResourceCompression compression;
+
 	public TomcatResourceServlet(File baseDirectory, String chroot, ResourceConfiguration resourceConfig) {
 		this.baseDirectory = baseDirectory;
 		this.chroot = chroot;
@@ -119,7 +125,15 @@ public class TomcatResourceServlet extends DefaultServlet {
 				? (int) resources.getCacheMaxSize() / 20 : resourceConfig.maxCacheEntrySize();
 
 		// and tweak org.apache.catalina.servlets.DefaultServlet.resources
-		resources = new OsgiStandardRoot(this.resources, baseDirectory, chroot, osgiScopedServletContext, maxEntrySize * 1024);
+		int maxMetadataEntries = resourceConfig == null || resourceConfig.maxCacheEntries() == null
+				? ResourceMetadataCache.DEFAULT_MAX_ENTRIES : resourceConfig.maxCacheEntries();
+		long metadataTtl = ResourceMetadataCache.ttl(resourceConfig);
+		ContentCache contentCache = ContentCache.configureShared(resourceConfig);
+		resources = new OsgiStandardRoot(this.resources, baseDirectory, chroot, osgiScopedServletContext,
+				maxEntrySize * 1024, maxMetadataEntries, metadataTtl, contentCache);
+		if (baseDirectory == null) {
+			compression = ResourceCompression.configure(osgiScopedServletContext, resourceConfig, contentCache);
+		}
 
 		resources.setCachingAllowed(true);
 		// org.apache.catalina.webresources.Cache.maxSize
@@ -173,6 +187,14 @@ public class TomcatResourceServlet extends DefaultServlet {
 		}
 
 		if (requestURI == null || !requestURI.endsWith("/")) {
+			if (compression != null && !included && resources instanceof OsgiStandardRoot) {
+				OsgiStandardRoot root = (OsgiStandardRoot) resources;
+				String relativePath = getRelativePath(request, false);
+				if (relativePath != null && relativePath.startsWith("/")
+						&& compression.handle(request, response, root.getMetadataCache(), root.getFullPath(relativePath))) {
+					return;
+				}
+			}
 			super.serveResource(request, response, content, inputEncoding);
 			return;
 		}
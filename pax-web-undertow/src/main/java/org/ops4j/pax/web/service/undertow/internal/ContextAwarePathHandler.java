@@ -16,6 +16,7 @@
 package org.ops4j.pax.web.service.undertow.internal;
 
 import java.util.Dictionary;
+import java.util.concurrent.ConcurrentHashMap;
 import javax.servlet.Servlet;
 
 import io.undertow.Handlers;
@@ -23,8 +24,6 @@ import io.undertow.server.HttpHandler;
 import io.undertow.server.HttpServerExchange;
 import io.undertow.server.handlers.PathHandler;
 import io.undertow.server.handlers.ResponseCodeHandler;
-import io.undertow.server.handlers.cache.LRUCache;
-import org.ops4j.pax.web.annotations.Review;
 import org.osgi.service.http.HttpContext;
 
 /**
@@ -36,13 +35,15 @@ import org.osgi.service.http.HttpContext;
  * the path from {@code etc/undertow.xml} configuration - assuming it's configured and user know what (s)he's
  * doing.</p>
  * <p>It's a direct fork of original {@link PathHandler} but with different {@link io.undertow.util.PathMatcher}</p>
+ * <p>Matches may be cached in bounded {@link PathMatchCache} (sized with
+ * {@link org.ops4j.pax.web.service.PaxWebConfig#PID_CFG_SERVER_PATH_MATCH_CACHE_SIZE}), which is invalidated
+ * whenever the registered paths change.</p>
  */
-@Review("Is it needed?")
 public class ContextAwarePathHandler extends PathHandler {
 
 	private final PathMatcher<HttpHandler> pathMatcher = new PathMatcher<>();
 
-	private final LRUCache<String, PathMatcher.PathMatch<HttpHandler>> cache;
+	private final PathMatchCache<HttpHandler> cache;
 
 	public ContextAwarePathHandler(final HttpHandler defaultHandler) {
 		this(0);
@@ -60,7 +61,7 @@ public class ContextAwarePathHandler extends PathHandler {
 
 	public ContextAwarePathHandler(int cacheSize) {
 		if (cacheSize > 0) {
-			cache = new LRUCache<>(cacheSize, -1, true);
+			cache = new PathMatchCache<>(cacheSize);
 		} else {
 			cache = null;
 		}
@@ -68,21 +69,24 @@ public class ContextAwarePathHandler extends PathHandler {
 
 	@Override
 	public void handleRequest(HttpServerExchange exchange) throws Exception {
+		String path = exchange.getRelativePath();
 		PathMatcher.PathMatch<HttpHandler> match = null;
-		boolean hit = false;
+		ConcurrentHashMap<String, PathMatcher.PathMatch<HttpHandler>> generation = null;
 		if (cache != null) {
-			match = cache.get(exchange.getRelativePath());
-			hit = true;
+			generation = cache.generation();
+			match = cache.get(generation, path);
 		}
 		if (match == null) {
-			match = pathMatcher.match(exchange.getRelativePath());
-		}
-		if (match.getValue() == null) {
-			ResponseCodeHandler.HANDLE_404.handleRequest(exchange);
-			return;
-		}
-		if (hit) {
-			cache.add(exchange.getRelativePath(), match);
+			match = pathMatcher.match(path);
+			if (match.getValue() == null) {
+				ResponseCodeHandler.HANDLE_404.handleRequest(exchange);
+				return;
+			}
+			if (generation != null) {
+				// stored in the generation obtained before matching - if paths were changed in the meantime,
+				// this generation is already discarded
+				cache.put(generation, path, match);
+			}
 		}
 		exchange.setRelativePath(match.getRemaining());
 		if (exchange.getResolvedPath().isEmpty()) {
@@ -134,6 +138,7 @@ public class ContextAwarePathHandler extends PathHandler {
 	public synchronized PathHandler addPrefixPath(final String path, final HttpHandler handler) {
 		Handlers.handlerNotNull(handler);
 		pathMatcher.addPrefixPath(path, handler);
+		invalidateCache();
 		return this;
 	}
 
@@ -149,6 +154,7 @@ public class ContextAwarePathHandler extends PathHandler {
 	public synchronized PathHandler addExactPath(final String path, final HttpHandler handler) {
 		Handlers.handlerNotNull(handler);
 		pathMatcher.addExactPath(path, handler);
+		invalidateCache();
 		return this;
 	}
 
@@ -159,16 +165,19 @@ public class ContextAwarePathHandler extends PathHandler {
 
 	public synchronized PathHandler removePrefixPath(final String path) {
 		pathMatcher.removePrefixPath(path);
+		invalidateCache();
 		return this;
 	}
 
 	public synchronized PathHandler removeExactPath(final String path) {
 		pathMatcher.removeExactPath(path);
+		invalidateCache();
 		return this;
 	}
 
 	public synchronized PathHandler clearPaths() {
 		pathMatcher.clearPaths();
+		invalidateCache();
 		return this;
 	}
 
@@ -176,4 +185,26 @@ public class ContextAwarePathHandler extends PathHandler {
 		return pathMatcher.getDefaultHandler();
 	}
 
+	/**
+	 * Number of requests for which the match was found in the cache.
+	 * @return
+	 */
+	public long getCacheHits() {
+		return cache == null ? 0L : cache.getHits();
+	}
+
+	/**
+	 * Number of requests for which the match had to be calculated using {@link PathMatcher}.
+	 * @return
+	 */
+	public long getCacheMisses() {
+		return cache == null ? 0L : cache.getMisses();
+	}
+
+	private void invalidateCache() {
+		if (cache != null) {
+			cache.invalidate();
+		}
+	}
+
 }
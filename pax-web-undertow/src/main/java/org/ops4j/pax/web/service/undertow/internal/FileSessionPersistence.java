@@ -17,62 +17,345 @@ package org.ops4j.pax.web.service.undertow.internal;
 
 import java.io.BufferedInputStream;
 import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
+import java.io.ObjectStreamClass;
+import java.io.RandomAccessFile;
+import java.io.UnsupportedEncodingException;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.AbstractMap;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Date;
+import java.util.HashSet;
 import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.CRC32;
 
+import io.undertow.server.HandlerWrapper;
+import io.undertow.server.HttpServerExchange;
+import io.undertow.server.session.Session;
+import io.undertow.server.session.SessionListener;
 import io.undertow.servlet.api.SessionPersistenceManager;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+/**
+ * <p>{@link SessionPersistenceManager} that keeps each session of a deployment in separate file inside
+ * {@code <sessions directory>/<deployment name>/} directory - similar to Jetty's {@code FileSessionDataStore}
+ * and Tomcat's {@code FileStore} used with the same {@code org.ops4j.pax.web.session.storedirectory}.</p>
+ *
+ * <p>Undertow passes all the active sessions when deployment is stopped, but:<ul>
+ *     <li>only the sessions whose attributes have changed are written again - for other sessions only the
+ *     expiration time is updated in existing file,</li>
+ *     <li>each file is written atomically (using temporary file), so interrupted persistence doesn't corrupt
+ *     previously stored sessions,</li>
+ *     <li>attributes of loaded sessions are deserialized only when the session is restored (Undertow does it
+ *     when the session is accessed for the first time) and files of sessions which were not accessed at all
+ *     are kept until they expire,</li>
+ *     <li>expired sessions are skipped without deserializing their attributes,</li>
+ *     <li>session that can't be serialized/deserialized doesn't prevent persistence of other sessions.</li>
+ * </ul></p>
+ *
+ * <p>Undertow's {@link SessionPersistenceManager} API is called only when the deployment is stopped, so to
+ * keep the files up to date between the stops, {@link #sessionListener(String)} tracks sessions which were
+ * created, changed (attribute added, replaced or removed) or destroyed and {@link #handlerWrapper(String)}
+ * writes the changed sessions when the request (exchange) that changed them completes. Changes of the objects
+ * already stored in the session (without calling {@code setAttribute()} again) are written only on graceful
+ * stop of the deployment - just like with Jetty's {@code FileSessionDataStore}.</p>
+ *
+ * <p>Single file per deployment used before (one serialized map of all the sessions) is still loaded if found.</p>
+ */
 public class FileSessionPersistence implements SessionPersistenceManager {
 
 	public static final Logger LOG = LoggerFactory.getLogger(FileSessionPersistence.class);
 
+	private static final int VERSION = 1;
+	private static final String SUFFIX = ".session";
+
+	/** Offset of expiration time in the session file (after version) */
+	private static final int EXPIRATION_OFFSET = 4;
+
 	private final File sessionsDir;
 
+	/** Sessions loaded (but maybe not yet restored) per deployment, keyed by file name */
+	private final Map<String, Map<String, LazySessionData>> loadedSessions = new ConcurrentHashMap<>();
+
+	/** Sessions per deployment, which were changed since they were last written, keyed by session ID */
+	private final Map<String, Map<String, Session>> changedSessions = new ConcurrentHashMap<>();
+
 	public FileSessionPersistence(File sessionsDir) {
 		this.sessionsDir = sessionsDir;
 	}
 
 	@Override
 	public void persistSessions(String deploymentName, Map<String, PersistentSession> sessionData) {
-		if (deploymentName == null || "".equals(deploymentName.trim())) {
-			deploymentName = "_ROOT_deployment";
+		deploymentName = deploymentName(deploymentName);
+		File dir = new File(sessionsDir, deploymentName);
+		if (dir.isFile() && !dir.delete()) {
+			// single file with all the sessions persisted by previous version
+			LOG.warn("Can't remove {}, sessions for deployment {} won't be persisted", dir, deploymentName);
+			return;
+		}
+		if (sessionData.isEmpty()) {
+			LOG.debug("No sessions to persist for deployment " + deploymentName);
+		}
+		if (!dir.isDirectory() && !sessionData.isEmpty() && !dir.mkdirs()) {
+			LOG.warn("Can't create {}, sessions for deployment {} won't be persisted", dir, deploymentName);
+			return;
 		}
-		Map<String, Object> map = new LinkedHashMap<>();
+
+		changedSessions.remove(deploymentName);
+		Map<String, LazySessionData> loaded = loadedSessions.remove(deploymentName);
+		Set<String> fileNames = new HashSet<>();
+		int written = 0;
 		for (Map.Entry<String, PersistentSession> e : sessionData.entrySet()) {
-			Map<String, Object> mps = new LinkedHashMap<>();
-			mps.put("expiration", e.getValue().getExpiration().getTime());
-			mps.put("data", e.getValue().getSessionData());
-			map.put(e.getKey(), mps);
-		}
-		if (sessionData.size() > 0) {
-			try (ObjectOutputStream oos = new ObjectOutputStream(new BufferedOutputStream(new FileOutputStream(new File(sessionsDir, deploymentName))))) {
-				oos.writeObject(map);
-			} catch (Exception e) {
-				LOG.info("Error persisting sessions for deployment " + deploymentName, e);
+			String fileName = fileName(e.getKey());
+			fileNames.add(fileName);
+			try {
+				if (store(new File(dir, fileName), e.getKey(), e.getValue())) {
+					written++;
+				}
+			} catch (Exception ex) {
+				LOG.info("Error persisting session " + e.getKey() + " for deployment " + deploymentName, ex);
 			}
-		} else {
-			LOG.debug("No sessions to persist for deployment " + deploymentName);
 		}
+
+		// sessions which are no longer available - unless they were not restored at all
+		long now = System.currentTimeMillis();
+		File[] files = dir.listFiles((d, name) -> name.endsWith(SUFFIX) && !fileNames.contains(name));
+		if (files != null) {
+			for (File f : files) {
+				LazySessionData data = loaded == null ? null : loaded.get(f.getName());
+				if (data != null && !data.isRestored() && data.expiration >= now) {
+					continue;
+				}
+				if (!f.delete()) {
+					LOG.debug("Can't remove {}", f);
+				}
+			}
+		}
+		LOG.debug("Persisted {} sessions for deployment {} ({} changed)", sessionData.size(), deploymentName, written);
 	}
 
 	@Override
-	@SuppressWarnings("unchecked")
 	public Map<String, PersistentSession> loadSessionAttributes(String deploymentName, ClassLoader classLoader) {
-		if (deploymentName == null || "".equals(deploymentName.trim())) {
-			deploymentName = "_ROOT_deployment";
-		}
+		deploymentName = deploymentName(deploymentName);
 		Map<String, PersistentSession> sessionData = new LinkedHashMap<>();
-		try (ObjectInputStream ois = new ObjectInputStream(new BufferedInputStream(new FileInputStream(new File(sessionsDir, deploymentName))))) {
-			Map<String, Map<String, Object>> map = (Map<String, Map<String, Object>>) ois.readObject();
+		File dir = new File(sessionsDir, deploymentName);
+		if (dir.isFile()) {
+			loadLegacySessions(dir, deploymentName, classLoader, sessionData);
+			return sessionData;
+		}
+		File[] files = dir.listFiles((d, name) -> name.endsWith(SUFFIX));
+		if (files == null) {
+			return sessionData;
+		}
+
+		Map<String, LazySessionData> loaded = new ConcurrentHashMap<>();
+		long now = System.currentTimeMillis();
+		for (File f : files) {
+			try (DataInputStream dis = new DataInputStream(new BufferedInputStream(new FileInputStream(f)))) {
+				if (dis.readInt() != VERSION) {
+					LOG.warn("Unknown format of session file {}", f);
+					continue;
+				}
+				long expiration = dis.readLong();
+				String id = dis.readUTF();
+				if (expiration < now) {
+					// no need to even read the attributes
+					dis.close();
+					if (!f.delete()) {
+						LOG.debug("Can't remove expired session file {}", f);
+					}
+					continue;
+				}
+				LazySessionData data = new LazySessionData(f, expiration, classLoader);
+				loaded.put(f.getName(), data);
+				sessionData.put(id, new PersistentSession(new Date(expiration), data));
+			} catch (Exception e) {
+				LOG.info("Error loading session from " + f + " for deployment " + deploymentName, e);
+			}
+		}
+		loadedSessions.put(deploymentName, loaded);
+		return sessionData;
+	}
+
+	@Override
+	public void clear(String deploymentName) {
+		changedSessions.remove(deploymentName(deploymentName));
+		loadedSessions.remove(deploymentName(deploymentName));
+		File dir = new File(sessionsDir, deploymentName(deploymentName));
+		File[] files = dir.listFiles((d, name) -> name.endsWith(SUFFIX));
+		if (files != null) {
+			for (File f : files) {
+				f.delete();
+			}
+		}
+		dir.delete();
+	}
+
+	/**
+	 * Returns {@link SessionListener} to be registered for a deployment, which remembers the sessions that
+	 * have to be written (or removed) by {@link #storeChangedSessions(String)}.
+	 * @param deploymentName
+	 * @return
+	 */
+	public SessionListener sessionListener(String deploymentName) {
+		return new ChangedSessionsListener(deploymentName(deploymentName));
+	}
+
+	/**
+	 * Returns {@link HandlerWrapper} for a deployment, which writes the sessions changed during the request
+	 * when the exchange is completed.
+	 * @param deploymentName
+	 * @return
+	 */
+	public HandlerWrapper handlerWrapper(String deploymentName) {
+		String name = deploymentName(deploymentName);
+		return handler -> exchange -> {
+			exchange.addExchangeCompleteListener((ex, nextListener) -> {
+				try {
+					storeChangedSessions(name);
+				} finally {
+					nextListener.proceed();
+				}
+			});
+			handler.handleRequest(exchange);
+		};
+	}
+
+	/**
+	 * Writes sessions of given deployment, which were changed since they were last written.
+	 * @param deploymentName
+	 */
+	void storeChangedSessions(String deploymentName) {
+		deploymentName = deploymentName(deploymentName);
+		Map<String, Session> changed = changedSessions.get(deploymentName);
+		if (changed == null || changed.isEmpty()) {
+			return;
+		}
+		File dir = new File(sessionsDir, deploymentName);
+		if (!dir.isDirectory() && !dir.mkdirs()) {
+			LOG.warn("Can't create {}, sessions for deployment {} won't be persisted", dir, deploymentName);
+			return;
+		}
+		for (String id : changed.keySet()) {
+			Session session = changed.remove(id);
+			if (session == null) {
+				// written by concurrently completed exchange
+				continue;
+			}
+			File file = new File(dir, fileName(id));
+			// the lock ensures that later snapshot of the session's attributes is written later
+			synchronized (session) {
+				Map<String, Object> attributes = new LinkedHashMap<>();
+				long expiration;
+				try {
+					for (String name : session.getAttributeNames()) {
+						attributes.put(name, session.getAttribute(name));
+					}
+					expiration = session.getLastAccessedTime() + session.getMaxInactiveInterval() * 1000L;
+				} catch (IllegalStateException e) {
+					// invalidated in the meantime
+					if (!file.delete()) {
+						LOG.debug("Can't remove {}", file);
+					}
+					continue;
+				}
+				try {
+					store(file, id, new PersistentSession(new Date(expiration), attributes));
+				} catch (Exception ex) {
+					LOG.info("Error persisting session " + id + " for deployment " + deploymentName, ex);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Stores single session in a file, but if the file contains the same attributes, only expiration time is
+	 * updated.
+	 * @param file
+	 * @param id
+	 * @param session
+	 * @return {@code true} if the attributes were written
+	 * @throws IOException
+	 */
+	private boolean store(File file, String id, PersistentSession session) throws IOException {
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		try (ObjectOutputStream oos = new ObjectOutputStream(baos)) {
+			oos.writeObject(new LinkedHashMap<>(session.getSessionData()));
+		}
+		byte[] data = baos.toByteArray();
+		long crc = crc(data);
+		long expiration = session.getExpiration().getTime();
+
+		if (file.isFile() && sameData(file, id, crc, data)) {
+			try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+				raf.seek(EXPIRATION_OFFSET);
+				raf.writeLong(expiration);
+			}
+			return false;
+		}
+
+		File tmp = new File(file.getParentFile(), file.getName() + ".tmp");
+		try (DataOutputStream dos = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)))) {
+			dos.writeInt(VERSION);
+			dos.writeLong(expiration);
+			dos.writeUTF(id);
+			dos.writeLong(crc);
+			dos.writeInt(data.length);
+			dos.write(data);
+		}
+		try {
+			Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} catch (IOException e) {
+			Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+		}
+		return true;
+	}
+
+	/**
+	 * Checks whether the file contains given session with the same attributes. Checksum and length from the
+	 * header are only used to detect changed attributes quickly - if they match, the attributes are compared
+	 * byte by byte.
+	 */
+	private boolean sameData(File file, String id, long crc, byte[] data) {
+		try (DataInputStream dis = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+			if (dis.readInt() != VERSION) {
+				return false;
+			}
+			dis.readLong();
+			if (!id.equals(dis.readUTF()) || dis.readLong() != crc || dis.readInt() != data.length) {
+				return false;
+			}
+			byte[] stored = new byte[data.length];
+			dis.readFully(stored);
+			return Arrays.equals(stored, data);
+		} catch (IOException e) {
+			return false;
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	private void loadLegacySessions(File file, String deploymentName, ClassLoader classLoader, Map<String, PersistentSession> sessionData) {
+		try (InputStream is = new BufferedInputStream(new FileInputStream(file))) {
+			Map<String, Map<String, Object>> map = (Map<String, Map<String, Object>>) readObject(is, classLoader);
 			for (Map.Entry<String, Map<String, Object>> e : map.entrySet()) {
 				long expiration = (Long) e.getValue().get("expiration");
 				Map<String, Object> data = (Map<String, Object>) e.getValue().get("data");
@@ -83,12 +366,170 @@ public class FileSessionPersistence implements SessionPersistenceManager {
 		} catch (Exception e) {
 			LOG.info("Error loading sessions for deployment " + deploymentName, e);
 		}
-		return sessionData;
 	}
 
-	@Override
-	public void clear(String deploymentName) {
-		new File(sessionsDir, deploymentName).delete();
+	private static Object readObject(InputStream is, ClassLoader classLoader) throws IOException, ClassNotFoundException {
+		try (ObjectInputStream ois = new ObjectInputStream(is) {
+			@Override
+			protected Class<?> resolveClass(ObjectStreamClass desc) throws IOException, ClassNotFoundException {
+				// session attributes are usually instances of the classes from the deployment
+				if (classLoader != null) {
+					try {
+						return Class.forName(desc.getName(), false, classLoader);
+					} catch (ClassNotFoundException ignored) {
+					}
+				}
+				return super.resolveClass(desc);
+			}
+		}) {
+			return ois.readObject();
+		}
+	}
+
+	private static String deploymentName(String deploymentName) {
+		if (deploymentName == null || "".equals(deploymentName.trim())) {
+			return "_ROOT_deployment";
+		}
+		return deploymentName;
+	}
+
+	private static String fileName(String sessionId) {
+		try {
+			return URLEncoder.encode(sessionId, StandardCharsets.UTF_8.name()) + SUFFIX;
+		} catch (UnsupportedEncodingException e) {
+			throw new IllegalStateException(e.getMessage(), e);
+		}
+	}
+
+	private static long crc(byte[] data) {
+		CRC32 crc = new CRC32();
+		crc.update(data, 0, data.length);
+		return crc.getValue();
+	}
+
+	/**
+	 * {@link SessionListener} that collects sessions to be written after the exchange is completed and removes
+	 * the files of destroyed sessions. Sessions destroyed because of undeployment are written by
+	 * {@link #persistSessions(String, Map)}.
+	 */
+	private class ChangedSessionsListener implements SessionListener {
+
+		private final String deploymentName;
+
+		ChangedSessionsListener(String deploymentName) {
+			this.deploymentName = deploymentName;
+		}
+
+		@Override
+		public void sessionCreated(Session session, HttpServerExchange exchange) {
+			changed(session);
+		}
+
+		@Override
+		public void sessionDestroyed(Session session, HttpServerExchange exchange, SessionDestroyedReason reason) {
+			if (reason == SessionDestroyedReason.UNDEPLOY) {
+				return;
+			}
+			Map<String, Session> changed = changedSessions.get(deploymentName);
+			if (changed != null) {
+				changed.remove(session.getId());
+			}
+			remove(session.getId());
+		}
+
+		@Override
+		public void attributeAdded(Session session, String name, Object value) {
+			changed(session);
+		}
+
+		@Override
+		public void attributeUpdated(Session session, String name, Object newValue, Object oldValue) {
+			changed(session);
+		}
+
+		@Override
+		public void attributeRemoved(Session session, String name, Object oldValue) {
+			changed(session);
+		}
+
+		@Override
+		public void sessionIdChanged(Session session, String oldSessionId) {
+			Map<String, Session> changed = changedSessions.get(deploymentName);
+			if (changed != null) {
+				changed.remove(oldSessionId);
+			}
+			remove(oldSessionId);
+			changed(session);
+		}
+
+		private void changed(Session session) {
+			changedSessions.computeIfAbsent(deploymentName, n -> new ConcurrentHashMap<>())
+					.put(session.getId(), session);
+		}
+
+		private void remove(String id) {
+			File file = new File(new File(sessionsDir, deploymentName), fileName(id));
+			if (file.isFile() && !file.delete()) {
+				LOG.debug("Can't remove {}", file);
+			}
+		}
+	}
+
+	/**
+	 * Attributes of persisted session, which are read from the file only when needed.
+	 */
+	private static class LazySessionData extends AbstractMap<String, Object> {
+
+		private final File file;
+		private final long expiration;
+		private final ClassLoader classLoader;
+
+		private volatile Map<String, Object> attributes;
+
+		LazySessionData(File file, long expiration, ClassLoader classLoader) {
+			this.file = file;
+			this.expiration = expiration;
+			this.classLoader = classLoader;
+		}
+
+		public boolean isRestored() {
+			return attributes != null;
+		}
+
+		@Override
+		public Set<Entry<String, Object>> entrySet() {
+			Map<String, Object> result = attributes;
+			if (result == null) {
+				synchronized (this) {
+					result = attributes;
+					if (result == null) {
+						result = read();
+						attributes = result;
+					}
+				}
+			}
+			return result.entrySet();
+		}
+
+		@SuppressWarnings("unchecked")
+		private Map<String, Object> read() {
+			try (DataInputStream dis = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+				dis.readInt();
+				dis.readLong();
+				dis.readUTF();
+				long crc = dis.readLong();
+				byte[] data = new byte[dis.readInt()];
+				dis.readFully(data);
+				if (crc(data) != crc) {
+					LOG.warn("Session file {} is corrupted", file);
+					return Collections.emptyMap();
+				}
+				return (Map<String, Object>) readObject(new ByteArrayInputStream(data), classLoader);
+			} catch (Exception e) {
+				LOG.info("Error loading session attributes from " + file, e);
+				return Collections.emptyMap();
+			}
+		}
 	}
 
 }
@@ -0,0 +1,66 @@
+/*
+ * Copyright 2023 OPS4J.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.web.service.undertow.internal;
+
+import io.undertow.server.HttpHandler;
+import io.undertow.server.HttpServerExchange;
+import io.undertow.util.StatusCodes;
+import org.ops4j.pax.web.service.spi.servlet.LazyStartGate;
+
+/**
+ * {@link HttpHandler} registered in {@link io.undertow.server.handlers.PathHandler} for a context which is
+ * started lazily. Before the deployment is started, it's a placeholder that starts it with the first request. Then
+ * it passes the requests to the handler of the deployment (or to {@link RedeployGateHandler}) and counts them, so
+ * the deployment can be stopped when it's idle.
+ */
+class LazyStartHandler implements HttpHandler {
+
+	private final LazyStartGate gate;
+
+	/** Handler of currently started deployment */
+	private volatile HttpHandler next;
+
+	LazyStartHandler(LazyStartGate gate) {
+		this.gate = gate;
+	}
+
+	@Override
+	public void handleRequest(HttpServerExchange exchange) throws Exception {
+		if (exchange.isInIoThread()) {
+			// the deployment is started in configuration thread and we can't block IO thread waiting for it
+			exchange.dispatch(this);
+			return;
+		}
+		boolean available = gate.enter();
+		// the exchange may outlive this method (async servlets), so the request is counted until it's complete
+		exchange.addExchangeCompleteListener((ex, nextListener) -> {
+			gate.exit();
+			nextListener.proceed();
+		});
+		HttpHandler handler = next;
+		if (!available || handler == null) {
+			exchange.setStatusCode(available ? StatusCodes.NOT_FOUND : StatusCodes.SERVICE_UNAVAILABLE);
+			exchange.endExchange();
+			return;
+		}
+		handler.handleRequest(exchange);
+	}
+
+	public void setNext(HttpHandler next) {
+		this.next = next;
+	}
+
+}
@@ -0,0 +1,117 @@
+/*
+ * Copyright 2023 OPS4J.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.web.service.undertow.internal;
+
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * <p>Bounded cache of {@link PathMatcher.PathMatch path matches} used by {@link ContextAwarePathHandler}.</p>
+ *
+ * <p>Reads never lock - the entries are kept in a {@link ConcurrentHashMap} which is <em>replaced</em> (not
+ * cleared) on invalidation. Callers should obtain the {@link #generation()} before matching the path and
+ * store the match in that generation, so a match calculated using stale {@link PathMatcher} state never
+ * lands in the current generation.</p>
+ *
+ * <p>When the cache is full, arbitrary entry is evicted - we don't need LRU semantics here, because the number
+ * of distinct, frequently requested paths is usually small compared to the size of the cache.</p>
+ *
+ * @param <T>
+ */
+public final class PathMatchCache<T> {
+
+	private final int maxSize;
+
+	private volatile ConcurrentHashMap<String, PathMatcher.PathMatch<T>> entries;
+
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+
+	public PathMatchCache(int maxSize) {
+		if (maxSize <= 0) {
+			throw new IllegalArgumentException("Path match cache size should be greater than 0");
+		}
+		this.maxSize = maxSize;
+		this.entries = new ConcurrentHashMap<>();
+	}
+
+	/**
+	 * Returns current generation of cached entries to be used with {@link #get} and {@link #put}.
+	 * @return
+	 */
+	public ConcurrentHashMap<String, PathMatcher.PathMatch<T>> generation() {
+		return entries;
+	}
+
+	/**
+	 * Gets cached match for a path from given generation, updating hit/miss counters.
+	 * @param generation
+	 * @param path
+	 * @return
+	 */
+	public PathMatcher.PathMatch<T> get(ConcurrentHashMap<String, PathMatcher.PathMatch<T>> generation, String path) {
+		PathMatcher.PathMatch<T> match = generation.get(path);
+		if (match != null) {
+			hits.increment();
+		} else {
+			misses.increment();
+		}
+		return match;
+	}
+
+	/**
+	 * Stores a match for a path in given generation, evicting arbitrary entry if the cache is full.
+	 * @param generation
+	 * @param path
+	 * @param match
+	 */
+	public void put(ConcurrentHashMap<String, PathMatcher.PathMatch<T>> generation, String path,
+			PathMatcher.PathMatch<T> match) {
+		if (generation.mappingCount() >= maxSize) {
+			Iterator<String> it = generation.keySet().iterator();
+			if (it.hasNext()) {
+				it.next();
+				it.remove();
+			}
+		}
+		generation.put(path, match);
+	}
+
+	/**
+	 * Drops all cached matches. Should be called after any change to the paths of {@link PathMatcher}.
+	 */
+	public void invalidate() {
+		entries = new ConcurrentHashMap<>();
+	}
+
+	public int getMaxSize() {
+		return maxSize;
+	}
+
+	public int size() {
+		return entries.size();
+	}
+
+	public long getHits() {
+		return hits.sum();
+	}
+
+	public long getMisses() {
+		return misses.sum();
+	}
+
+}
@@ -15,43 +15,44 @@
  */
 package org.ops4j.pax.web.service.undertow.internal;
 
-import java.util.Comparator;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
-import java.util.Set;
-import java.util.TreeSet;
-import java.util.concurrent.ConcurrentMap;
 
 import io.undertow.UndertowLogger;
 import io.undertow.UndertowMessages;
 import io.undertow.server.handlers.resource.ResourceHandler;
-import io.undertow.util.CopyOnWriteMap;
-import io.undertow.util.SubstringMap;
 import io.undertow.util.URLUtils;
-import org.ops4j.pax.web.annotations.Review;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-@Review("Is it needed?")
+/**
+ * <p>Path matcher used by {@link ContextAwarePathHandler}, which handles collisions of the default ({@code "/"})
+ * handlers.</p>
+ *
+ * <p>Prefix paths are kept in an immutable trie where each edge is single path segment (text between slashes).
+ * Whole state of the matcher is replaced atomically on any change (changes are rare - they happen when contexts
+ * are added or removed), so {@link #match(String)} never locks and walks the request path only once, without
+ * creating substrings for the candidate prefixes.</p>
+ *
+ * @param <T>
+ */
 public class PathMatcher<T> {
 
 	public static final Logger LOG = LoggerFactory.getLogger(PathMatcher.class);
 
 	private static final String STRING_PATH_SEPARATOR = "/";
 
-	private volatile T defaultHandler;
-	private final SubstringMap<T> paths = new SubstringMap<>();
-	private final ConcurrentMap<String, T> exactPathMatches = new CopyOnWriteMap<>();
-
-	/**
-	 * lengths of all registered paths
-	 */
-	private volatile int[] lengths = {};
+	/** Current, immutable state of the matcher. Replaced under {@code synchronized} by mutating methods. */
+	private volatile Snapshot<T> snapshot;
 
 	public PathMatcher(final T defaultHandler) {
-		this.defaultHandler = defaultHandler;
+		this.snapshot = new Snapshot<>(defaultHandler, Collections.emptyMap(), Collections.emptyMap());
 	}
 
 	public PathMatcher() {
+		this(null);
 	}
 
 	/**
@@ -60,8 +61,10 @@ public class PathMatcher<T> {
 	 * @return The match match. This will never be null, however if none matched its value field will be
 	 */
 	public PathMatcher.PathMatch<T> match(String path) {
-		if (!exactPathMatches.isEmpty()) {
-			T match = getExactPath(path);
+		final Snapshot<T> snapshot = this.snapshot;
+
+		if (!snapshot.exactPaths.isEmpty()) {
+			T match = snapshot.exactPaths.get(URLUtils.normalizeSlashes(path));
 			if (match != null) {
 				UndertowLogger.REQUEST_LOGGER.debugf("Matched exact path %s", path);
 				return new PathMatcher.PathMatch<>(path, "", match);
@@ -69,30 +72,47 @@ public class PathMatcher<T> {
 		}
 
 		int length = path.length();
-		final int[] lengths = this.lengths;
-		for (int i = 0; i < lengths.length; ++i) {
-			int pathLength = lengths[i];
-			if (pathLength == length) {
-				SubstringMap.SubstringMatch<T> next = paths.get(path, length);
-				if (next != null) {
-					UndertowLogger.REQUEST_LOGGER.debugf("Matched prefix path %s for path %s", next.getKey(), path);
-					return new PathMatcher.PathMatch<>(path, "", next.getValue());
-				}
-			} else if (pathLength < length) {
-				char c = path.charAt(pathLength);
-				if (c == '/') {
-
-					//String part = path.substring(0, pathLength);
-					SubstringMap.SubstringMatch<T> next = paths.get(path, pathLength);
-					if (next != null) {
-						UndertowLogger.REQUEST_LOGGER.debugf("Matched prefix path %s for path %s", next.getKey(), path);
-						return new PathMatcher.PathMatch<>(next.getKey(), path.substring(pathLength), next.getValue());
+		if (snapshot.root != null && length > 0 && path.charAt(0) == '/') {
+			Node<T> node = snapshot.root;
+			Node<T> best = null;
+			int bestEnd = -1;
+			int start = 1;
+			while (true) {
+				// single pass over the segment - find its end and calculate String.hashCode() compatible hash
+				int end = start;
+				int h = 0;
+				while (end < length) {
+					char c = path.charAt(end);
+					if (c == '/') {
+						break;
 					}
+					h = 31 * h + c;
+					end++;
 				}
+				node = node.child(path, start, end, h);
+				if (node == null) {
+					break;
+				}
+				if (node.value != null) {
+					best = node;
+					bestEnd = end;
+				}
+				if (end == length || node.children == null) {
+					break;
+				}
+				start = end + 1;
+			}
+			if (best != null) {
+				UndertowLogger.REQUEST_LOGGER.debugf("Matched prefix path %s for path %s", best.path, path);
+				if (bestEnd == length) {
+					return new PathMatcher.PathMatch<>(path, "", best.value);
+				}
+				return new PathMatcher.PathMatch<>(best.path, path.substring(bestEnd), best.value);
 			}
 		}
+
 		UndertowLogger.REQUEST_LOGGER.debugf("Matched default handler path %s", path);
-		return new PathMatcher.PathMatch<>("", path, defaultHandler);
+		return new PathMatcher.PathMatch<>("", path, snapshot.defaultHandler);
 	}
 
 	/**
@@ -113,81 +133,64 @@ public class PathMatcher<T> {
 		}
 
 		final String normalizedPath = URLUtils.normalizeSlashes(path);
+		final Snapshot<T> current = this.snapshot;
 
 		if (PathMatcher.STRING_PATH_SEPARATOR.equals(normalizedPath)) {
-			if (this.defaultHandler == null) {
+			T defaultHandler = current.defaultHandler;
+			if (defaultHandler == null) {
 				// it was null, so just use new one
-				this.defaultHandler = handler;
+				defaultHandler = handler;
 			} else {
 				if (handler instanceof ResourceHandler) {
 					// new one is not a org.ops4j.pax.web.service.undertow.internal.Context, so use it
-					this.defaultHandler = handler;
+					defaultHandler = handler;
 				} else {
 					// there are two default handlers which come from different (?) Contexts, so we
 					// have a collision, but let's assume user knows what (s)he's doing
-					if (this.defaultHandler != handler && !(this.defaultHandler instanceof ResourceHandler)) {
+					if (defaultHandler != handler && !(defaultHandler instanceof ResourceHandler)) {
 						LOG.warn("Overwriting existing default context {} with a new one {}",
-								this.defaultHandler, handler);
-						this.defaultHandler = handler;
+								defaultHandler, handler);
+						defaultHandler = handler;
 					}
 				}
 			}
+			this.snapshot = new Snapshot<>(defaultHandler, current.prefixPaths, current.exactPaths);
 			return this;
 		}
 
+		Map<String, T> paths = new LinkedHashMap<>(current.prefixPaths);
 		paths.put(normalizedPath, handler);
-
-		buildLengths();
+		this.snapshot = new Snapshot<>(current.defaultHandler, paths, current.exactPaths);
 		return this;
 	}
 
-
 	public synchronized PathMatcher addExactPath(final String path, final T handler) {
 		if (path.isEmpty()) {
 			throw UndertowMessages.MESSAGES.pathMustBeSpecified();
 		}
-		exactPathMatches.put(URLUtils.normalizeSlashes(path), handler);
+		final Snapshot<T> current = this.snapshot;
+		Map<String, T> paths = new HashMap<>(current.exactPaths);
+		paths.put(URLUtils.normalizeSlashes(path), handler);
+		this.snapshot = new Snapshot<>(current.defaultHandler, current.prefixPaths, paths);
 		return this;
 	}
 
 	public T getExactPath(final String path) {
-		return exactPathMatches.get(URLUtils.normalizeSlashes(path));
+		return snapshot.exactPaths.get(URLUtils.normalizeSlashes(path));
 	}
 
 	public T getPrefixPath(final String path) {
-
 		final String normalizedPath = URLUtils.normalizeSlashes(path);
+		final Snapshot<T> snapshot = this.snapshot;
 
 		// enable the prefix path mechanism to return the default handler
-		SubstringMap.SubstringMatch<T> match = paths.get(normalizedPath);
+		T match = snapshot.prefixPaths.get(normalizedPath);
 		if (PathMatcher.STRING_PATH_SEPARATOR.equals(normalizedPath) && match == null) {
-			return this.defaultHandler;
-		}
-		if (match == null) {
-			return null;
+			return snapshot.defaultHandler;
 		}
 
 		// return the value for the given path
-		return match.getValue();
-	}
-
-	private void buildLengths() {
-		final Set<Integer> lengths = new TreeSet<>(new Comparator<Integer>() {
-			@Override
-			public int compare(Integer o1, Integer o2) {
-				return -o1.compareTo(o2);
-			}
-		});
-		for (String p : paths.keys()) {
-			lengths.add(p.length());
-		}
-
-		int[] lengthArray = new int[lengths.size()];
-		int pos = 0;
-		for (int i : lengths) {
-			lengthArray[pos++] = i;
-		}
-		this.lengths = lengthArray;
+		return match;
 	}
 
 	@Deprecated
@@ -201,15 +204,18 @@ public class PathMatcher<T> {
 		}
 
 		final String normalizedPath = URLUtils.normalizeSlashes(path);
+		final Snapshot<T> current = this.snapshot;
 
 		if (PathMatcher.STRING_PATH_SEPARATOR.equals(normalizedPath)) {
-			defaultHandler = null;
+			this.snapshot = new Snapshot<>(null, current.prefixPaths, current.exactPaths);
 			return this;
 		}
 
-		paths.remove(normalizedPath);
-
-		buildLengths();
+		if (current.prefixPaths.containsKey(normalizedPath)) {
+			Map<String, T> paths = new LinkedHashMap<>(current.prefixPaths);
+			paths.remove(normalizedPath);
+			this.snapshot = new Snapshot<>(current.defaultHandler, paths, current.exactPaths);
+		}
 		return this;
 	}
 
@@ -218,25 +224,25 @@ public class PathMatcher<T> {
 			throw UndertowMessages.MESSAGES.pathMustBeSpecified();
 		}
 
-		exactPathMatches.remove(URLUtils.normalizeSlashes(path));
-
+		final Snapshot<T> current = this.snapshot;
+		Map<String, T> paths = new HashMap<>(current.exactPaths);
+		if (paths.remove(URLUtils.normalizeSlashes(path)) != null) {
+			this.snapshot = new Snapshot<>(current.defaultHandler, current.prefixPaths, paths);
+		}
 		return this;
 	}
 
 	public synchronized PathMatcher clearPaths() {
-		paths.clear();
-		exactPathMatches.clear();
-		this.lengths = new int[0];
-		defaultHandler = null;
+		this.snapshot = new Snapshot<>(null, Collections.emptyMap(), Collections.emptyMap());
 		return this;
 	}
 
 	public Map<String, T> getPaths() {
-		return paths.toMap();
+		return snapshot.prefixPaths;
 	}
 
 	public T getDefaultHandler() {
-		return defaultHandler;
+		return snapshot.defaultHandler;
 	}
 
 	public static final class PathMatch<T> {
@@ -263,4 +269,133 @@ public class PathMatcher<T> {
 		}
 	}
 
+	/**
+	 * Immutable state of the matcher - default handler, exact and prefix paths and the trie built from
+	 * prefix paths.
+	 * @param <T>
+	 */
+	private static final class Snapshot<T> {
+		private final T defaultHandler;
+		private final Map<String, T> prefixPaths;
+		private final Map<String, T> exactPaths;
+		/** Root of the trie - {@code null} if there are no prefix paths (other than {@code "/"}) */
+		private final Node<T> root;
+
+		Snapshot(T defaultHandler, Map<String, T> prefixPaths, Map<String, T> exactPaths) {
+			this.defaultHandler = defaultHandler;
+			this.prefixPaths = prefixPaths.isEmpty() ? Collections.emptyMap() : Collections.unmodifiableMap(prefixPaths);
+			this.exactPaths = exactPaths.isEmpty() ? Collections.emptyMap() : Collections.unmodifiableMap(exactPaths);
+			this.root = buildTrie(prefixPaths);
+		}
+
+		private static <T> Node<T> buildTrie(Map<String, T> prefixPaths) {
+			if (prefixPaths.isEmpty()) {
+				return null;
+			}
+			NodeBuilder<T> root = new NodeBuilder<>();
+			for (Map.Entry<String, T> e : prefixPaths.entrySet()) {
+				// normalized path always starts with "/" and doesn't end with "/", but may contain
+				// empty segments (like "/a//b"), which are kept as edges in the trie
+				String path = e.getKey();
+				NodeBuilder<T> node = root;
+				int start = 1;
+				while (true) {
+					int end = path.indexOf('/', start);
+					if (end < 0) {
+						end = path.length();
+					}
+					node = node.children.computeIfAbsent(path.substring(start, end), s -> new NodeBuilder<>());
+					if (end == path.length()) {
+						break;
+					}
+					start = end + 1;
+				}
+				node.path = path;
+				node.value = e.getValue();
+			}
+			return root.build("");
+		}
+	}
+
+	/**
+	 * Immutable node of the trie. Children are kept in open addressing hash table, so a child can be found
+	 * using only a region of request path.
+	 * @param <T>
+	 */
+	private static final class Node<T> {
+		private final String segment;
+		private final int hash;
+		/** Registered (normalized) prefix path ending at this node or {@code null} */
+		private final String path;
+		private final T value;
+		/** Hash table of children with linear probing or {@code null} for leaf nodes */
+		private final Node<T>[] children;
+
+		Node(String segment, String path, T value, Node<T>[] children) {
+			this.segment = segment;
+			this.hash = segment.hashCode();
+			this.path = path;
+			this.value = value;
+			this.children = children;
+		}
+
+		/**
+		 * Finds a child for the segment of {@code path} between {@code start} (inclusive) and {@code end}
+		 * (exclusive).
+		 * @param path
+		 * @param start
+		 * @param end
+		 * @param h hash of the segment, compatible with {@link String#hashCode()}
+		 * @return
+		 */
+		Node<T> child(String path, int start, int end, int h) {
+			final Node<T>[] children = this.children;
+			if (children == null) {
+				return null;
+			}
+			int len = end - start;
+			int mask = children.length - 1;
+			for (int idx = spread(h) & mask; ; idx = (idx + 1) & mask) {
+				Node<T> child = children[idx];
+				if (child == null) {
+					return null;
+				}
+				if (child.hash == h && child.segment.length() == len
+						&& path.regionMatches(start, child.segment, 0, len)) {
+					return child;
+				}
+			}
+		}
+	}
+
+	private static final class NodeBuilder<T> {
+		private final Map<String, NodeBuilder<T>> children = new HashMap<>();
+		private String path;
+		private T value;
+
+		@SuppressWarnings("unchecked")
+		Node<T> build(String segment) {
+			Node<T>[] table = null;
+			if (!children.isEmpty()) {
+				// load factor <= 0.5, so linear probing always finds an empty slot
+				int size = Integer.highestOneBit(children.size() * 2 - 1) << 1;
+				table = (Node<T>[]) new Node[size];
+				int mask = size - 1;
+				for (Map.Entry<String, NodeBuilder<T>> e : children.entrySet()) {
+					Node<T> child = e.getValue().build(e.getKey());
+					int idx = spread(child.hash) & mask;
+					while (table[idx] != null) {
+						idx = (idx + 1) & mask;
+					}
+					table[idx] = child;
+				}
+			}
+			return new Node<>(segment, path, value, table);
+		}
+	}
+
+	private static int spread(int h) {
+		return h ^ (h >>> 16);
+	}
+
 }
@@ -15,11 +15,7 @@
  */
 package org.ops4j.pax.web.service.undertow.internal;
 
-import java.util.ArrayList;
-import java.util.LinkedList;
 import java.util.List;
-import java.util.function.Consumer;
-import java.util.stream.Collectors;
 import javax.servlet.FilterChain;
 import javax.servlet.ServletContext;
 import javax.servlet.ServletRequest;
@@ -31,7 +27,7 @@ import io.undertow.server.HandlerWrapper;
 import io.undertow.server.HttpHandler;
 import io.undertow.server.HttpServerExchange;
 import io.undertow.servlet.handlers.ServletRequestContext;
-import org.ops4j.pax.web.service.spi.servlet.OsgiFilterChain;
+import org.ops4j.pax.web.service.spi.servlet.OsgiDispatchPlan;
 import org.ops4j.pax.web.service.spi.servlet.PreprocessorFilterConfig;
 import org.osgi.service.http.whiteboard.Preprocessor;
 
@@ -44,9 +40,11 @@ public class PaxWebPreprocessorsHandler implements HandlerWrapper {
 	/**
 	 * {@link Preprocessor} are registered as filters, but without particular target
 	 * {@link org.ops4j.pax.web.service.spi.servlet.OsgiServletContext}, so they're effectively registered in
-	 * all available physical servlet contexts.
+	 * all available physical servlet contexts. They're part of immutable {@link OsgiDispatchPlan}, which is
+	 * compiled when filter state changes.
 	 */
-	private final List<PreprocessorFilterConfig> preprocessors = new LinkedList<>();
+	// in Undertow we use authListener in org.ops4j.pax.web.service.undertow.internal.PaxWebSecurityHandler
+	private volatile OsgiDispatchPlan dispatchPlan = OsgiDispatchPlan.empty(null, null);
 
 	@Override
 	@SuppressWarnings("Convert2Lambda")
@@ -58,12 +56,10 @@ public class PaxWebPreprocessorsHandler implements HandlerWrapper {
 				HttpServletRequest incomingRequest = (HttpServletRequest) context.getServletRequest();
 				HttpServletResponse outgoingRequest = (HttpServletResponse) context.getServletResponse();
 
-				List<Preprocessor> preprocessorInstances = preprocessors.stream().map(PreprocessorFilterConfig::getInstance).collect(Collectors.toList());
-
 				final Exception[] ex = new Exception[] { null };
-				// in Undertow we use authListener in org.ops4j.pax.web.service.undertow.internal.PaxWebSecurityHandler
-				Consumer<HttpServletRequest> authListener = null;
-				FilterChain chain = new OsgiFilterChain(new ArrayList<>(preprocessorInstances), null, null, new FilterChain() {
+				// request wrapping and handleSecurity() are handled by other wrappers, so we're using
+				// default template of the plan (only preprocessors)
+				FilterChain chain = dispatchPlan.getDefaultTemplate().newChain(new FilterChain() {
 					@Override
 					public void doFilter(ServletRequest request, ServletResponse response) {
 						// just proceed
@@ -73,7 +69,7 @@ public class PaxWebPreprocessorsHandler implements HandlerWrapper {
 							ex[0] = e;
 						}
 					}
-				}, null, authListener);
+				});
 
 				chain.doFilter(incomingRequest, outgoingRequest);
 				if (ex[0] != null) {
@@ -84,7 +80,26 @@ public class PaxWebPreprocessorsHandler implements HandlerWrapper {
 	}
 
 	public List<PreprocessorFilterConfig> getPreprocessors() {
-		return preprocessors;
+		return dispatchPlan.getPreprocessors();
+	}
+
+	public OsgiDispatchPlan getDispatchPlan() {
+		return dispatchPlan;
+	}
+
+	/**
+	 * Sets new {@link OsgiDispatchPlan} (compiled on configuration thread)
+	 * @param dispatchPlan
+	 */
+	public void setDispatchPlan(OsgiDispatchPlan dispatchPlan) {
+		this.dispatchPlan = dispatchPlan;
+	}
+
+	/**
+	 * Should be called after preprocessors are initialized or destroyed, because their instances may change.
+	 */
+	public void refreshDispatchPlan() {
+		this.dispatchPlan = dispatchPlan.refresh();
 	}
 
 }
@@ -0,0 +1,68 @@
+/*
+ * Copyright 2023 OPS4J.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.web.service.undertow.internal;
+
+import io.undertow.server.HttpHandler;
+import io.undertow.server.HttpServerExchange;
+import io.undertow.util.StatusCodes;
+import org.ops4j.pax.web.service.spi.servlet.RedeployGate;
+
+/**
+ * {@link HttpHandler} registered in {@link io.undertow.server.handlers.PathHandler} instead of the handler
+ * returned from {@link io.undertow.servlet.api.DeploymentManager#start()}. It stays mapped while the deployment
+ * is stopped and started again, so requests are held instead of getting 404 responses. Held requests occupy
+ * worker threads, never the IO threads.
+ */
+class RedeployGateHandler implements HttpHandler {
+
+	private final RedeployGate gate;
+
+	/** Handler of currently started deployment */
+	private volatile HttpHandler next;
+
+	RedeployGateHandler(String contextPath, long timeout) {
+		this.gate = new RedeployGate(contextPath.equals("") ? "/" : contextPath, timeout);
+	}
+
+	@Override
+	public void handleRequest(HttpServerExchange exchange) throws Exception {
+		if (exchange.isInIoThread()) {
+			exchange.dispatch(this);
+			return;
+		}
+		boolean available = gate.enter(true);
+		try {
+			HttpHandler handler = next;
+			if (!available || handler == null) {
+				exchange.setStatusCode(StatusCodes.SERVICE_UNAVAILABLE);
+				exchange.endExchange();
+				return;
+			}
+			handler.handleRequest(exchange);
+		} finally {
+			gate.exit();
+		}
+	}
+
+	public RedeployGate getGate() {
+		return gate;
+	}
+
+	public void setNext(HttpHandler next) {
+		this.next = next;
+	}
+
+}
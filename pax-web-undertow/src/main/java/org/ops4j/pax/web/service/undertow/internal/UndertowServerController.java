@@ -21,6 +21,7 @@ import java.net.URL;
 import java.util.Collections;
 import java.util.LinkedHashSet;
 import java.util.Set;
+import java.util.concurrent.Executor;
 import javax.servlet.Servlet;
 
 import io.undertow.security.idm.IdentityManager;
@@ -29,7 +30,9 @@ import org.ops4j.pax.web.service.spi.ServerState;
 import org.ops4j.pax.web.service.spi.config.Configuration;
 import org.ops4j.pax.web.service.spi.model.events.ServerEvent;
 import org.ops4j.pax.web.service.spi.model.events.ServerListener;
+import org.ops4j.pax.web.service.spi.servlet.LazyStartGates;
 import org.ops4j.pax.web.service.spi.task.Batch;
+import org.ops4j.pax.web.service.spi.util.ContentCache;
 import org.ops4j.pax.web.service.undertow.internal.web.UndertowResourceServlet;
 import org.osgi.framework.Bundle;
 import org.slf4j.Logger;
@@ -59,6 +62,9 @@ public class UndertowServerController implements ServerController/*, IdentityMan
 	 */
 	private UndertowServerWrapper undertowServerWrapper;
 
+	/** Executor used to start (and stop) lazily started contexts */
+	private Executor configurationExecutor;
+
 				private IdentityManager identityManager;
 
 	public UndertowServerController(Bundle paxWebUndertowBundle, ClassLoader classLoader,
@@ -89,6 +95,7 @@ public class UndertowServerController implements ServerController/*, IdentityMan
 		}
 
 		undertowServerWrapper = new UndertowServerWrapper(configuration, undertowFactory, paxWebUndertowBundle, classLoader);
+		undertowServerWrapper.getLazyStartGates().setConfigurationExecutor(configurationExecutor);
 		undertowServerWrapper.configure();
 
 		state = ServerState.STOPPED;
@@ -193,6 +200,9 @@ public class UndertowServerController implements ServerController/*, IdentityMan
 		int metadataCacheSize = maxEntries;
 
 		undertowResourceServlet.setCachingConfiguration(metadataCacheSize, maxEntrySize, maxSize, maxAge);
+		// null if not enabled
+		undertowResourceServlet.setContentCache(ContentCache.configureShared(configuration.resources()));
+		undertowResourceServlet.setResourceConfiguration(configuration.resources());
 
 		return undertowResourceServlet;
 	}
@@ -205,7 +215,23 @@ public class UndertowServerController implements ServerController/*, IdentityMan
 			throw new IllegalStateException("Can't process batch in Undertow server controller in state " + state);
 		}
 
-		batch.accept(undertowServerWrapper);
+		// lazily started contexts are not started or stopped while processing the batch
+		LazyStartGates lazyStartGates = undertowServerWrapper.getLazyStartGates();
+		lazyStartGates.lock();
+		try {
+			batch.accept(undertowServerWrapper);
+			undertowServerWrapper.releaseRedeployGates(batch);
+		} finally {
+			lazyStartGates.unlock();
+		}
+	}
+
+	@Override
+	public void setConfigurationExecutor(Executor executor) {
+		this.configurationExecutor = executor;
+		if (undertowServerWrapper != null) {
+			undertowServerWrapper.getLazyStartGates().setConfigurationExecutor(executor);
+		}
 	}
 
 	@Override
@@ -133,6 +133,8 @@ import org.ops4j.pax.web.service.spi.model.events.ServerEvent;
 import org.ops4j.pax.web.service.spi.servlet.Default404Servlet;
 import org.ops4j.pax.web.service.spi.servlet.DefaultSessionCookieConfig;
 import org.ops4j.pax.web.service.spi.servlet.DynamicRegistrations;
+import org.ops4j.pax.web.service.spi.servlet.LazyStartGates;
+import org.ops4j.pax.web.service.spi.servlet.OsgiDispatchPlan;
 import org.ops4j.pax.web.service.spi.servlet.OsgiDynamicServletContext;
 import org.ops4j.pax.web.service.spi.servlet.OsgiInitializedServlet;
 import org.ops4j.pax.web.service.spi.servlet.OsgiServletContext;
@@ -140,7 +142,9 @@ import org.ops4j.pax.web.service.spi.servlet.OsgiServletContextClassLoader;
 import org.ops4j.pax.web.service.spi.servlet.OsgiSessionAttributeListener;
 import org.ops4j.pax.web.service.spi.servlet.PreprocessorFilterConfig;
 import org.ops4j.pax.web.service.spi.servlet.RegisteringContainerInitializer;
+import org.ops4j.pax.web.service.spi.task.Batch;
 import org.ops4j.pax.web.service.spi.task.BatchVisitor;
+import org.ops4j.pax.web.service.spi.task.Change;
 import org.ops4j.pax.web.service.spi.task.ClearDynamicRegistrationsChange;
 import org.ops4j.pax.web.service.spi.task.ContainerInitializerModelChange;
 import org.ops4j.pax.web.service.spi.task.ContextMetadataModelChange;
@@ -161,6 +165,7 @@ import org.ops4j.pax.web.service.spi.task.ServletModelChange;
 import org.ops4j.pax.web.service.spi.task.TransactionStateChange;
 import org.ops4j.pax.web.service.spi.task.WebSocketModelChange;
 import org.ops4j.pax.web.service.spi.task.WelcomeFileModelChange;
+import org.ops4j.pax.web.service.spi.util.CredentialCache;
 import org.ops4j.pax.web.service.spi.util.Utils;
 import org.ops4j.pax.web.service.undertow.PaxWebUndertowExtension;
 import org.ops4j.pax.web.service.undertow.UndertowSupport;
@@ -173,6 +178,7 @@ import org.ops4j.pax.web.service.undertow.configuration.model.UndertowConfigurat
 import org.ops4j.pax.web.service.undertow.configuration.model.UndertowSubsystem;
 import org.ops4j.pax.web.service.undertow.internal.configuration.ResolvingContentHandler;
 import org.ops4j.pax.web.service.undertow.internal.configuration.UnmarshallingContentHandler;
+import org.ops4j.pax.web.service.undertow.internal.security.CachingIdentityManager;
 import org.ops4j.pax.web.service.undertow.internal.security.JaasIdentityManager;
 import org.ops4j.pax.web.service.undertow.internal.security.PropertiesIdentityManager;
 import org.ops4j.pax.web.service.undertow.internal.web.FlexibleErrorPages;
@@ -317,6 +323,22 @@ class UndertowServerWrapper implements BatchVisitor, UndertowSupport {
 	 */
 	private final Map<String, DeploymentInfo> deploymentInfos = new HashMap<>();
 
+	/**
+	 * When {@link org.ops4j.pax.web.service.spi.config.ServerConfiguration#getRedeployDrainTimeout()} is set,
+	 * contexts are mapped through these handlers, so restart of a context holds the requests instead of
+	 * removing the context path from {@link #pathHandler}.
+	 */
+	private final Map<String, RedeployGateHandler> redeployGates = new HashMap<>();
+
+	/** Gates of the contexts started when they receive first request */
+	private final LazyStartGates lazyStartGates;
+
+	/**
+	 * Lazily started contexts are mapped in {@link #pathHandler} through these handlers, also when the
+	 * deployment is not started yet.
+	 */
+	private final Map<String, LazyStartHandler> lazyStartHandlers = new HashMap<>();
+
 	/**
 	 * 1:1 mapping between {@link OsgiContextModel} and {@link org.osgi.service.http.context.ServletContextHelper}'s
 	 * specific {@link javax.servlet.ServletContext}.
@@ -392,6 +414,9 @@ class UndertowServerWrapper implements BatchVisitor, UndertowSupport {
 		this.undertowFactory = undertowFactory;
 		this.paxWebUndertowBundle = paxWebUndertowBundle;
 		this.classLoader = classLoader;
+
+		this.lazyStartGates = new LazyStartGates(config.server().isLazyContextStart(),
+				config.server().getLazyContextIdleTimeout(), config.server().getLazyContextStartTimeout());
 	}
 
 	// --- lifecycle and configuration methods
@@ -404,7 +429,13 @@ class UndertowServerWrapper implements BatchVisitor, UndertowSupport {
 		LOG.info("Creating Undertow server instance using configuration properties.");
 
 		// initially rootHandler == pathHandler without any particular path registered
-		pathHandler = Handlers.path();
+		// Undertow's own path handler is used, unless the cache of context path matches is enabled
+		Integer pathMatchCacheSize = configuration.server().getPathMatchCacheSize();
+		if (pathMatchCacheSize != null && pathMatchCacheSize > 0) {
+			pathHandler = new ContextAwarePathHandler(pathMatchCacheSize);
+		} else {
+			pathHandler = Handlers.path();
+		}
 		rootHandler = pathHandler;
 
 		// apply single (if exists) external undertow.xml file by reading it according to Wildfly XSDs,
@@ -585,6 +616,15 @@ class UndertowServerWrapper implements BatchVisitor, UndertowSupport {
 
 				identityManager = new PropertiesIdentityManager(users);
 			}
+
+			Integer authCacheSize = configuration.security().getAuthCacheSize();
+			if (identityManager != null && authCacheSize != null && authCacheSize > 0) {
+				Long authCacheTtl = configuration.security().getAuthCacheTtl();
+				LOG.info("Caching successful credential verifications (size: {}, TTL: {}ms)", authCacheSize, authCacheTtl);
+				String realm = jaasAuth != null ? "jaas:" + jaasAuth.getName() : "properties";
+				identityManager = new CachingIdentityManager(identityManager, realm,
+						new CredentialCache<>(authCacheSize, authCacheTtl == null ? 60000L : authCacheTtl));
+			}
 		}
 
 		// /undertow/subsystem/server/host/location - file handlers for static context paths.
@@ -1042,6 +1082,7 @@ class UndertowServerWrapper implements BatchVisitor, UndertowSupport {
 								fc.setInitCalled(false);
 							}
 						}
+						preprocessorsHandlers.get(contextPath).refreshDispatchPlan();
 					}
 
 					deployment.stop();
@@ -1052,6 +1093,9 @@ class UndertowServerWrapper implements BatchVisitor, UndertowSupport {
 			}
 		});
 		deploymentInfos.clear();
+		new ArrayList<>(redeployGates.keySet()).forEach(this::releaseRedeployGate);
+		lazyStartHandlers.clear();
+		lazyStartGates.shutdown();
 		// do not clear osgiContextModels and osgiServletContexts
 		// - they'll be cleared individually through HttpServiceEnabled
 //		osgiServletContexts.clear();
@@ -1207,6 +1251,12 @@ class UndertowServerWrapper implements BatchVisitor, UndertowSupport {
 			deploymentInfo.setServletSessionConfig(ssc);
 
 			deploymentInfo.setSessionPersistenceManager(globalSessionPersistenceManager);
+			if (globalSessionPersistenceManager instanceof FileSessionPersistence) {
+				// sessions changed by a request are written when it completes, not only when deployment is stopped
+				FileSessionPersistence fsp = (FileSessionPersistence) globalSessionPersistenceManager;
+				deploymentInfo.addSessionListener(fsp.sessionListener(deploymentName));
+				deploymentInfo.addOuterHandlerChainWrapper(fsp.handlerWrapper(deploymentName));
+			}
 
 			// do NOT add&deploy&start the context here - only after registering first "active" web element
 			// only prepare the original (cloned later) DeploymentInfo
@@ -1249,6 +1299,11 @@ class UndertowServerWrapper implements BatchVisitor, UndertowSupport {
 				stopUndertowContext(contextPath, manager, null, false);
 				servletContainer.removeDeployment(deploymentInfoToRemove);
 			}
+			releaseRedeployGate(contextPath);
+			if (lazyStartHandlers.remove(contextPath) != null) {
+				pathHandler.removePrefixPath(contextPath);
+			}
+			lazyStartGates.remove(contextPath);
 		}
 	}
 
@@ -1830,41 +1885,19 @@ class UndertowServerWrapper implements BatchVisitor, UndertowSupport {
 				continue;
 			}
 
-			// potentially, all existing preprocessors will be removed
+			// compile new dispatch plan - preprocessors are removed from the set of filters and existing
+			// preprocessors are reused
 			PaxWebPreprocessorsHandler preprocessorsHandler = preprocessorsHandlers.get(contextPath);
-			Set<PreprocessorFilterConfig> toDestroy = new HashSet<>(preprocessorsHandler.getPreprocessors());
+			OsgiDispatchPlan plan = preprocessorsHandler.getDispatchPlan()
+					.compile(filters, osgiServletContexts.get(defaultHighestRankedModel));
 			// some new preprocessors may be added - we have to init() them ourselves, because they're not held
 			// in PaxWebFilterHolders
-			List<PreprocessorFilterConfig> toInit = new LinkedList<>();
+			List<PreprocessorFilterConfig> toInit = plan.getPreprocessorsToInit();
+			// some preprocessors may be removed
+			List<PreprocessorFilterConfig> toDestroy = plan.getPreprocessorsToDestroy();
 
-			// clear to keep the order of all available preprocessors
-			preprocessorsHandler.getPreprocessors().clear();
-
-			for (Iterator<FilterModel> iterator = filters.iterator(); iterator.hasNext(); ) {
-				FilterModel model = iterator.next();
-				if (model.isPreprocessor()) {
-					PreprocessorFilterConfig filterConfig = new PreprocessorFilterConfig(model, osgiServletContexts.get(defaultHighestRankedModel));
-					if (toDestroy.stream().noneMatch(pfc -> pfc.getModel().equals(model))) {
-						// new preprocessor - we have to init() it
-						toInit.add(filterConfig);
-					} else {
-						// it was already there - we don't have to destroy() it
-						toDestroy.removeIf(pfc -> {
-							boolean match = pfc.getModel().equals(model);
-							if (match) {
-								// there's existing PreprocessorFilterConfig, so copy the instance and
-								// potentially the ServiceObjects
-								filterConfig.copyFrom(pfc);
-							}
-							return match;
-						});
-					}
-					preprocessorsHandler.getPreprocessors().add(filterConfig);
-					iterator.remove();
-				}
-			}
-
-			if (manager != null && manager.getState() == DeploymentManager.State.STARTED) {
+			boolean started = manager != null && manager.getState() == DeploymentManager.State.STARTED;
+			if (started) {
 				for (PreprocessorFilterConfig fc : toInit) {
 					try {
 						fc.getInstance().init(fc);
@@ -1873,6 +1906,13 @@ class UndertowServerWrapper implements BatchVisitor, UndertowSupport {
 						LOG.warn("Problem during preprocessor initialization: {}", ex.getMessage(), ex);
 					}
 				}
+			}
+
+			// single publication of new plan - after new preprocessors are initialized and before the old ones
+			// are destroyed
+			preprocessorsHandler.setDispatchPlan(plan);
+
+			if (started) {
 				for (PreprocessorFilterConfig fc : toDestroy) {
 					fc.destroy();
 					fc.setInitCalled(false);
@@ -2622,6 +2662,15 @@ class UndertowServerWrapper implements BatchVisitor, UndertowSupport {
 				|| securityHandlers.get(contextPath).getDefaultOsgiContextModel() == null) {
 			return;
 		}
+		if (lazyStartGates.defer(contextPath, lazyStartGates.isLazy(osgiContextModels.get(contextPath)),
+				() -> ensureServletContextStarted(contextPath), () -> stopIdleContext(contextPath))) {
+			// the placeholder will start the deployment with first request
+			pathHandler.addPrefixPath(contextPath, lazyStartHandlers.computeIfAbsent(contextPath,
+					cp -> new LazyStartHandler(lazyStartGates.get(cp))));
+			LOG.info("Undertow context \"{}\" will be started when it receives first request",
+					(contextPath.equals("") ? "/" : contextPath));
+			return;
+		}
 		try {
 			OsgiContextModel highestRanked = securityHandlers.get(contextPath).getDefaultOsgiContextModel();
 			OsgiServletContext highestRankedContext = osgiServletContexts.get(highestRanked);
@@ -2661,7 +2710,7 @@ class UndertowServerWrapper implements BatchVisitor, UndertowSupport {
 			// keycloak accesses resources directly inside
 			// org.keycloak.adapters.undertow.KeycloakServletExtension#handleDeployment where we don't have
 			// access to Osgi contexts
-			deployment.setResourceManager(new OsgiResourceManager("", highestRankedContext));
+			deployment.setResourceManager(new OsgiResourceManager("", highestRankedContext, configuration.resources()));
 
 			// handle Pax Web specific extensions
 			ServiceLoader<PaxWebUndertowExtension> extensions = ServiceLoader.load(PaxWebUndertowExtension.class, highestRankedContext.getClassLoader());
@@ -2941,11 +2990,35 @@ class UndertowServerWrapper implements BatchVisitor, UndertowSupport {
 					fc.setInitCalled(true);
 				}
 			}
+			preprocessorsHandlers.get(contextPath).refreshDispatchPlan();
 
 			highestRankedDynamicContext.rememberAttributesFromSCIs();
 
 			// actual registration of "context" in Undertow's path handler.
-			pathHandler.addPrefixPath(contextPath, handler);
+			HttpHandler contextHandler = handler;
+			RedeployGateHandler gateHandler = null;
+			int drainTimeout = configuration.server().getRedeployDrainTimeout();
+			if (drainTimeout > 0) {
+				gateHandler = redeployGates.computeIfAbsent(contextPath,
+						cp -> new RedeployGateHandler(cp, drainTimeout));
+				gateHandler.setNext(handler);
+				contextHandler = gateHandler;
+			}
+			if (lazyStartGates.get(contextPath) == null) {
+				// the context is (no longer) started lazily
+				lazyStartHandlers.remove(contextPath);
+			}
+			LazyStartHandler lazyHandler = lazyStartHandlers.get(contextPath);
+			if (lazyHandler != null) {
+				// lazily started context stays mapped through the handler counting the requests
+				lazyHandler.setNext(contextHandler);
+				contextHandler = lazyHandler;
+			}
+			pathHandler.addPrefixPath(contextPath, contextHandler);
+			if (gateHandler != null) {
+				// requests held during restart are passed to new deployment
+				gateHandler.getGate().open();
+			}
 
 			// only now, according to https://docs.osgi.org/specification/osgi.cmpn/7.0.0/service.war.html#d0e100694
 			// register the servlet context
@@ -2960,6 +3033,62 @@ class UndertowServerWrapper implements BatchVisitor, UndertowSupport {
 		return transactions.contains(contextPath);
 	}
 
+	/**
+	 * Stops lazily started deployment. The context stays mapped to a placeholder which starts it again with next
+	 * request.
+	 * @param contextPath
+	 */
+	private void stopIdleContext(String contextPath) {
+		DeploymentManager manager = getDeploymentManager(contextPath);
+		if (manager == null) {
+			return;
+		}
+		stopUndertowContext(contextPath, manager, null, false);
+		releaseRedeployGate(contextPath);
+		LazyStartHandler lazyHandler = lazyStartHandlers.get(contextPath);
+		if (lazyHandler != null) {
+			lazyHandler.setNext(null);
+			pathHandler.addPrefixPath(contextPath, lazyHandler);
+		}
+	}
+
+	public LazyStartGates getLazyStartGates() {
+		return lazyStartGates;
+	}
+
+	/**
+	 * Called after processing a {@link Batch} to unmap the contexts that were stopped, but not started again,
+	 * so held requests get normal 404 responses. Contexts to be started in next batch or within pending
+	 * transaction are not released.
+	 * @param batch
+	 */
+	public void releaseRedeployGates(Batch batch) {
+		if (redeployGates.isEmpty()) {
+			return;
+		}
+		Set<String> restarting = new HashSet<>(transactions);
+		for (Change change : batch.getOperations()) {
+			if (change.getBatchCompletedAction() instanceof ContextStartChange) {
+				restarting.add(((ContextStartChange) change.getBatchCompletedAction()).getContextPath());
+			}
+		}
+		for (String contextPath : new ArrayList<>(redeployGates.keySet())) {
+			if (redeployGates.get(contextPath).getGate().isClosed() && getDeploymentManager(contextPath) == null
+					&& !restarting.contains(contextPath)) {
+				releaseRedeployGate(contextPath);
+			}
+		}
+	}
+
+	private void releaseRedeployGate(String contextPath) {
+		RedeployGateHandler gateHandler = redeployGates.remove(contextPath);
+		if (gateHandler != null) {
+			pathHandler.removePrefixPath(contextPath);
+			gateHandler.setNext(null);
+			gateHandler.getGate().open();
+		}
+	}
+
 	/**
 	 * If the servlet context is already started ({@link DeploymentManager#deploy()} was called), return
 	 * it from current {@link Deployment}.
@@ -3110,8 +3239,15 @@ class UndertowServerWrapper implements BatchVisitor, UndertowSupport {
 	 */
 	private void stopUndertowContext(String contextPath, DeploymentManager manager,
 			DeploymentInfo deploymentInfo, boolean skipPreprocessors) {
-		// let's immediately show that given context is no longer mapped
-		pathHandler.removePrefixPath(contextPath);
+		RedeployGateHandler gateHandler = redeployGates.get(contextPath);
+		if (gateHandler != null && manager != null) {
+			// the context remains mapped, but new requests are held until it's started again (or until
+			// the end of the batch) and we wait for the in-flight requests to finish
+			gateHandler.getGate().close();
+		} else {
+			// let's immediately show that given context is no longer mapped
+			pathHandler.removePrefixPath(contextPath);
+		}
 
 		try {
 			// manager needs to stop the deployment and get rid of it, because we
@@ -3126,6 +3262,7 @@ class UndertowServerWrapper implements BatchVisitor, UndertowSupport {
 							fc.setInitCalled(false);
 						}
 					}
+					preprocessorsHandlers.get(contextPath).refreshDispatchPlan();
 				}
 
 				manager.stop();
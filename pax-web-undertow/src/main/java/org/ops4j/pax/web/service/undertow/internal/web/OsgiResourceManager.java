@@ -17,20 +17,28 @@ package org.ops4j.pax.web.service.undertow.internal.web;
 
 import java.io.File;
 import java.io.IOException;
-import java.io.InputStream;
-import java.net.MalformedURLException;
 import java.net.URISyntaxException;
 import java.net.URL;
+import java.nio.ByteBuffer;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.Date;
 import javax.servlet.ServletContext;
 
+import io.undertow.io.IoCallback;
+import io.undertow.io.Sender;
+import io.undertow.server.HttpServerExchange;
 import io.undertow.server.handlers.resource.PathResource;
 import io.undertow.server.handlers.resource.PathResourceManager;
 import io.undertow.server.handlers.resource.Resource;
 import io.undertow.server.handlers.resource.ResourceChangeListener;
 import io.undertow.server.handlers.resource.ResourceManager;
 import io.undertow.server.handlers.resource.URLResource;
+import io.undertow.util.ETag;
+import org.ops4j.pax.web.service.spi.config.ResourceConfiguration;
+import org.ops4j.pax.web.service.spi.util.ContentCache;
+import org.ops4j.pax.web.service.spi.util.ResourceMetadataCache;
+import org.ops4j.pax.web.service.spi.util.ResourceMetadataCache.ResourceMetadata;
 import org.osgi.service.http.HttpContext;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -55,9 +63,24 @@ public class OsgiResourceManager implements ResourceManager {
 	private final FileETagFunction fileETagFunction;
 	private final PathResourceManager pathResourceManager;
 
-	public OsgiResourceManager(String chroot, ServletContext osgiScopedServletContext) {
+	/** Metadata of resources, so bundle is not checked for every request */
+	private final ResourceMetadataCache metadataCache;
+
+	/** Optional content cache shared by all resource servlets */
+	private final ContentCache contentCache;
+
+	public OsgiResourceManager(String chroot, ServletContext osgiScopedServletContext,
+			ResourceConfiguration configuration) {
+		this(chroot, osgiScopedServletContext, ResourceMetadataCache.DEFAULT_MAX_ENTRIES,
+				ResourceMetadataCache.ttl(configuration), null);
+	}
+
+	public OsgiResourceManager(String chroot, ServletContext osgiScopedServletContext, int maxEntries, long ttl,
+			ContentCache contentCache) {
 		this.chroot = chroot;
 		this.osgiScopedServletContext = osgiScopedServletContext;
+		this.metadataCache = new ResourceMetadataCache(osgiScopedServletContext, maxEntries, ttl);
+		this.contentCache = contentCache;
 		this.fileETagFunction = new FileETagFunction();
 		File location = (File) osgiScopedServletContext.getAttribute(ServletContext.TEMPDIR);
 		if (location == null) {
@@ -72,21 +95,13 @@ public class OsgiResourceManager implements ResourceManager {
 	@Override
 	public Resource getResource(String path) throws IOException {
 		// Almost the same as in org.ops4j.pax.web.service.tomcat.internal.web.TomcatResourceServlet.OsgiStandardRoot
+		String fullPath = getFullPath(path);
 
-		// chroot is without trailing slash, path is always without leading slash
-		String fullPath = chroot + "/" + path;
-		if (!fullPath.startsWith("/")) {
-			fullPath = "/" + fullPath;
-		}
-		URL resource = null;
-		try {
-			resource = osgiScopedServletContext.getResource(fullPath);
-		} catch (MalformedURLException e) {
-			LOG.warn(e.getMessage(), e);
-		}
-		if (resource == null) {
+		ResourceMetadata metadata = metadataCache.getResource(fullPath);
+		if (metadata == null) {
 			return null;
 		}
+		URL resource = metadata.getUrl();
 
 		Resource res = null;
 		if (resource.getProtocol().equals("file")) {
@@ -104,23 +119,9 @@ public class OsgiResourceManager implements ResourceManager {
 				LOG.warn(e.getMessage(), e);
 				return null;
 			}
-		} else if (resource.getProtocol().equals("bundle") && !resource.getPath().endsWith("/")) {
-			// unfortunately, due to https://issues.apache.org/jira/browse/FELIX-6294
-			// we have to check ourselves if it's a directory and possibly append a slash
-			// just as org.eclipse.osgi.storage.bundlefile.BundleFile#fixTrailingSlash() does it
-			URLResource potentialDirectory = new URLResource(resource, resource.getPath());
-			if (potentialDirectory.getContentLength() == null || potentialDirectory.getContentLength() == 0L) {
-				try (InputStream is = potentialDirectory.getUrl().openStream()) {
-					if (is == null || is.available() == 0) {
-						URL fixedURL = new URL(resource.toExternalForm() + "/");
-						try (InputStream is2 = fixedURL.openStream()) {
-							if (is2 != null && is2.available() == 0) {
-								res = new URLResource(fixedURL, fixedURL.getPath());
-							}
-						}
-					}
-				}
-			}
+		} else if (metadata.isBundleResource() && !metadata.isDirectory()) {
+			// directory check (FELIX-6294) was already done by the cache
+			res = new BundleURLResource(resource, metadata, contentCache);
 		}
 
 		if (res == null) {
@@ -130,6 +131,24 @@ public class OsgiResourceManager implements ResourceManager {
 		return res;
 	}
 
+	/**
+	 * Returns a path passed to {@link ServletContext#getResource(String)} for a path relative to the chroot
+	 * @param path path without leading slash
+	 * @return
+	 */
+	String getFullPath(String path) {
+		// chroot is without trailing slash
+		String fullPath = chroot + "/" + path;
+		if (!fullPath.startsWith("/")) {
+			fullPath = "/" + fullPath;
+		}
+		return fullPath;
+	}
+
+	ResourceMetadataCache getMetadataCache() {
+		return metadataCache;
+	}
+
 	@Override
 	public boolean isResourceChangeListenerSupported() {
 		return false;
@@ -147,7 +166,70 @@ public class OsgiResourceManager implements ResourceManager {
 
 	@Override
 	public void close() throws IOException {
-		// no op
+		metadataCache.destroy();
+	}
+
+	/**
+	 * {@link URLResource} with length, last modification time and ETag taken from {@link ResourceMetadataCache}
+	 * instead of opening {@link java.net.URLConnection} each time. If {@link ContentCache} is available, the
+	 * content is sent directly from cached (direct) buffer.
+	 */
+	private static class BundleURLResource extends URLResource {
+
+		private final ResourceMetadata metadata;
+		private final ContentCache contentCache;
+
+		BundleURLResource(URL url, ResourceMetadata metadata, ContentCache contentCache) {
+			super(url, url.getPath());
+			this.metadata = metadata;
+			this.contentCache = contentCache;
+		}
+
+		@Override
+		public void serve(Sender sender, HttpServerExchange exchange, IoCallback completionCallback) {
+			ByteBuffer content = cachedContent();
+			if (content == null) {
+				super.serve(sender, exchange, completionCallback);
+				return;
+			}
+			sender.send(content, completionCallback);
+		}
+
+		@Override
+		public void serveRange(Sender sender, HttpServerExchange exchange, long start, long end, IoCallback completionCallback) {
+			ByteBuffer content = cachedContent();
+			if (content == null) {
+				super.serveRange(sender, exchange, start, end, completionCallback);
+				return;
+			}
+			// end is inclusive
+			content.limit((int) end + 1);
+			content.position((int) start);
+			sender.send(content, completionCallback);
+		}
+
+		private ByteBuffer cachedContent() {
+			if (contentCache == null) {
+				return null;
+			}
+			return contentCache.get(metadata.getUrl(), metadata.getLength(), metadata.getLastModified());
+		}
+
+		@Override
+		public Long getContentLength() {
+			return metadata.getLength() >= 0L ? metadata.getLength() : super.getContentLength();
+		}
+
+		@Override
+		public Date getLastModified() {
+			return metadata.getLastModified() > 0L ? new Date(metadata.getLastModified()) : super.getLastModified();
+		}
+
+		@Override
+		public ETag getETag() {
+			return metadata.getETag() == null ? null
+					: new ETag(true, metadata.getLength() + "-" + metadata.getLastModified());
+		}
 	}
 
 }
@@ -35,8 +35,12 @@ import io.undertow.server.handlers.resource.Resource;
 import io.undertow.server.handlers.resource.ResourceChangeListener;
 import io.undertow.server.handlers.resource.ResourceManager;
 import io.undertow.servlet.spec.HttpServletRequestImpl;
+import org.ops4j.pax.web.service.spi.config.ResourceConfiguration;
 import org.ops4j.pax.web.service.spi.servlet.OsgiScopedServletContext;
 import org.ops4j.pax.web.service.spi.servlet.OsgiServletContext;
+import org.ops4j.pax.web.service.spi.util.ContentCache;
+import org.ops4j.pax.web.service.spi.util.ResourceCompression;
+import org.ops4j.pax.web.service.spi.util.ResourceMetadataCache;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -82,6 +86,14 @@ public class UndertowResourceServlet extends DefaultServlet implements ResourceM
 	private Integer maxSize;
 	private Integer maxAge;
 
+	/** Content cache shared by all resource servlets - used instead of {@link CachingResourceManager} */
+	private ContentCache contentCache;
+
+	private ResourceConfiguration resourceConfig;
+
+	/** Support for compressed variants of bundle resources - {@code null} if not enabled */
+	private ResourceCompression compression;
+
 	public UndertowResourceServlet(File baseDirectory, String chroot) {
 		this.baseDirectory = baseDirectory;
 		this.chroot = chroot;
@@ -111,6 +123,23 @@ public class UndertowResourceServlet extends DefaultServlet implements ResourceM
 		this.cacheConfigurable = true;
 	}
 
+	/**
+	 * Sets the {@link ContentCache} shared by all the resource servlets. The content of bundle resources will be
+	 * sent directly from this cache and {@link CachingResourceManager} won't be used.
+	 * @param contentCache
+	 */
+	public void setContentCache(ContentCache contentCache) {
+		this.contentCache = contentCache;
+	}
+
+	/**
+	 * Sets global {@link ResourceConfiguration} used to configure compressed variants of resources
+	 * @param resourceConfig
+	 */
+	public void setResourceConfiguration(ResourceConfiguration resourceConfig) {
+		this.resourceConfig = resourceConfig;
+	}
+
 	public void setWelcomeFiles(String[] welcomeFiles) {
 		this.welcomeFiles = welcomeFiles;
 		configureCache();
@@ -189,11 +218,21 @@ public class UndertowResourceServlet extends DefaultServlet implements ResourceM
 			// resource will be obtained from HttpContext.getResource() / ServletContextHelper.getResource()
 			// assuming that servletContext is Osgi[Scoped]ServletContext that delegate to WebContainerContext
 			// it's important to get ServletContext from the passed config!
-			this.resourceManager = new OsgiResourceManager(chroot, config.getServletContext());
+			// metadata TTL has the same default in all the runtimes
+			this.resourceManager = cacheConfigurable
+					? new OsgiResourceManager(chroot, config.getServletContext(), metadataCacheSize,
+							ResourceMetadataCache.ttl(resourceConfig), contentCache)
+					: new OsgiResourceManager(chroot, config.getServletContext(), resourceConfig);
+			compression = ResourceCompression.configure(config.getServletContext(), resourceConfig, contentCache);
 		}
 	}
 
 	private void configureCache() {
+		if (contentCache != null && baseDirectory == null) {
+			// content of bundle resources is cached by OsgiResourceManager, so no need to cache it twice
+			cachingResourceManager = this;
+			return;
+		}
 		if (cacheConfigurable) {
 			// io.undertow.server.handlers.file.FileHandlerStressTestCase#simpleFileStressTest uses "1024, 10, 10480"
 			// see:
@@ -225,6 +264,13 @@ public class UndertowResourceServlet extends DefaultServlet implements ResourceM
 		}
 
 		if (requestURI == null || !requestURI.endsWith("/")) {
+			if (compression != null && !included && resourceManager instanceof OsgiResourceManager) {
+				OsgiResourceManager osgiResourceManager = (OsgiResourceManager) resourceManager;
+				String path = resourcePath(getPath(req));
+				if (compression.handle(req, resp, osgiResourceManager.getMetadataCache(), osgiResourceManager.getFullPath(path))) {
+					return;
+				}
+			}
 			super.doGet(req, resp);
 			return;
 		}
@@ -345,6 +391,15 @@ public class UndertowResourceServlet extends DefaultServlet implements ResourceM
 
 	@Override
 	public Resource getResource(String path) throws IOException {
+		return resourceManager.getResource(resourcePath(path));
+	}
+
+	/**
+	 * Translates a path passed to {@link #getResource(String)} to a path relative to the chroot/base directory
+	 * @param path
+	 * @return
+	 */
+	private String resourcePath(String path) {
 		HttpServletRequestImpl originalRequest = requireCurrentServletRequestContext().getOriginalRequest();
 		String pathInfo = originalRequest.getPathInfo();
 		if (pathInfo == null && pathInfoOnly) {
@@ -363,7 +418,11 @@ public class UndertowResourceServlet extends DefaultServlet implements ResourceM
 				path = "";
 			}
 		}
-		return resourceManager.getResource(path);
+		if (path.startsWith("/")) {
+			// CachingResourceManager strips the leading slash, so do the same when it's not used
+			path = path.substring(1);
+		}
+		return path;
 	}
 
 	@Override
@@ -0,0 +1,131 @@
+/*
+ * Copyright 2023 OPS4J.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.web.service.undertow.internal;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import io.undertow.Handlers;
+import io.undertow.server.HttpHandler;
+import io.undertow.server.HttpServerExchange;
+import io.undertow.server.handlers.PathHandler;
+import org.junit.Test;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class ContextAwarePathHandlerTest {
+
+	@Test
+	public void cacheIsPopulatedOnMissAndInvalidatedOnChange() throws Exception {
+		List<String> calls = new ArrayList<>();
+		HttpHandler c1 = exchange -> calls.add("c1:" + exchange.getResolvedPath() + ":" + exchange.getRelativePath());
+		HttpHandler c2 = exchange -> calls.add("c2:" + exchange.getResolvedPath() + ":" + exchange.getRelativePath());
+
+		ContextAwarePathHandler handler = new ContextAwarePathHandler(16);
+		handler.addPrefixPath("/c1", c1);
+
+		handler.handleRequest(exchange("/c1/s"));
+		assertThat(handler.getCacheMisses(), equalTo(1L));
+		assertThat(handler.getCacheHits(), equalTo(0L));
+		handler.handleRequest(exchange("/c1/s"));
+		assertThat(handler.getCacheMisses(), equalTo(1L));
+		assertThat(handler.getCacheHits(), equalTo(1L));
+
+		// more specific context has to be found after registration
+		handler.addPrefixPath("/c1/s", c2);
+		handler.handleRequest(exchange("/c1/s"));
+		assertThat(handler.getCacheMisses(), equalTo(2L));
+
+		handler.removePrefixPath("/c1/s");
+		handler.handleRequest(exchange("/c1/s"));
+		assertThat(handler.getCacheMisses(), equalTo(3L));
+
+		assertThat(calls.get(0), equalTo("c1:/c1:/s"));
+		assertThat(calls.get(1), equalTo("c1:/c1:/s"));
+		assertThat(calls.get(2), equalTo("c2:/c1/s:"));
+		assertThat(calls.get(3), equalTo("c1:/c1:/s"));
+	}
+
+	@Test
+	public void routingOfContextPathsIsTheSameAsInUndertow() throws Exception {
+		List<String> expected = new ArrayList<>();
+		List<String> actual = new ArrayList<>();
+		PathHandler undertow = register(Handlers.path(), expected);
+		PathHandler pax = register(new ContextAwarePathHandler(16), actual);
+
+		String[] requests = new String[] {
+				// root context
+				"", "/", "/x", "/x/y",
+				// context and nested context
+				"/c1", "/c1/", "/c1/s", "/c1/nested", "/c1/nested/", "/c1/nested/s", "/c1/nestedx",
+				// contexts which are prefixes of each other (without segment boundary)
+				"/c", "/c10", "/c10/s", "/c1x", "/c100/s",
+				// deeper context without registered parent
+				"/a/b", "/a/b/c", "/a", "/a/bc"
+		};
+		for (int i = 0; i < 2; i++) {
+			// second round is served from the cache
+			for (String path : requests) {
+				undertow.handleRequest(exchange(path));
+				pax.handleRequest(exchange(path));
+			}
+		}
+		assertThat(actual, equalTo(expected));
+		assertThat(actual.get(0), equalTo("root::"));
+		assertThat(actual.get(9), equalTo("nested:/c1/nested:/s"));
+		assertThat(actual.get(13), equalTo("c10:/c10:/s"));
+
+		// removal of nested context
+		undertow.removePrefixPath("/c1/nested");
+		pax.removePrefixPath("/c1/nested");
+		undertow.handleRequest(exchange("/c1/nested/s"));
+		pax.handleRequest(exchange("/c1/nested/s"));
+		assertThat(actual.get(actual.size() - 1), equalTo("c1:/c1:/nested/s"));
+		assertThat(actual, equalTo(expected));
+	}
+
+	@Test
+	public void boundedCache() {
+		PathMatchCache<String> cache = new PathMatchCache<>(2);
+		for (int i = 0; i < 10; i++) {
+			cache.put(cache.generation(), "/p" + i, new PathMatcher.PathMatch<>("/p" + i, "", "v"));
+		}
+		assertThat(cache.size(), equalTo(2));
+		cache.invalidate();
+		assertThat(cache.size(), equalTo(0));
+	}
+
+	private PathHandler register(PathHandler handler, List<String> calls) {
+		handler.addPrefixPath("/", handler("root", calls));
+		handler.addPrefixPath("/c1", handler("c1", calls));
+		handler.addPrefixPath("/c1/nested", handler("nested", calls));
+		handler.addPrefixPath("/c10", handler("c10", calls));
+		handler.addPrefixPath("/a/b", handler("ab", calls));
+		return handler;
+	}
+
+	private HttpHandler handler(String name, List<String> calls) {
+		return exchange -> calls.add(name + ":" + exchange.getResolvedPath() + ":" + exchange.getRelativePath());
+	}
+
+	private HttpServerExchange exchange(String path) {
+		HttpServerExchange exchange = new HttpServerExchange(null);
+		exchange.setRelativePath(path);
+		return exchange;
+	}
+
+}
@@ -0,0 +1,162 @@
+/*
+ * Copyright 2023 OPS4J.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.web.service.undertow.internal;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+
+import io.undertow.server.session.Session;
+import io.undertow.server.session.SessionListener;
+import io.undertow.servlet.api.SessionPersistenceManager.PersistentSession;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class FileSessionPersistenceTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void sessionsStoredInSeparateFiles() throws Exception {
+		File dir = folder.newFolder();
+		FileSessionPersistence persistence = new FileSessionPersistence(dir);
+
+		Map<String, PersistentSession> sessions = new HashMap<>();
+		sessions.put("s1", session(60_000L, "a", "v1"));
+		sessions.put("s2", session(60_000L, "a", "v2"));
+		sessions.put("s3", session(60_000L, "a", new Object()));
+		persistence.persistSessions("ROOT", sessions);
+
+		// s3 can't be serialized, but it doesn't affect other sessions
+		assertThat(new File(dir, "ROOT").list().length, equalTo(2));
+
+		Map<String, PersistentSession> loaded = persistence.loadSessionAttributes("ROOT", getClass().getClassLoader());
+		assertThat(loaded.size(), equalTo(2));
+		assertThat(loaded.get("s1").getSessionData().get("a"), equalTo("v1"));
+		assertThat(loaded.get("s2").getSessionData().get("a"), equalTo("v2"));
+		assertThat(loaded.get("s1").getExpiration(), equalTo(sessions.get("s1").getExpiration()));
+	}
+
+	@Test
+	public void notRestoredSessionsAreKept() throws Exception {
+		File dir = folder.newFolder();
+		FileSessionPersistence persistence = new FileSessionPersistence(dir);
+
+		Map<String, PersistentSession> sessions = new HashMap<>();
+		sessions.put("s1", session(60_000L, "a", "v1"));
+		sessions.put("s2", session(60_000L, "a", "v2"));
+		sessions.put("s3", session(60_000L, "a", "v3"));
+		persistence.persistSessions("ROOT", sessions);
+
+		Map<String, PersistentSession> loaded = persistence.loadSessionAttributes("ROOT", getClass().getClassLoader());
+		// s1 is restored and still active, s2 is restored and invalidated, s3 is not accessed at all
+		Map<String, Object> s1 = new HashMap<>(loaded.get("s1").getSessionData());
+		s1.put("b", "w1");
+		loaded.get("s2").getSessionData().size();
+		persistence.persistSessions("ROOT", Collections.singletonMap("s1", new PersistentSession(new Date(System.currentTimeMillis() + 60_000L), s1)));
+
+		loaded = persistence.loadSessionAttributes("ROOT", getClass().getClassLoader());
+		assertThat(loaded.size(), equalTo(2));
+		assertThat(loaded.get("s1").getSessionData().get("b"), equalTo("w1"));
+		assertThat(loaded.get("s2"), nullValue());
+		assertThat(loaded.get("s3").getSessionData().get("a"), equalTo("v3"));
+	}
+
+	@Test
+	public void expiredSessionsAreRemoved() throws Exception {
+		File dir = folder.newFolder();
+		FileSessionPersistence persistence = new FileSessionPersistence(dir);
+
+		Map<String, PersistentSession> sessions = new HashMap<>();
+		sessions.put("s1", session(60_000L, "a", "v1"));
+		sessions.put("s2", session(-1_000L, "a", "v2"));
+		persistence.persistSessions("ROOT", sessions);
+		assertThat(new File(dir, "ROOT").list().length, equalTo(2));
+
+		Map<String, PersistentSession> loaded = persistence.loadSessionAttributes("ROOT", getClass().getClassLoader());
+		assertThat(loaded.size(), equalTo(1));
+		assertThat(new File(dir, "ROOT").list().length, equalTo(1));
+
+		persistence.clear("ROOT");
+		assertThat(new File(dir, "ROOT").exists(), equalTo(false));
+	}
+
+	@Test
+	public void changedSessionsStoredWithoutStoppingDeployment() throws Exception {
+		File dir = folder.newFolder();
+		FileSessionPersistence persistence = new FileSessionPersistence(dir);
+		SessionListener listener = persistence.sessionListener("ROOT");
+
+		Map<String, Object> attributes1 = new HashMap<>();
+		Session s1 = session("s1", attributes1);
+		Session s2 = session("s2", new HashMap<>());
+
+		listener.sessionCreated(s1, null);
+		attributes1.put("a", "v1");
+		listener.attributeAdded(s1, "a", "v1");
+		listener.sessionCreated(s2, null);
+		persistence.storeChangedSessions("ROOT");
+		assertThat(new File(dir, "ROOT").list().length, equalTo(2));
+
+		// a "crash" - no persistSessions() call
+		FileSessionPersistence persistence2 = new FileSessionPersistence(dir);
+		Map<String, PersistentSession> loaded = persistence2.loadSessionAttributes("ROOT", getClass().getClassLoader());
+		assertThat(loaded.size(), equalTo(2));
+		assertThat(loaded.get("s1").getSessionData().get("a"), equalTo("v1"));
+
+		attributes1.put("a", "v2");
+		listener.attributeUpdated(s1, "a", "v2", "v1");
+		listener.sessionDestroyed(s2, null, SessionListener.SessionDestroyedReason.INVALIDATED);
+		persistence.storeChangedSessions("ROOT");
+
+		loaded = new FileSessionPersistence(dir).loadSessionAttributes("ROOT", getClass().getClassLoader());
+		assertThat(loaded.size(), equalTo(1));
+		assertThat(loaded.get("s1").getSessionData().get("a"), equalTo("v2"));
+
+		// undeployment doesn't remove the session - it's going to be persisted
+		listener.sessionDestroyed(s1, null, SessionListener.SessionDestroyedReason.UNDEPLOY);
+		assertThat(new File(dir, "ROOT").list().length, equalTo(1));
+	}
+
+	private Session session(String id, Map<String, Object> attributes) {
+		Session session = mock(Session.class);
+		when(session.getId()).thenReturn(id);
+		when(session.getAttributeNames()).thenAnswer(i -> new HashSet<>(attributes.keySet()));
+		when(session.getAttribute(anyString())).thenAnswer(i -> attributes.get(i.<String>getArgument(0)));
+		when(session.getLastAccessedTime()).thenReturn(System.currentTimeMillis());
+		when(session.getMaxInactiveInterval()).thenReturn(60);
+		return session;
+	}
+
+	private PersistentSession session(long ttl, String name, Object value) {
+		Map<String, Object> data = new HashMap<>();
+		data.put(name, value);
+		return new PersistentSession(new Date(System.currentTimeMillis() + ttl), data);
+	}
+
+}
@@ -0,0 +1,115 @@
+/*
+ * Copyright 2023 OPS4J.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.web.service.undertow.internal;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * <p>Compares trie-based {@link PathMatcher} with substring-based {@link io.undertow.util.PathMatcher} (which
+ * uses the same algorithm as previous version of our {@link PathMatcher}).</p>
+ *
+ * <p>This is not a test - run it with
+ * {@code mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=org.ops4j.pax.web.service.undertow.internal.PathMatcherBenchmark}
+ * or directly from the IDE.</p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PathMatcherBenchmark {
+
+	@Param({ "10", "100", "1000" })
+	public int prefixes;
+
+	private final PathMatcher<Object> trieMatcher = new PathMatcher<>();
+	private final io.undertow.util.PathMatcher<Object> undertowMatcher = new io.undertow.util.PathMatcher<>();
+
+	private String[] requests;
+
+	@Setup
+	public void setup() {
+		Random random = new Random(42L);
+		String[] contexts = new String[prefixes];
+		for (int i = 0; i < prefixes; i++) {
+			// mix of single and nested context paths of different lengths
+			StringBuilder sb = new StringBuilder("/app").append(i);
+			for (int l = random.nextInt(8); l > 0; l--) {
+				sb.append((char) ('a' + random.nextInt(26)));
+			}
+			if (i % 3 == 0) {
+				sb.insert(0, "/group" + (i % 7));
+			}
+			contexts[i] = sb.toString();
+			Object handler = new Object();
+			trieMatcher.addPrefixPath(contexts[i], handler);
+			undertowMatcher.addPrefixPath(contexts[i], handler);
+		}
+		trieMatcher.addPrefixPath("/", new Object());
+		undertowMatcher.addPrefixPath("/", new Object());
+
+		requests = new String[1024];
+		for (int i = 0; i < requests.length; i++) {
+			int r = random.nextInt(10);
+			if (r == 0) {
+				// miss - default context
+				requests[i] = "/unknown/resource.html";
+			} else {
+				requests[i] = contexts[random.nextInt(prefixes)] + "/servlet/path/info/" + i;
+			}
+		}
+	}
+
+	@Benchmark
+	public void trie(Blackhole bh) {
+		for (String path : requests) {
+			bh.consume(trieMatcher.match(path).getValue());
+		}
+	}
+
+	@Benchmark
+	public void substringMap(Blackhole bh) {
+		for (String path : requests) {
+			bh.consume(undertowMatcher.match(path).getValue());
+		}
+	}
+
+	public static void main(String[] args) throws Exception {
+		Options options = new OptionsBuilder()
+				.include(PathMatcherBenchmark.class.getSimpleName())
+				.build();
+		new Runner(options).run();
+	}
+
+}
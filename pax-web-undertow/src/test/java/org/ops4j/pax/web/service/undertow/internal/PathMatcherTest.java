@@ -0,0 +1,64 @@
+/*
+ * Copyright 2023 OPS4J.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.web.service.undertow.internal;
+
+import org.junit.Test;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class PathMatcherTest {
+
+	@Test
+	public void sameMatchesAsUndertowPathMatcher() {
+		PathMatcher<String> trie = new PathMatcher<>();
+		io.undertow.util.PathMatcher<String> undertow = new io.undertow.util.PathMatcher<>();
+		for (String path : new String[] { "/", "/a", "/a/b", "/a/b/c/d", "/ab", "//x//y", "/x" }) {
+			trie.addPrefixPath(path, path);
+			undertow.addPrefixPath(path, path);
+		}
+		trie.addExactPath("/exact", "exact");
+		undertow.addExactPath("/exact", "exact");
+
+		for (String path : new String[] { "", "/", "/a", "/a/", "/a/b", "/a/bc", "/a/b/c", "/a/b/c/d/e", "/ab/c",
+				"/abc", "//x//y/z", "//x/y", "/x//", "/exact", "/exact/", "/q", "a/b" }) {
+			PathMatcher.PathMatch<String> m1 = trie.match(path);
+			io.undertow.util.PathMatcher.PathMatch<String> m2 = undertow.match(path);
+			assertThat(path, m1.getValue(), equalTo(m2.getValue()));
+			assertThat(path, m1.getMatched(), equalTo(m2.getMatched()));
+			assertThat(path, m1.getRemaining(), equalTo(m2.getRemaining()));
+		}
+	}
+
+	@Test
+	public void changesArePublishedAtomically() {
+		PathMatcher<String> matcher = new PathMatcher<>();
+		matcher.addPrefixPath("/a", "a");
+		matcher.addPrefixPath("/a/b", "ab");
+		assertThat(matcher.match("/a/b/c").getValue(), equalTo("ab"));
+		assertThat(matcher.getPaths().size(), equalTo(2));
+
+		matcher.removePrefixPath("/a/b");
+		assertThat(matcher.match("/a/b/c").getValue(), equalTo("a"));
+		assertThat(matcher.match("/a/b/c").getRemaining(), equalTo("/b/c"));
+		assertThat(matcher.getPrefixPath("/a/b"), nullValue());
+
+		matcher.clearPaths();
+		assertThat(matcher.match("/a/b/c").getValue(), nullValue());
+	}
+
+}